@@ -0,0 +1,174 @@
+package ru.tinkoff.invest.openapi;
+
+import java.time.Duration;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Однопоточный цикл обработки событий. Задачи выполняются строго в порядке поступления, поэтому всё, что
+ * относится к одному инструменту, обрабатывается последовательно.
+ *
+ * Цикл считает число выполненных задач, длину очереди и задержку между постановкой задачи в очередь и началом её
+ * выполнения.
+ */
+public final class EventLoop implements Executor {
+
+    /**
+     * Снимок показателей цикла.
+     */
+    public static final class Metrics {
+        private final String name;
+        private final int queueDepth;
+        private final long processed;
+        private final Duration averageLatency;
+        private final Duration maxLatency;
+
+        Metrics(String name, int queueDepth, long processed, Duration averageLatency, Duration maxLatency) {
+            this.name = name;
+            this.queueDepth = queueDepth;
+            this.processed = processed;
+            this.averageLatency = averageLatency;
+            this.maxLatency = maxLatency;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * Число задач, ожидающих выполнения.
+         */
+        public int getQueueDepth() {
+            return queueDepth;
+        }
+
+        /**
+         * Число выполненных задач.
+         */
+        public long getProcessed() {
+            return processed;
+        }
+
+        /**
+         * Средняя задержка от постановки задачи в очередь до начала её выполнения.
+         */
+        public Duration getAverageLatency() {
+            return averageLatency;
+        }
+
+        /**
+         * Максимальная задержка от постановки задачи в очередь до начала её выполнения.
+         */
+        public Duration getMaxLatency() {
+            return maxLatency;
+        }
+
+        @Override
+        public String toString() {
+            return name + "(queue = " + queueDepth + ", processed = " + processed +
+                    ", avg latency = " + averageLatency + ", max latency = " + maxLatency + ")";
+        }
+    }
+
+    private static final class Task {
+        private final Runnable runnable;
+        private final long enqueuedAt;
+
+        Task(Runnable runnable, long enqueuedAt) {
+            this.runnable = runnable;
+            this.enqueuedAt = enqueuedAt;
+        }
+    }
+
+    private final String name;
+    private final BlockingQueue<Task> queue;
+    private final Thread thread;
+    private final Logger logger;
+    private volatile boolean running;
+
+    // пишутся только потоком цикла
+    private volatile long processed;
+    private volatile long totalLatencyNanos;
+    private volatile long maxLatencyNanos;
+
+    /**
+     * Создаёт и запускает цикл.
+     *
+     * @param name Имя цикла (и его потока).
+     * @param logger Экземпляр логгера.
+     */
+    public EventLoop(final String name, final Logger logger) {
+        this.name = name;
+        this.logger = logger;
+        this.queue = new LinkedBlockingQueue<>();
+        this.running = true;
+        this.thread = new Thread(this::loop, name);
+        this.thread.setDaemon(true);
+        this.thread.start();
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public void execute(final Runnable command) {
+        if (!running) {
+            throw new RejectedExecutionException("Цикл " + name + " остановлен.");
+        }
+        queue.add(new Task(command, System.nanoTime()));
+    }
+
+    /**
+     * Получение текущих показателей.
+     */
+    public Metrics getMetrics() {
+        final var count = processed;
+        final var average = count == 0 ? 0 : totalLatencyNanos / count;
+        return new Metrics(name, queue.size(), count, Duration.ofNanos(average), Duration.ofNanos(maxLatencyNanos));
+    }
+
+    /**
+     * Остановка цикла. Уже поставленные задачи выполняются, новые не принимаются.
+     */
+    public void shutdown() {
+        running = false;
+        queue.add(new Task(() -> {}, System.nanoTime()));
+    }
+
+    /**
+     * Ожидание завершения потока цикла после {@link #shutdown()}.
+     */
+    public void awaitTermination() throws InterruptedException {
+        thread.join();
+    }
+
+    private void loop() {
+        while (running || !queue.isEmpty()) {
+            final Task task;
+            try {
+                task = queue.take();
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+
+            final var latency = System.nanoTime() - task.enqueuedAt;
+            processed++;
+            totalLatencyNanos += latency;
+            if (latency > maxLatencyNanos) {
+                maxLatencyNanos = latency;
+            }
+
+            try {
+                task.runnable.run();
+            } catch (Exception ex) {
+                logger.log(Level.SEVERE, "Задача в цикле " + name + " завершилась с ошибкой.", ex);
+            }
+        }
+    }
+}
@@ -0,0 +1,193 @@
+package ru.tinkoff.invest.openapi;
+
+import ru.tinkoff.invest.openapi.data.StreamingEvent;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+
+/**
+ * Изменяемое на месте состояние торговой ситуации для стратегий, которые его поддерживают
+ * ({@link Strategy#acceptsMutableState()}). Исполнитель стратегии не создаёт новое состояние на каждое событие, а
+ * обновляет поля этого объекта.
+ *
+ * Запись защищена счётчиком версий (seqlock): на время записи версия нечётная, после записи - следующая чётная.
+ * Писатели упорядочиваются между собой сравнением с обменом версии, читатели же блокировок не берут. Отдельные
+ * геттеры возвращают последнее записанное значение поля. Чтобы прочитать несколько полей согласованно, нужно взять
+ * версию {@link #getVersion()}, прочитать поля и проверить, что версия не изменилась ({@link #validate(long)}), или
+ * просто получить неизменяемый снимок {@link #snapshot()}.
+ */
+public class MutableTradingState extends TradingState {
+
+    private static final VarHandle SEQUENCE;
+
+    static {
+        try {
+            SEQUENCE = MethodHandles.lookup().findVarHandle(MutableTradingState.class, "sequence", long.class);
+        } catch (ReflectiveOperationException ex) {
+            throw new ExceptionInInitializerError(ex);
+        }
+    }
+
+    private volatile long sequence;
+    private StreamingEvent.Orderbook orderbook;
+    private StreamingEvent.Candle candle;
+    private StreamingEvent.InstrumentInfo instrumentInfo;
+    private PositionStatus positionStatus;
+    private OrderStatus orderStatus;
+
+    /**
+     * @param initial Начальное состояние.
+     */
+    public MutableTradingState(final TradingState initial) {
+        super(null, null, null, initial.getPositionStatus(), initial.getOrderStatus());
+        this.orderbook = initial.getOrderbook();
+        this.candle = initial.getCandle();
+        this.instrumentInfo = initial.getInstrumentInfo();
+        this.positionStatus = initial.getPositionStatus();
+        this.orderStatus = initial.getOrderStatus();
+    }
+
+    /**
+     * Текущая версия состояния. Если в этот момент идёт запись, дожидается её окончания.
+     *
+     * @return Чётная версия.
+     */
+    public long getVersion() {
+        while (true) {
+            final var version = sequence;
+            if ((version & 1) == 0) {
+                return version;
+            }
+            Thread.onSpinWait();
+        }
+    }
+
+    /**
+     * Проверка того, что с момента получения версии состояние не менялось, то есть прочитанные после
+     * {@link #getVersion()} поля согласованы между собой.
+     *
+     * @param version Версия, полученная из {@link #getVersion()}.
+     */
+    public boolean validate(final long version) {
+        VarHandle.loadLoadFence();
+        return sequence == version;
+    }
+
+    /**
+     * Согласованный неизменяемый снимок состояния.
+     */
+    public TradingState snapshot() {
+        while (true) {
+            final var version = getVersion();
+            final var result = new TradingState(orderbook, candle, instrumentInfo, positionStatus, orderStatus);
+            if (validate(version)) {
+                return result;
+            }
+        }
+    }
+
+    public void setOrderbook(final StreamingEvent.Orderbook orderbook) {
+        final var version = beginWrite();
+        this.orderbook = orderbook;
+        endWrite(version);
+    }
+
+    public void setCandle(final StreamingEvent.Candle candle) {
+        final var version = beginWrite();
+        this.candle = candle;
+        endWrite(version);
+    }
+
+    public void setInstrumentInfo(final StreamingEvent.InstrumentInfo instrumentInfo) {
+        final var version = beginWrite();
+        this.instrumentInfo = instrumentInfo;
+        endWrite(version);
+    }
+
+    public void setOrderStatus(final OrderStatus orderStatus) {
+        final var version = beginWrite();
+        this.orderStatus = orderStatus;
+        endWrite(version);
+    }
+
+    /**
+     * Одновременная смена статусов заявки и позиции (например, при исполнении заявки).
+     */
+    public void setStatuses(final OrderStatus orderStatus, final PositionStatus positionStatus) {
+        final var version = beginWrite();
+        this.orderStatus = orderStatus;
+        this.positionStatus = positionStatus;
+        endWrite(version);
+    }
+
+    // чтение версии перед чтением поля гарантирует, что видны все завершённые записи
+
+    @Override
+    public StreamingEvent.Orderbook getOrderbook() {
+        getVersion();
+        return orderbook;
+    }
+
+    @Override
+    public StreamingEvent.Candle getCandle() {
+        getVersion();
+        return candle;
+    }
+
+    @Override
+    public StreamingEvent.InstrumentInfo getInstrumentInfo() {
+        getVersion();
+        return instrumentInfo;
+    }
+
+    @Override
+    public PositionStatus getPositionStatus() {
+        getVersion();
+        return positionStatus;
+    }
+
+    @Override
+    public OrderStatus getOrderStatus() {
+        getVersion();
+        return orderStatus;
+    }
+
+    @Override
+    public TradingState copy(final StreamingEvent.Orderbook orderbook) {
+        return snapshot().copy(orderbook);
+    }
+
+    @Override
+    public TradingState copy(final StreamingEvent.Candle candle) {
+        return snapshot().copy(candle);
+    }
+
+    @Override
+    public TradingState copy(final StreamingEvent.InstrumentInfo instrumentInfo) {
+        return snapshot().copy(instrumentInfo);
+    }
+
+    @Override
+    public TradingState copy(final PositionStatus positionStatus) {
+        return snapshot().copy(positionStatus);
+    }
+
+    @Override
+    public TradingState copy(final OrderStatus orderStatus) {
+        return snapshot().copy(orderStatus);
+    }
+
+    private long beginWrite() {
+        while (true) {
+            final var version = sequence;
+            if ((version & 1) == 0 && SEQUENCE.compareAndSet(this, version, version + 1)) {
+                return version;
+            }
+            Thread.onSpinWait();
+        }
+    }
+
+    private void endWrite(final long version) {
+        sequence = version + 2;
+    }
+}
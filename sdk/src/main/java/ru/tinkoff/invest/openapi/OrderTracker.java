@@ -0,0 +1,147 @@
+package ru.tinkoff.invest.openapi;
+
+import ru.tinkoff.invest.openapi.data.Order;
+import ru.tinkoff.invest.openapi.wrapper.Context;
+
+import java.time.Duration;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Отслеживание активных заявок, общее для всех исполнителей стратегий.
+ *
+ * Пока есть хотя бы одна отслеживаемая заявка, список активных заявок запрашивается одним запросом раз в заданный
+ * интервал, независимо от числа заявок. Заявка, пропавшая из списка (исполненная или отменённая), перестаёт
+ * отслеживаться, а полученный при постановке на отслеживание {@link CompletableFuture} завершается. Потоки при
+ * этом не блокируются.
+ */
+public class OrderTracker {
+
+    private static final class Tracked {
+        private final CompletableFuture<Void> completion;
+        private final long trackedSince;
+
+        Tracked(long trackedSince) {
+            this.completion = new CompletableFuture<>();
+            this.trackedSince = trackedSince;
+        }
+    }
+
+    private final Context context;
+    private final Executor pollScheduler;
+    private final Logger logger;
+    private final Map<String, Tracked> tracked;
+    private final AtomicBoolean polling;
+
+    /**
+     * @param context Контекст OpenAPI.
+     * @param pollInterval Интервал между запросами списка активных заявок.
+     * @param logger Экзепляр логгера.
+     */
+    public OrderTracker(final Context context, final Duration pollInterval, final Logger logger) {
+        this(context, CompletableFuture.delayedExecutor(pollInterval.toMillis(), TimeUnit.MILLISECONDS), logger);
+    }
+
+    /**
+     * @param context Контекст OpenAPI.
+     * @param pollScheduler Исполнитель, запускающий очередной опрос через интервал между запросами.
+     * @param logger Экзепляр логгера.
+     */
+    OrderTracker(final Context context, final Executor pollScheduler, final Logger logger) {
+        this.context = context;
+        this.pollScheduler = pollScheduler;
+        this.logger = logger;
+        this.tracked = new ConcurrentHashMap<>();
+        this.polling = new AtomicBoolean(false);
+    }
+
+    /**
+     * Постановка заявки на отслеживание.
+     *
+     * @param orderId Идентификатор заявки.
+     * @return Завершается, когда заявка перестаёт быть активной.
+     */
+    public CompletableFuture<Void> track(final String orderId) {
+        final var entry = tracked.computeIfAbsent(orderId, id -> new Tracked(System.nanoTime()));
+        schedulePoll();
+        return entry.completion;
+    }
+
+    /**
+     * Снятие заявки с отслеживания. Полученный при постановке {@link CompletableFuture} отменяется.
+     *
+     * @param orderId Идентификатор заявки.
+     */
+    public void untrack(final String orderId) {
+        final var entry = tracked.remove(orderId);
+        if (entry != null) {
+            entry.completion.cancel(false);
+        }
+    }
+
+    /**
+     * Получение идентификаторов отслеживаемых заявок.
+     */
+    public Set<String> getTrackedOrders() {
+        return Set.copyOf(tracked.keySet());
+    }
+
+    private void schedulePoll() {
+        if (tracked.isEmpty() || !polling.compareAndSet(false, true)) return;
+
+        CompletableFuture.runAsync(this::poll, pollScheduler);
+    }
+
+    /**
+     * Опрос списка активных заявок. Что бы ни случилось при опросе (в том числе исключение прямо из вызова
+     * контекста), признак опроса сбрасывается и назначается следующий, иначе заявки перестали бы завершаться.
+     */
+    private void poll() {
+        // заявки, поставленные на отслеживание после отправки запроса, могли в ответ ещё не попасть
+        final var requestedAt = System.nanoTime();
+        try {
+            context.getOrders().whenComplete((orders, ex) -> {
+                try {
+                    if (ex != null) {
+                        logger.log(Level.WARNING, "Не удалось получить список активных заявок.", ex);
+                    } else {
+                        completeInactive(orders, requestedAt);
+                    }
+                } catch (Exception e) {
+                    logger.log(Level.SEVERE, "Что-то пошло не так при разборе списка активных заявок.", e);
+                } finally {
+                    polling.set(false);
+                    schedulePoll();
+                }
+            });
+        } catch (Exception ex) {
+            logger.log(Level.WARNING, "Не удалось запросить список активных заявок.", ex);
+            polling.set(false);
+            schedulePoll();
+        }
+    }
+
+    private void completeInactive(final List<Order> orders, final long requestedAt) {
+        final var active = new HashSet<String>(orders.size() * 2);
+        for (final var order : orders) {
+            active.add(order.getId());
+        }
+
+        for (final var entry : tracked.entrySet()) {
+            final var value = entry.getValue();
+            if (value.trackedSince - requestedAt < 0 && !active.contains(entry.getKey()) &&
+                    tracked.remove(entry.getKey(), value)) {
+                value.completion.complete(null);
+            }
+        }
+    }
+}
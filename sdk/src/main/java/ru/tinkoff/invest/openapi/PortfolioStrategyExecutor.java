@@ -0,0 +1,151 @@
+package ru.tinkoff.invest.openapi;
+
+import ru.tinkoff.invest.openapi.wrapper.Context;
+import ru.tinkoff.invest.openapi.wrapper.SubscriptionManagingContext;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Logger;
+
+/**
+ * Исполнитель множества стратегий на одном контексте (и, значит, одном соединении).
+ *
+ * Стратегии распределяются по фиксированному набору однопоточных циклов {@link EventLoop} по идентификатору
+ * инструмента: все стратегии одного инструмента обслуживаются одним циклом, так что порядок событий по инструменту
+ * сохраняется, а число потоков не зависит от числа стратегий. Заявки всех стратегий отслеживаются одним
+ * {@link OrderTracker}, а подписки streaming учитываются {@link SubscriptionManagingContext}, так что стратегии
+ * по одному инструменту не дублируют подписки и не отписывают друг друга.
+ */
+public class PortfolioStrategyExecutor {
+
+    private final Context context;
+    private final Logger logger;
+    private final EventLoop[] shards;
+    private final OrderTracker orderTracker;
+    private final Map<Strategy, StrategyExecutor> executors;
+    private boolean hasRun;
+
+    /**
+     * Создаёт исполнителя. Процесс торговли при этом не запускается!
+     *
+     * @param context Контекст OpenAPI.
+     * @param shardsCount Число циклов обработки событий.
+     * @param ordersPollInterval Интервал между запросами списка активных заявок.
+     * @param logger Экзепляер логгера.
+     */
+    public PortfolioStrategyExecutor(final Context context,
+                                     final int shardsCount,
+                                     final Duration ordersPollInterval,
+                                     final Logger logger) {
+        if (shardsCount <= 0) {
+            throw new IllegalArgumentException("Число циклов должно быть положительным.");
+        }
+
+        this.context = context instanceof SubscriptionManagingContext
+                ? context
+                : new SubscriptionManagingContext(context);
+        this.logger = logger;
+        this.shards = new EventLoop[shardsCount];
+        for (int i = 0; i < shardsCount; i++) {
+            this.shards[i] = new EventLoop("strategy-shard-" + i, logger);
+        }
+        this.orderTracker = new OrderTracker(this.context, ordersPollInterval, logger);
+        this.executors = new LinkedHashMap<>();
+        this.hasRun = false;
+    }
+
+    /**
+     * Возвращает признак того, запущена ли торговля.
+     */
+    public synchronized boolean isRunning() {
+        return hasRun;
+    }
+
+    /**
+     * Добавление стратегии. Если торговля уже запущена, стратегия сразу запускается.
+     *
+     * @param strategy Стратегия.
+     */
+    public synchronized void add(final Strategy strategy) {
+        if (executors.containsKey(strategy)) return;
+
+        final var executor = new StrategyExecutor(context, strategy, shardOf(strategy), orderTracker, logger);
+        executors.put(strategy, executor);
+        if (hasRun) {
+            executor.run();
+        }
+    }
+
+    /**
+     * Удаление стратегии. Если она была запущена, то останавливается.
+     *
+     * @param strategy Стратегия.
+     */
+    public synchronized void remove(final Strategy strategy) {
+        final var executor = executors.remove(strategy);
+        if (executor != null) {
+            executor.stop();
+        }
+    }
+
+    /**
+     * Получение исполняемых стратегий.
+     */
+    public synchronized List<Strategy> getStrategies() {
+        return new ArrayList<>(executors.keySet());
+    }
+
+    /**
+     * Запускает все стратегии. Если запуск уже был произведён, то ничего не происходит.
+     */
+    public synchronized void run() {
+        if (hasRun) return;
+
+        for (final var executor : executors.values()) {
+            executor.run();
+        }
+
+        hasRun = true;
+    }
+
+    /**
+     * Останавливает все стратегии. Если остановка уже была произведена, то ничего не происходит.
+     */
+    public synchronized void stop() {
+        if (!hasRun) return;
+
+        for (final var executor : executors.values()) {
+            executor.stop();
+        }
+
+        hasRun = false;
+    }
+
+    /**
+     * Останавливает все стратегии и завершает циклы обработки событий. После этого исполнитель не используется.
+     */
+    public synchronized void shutdown() {
+        stop();
+        for (final var shard : shards) {
+            shard.shutdown();
+        }
+    }
+
+    /**
+     * Получение показателей циклов обработки событий: длины очередей и задержек.
+     */
+    public List<EventLoop.Metrics> getShardMetrics() {
+        final var result = new ArrayList<EventLoop.Metrics>(shards.length);
+        for (final var shard : shards) {
+            result.add(shard.getMetrics());
+        }
+        return result;
+    }
+
+    private EventLoop shardOf(final Strategy strategy) {
+        return shards[Math.floorMod(strategy.getInstrument().getFigi().hashCode(), shards.length)];
+    }
+}
@@ -48,4 +48,15 @@ public interface Strategy extends Flow.Processor<TradingState, StrategyDecision>
      */
     TradingState getCurrentState();
 
+    /**
+     * Поддерживает ли стратегия изменяемое состояние. Если да, исполнитель передаёт в {@link #onNext} один и тот же
+     * экземпляр {@link MutableTradingState}, обновляя его на месте, а уведомления, которые стратегия ещё не успела
+     * обработать, объединяет: стратегия видит последнее состояние, но не каждое промежуточное событие.
+     *
+     * @return По умолчанию false - на каждое событие создаётся новое неизменяемое состояние.
+     */
+    default boolean acceptsMutableState() {
+        return false;
+    }
+
 }
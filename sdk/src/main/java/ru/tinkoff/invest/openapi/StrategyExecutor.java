@@ -2,13 +2,17 @@ package ru.tinkoff.invest.openapi;
 
 import ru.tinkoff.invest.openapi.data.*;
 import ru.tinkoff.invest.openapi.wrapper.Context;
+import ru.tinkoff.invest.openapi.wrapper.StreamingKey;
 
-import java.util.HashMap;
-import java.util.Map;
-import java.util.Random;
+import java.time.Duration;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
 import java.util.concurrent.Flow;
 import java.util.concurrent.SubmissionPublisher;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.logging.Level;
+import java.util.function.Supplier;
 import java.util.logging.Logger;
 
 /**
@@ -16,12 +20,22 @@ import java.util.logging.Logger;
  */
 public class StrategyExecutor {
 
+    private static final Duration DEFAULT_ORDERS_POLL_INTERVAL = Duration.ofMillis(100);
+
     private final Context context;
     private final Strategy strategy;
     private final Logger logger;
     private boolean hasRun;
-    private final Map<String, Runnable> orderTrackers;
-    private SubmissionPublisher<TradingState> streaming;
+    private final OrderTracker orderTracker;
+    private final Set<String> trackedOrders;
+    private final Supplier<SubmissionPublisher<TradingState>> publisherFactory;
+    /**
+     * Поток состояний стратегии. Закрывается при остановке, поэтому каждый запуск создаёт новый.
+     */
+    private volatile SubmissionPublisher<TradingState> streaming;
+    private ContextSubscriber contextSubscriber;
+    private final AtomicBoolean notificationPending;
+    private volatile MutableTradingState mutableState;
 
     /**
      * Создаёт исполнителя заданной стратегии на заданном контексте. Процесс торговли при этом не запускается!
@@ -31,12 +45,49 @@ public class StrategyExecutor {
      * @param logger Экзепляер логгера.
      */
     public StrategyExecutor(final Context context, final Strategy strategy, final Logger logger) {
+        this(context, strategy, SubmissionPublisher::new,
+                new OrderTracker(context, DEFAULT_ORDERS_POLL_INTERVAL, logger), logger);
+    }
+
+    /**
+     * Создаёт исполнителя заданной стратегии на заданном контексте, в котором стратегия получает состояния торговой
+     * ситуации в потоках заданного исполнителя. Процесс торговли при этом не запускается!
+     *
+     * @param context Контекст OpenAPI.
+     * @param strategy Исполняемая стратегия.
+     * @param executor Исполнитель, в котором вызывается {@link Strategy#onNext}.
+     * @param orderTracker Отслеживание заявок (может быть общим для нескольких исполнителей).
+     * @param logger Экзепляер логгера.
+     */
+    public StrategyExecutor(final Context context,
+                            final Strategy strategy,
+                            final Executor executor,
+                            final OrderTracker orderTracker,
+                            final Logger logger) {
+        this(context, strategy, () -> new SubmissionPublisher<>(executor, Flow.defaultBufferSize()), orderTracker,
+                logger);
+    }
+
+    private StrategyExecutor(final Context context,
+                             final Strategy strategy,
+                             final Supplier<SubmissionPublisher<TradingState>> publisherFactory,
+                             final OrderTracker orderTracker,
+                             final Logger logger) {
         this.context = context;
         this.strategy = strategy;
         this.hasRun = false;
         this.logger = logger;
-        this.orderTrackers = new HashMap<>();
-        this.streaming = new SubmissionPublisher<>();
+        this.orderTracker = orderTracker;
+        this.trackedOrders = ConcurrentHashMap.newKeySet();
+        this.publisherFactory = publisherFactory;
+        this.notificationPending = new AtomicBoolean(false);
+    }
+
+    /**
+     * Получение исполняемой стратегии.
+     */
+    public Strategy getStrategy() {
+        return strategy;
     }
 
     /**
@@ -47,7 +98,8 @@ public class StrategyExecutor {
     }
 
     /**
-     * Запускает процесс торговли. Если запуск уже был произведён, то ничего не происходит.
+     * Запускает процесс торговли. Если запуск уже был произведён, то ничего не происходит. После остановки
+     * торговлю можно запустить снова.
      *
      * Вызывает {@link Strategy#init}.
      */
@@ -56,11 +108,25 @@ public class StrategyExecutor {
 
         strategy.init();
 
-        context.subscribe(new ContextSubscriber());
-        strategy.subscribe(new StrategyDecisionSubscriber());
-        streaming.subscribe(strategy);
+        streaming = publisherFactory.get();
+        notificationPending.set(false);
 
         final var figi = strategy.getInstrument().getFigi();
+
+        contextSubscriber = new ContextSubscriber();
+        context.subscribe(contextSubscriber, Set.of(
+                StreamingKey.instrumentInfo(figi),
+                StreamingKey.orderbook(figi, strategy.getOrderbookDepth()),
+                StreamingKey.candle(figi, strategy.getCandleInterval())
+        ));
+        strategy.subscribe(new StrategyDecisionSubscriber());
+        if (strategy.acceptsMutableState()) {
+            mutableState = new MutableTradingState(strategy.getCurrentState());
+            streaming.subscribe(new ConflatingStrategySubscriber());
+        } else {
+            streaming.subscribe(strategy);
+        }
+
         context.sendStreamingRequest(
                 StreamingRequest.subscribeInstrumentInfo(figi));
         context.sendStreamingRequest(
@@ -85,24 +151,87 @@ public class StrategyExecutor {
         context.sendStreamingRequest(
                 StreamingRequest.unsubscribeOrderbook(figi, strategy.getOrderbookDepth()));
 
-        context.unsubscribe();
+        contextSubscriber.cancel();
+        contextSubscriber = null;
+
+        for (final var orderId : trackedOrders) {
+            orderTracker.untrack(orderId);
+        }
+        trackedOrders.clear();
 
         streaming.close();
+        mutableState = null;
         strategy.cleanup();
 
         hasRun = false;
     }
 
+    private void trackOrder(final PlacedLimitOrder order) {
+        trackedOrders.add(order.getId());
+        orderTracker.track(order.getId()).thenRun(() -> {
+            trackedOrders.remove(order.getId());
+            final var positionStatus = order.getOperation() == OperationType.Buy
+                    ? TradingState.PositionStatus.Exists
+                    : TradingState.PositionStatus.None;
+            final var state = mutableState;
+            if (state != null) {
+                state.setStatuses(TradingState.OrderStatus.None, positionStatus);
+                notifyStrategy(state);
+            } else {
+                streaming.submit(strategy.getCurrentState().copy(TradingState.OrderStatus.None).copy(positionStatus));
+            }
+        });
+    }
+
+    private void updateOrderStatus(final TradingState.OrderStatus orderStatus) {
+        final var state = mutableState;
+        if (state != null) {
+            state.setOrderStatus(orderStatus);
+            notifyStrategy(state);
+        } else {
+            streaming.submit(strategy.getCurrentState().copy(orderStatus));
+        }
+    }
+
+    /**
+     * Уведомление стратегии об изменении изменяемого состояния. Пока предыдущее уведомление не обработано, новое не
+     * отправляется: стратегия всё равно увидит последнее состояние.
+     */
+    private void notifyStrategy(final MutableTradingState state) {
+        if (notificationPending.compareAndSet(false, true)) {
+            streaming.submit(state);
+        }
+    }
+
     private class ContextSubscriber implements Flow.Subscriber<StreamingEvent> {
 
+        private volatile Flow.Subscription subscription;
+        private volatile boolean cancelled;
+
         @Override
         public void onSubscribe(Flow.Subscription subscription) {
-            subscription.request(Long.MAX_VALUE);
+            this.subscription = subscription;
+            if (cancelled) {
+                subscription.cancel();
+            } else {
+                subscription.request(Long.MAX_VALUE);
+            }
+        }
+
+        void cancel() {
+            cancelled = true;
+            final var current = subscription;
+            if (current != null) {
+                current.cancel();
+            }
         }
 
         @Override
         public void onNext(StreamingEvent item) {
-            if (item instanceof StreamingEvent.Candle) {
+            final var state = mutableState;
+            if (state != null) {
+                onNext(state, item);
+            } else if (item instanceof StreamingEvent.Candle) {
                 final var candle = (StreamingEvent.Candle)item;
                 streaming.submit(strategy.getCurrentState().copy(candle));
             } else if (item instanceof StreamingEvent.Orderbook) {
@@ -116,6 +245,20 @@ public class StrategyExecutor {
             }
         }
 
+        private void onNext(MutableTradingState state, StreamingEvent item) {
+            if (item instanceof StreamingEvent.Candle) {
+                state.setCandle((StreamingEvent.Candle) item);
+            } else if (item instanceof StreamingEvent.Orderbook) {
+                state.setOrderbook((StreamingEvent.Orderbook) item);
+            } else if (item instanceof StreamingEvent.InstrumentInfo) {
+                state.setInstrumentInfo((StreamingEvent.InstrumentInfo) item);
+            } else {
+                logger.severe("Что-то пошло не так в подписке на стрим StreamingEvent. " + item);
+                return;
+            }
+            notifyStrategy(state);
+        }
+
         @Override
         public void onError(Throwable throwable) {
             logger.log(Level.SEVERE, "Что-то пошло не так в подписке на стрим StreamingEvent.", throwable);
@@ -126,6 +269,34 @@ public class StrategyExecutor {
         }
     }
 
+    /**
+     * Передача стратегии уведомлений об изменяемом состоянии со снятием признака ожидающего уведомления перед
+     * обработкой, чтобы изменения во время обработки породили следующее уведомление.
+     */
+    private class ConflatingStrategySubscriber implements Flow.Subscriber<TradingState> {
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            strategy.onSubscribe(subscription);
+        }
+
+        @Override
+        public void onNext(TradingState item) {
+            notificationPending.set(false);
+            strategy.onNext(item);
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            strategy.onError(throwable);
+        }
+
+        @Override
+        public void onComplete() {
+            strategy.onComplete();
+        }
+    }
+
     private class StrategyDecisionSubscriber implements Flow.Subscriber<StrategyDecision> {
 
         @Override
@@ -143,12 +314,10 @@ public class StrategyExecutor {
                         strategy.getInstrument().getCurrency());
                 context.placeLimitOrder(limitOrder).thenApply(plo -> {
                     logger.fine("Заявка успешно размещена.");
-                    final var orderStatus = plo.getOperation() == OperationType.Buy
+                    updateOrderStatus(plo.getOperation() == OperationType.Buy
                             ? TradingState.OrderStatus.WaitingBuy
-                            : TradingState.OrderStatus.WaitingSell;
-                    streaming.submit(strategy.getCurrentState().copy(orderStatus));
-                    orderTrackers.put(plo.getId(), new OrderTracker(plo));
-                    orderTrackers.get(plo.getId()).run();
+                            : TradingState.OrderStatus.WaitingSell);
+                    trackOrder(plo);
                     return null;
                 }).exceptionally(ex -> {
                     logger.log(Level.WARNING, "Заявка не размещена.", ex);
@@ -158,7 +327,11 @@ public class StrategyExecutor {
                 final String orderId = ((StrategyDecision.CancelOrder) item).getOrderId();
                 context.cancelOrder(orderId).thenApply(plo -> {
                     logger.fine("Заявка успешно отменена.");
-                    streaming.submit(strategy.getCurrentState().copy(TradingState.OrderStatus.None));
+                    // отменённая заявка не должна считаться исполненной
+                    if (trackedOrders.remove(orderId)) {
+                        orderTracker.untrack(orderId);
+                    }
+                    updateOrderStatus(TradingState.OrderStatus.None);
                     return null;
                 }).exceptionally(ex -> {
                     logger.log(Level.WARNING, "Заявка не отменена.", ex);
@@ -177,46 +350,4 @@ public class StrategyExecutor {
         }
     }
 
-    private class OrderTracker implements Runnable {
-
-        private final PlacedLimitOrder order;
-        private boolean done;
-        private final Random randomEngine;
-        private static final double rangeMin = 0.95;
-        private static final double rangeMax = 1.05;
-
-        OrderTracker(PlacedLimitOrder order) {
-            this.order = order;
-            this.done = false;
-            this.randomEngine = new Random();
-        }
-
-        @Override
-        public void run() {
-            do {
-                final var orders = context.getOrders().join();
-                final var isOrderNotActive = orders.stream().noneMatch(o -> o.getId().equals(order.getId()));
-                if (isOrderNotActive && strategy.getCurrentState().getInstrumentInfo().canTrade()) {
-                    done = true;
-                    final var newState = strategy.getCurrentState().copy(TradingState.OrderStatus.None).copy(
-                            order.getOperation() == OperationType.Buy
-                                    ? TradingState.PositionStatus.Exists
-                                    : TradingState.PositionStatus.None
-                    );
-                    streaming.submit(newState);
-                    orderTrackers.remove(order.getId());
-                } else {
-                    // получить число между rangeMin и rangeMax
-                    var randomFactor = rangeMin + (rangeMax - rangeMin) * randomEngine.nextDouble();
-                    var timeToSleep = Math.round(100*randomFactor);
-
-                    try {
-                        Thread.sleep(timeToSleep);
-                    } catch (InterruptedException ignored) {
-                    }
-                }
-            } while (!done);
-        }
-    }
-
 }
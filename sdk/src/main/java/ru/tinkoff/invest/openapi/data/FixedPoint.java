@@ -0,0 +1,131 @@
+package ru.tinkoff.invest.openapi.data;
+
+import java.math.BigDecimal;
+
+/**
+ * Десятичные числа в виде пары (немасштабированное значение типа long, масштаб), то есть value * 10^-scale.
+ * Отсутствующее значение обозначается масштабом {@link #NO_VALUE}.
+ */
+final class FixedPoint {
+
+    static final int NO_VALUE = Integer.MIN_VALUE;
+
+    private static final long[] POWERS_OF_TEN = {
+            1L,
+            10L,
+            100L,
+            1_000L,
+            10_000L,
+            100_000L,
+            1_000_000L,
+            10_000_000L,
+            100_000_000L,
+            1_000_000_000L,
+            10_000_000_000L,
+            100_000_000_000L,
+            1_000_000_000_000L,
+            10_000_000_000_000L,
+            100_000_000_000_000L,
+            1_000_000_000_000_000L,
+            10_000_000_000_000_000L,
+            100_000_000_000_000_000L,
+            1_000_000_000_000_000_000L
+    };
+    private static final int MAX_DIGITS = 18;
+
+    private FixedPoint() {}
+
+    static long unscaled(BigDecimal value) {
+        return value == null ? 0 : value.unscaledValue().longValueExact();
+    }
+
+    static int scale(BigDecimal value) {
+        return value == null ? NO_VALUE : value.scale();
+    }
+
+    static BigDecimal toBigDecimal(long unscaled, int scale) {
+        return scale == NO_VALUE ? null : BigDecimal.valueOf(unscaled, scale);
+    }
+
+    /**
+     * 10^power (с проверкой на переполнение).
+     */
+    static long powerOfTen(int power) {
+        if (power < 0 || power >= POWERS_OF_TEN.length) {
+            throw new ArithmeticException("long overflow");
+        }
+        return POWERS_OF_TEN[power];
+    }
+
+    /**
+     * Деление с округлением до ближайшего, половина - от нуля, как {@link java.math.RoundingMode#HALF_UP}.
+     */
+    static long divideHalfUp(long dividend, long divisor) {
+        final var quotient = dividend / divisor;
+        final var remainder = Math.abs(dividend % divisor);
+        if (remainder < Math.abs(divisor) - remainder) {
+            return quotient;
+        }
+        return (dividend < 0) == (divisor < 0) ? quotient + 1 : quotient - 1;
+    }
+
+    /**
+     * Отбрасывание дробной части.
+     */
+    static long truncate(long unscaled, int scale) {
+        if (scale == NO_VALUE) {
+            throw new IllegalStateException("Значение отсутствует.");
+        }
+        if (scale <= 0) {
+            return Math.multiplyExact(unscaled, powerOfTen(-scale));
+        }
+        return scale > MAX_DIGITS ? 0 : unscaled / POWERS_OF_TEN[scale];
+    }
+
+    /**
+     * Масштаб числа, записанного в JSON-нотации.
+     */
+    static int parseScale(char[] buffer, int offset, int length) {
+        final var end = offset + length;
+        var fractionDigits = 0;
+        var inFraction = false;
+        for (int i = offset; i < end; i++) {
+            final var ch = buffer[i];
+            if (ch == '.') {
+                inFraction = true;
+            } else if (ch == 'e' || ch == 'E') {
+                return fractionDigits - Integer.parseInt(new String(buffer, i + 1, end - i - 1));
+            } else if (inFraction) {
+                fractionDigits++;
+            }
+        }
+        return fractionDigits;
+    }
+
+    /**
+     * Немасштабированное значение числа, записанного в JSON-нотации. Масштаб при этом определяется
+     * {@link #parseScale(char[], int, int)}.
+     */
+    static long parseUnscaled(char[] buffer, int offset, int length) {
+        final var end = offset + length;
+        var negative = false;
+        var digits = 0;
+        var significant = false;
+        long result = 0;
+        for (int i = offset; i < end; i++) {
+            final var ch = buffer[i];
+            if (ch >= '0' && ch <= '9') {
+                significant |= ch != '0';
+                if (significant && ++digits > MAX_DIGITS) {
+                    return new BigDecimal(buffer, offset, length).unscaledValue().longValueExact();
+                }
+                result = result * 10 + (ch - '0');
+            } else if (ch == '-') {
+                negative = true;
+            } else if (ch == 'e' || ch == 'E') {
+                break;
+            }
+        }
+        return negative ? -result : result;
+    }
+}
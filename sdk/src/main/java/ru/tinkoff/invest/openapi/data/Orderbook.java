@@ -190,6 +190,13 @@ public class Orderbook {
             return quantity;
         }
 
+        /**
+         * Цена предложения в шагах цены.
+         */
+        public long getPriceTicks(TickSize tickSize) {
+            return tickSize.toTicks(price);
+        }
+
         public boolean equals(Object o) {
             if (!(o instanceof OrderbookItem)) {
                 return false;
@@ -4,16 +4,20 @@ import com.fasterxml.jackson.annotation.*;
 import com.fasterxml.jackson.core.JsonParseException;
 import com.fasterxml.jackson.core.JsonParser;
 import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.base.ParserBase;
 import com.fasterxml.jackson.databind.DeserializationContext;
-import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.JsonDeserializer;
+import com.fasterxml.jackson.databind.JsonMappingException;
 import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+import com.fasterxml.jackson.databind.deser.ResolvableDeserializer;
 import com.fasterxml.jackson.databind.deser.std.StdDeserializer;
-import com.fasterxml.jackson.databind.node.ObjectNode;
-import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.fasterxml.jackson.databind.util.TokenBuffer;
 
 import java.io.IOException;
 import java.math.BigDecimal;
 import java.time.ZonedDateTime;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import java.util.stream.Collectors;
@@ -26,6 +30,10 @@ public abstract class StreamingEvent {
 
     /**
      * Модель события с изменением свечи.
+     *
+     * Цены и объём хранятся как пары (немасштабированное значение, масштаб). Методы, возвращающие
+     * {@link BigDecimal}, создают объекты при первом обращении, а методы вида {@code get*Ticks(TickSize)} отдают
+     * цену в шагах цены без создания объектов.
      */
     @JsonDeserialize
     public static class Candle extends StreamingEvent {
@@ -33,27 +41,32 @@ public abstract class StreamingEvent {
         /**
          * Цена открытия.
          */
-        private final BigDecimal openPrice;
+        private final long openPrice;
+        private final int openPriceScale;
 
         /**
          * Цена закрытия.
          */
-        private final BigDecimal closingPrice;
+        private final long closingPrice;
+        private final int closingPriceScale;
 
         /**
          * Цена макисмальная цена.
          */
-        private final BigDecimal highestPrice;
+        private final long highestPrice;
+        private final int highestPriceScale;
 
         /**
          * Минимальная цена.
          */
-        private final BigDecimal lowestPrice;
+        private final long lowestPrice;
+        private final int lowestPriceScale;
 
         /**
          * Объём торгов.
          */
-        private final BigDecimal tradingValue;
+        private final long tradingValue;
+        private final int tradingValueScale;
 
         /**
          * Дата/время формирования свечи.
@@ -70,6 +83,12 @@ public abstract class StreamingEvent {
          */
         private final String figi;
 
+        private BigDecimal openPriceDecimal;
+        private BigDecimal closingPriceDecimal;
+        private BigDecimal highestPriceDecimal;
+        private BigDecimal lowestPriceDecimal;
+        private BigDecimal tradingValueDecimal;
+
         @JsonCreator
         public Candle(@JsonProperty("o")
                       BigDecimal openPrice,
@@ -87,34 +106,119 @@ public abstract class StreamingEvent {
                       CandleInterval interval,
                       @JsonProperty("figi")
                       String figi) {
+            this(
+                    FixedPoint.unscaled(openPrice), FixedPoint.scale(openPrice),
+                    FixedPoint.unscaled(closingPrice), FixedPoint.scale(closingPrice),
+                    FixedPoint.unscaled(highestPrice), FixedPoint.scale(highestPrice),
+                    FixedPoint.unscaled(lowestPrice), FixedPoint.scale(lowestPrice),
+                    FixedPoint.unscaled(tradingValue), FixedPoint.scale(tradingValue),
+                    dateTime,
+                    interval,
+                    figi
+            );
+            this.openPriceDecimal = openPrice;
+            this.closingPriceDecimal = closingPrice;
+            this.highestPriceDecimal = highestPrice;
+            this.lowestPriceDecimal = lowestPrice;
+            this.tradingValueDecimal = tradingValue;
+        }
+
+        Candle(long openPrice, int openPriceScale,
+               long closingPrice, int closingPriceScale,
+               long highestPrice, int highestPriceScale,
+               long lowestPrice, int lowestPriceScale,
+               long tradingValue, int tradingValueScale,
+               ZonedDateTime dateTime,
+               CandleInterval interval,
+               String figi) {
             this.openPrice = openPrice;
+            this.openPriceScale = openPriceScale;
             this.closingPrice = closingPrice;
+            this.closingPriceScale = closingPriceScale;
             this.highestPrice = highestPrice;
+            this.highestPriceScale = highestPriceScale;
             this.lowestPrice = lowestPrice;
+            this.lowestPriceScale = lowestPriceScale;
             this.tradingValue = tradingValue;
+            this.tradingValueScale = tradingValueScale;
             this.dateTime = dateTime;
             this.interval = interval;
             this.figi = figi;
         }
 
         public BigDecimal getOpenPrice() {
-            return openPrice;
+            var result = openPriceDecimal;
+            if (result == null) {
+                result = openPriceDecimal = FixedPoint.toBigDecimal(openPrice, openPriceScale);
+            }
+            return result;
         }
 
         public BigDecimal getClosingPrice() {
-            return closingPrice;
+            var result = closingPriceDecimal;
+            if (result == null) {
+                result = closingPriceDecimal = FixedPoint.toBigDecimal(closingPrice, closingPriceScale);
+            }
+            return result;
         }
 
         public BigDecimal getHighestPrice() {
-            return highestPrice;
+            var result = highestPriceDecimal;
+            if (result == null) {
+                result = highestPriceDecimal = FixedPoint.toBigDecimal(highestPrice, highestPriceScale);
+            }
+            return result;
         }
 
         public BigDecimal getLowestPrice() {
-            return lowestPrice;
+            var result = lowestPriceDecimal;
+            if (result == null) {
+                result = lowestPriceDecimal = FixedPoint.toBigDecimal(lowestPrice, lowestPriceScale);
+            }
+            return result;
         }
 
         public BigDecimal getTradingValue() {
-            return tradingValue;
+            var result = tradingValueDecimal;
+            if (result == null) {
+                result = tradingValueDecimal = FixedPoint.toBigDecimal(tradingValue, tradingValueScale);
+            }
+            return result;
+        }
+
+        /**
+         * Цена открытия в шагах цены.
+         */
+        public long getOpenPriceTicks(TickSize tickSize) {
+            return tickSize.toTicks(openPrice, openPriceScale);
+        }
+
+        /**
+         * Цена закрытия в шагах цены.
+         */
+        public long getClosingPriceTicks(TickSize tickSize) {
+            return tickSize.toTicks(closingPrice, closingPriceScale);
+        }
+
+        /**
+         * Максимальная цена в шагах цены.
+         */
+        public long getHighestPriceTicks(TickSize tickSize) {
+            return tickSize.toTicks(highestPrice, highestPriceScale);
+        }
+
+        /**
+         * Минимальная цена в шагах цены.
+         */
+        public long getLowestPriceTicks(TickSize tickSize) {
+            return tickSize.toTicks(lowestPrice, lowestPriceScale);
+        }
+
+        /**
+         * Объём торгов без дробной части.
+         */
+        public long getTradingValueAsLong() {
+            return FixedPoint.truncate(tradingValue, tradingValueScale);
         }
 
         public ZonedDateTime getDateTime() {
@@ -131,11 +235,11 @@ public abstract class StreamingEvent {
 
         @Override
         public String toString() {
-            return "Candle(openPrice = " + openPrice +
-                    ", closingPrice = " + closingPrice +
-                    ", highestPrice = " + highestPrice +
-                    ", lowestPrice = " + lowestPrice +
-                    ", tradingValue = " + tradingValue +
+            return "Candle(openPrice = " + getOpenPrice() +
+                    ", closingPrice = " + getClosingPrice() +
+                    ", highestPrice = " + getHighestPrice() +
+                    ", lowestPrice = " + getLowestPrice() +
+                    ", tradingValue = " + getTradingValue() +
                     ", dateTime = " + dateTime +
                     ", interval = " + interval +
                     ", figi = " + figi +
@@ -150,7 +254,7 @@ public abstract class StreamingEvent {
 
             final var other = (Candle)o;
 
-            if (!this.closingPrice.equals(other.closingPrice)) {
+            if (this.closingPrice != other.closingPrice || this.closingPriceScale != other.closingPriceScale) {
                 return false;
             }
             if (!this.dateTime.equals(other.dateTime)) {
@@ -159,16 +263,16 @@ public abstract class StreamingEvent {
             if (!this.figi.equals(other.figi)) {
                 return false;
             }
-            if (!this.highestPrice.equals(other.highestPrice)) {
+            if (this.highestPrice != other.highestPrice || this.highestPriceScale != other.highestPriceScale) {
                 return false;
             }
             if (this.interval != other.interval) {
                 return false;
             }
-            if (!this.openPrice.equals(other.openPrice)) {
+            if (this.openPrice != other.openPrice || this.openPriceScale != other.openPriceScale) {
                 return false;
             }
-            if (!this.tradingValue.equals(other.tradingValue)) {
+            if (this.tradingValue != other.tradingValue || this.tradingValueScale != other.tradingValueScale) {
                 return false;
             }
 
@@ -178,6 +282,11 @@ public abstract class StreamingEvent {
 
     /**
      * Модель события с изменением стакана.
+     *
+     * Цены и количества хранятся в массивах пар (немасштабированное значение, масштаб). Списки
+     * {@link BigDecimal}[] строятся при первом обращении к {@link #getBids()} и {@link #getAsks()} и не изменяемы:
+     * одно событие получают все подписчики. Поуровневые методы вида {@code get*PriceTicks(int, TickSize)} не
+     * создают объектов.
      */
     @JsonDeserialize
     public static class Orderbook extends StreamingEvent {
@@ -188,20 +297,31 @@ public abstract class StreamingEvent {
         private final int depth;
 
         /**
-         * Список размещённых предложений о продаже.
+         * Размещённые предложения о покупке: цены и количества.
          */
-        private final List<BigDecimal[]> bids;
+        private final long[] bidPrices;
+        private final int[] bidPriceScales;
+        private final long[] bidQuantities;
+        private final int[] bidQuantityScales;
 
         /**
-         * Список размещённых предложений о покупке.
+         * Размещённые предложения о продаже: цены и количества.
          */
-        private final List<BigDecimal[]> asks;
+        private final long[] askPrices;
+        private final int[] askPriceScales;
+        private final long[] askQuantities;
+        private final int[] askQuantityScales;
 
         /**
          * Идентификатор инструмента.
          */
         private final String figi;
 
+        // неизменяемые списки (List.copyOf) публикуются безопасно через свои final-поля, поэтому гонка при ленивом
+        // построении приводит лишь к повторному построению
+        private List<BigDecimal[]> bidsDecimal;
+        private List<BigDecimal[]> asksDecimal;
+
         @JsonCreator
         public Orderbook(@JsonProperty("depth")
                          int depth,
@@ -212,8 +332,51 @@ public abstract class StreamingEvent {
                          @JsonProperty("figi")
                          String figi) {
             this.depth = depth;
-            this.bids = bids;
-            this.asks = asks;
+            this.figi = figi;
+
+            final var bidsCount = bids == null ? 0 : bids.size();
+            this.bidPrices = new long[bidsCount];
+            this.bidPriceScales = new int[bidsCount];
+            this.bidQuantities = new long[bidsCount];
+            this.bidQuantityScales = new int[bidsCount];
+            for (int i = 0; i < bidsCount; i++) {
+                final var level = bids.get(i);
+                bidPrices[i] = FixedPoint.unscaled(level[0]);
+                bidPriceScales[i] = FixedPoint.scale(level[0]);
+                bidQuantities[i] = FixedPoint.unscaled(level[1]);
+                bidQuantityScales[i] = FixedPoint.scale(level[1]);
+            }
+
+            final var asksCount = asks == null ? 0 : asks.size();
+            this.askPrices = new long[asksCount];
+            this.askPriceScales = new int[asksCount];
+            this.askQuantities = new long[asksCount];
+            this.askQuantityScales = new int[asksCount];
+            for (int i = 0; i < asksCount; i++) {
+                final var level = asks.get(i);
+                askPrices[i] = FixedPoint.unscaled(level[0]);
+                askPriceScales[i] = FixedPoint.scale(level[0]);
+                askQuantities[i] = FixedPoint.unscaled(level[1]);
+                askQuantityScales[i] = FixedPoint.scale(level[1]);
+            }
+
+            this.bidsDecimal = bids == null ? List.of() : List.copyOf(bids);
+            this.asksDecimal = asks == null ? List.of() : List.copyOf(asks);
+        }
+
+        Orderbook(int depth,
+                  long[] bidPrices, int[] bidPriceScales, long[] bidQuantities, int[] bidQuantityScales,
+                  long[] askPrices, int[] askPriceScales, long[] askQuantities, int[] askQuantityScales,
+                  String figi) {
+            this.depth = depth;
+            this.bidPrices = bidPrices;
+            this.bidPriceScales = bidPriceScales;
+            this.bidQuantities = bidQuantities;
+            this.bidQuantityScales = bidQuantityScales;
+            this.askPrices = askPrices;
+            this.askPriceScales = askPriceScales;
+            this.askQuantities = askQuantities;
+            this.askQuantityScales = askQuantityScales;
             this.figi = figi;
         }
 
@@ -222,11 +385,71 @@ public abstract class StreamingEvent {
         }
 
         public List<BigDecimal[]> getBids() {
-            return bids;
+            var result = bidsDecimal;
+            if (result == null) {
+                result = bidsDecimal = toDecimals(bidPrices, bidPriceScales, bidQuantities, bidQuantityScales);
+            }
+            return result;
         }
 
         public List<BigDecimal[]> getAsks() {
-            return asks;
+            var result = asksDecimal;
+            if (result == null) {
+                result = asksDecimal = toDecimals(askPrices, askPriceScales, askQuantities, askQuantityScales);
+            }
+            return result;
+        }
+
+        /**
+         * Количество уровней предложений о покупке.
+         */
+        public int getBidsCount() {
+            return bidPrices.length;
+        }
+
+        /**
+         * Цена предложения о покупке в шагах цены.
+         *
+         * @param level Номер уровня (0 - лучшая цена).
+         * @param tickSize Шаг цены инструмента.
+         */
+        public long getBidPriceTicks(int level, TickSize tickSize) {
+            return tickSize.toTicks(bidPrices[level], bidPriceScales[level]);
+        }
+
+        /**
+         * Количество в предложении о покупке (без дробной части).
+         *
+         * @param level Номер уровня (0 - лучшая цена).
+         */
+        public long getBidQuantity(int level) {
+            return FixedPoint.truncate(bidQuantities[level], bidQuantityScales[level]);
+        }
+
+        /**
+         * Количество уровней предложений о продаже.
+         */
+        public int getAsksCount() {
+            return askPrices.length;
+        }
+
+        /**
+         * Цена предложения о продаже в шагах цены.
+         *
+         * @param level Номер уровня (0 - лучшая цена).
+         * @param tickSize Шаг цены инструмента.
+         */
+        public long getAskPriceTicks(int level, TickSize tickSize) {
+            return tickSize.toTicks(askPrices[level], askPriceScales[level]);
+        }
+
+        /**
+         * Количество в предложении о продаже (без дробной части).
+         *
+         * @param level Номер уровня (0 - лучшая цена).
+         */
+        public long getAskQuantity(int level) {
+            return FixedPoint.truncate(askQuantities[level], askQuantityScales[level]);
         }
 
         public String getFigi() {
@@ -235,10 +458,10 @@ public abstract class StreamingEvent {
 
         @Override
         public String toString() {
-            final var bidsString = bids.stream()
+            final var bidsString = getBids().stream()
                     .map(x -> Arrays.toString(Arrays.stream(x).map(BigDecimal::toPlainString).toArray(String[]::new)))
                     .collect(Collectors.toList());
-            final var asksString = asks.stream()
+            final var asksString = getAsks().stream()
                     .map(x -> Arrays.toString(Arrays.stream(x).map(BigDecimal::toPlainString).toArray(String[]::new)))
                     .collect(Collectors.toList());
             return "Orderbook(depth = " + depth +
@@ -259,10 +482,16 @@ public abstract class StreamingEvent {
             if (this.depth != other.depth) {
                 return false;
             }
-            if (!this.bids.equals(other.bids)) {
+            if (!Arrays.equals(this.bidPrices, other.bidPrices) ||
+                    !Arrays.equals(this.bidPriceScales, other.bidPriceScales) ||
+                    !Arrays.equals(this.bidQuantities, other.bidQuantities) ||
+                    !Arrays.equals(this.bidQuantityScales, other.bidQuantityScales)) {
                 return false;
             }
-            if (!this.asks.equals(other.asks)) {
+            if (!Arrays.equals(this.askPrices, other.askPrices) ||
+                    !Arrays.equals(this.askPriceScales, other.askPriceScales) ||
+                    !Arrays.equals(this.askQuantities, other.askQuantities) ||
+                    !Arrays.equals(this.askQuantityScales, other.askQuantityScales)) {
                 return false;
             }
             if (!this.figi.equals(other.figi)) {
@@ -271,6 +500,20 @@ public abstract class StreamingEvent {
 
             return true;
         }
+
+        private static List<BigDecimal[]> toDecimals(long[] prices,
+                                                     int[] priceScales,
+                                                     long[] quantities,
+                                                     int[] quantityScales) {
+            final var result = new ArrayList<BigDecimal[]>(prices.length);
+            for (int i = 0; i < prices.length; i++) {
+                result.add(new BigDecimal[]{
+                        FixedPoint.toBigDecimal(prices[i], priceScales[i]),
+                        FixedPoint.toBigDecimal(quantities[i], quantityScales[i])
+                });
+            }
+            return List.copyOf(result);
+        }
     }
 
     /**
@@ -479,7 +722,10 @@ public abstract class StreamingEvent {
         }
     }
 
-    static class StreamingEventDeserializer extends StdDeserializer<StreamingEvent> {
+    static class StreamingEventDeserializer extends StdDeserializer<StreamingEvent> implements ResolvableDeserializer {
+
+        private JsonDeserializer<Object> dateTimeDeserializer;
+        private JsonDeserializer<Object> intervalDeserializer;
 
         public StreamingEventDeserializer() {
             this(null);
@@ -489,48 +735,266 @@ public abstract class StreamingEvent {
             super(vc);
         }
 
+        /**
+         * Десериализаторы полей свечи находятся один раз: сами по себе они не кэшируются и иначе создавались бы
+         * заново для каждого события.
+         */
+        @Override
+        public void resolve(DeserializationContext ctxt) throws JsonMappingException {
+            dateTimeDeserializer = ctxt.findRootValueDeserializer(ctxt.constructType(ZonedDateTime.class));
+            intervalDeserializer = ctxt.findRootValueDeserializer(ctxt.constructType(CandleInterval.class));
+        }
+
+        /**
+         * Разбор события за один проход по токенам. Полезная нагрузка десериализуется прямо из исходного парсера
+         * средствами текущего контекста (а значит и текущего, заранее настроенного, ObjectMapper). Буферизация
+         * нужна только если поле "payload" пришло раньше поля "event".
+         */
         @Override
         public StreamingEvent deserialize(JsonParser p, DeserializationContext ctxt)
                 throws IOException, JsonProcessingException {
 
-            final var node = (ObjectNode) p.getCodec().readTree(p);
-            final var eventNameNode = node.get("event");
+            var token = p.getCurrentToken();
+            if (token == JsonToken.START_OBJECT) {
+                token = p.nextToken();
+            }
 
-            if (eventNameNode == null || !eventNameNode.isTextual()) {
-                throw new JsonParseException(p, "No type field 'event'.");
+            String eventName = null;
+            StreamingEvent result = null;
+            TokenBuffer bufferedPayload = null;
+
+            for (; token == JsonToken.FIELD_NAME; token = p.nextToken()) {
+                final var fieldName = p.getCurrentName();
+                final var valueToken = p.nextToken();
+
+                if ("event".equals(fieldName)) {
+                    if (valueToken != JsonToken.VALUE_STRING) {
+                        throw new JsonParseException(p, "No type field 'event'.");
+                    }
+                    eventName = p.getText();
+                } else if ("payload".equals(fieldName)) {
+                    if (valueToken != JsonToken.START_OBJECT) {
+                        throw new JsonParseException(p, "No data field 'payload'.");
+                    }
+                    if (eventName != null) {
+                        result = readPayload(eventName, p, ctxt);
+                    } else {
+                        bufferedPayload = new TokenBuffer(p, ctxt);
+                        bufferedPayload.forceUseOfBigDecimal(true);
+                        bufferedPayload.copyCurrentStructure(p);
+                    }
+                } else {
+                    p.skipChildren();
+                }
             }
 
-            final var eventName = eventNameNode.asText();
-            final var payloadNode = node.get("payload");
+            if (eventName == null) {
+                throw new JsonParseException(p, "No type field 'event'.");
+            }
 
-            if (payloadNode == null || !payloadNode.isObject()) {
-                throw new JsonParseException(p, "No data field 'payload'.");
+            if (result == null) {
+                if (bufferedPayload == null) {
+                    throw new JsonParseException(p, "No data field 'payload'.");
+                }
+                try (final var payloadParser = bufferedPayload.asParser(p.getCodec())) {
+                    payloadParser.nextToken();
+                    result = readPayload(eventName, payloadParser, ctxt);
+                }
             }
 
-            final var mapper = new ObjectMapper();
-            mapper.registerModule(new JavaTimeModule());
+            return result;
+        }
 
-            StreamingEvent result;
+        private StreamingEvent readPayload(String eventName, JsonParser p, DeserializationContext ctxt)
+                throws IOException {
             switch (eventName) {
                 case "candle":
-                    result = mapper.readValue(mapper.writeValueAsString(payloadNode), Candle.class);
-                    break;
+                    return readCandle(p, ctxt);
                 case "orderbook":
-                    result = mapper.readValue(mapper.writeValueAsString(payloadNode), Orderbook.class);
-                    break;
+                    return readOrderbook(p);
                 case "instrument_info":
-                    result = mapper.readValue(mapper.writeValueAsString(payloadNode), InstrumentInfo.class);
-                    break;
+                    return ctxt.readValue(p, InstrumentInfo.class);
                 case "error":
-                    result = mapper.readValue(mapper.writeValueAsString(payloadNode), Error.class);
-                    break;
+                    return ctxt.readValue(p, Error.class);
                 default:
                     throw new JsonParseException(p, "Unknown event type.");
             }
+        }
+
+        /**
+         * Разбор свечи. Цены и объём читаются прямо из буфера символов парсера в пары (значение, масштаб).
+         */
+        private Candle readCandle(JsonParser p, DeserializationContext ctxt) throws IOException {
+            long open = 0, close = 0, high = 0, low = 0, value = 0;
+            int openScale = FixedPoint.NO_VALUE, closeScale = FixedPoint.NO_VALUE, highScale = FixedPoint.NO_VALUE,
+                    lowScale = FixedPoint.NO_VALUE, valueScale = FixedPoint.NO_VALUE;
+            ZonedDateTime time = null;
+            CandleInterval interval = null;
+            String figi = null;
+
+            for (var token = p.nextToken(); token == JsonToken.FIELD_NAME; token = p.nextToken()) {
+                final var fieldName = p.getCurrentName();
+                final var valueToken = p.nextToken();
+                if (valueToken == JsonToken.VALUE_NULL) continue;
+
+                switch (fieldName) {
+                    case "o":
+                        open = readUnscaled(p);
+                        openScale = readScale(p);
+                        break;
+                    case "c":
+                        close = readUnscaled(p);
+                        closeScale = readScale(p);
+                        break;
+                    case "h":
+                        high = readUnscaled(p);
+                        highScale = readScale(p);
+                        break;
+                    case "l":
+                        low = readUnscaled(p);
+                        lowScale = readScale(p);
+                        break;
+                    case "v":
+                        value = readUnscaled(p);
+                        valueScale = readScale(p);
+                        break;
+                    case "time":
+                        time = (ZonedDateTime) dateTimeDeserializer.deserialize(p, ctxt);
+                        break;
+                    case "interval":
+                        interval = (CandleInterval) intervalDeserializer.deserialize(p, ctxt);
+                        break;
+                    case "figi":
+                        figi = p.getText();
+                        break;
+                    default:
+                        p.skipChildren();
+                }
+            }
 
-            p.close();
+            return new Candle(open, openScale, close, closeScale, high, highScale, low, lowScale, value, valueScale,
+                    time, interval, figi);
+        }
 
-            return result;
+        /**
+         * Разбор стакана. Уровни читаются сразу в массивы пар (значение, масштаб).
+         */
+        private static Orderbook readOrderbook(JsonParser p) throws IOException {
+            var depth = 0;
+            String figi = null;
+            var bids = OrderbookSide.EMPTY;
+            var asks = OrderbookSide.EMPTY;
+
+            for (var token = p.nextToken(); token == JsonToken.FIELD_NAME; token = p.nextToken()) {
+                final var fieldName = p.getCurrentName();
+                final var valueToken = p.nextToken();
+                if (valueToken == JsonToken.VALUE_NULL) continue;
+
+                switch (fieldName) {
+                    case "depth":
+                        depth = p.getIntValue();
+                        break;
+                    case "bids":
+                        bids = readOrderbookSide(p, depth);
+                        break;
+                    case "asks":
+                        asks = readOrderbookSide(p, depth);
+                        break;
+                    case "figi":
+                        figi = p.getText();
+                        break;
+                    default:
+                        p.skipChildren();
+                }
+            }
+
+            return new Orderbook(
+                    depth,
+                    bids.prices, bids.priceScales, bids.quantities, bids.quantityScales,
+                    asks.prices, asks.priceScales, asks.quantities, asks.quantityScales,
+                    figi
+            );
+        }
+
+        private static OrderbookSide readOrderbookSide(JsonParser p, int expectedSize) throws IOException {
+            if (p.getCurrentToken() != JsonToken.START_ARRAY) {
+                throw new JsonParseException(p, "Orderbook side must be an array.");
+            }
+
+            final var side = new OrderbookSide(Math.max(expectedSize, 1));
+            while (p.nextToken() == JsonToken.START_ARRAY) {
+                p.nextToken();
+                final var price = readUnscaled(p);
+                final var priceScale = readScale(p);
+                p.nextToken();
+                final var quantity = readUnscaled(p);
+                final var quantityScale = readScale(p);
+                if (p.nextToken() != JsonToken.END_ARRAY) {
+                    throw new JsonParseException(p, "Orderbook level must be a [price, quantity] pair.");
+                }
+                side.add(price, priceScale, quantity, quantityScale);
+            }
+
+            return side.trimmed();
+        }
+
+        private static long readUnscaled(JsonParser p) throws IOException {
+            if (p instanceof ParserBase || p.getCurrentToken() == JsonToken.VALUE_STRING) {
+                return FixedPoint.parseUnscaled(p.getTextCharacters(), p.getTextOffset(), p.getTextLength());
+            }
+            return FixedPoint.unscaled(p.getDecimalValue());
+        }
+
+        private static int readScale(JsonParser p) throws IOException {
+            if (p instanceof ParserBase || p.getCurrentToken() == JsonToken.VALUE_STRING) {
+                return FixedPoint.parseScale(p.getTextCharacters(), p.getTextOffset(), p.getTextLength());
+            }
+            return p.getDecimalValue().scale();
+        }
+    }
+
+    /**
+     * Накопитель уровней одной стороны стакана при разборе.
+     */
+    private static final class OrderbookSide {
+        private static final OrderbookSide EMPTY = new OrderbookSide(0);
+
+        private long[] prices;
+        private int[] priceScales;
+        private long[] quantities;
+        private int[] quantityScales;
+        private int size;
+
+        private OrderbookSide(int capacity) {
+            this.prices = new long[capacity];
+            this.priceScales = new int[capacity];
+            this.quantities = new long[capacity];
+            this.quantityScales = new int[capacity];
+        }
+
+        private void add(long price, int priceScale, long quantity, int quantityScale) {
+            if (size == prices.length) {
+                final var capacity = Math.max(size * 2, 4);
+                prices = Arrays.copyOf(prices, capacity);
+                priceScales = Arrays.copyOf(priceScales, capacity);
+                quantities = Arrays.copyOf(quantities, capacity);
+                quantityScales = Arrays.copyOf(quantityScales, capacity);
+            }
+            prices[size] = price;
+            priceScales[size] = priceScale;
+            quantities[size] = quantity;
+            quantityScales[size] = quantityScale;
+            size++;
+        }
+
+        private OrderbookSide trimmed() {
+            if (size != prices.length) {
+                prices = Arrays.copyOf(prices, size);
+                priceScales = Arrays.copyOf(priceScales, size);
+                quantities = Arrays.copyOf(quantities, size);
+                quantityScales = Arrays.copyOf(quantityScales, size);
+            }
+            return this;
         }
     }
 }
@@ -0,0 +1,104 @@
+package ru.tinkoff.invest.openapi.data;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/**
+ * Минимальный шаг цены инструмента, используемый для представления цен целым числом шагов (long).
+ *
+ * Цена в шагах получается из событий streaming без создания промежуточных объектов, а сравнение и арифметика
+ * над ними - это обычные операции над long. Обратно в {@link BigDecimal} цена переводится методом
+ * {@link #toPrice(long)}.
+ */
+public final class TickSize {
+
+    private final BigDecimal minPriceIncrement;
+    private final long unscaledIncrement;
+    private final int scale;
+
+    private TickSize(BigDecimal minPriceIncrement) {
+        if (minPriceIncrement.signum() <= 0) {
+            throw new IllegalArgumentException("Шаг цены должен быть положительным.");
+        }
+
+        this.minPriceIncrement = minPriceIncrement;
+        this.unscaledIncrement = FixedPoint.unscaled(minPriceIncrement);
+        this.scale = minPriceIncrement.scale();
+    }
+
+    /**
+     * @param minPriceIncrement Минимальный шаг цены инструмента ({@link Instrument#getMinPriceIncrement()}).
+     */
+    public static TickSize of(final BigDecimal minPriceIncrement) {
+        return new TickSize(minPriceIncrement);
+    }
+
+    public BigDecimal getMinPriceIncrement() {
+        return minPriceIncrement;
+    }
+
+    /**
+     * Перевод цены в число шагов с округлением до ближайшего.
+     *
+     * @param price Цена.
+     * @return Число шагов.
+     */
+    public long toTicks(final BigDecimal price) {
+        return price.divide(minPriceIncrement, 0, RoundingMode.HALF_UP).longValueExact();
+    }
+
+    /**
+     * Перевод цены, заданной парой (немасштабированное значение, масштаб), в число шагов с округлением до
+     * ближайшего. Не создаёт объектов.
+     *
+     * @param unscaled Немасштабированное значение цены.
+     * @param priceScale Масштаб цены.
+     * @return Число шагов.
+     */
+    public long toTicks(final long unscaled, final int priceScale) {
+        if (priceScale == FixedPoint.NO_VALUE) {
+            throw new IllegalStateException("Цена отсутствует.");
+        }
+
+        try {
+            if (scale >= priceScale) {
+                final var dividend = Math.multiplyExact(unscaled, FixedPoint.powerOfTen(scale - priceScale));
+                return FixedPoint.divideHalfUp(dividend, unscaledIncrement);
+            } else {
+                final var divisor = Math.multiplyExact(unscaledIncrement, FixedPoint.powerOfTen(priceScale - scale));
+                return FixedPoint.divideHalfUp(unscaled, divisor);
+            }
+        } catch (ArithmeticException ex) {
+            return toTicks(BigDecimal.valueOf(unscaled, priceScale));
+        }
+    }
+
+    /**
+     * Перевод числа шагов в цену.
+     *
+     * @param ticks Число шагов.
+     * @return Цена.
+     */
+    public BigDecimal toPrice(final long ticks) {
+        return BigDecimal.valueOf(Math.multiplyExact(ticks, unscaledIncrement), scale);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (!(o instanceof TickSize)) {
+            return false;
+        }
+
+        return minPriceIncrement.compareTo(((TickSize) o).minPriceIncrement) == 0;
+    }
+
+    @Override
+    public int hashCode() {
+        return minPriceIncrement.stripTrailingZeros().hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return "TickSize(" + minPriceIncrement.toPlainString() + ")";
+    }
+}
@@ -8,6 +8,11 @@ import java.time.OffsetDateTime;
  * Исключение возникающее при указании недопустимого отрезка времени для поиска на исторических данных свечей.
  */
 public class BadCandlesSearchingIntervalException extends Exception {
+
+    private final OffsetDateTime allowedStart;
+    private final OffsetDateTime allowedEnd;
+    private final CandleInterval searchingInterval;
+
     public BadCandlesSearchingIntervalException(OffsetDateTime allowedStart,
                                                 OffsetDateTime allowedEnd,
                                                 CandleInterval searchingInterval) {
@@ -20,6 +25,30 @@ public class BadCandlesSearchingIntervalException extends Exception {
                 generateAllowedSection(searchingInterval) +
                 ")"
         );
+        this.allowedStart = allowedStart;
+        this.allowedEnd = allowedEnd;
+        this.searchingInterval = searchingInterval;
+    }
+
+    /**
+     * Допустимое начало промежутка, сообщённое сервером.
+     */
+    public OffsetDateTime getAllowedStart() {
+        return allowedStart;
+    }
+
+    /**
+     * Допустимый конец промежутка, сообщённый сервером.
+     */
+    public OffsetDateTime getAllowedEnd() {
+        return allowedEnd;
+    }
+
+    /**
+     * Запрошенный интервал свечей.
+     */
+    public CandleInterval getSearchingInterval() {
+        return searchingInterval;
     }
 
     private static String generateAllowedSection(CandleInterval searchingInterval) {
@@ -0,0 +1,231 @@
+package ru.tinkoff.invest.openapi.market;
+
+import ru.tinkoff.invest.openapi.data.Candle;
+import ru.tinkoff.invest.openapi.data.CandleInterval;
+import ru.tinkoff.invest.openapi.data.StreamingEvent;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Сборка свечей крупного интервала из свечей более мелкого (например, 2-х и 4-х часовых из часовых).
+ *
+ * Свеча крупного интервала получает цену открытия первой мелкой свечи, цену закрытия последней, максимум и минимум
+ * по всем и суммарный объём. Границы крупных свечей выровнены по началу эпохи в UTC, поэтому собираются только
+ * интервалы не крупнее дня. При сборке за промежуток времени отдаются только свечи, отрезки которых целиком лежат
+ * в промежутке: крайние неполные отрезки отбрасываются, а не выдаются за полные свечи.
+ *
+ * Экземпляр собирает живые свечи из streaming для одного инструмента: мелкие свечи текущего отрезка хранятся по
+ * слотам, так что повторные обновления ещё не сформированной мелкой свечи просто заменяют её слот.
+ */
+public class CandleAggregator {
+
+    private final CandleInterval source;
+    private final CandleInterval target;
+    private final long sourceSeconds;
+    private final long targetSeconds;
+    private final StreamingEvent.Candle[] slots;
+    private long bucketStart;
+
+    /**
+     * @param source Интервал исходных свечей.
+     * @param target Интервал собираемых свечей.
+     */
+    public CandleAggregator(final CandleInterval source, final CandleInterval target) {
+        this.source = source;
+        this.target = target;
+        this.sourceSeconds = CandleIntervals.getDuration(source).getSeconds();
+        this.targetSeconds = checkedTargetSeconds(source, target);
+        this.slots = new StreamingEvent.Candle[(int) (targetSeconds / sourceSeconds)];
+        this.bucketStart = Long.MIN_VALUE;
+    }
+
+    public CandleInterval getSource() {
+        return source;
+    }
+
+    public CandleInterval getTarget() {
+        return target;
+    }
+
+    /**
+     * Начало отрезка крупного интервала, в который попадает момент времени.
+     *
+     * @param time Момент времени.
+     * @param target Интервал собираемых свечей.
+     * @return Начало отрезка.
+     */
+    public static Instant bucketStart(final Instant time, final CandleInterval target) {
+        final var seconds = CandleIntervals.getDuration(target).getSeconds();
+        return Instant.ofEpochSecond(Math.floorDiv(time.getEpochSecond(), seconds) * seconds);
+    }
+
+    /**
+     * Начало первого отрезка крупного интервала, который начинается не раньше момента времени.
+     *
+     * @param time Момент времени.
+     * @param target Интервал собираемых свечей.
+     * @return Начало отрезка.
+     */
+    public static Instant firstBucketStart(final Instant time, final CandleInterval target) {
+        final var start = bucketStart(time, target);
+        return start.equals(time) ? start : start.plus(CandleIntervals.getDuration(target));
+    }
+
+    /**
+     * Сборка исторических свечей за промежуток времени. Собираются только отрезки, целиком лежащие в промежутке:
+     * первый начинается не раньше from, последний заканчивается не позже to. Исходные свечи вне этих отрезков
+     * отбрасываются.
+     *
+     * @param candles Исходные свечи, упорядоченные по времени.
+     * @param source Интервал исходных свечей.
+     * @param target Интервал собираемых свечей.
+     * @param from Начало промежутка.
+     * @param to Конец промежутка.
+     * @return Собранные свечи.
+     */
+    public static List<Candle> aggregate(final List<Candle> candles,
+                                         final CandleInterval source,
+                                         final CandleInterval target,
+                                         final Instant from,
+                                         final Instant to) {
+        final var first = firstBucketStart(from, target);
+        final var last = bucketStart(to, target);
+        final var inside = new ArrayList<Candle>(candles.size());
+        for (final var candle : candles) {
+            final var time = candle.getTime().toInstant();
+            if (!time.isBefore(first) && time.isBefore(last)) {
+                inside.add(candle);
+            }
+        }
+        return aggregate(inside, source, target);
+    }
+
+    /**
+     * Сборка исторических свечей за один проход.
+     *
+     * @param candles Исходные свечи, упорядоченные по времени.
+     * @param source Интервал исходных свечей.
+     * @param target Интервал собираемых свечей.
+     * @return Собранные свечи.
+     */
+    public static List<Candle> aggregate(final List<Candle> candles,
+                                         final CandleInterval source,
+                                         final CandleInterval target) {
+        final var targetSeconds = checkedTargetSeconds(source, target);
+        final var result = new ArrayList<Candle>();
+
+        Candle first = null;
+        long bucket = 0;
+        BigDecimal high = null;
+        BigDecimal low = null;
+        BigDecimal volume = null;
+        BigDecimal close = null;
+
+        for (final var candle : candles) {
+            final var candleBucket = Math.floorDiv(candle.getTime().toEpochSecond(), targetSeconds) * targetSeconds;
+            if (first == null || candleBucket != bucket) {
+                if (first != null) {
+                    result.add(rolledUp(first, target, bucket, close, high, low, volume));
+                }
+                first = candle;
+                bucket = candleBucket;
+                high = candle.getH();
+                low = candle.getL();
+                volume = candle.getV();
+            } else {
+                high = high.max(candle.getH());
+                low = low.min(candle.getL());
+                volume = volume.add(candle.getV());
+            }
+            close = candle.getC();
+        }
+        if (first != null) {
+            result.add(rolledUp(first, target, bucket, close, high, low, volume));
+        }
+
+        return result;
+    }
+
+    /**
+     * Учёт очередного обновления мелкой свечи из streaming.
+     *
+     * @param candle Обновлённая мелкая свеча.
+     * @return Текущее состояние крупной свечи или null, если обновление относится к уже закрытому отрезку.
+     */
+    public synchronized StreamingEvent.Candle onCandle(final StreamingEvent.Candle candle) {
+        final var time = candle.getDateTime().toEpochSecond();
+        final var bucket = Math.floorDiv(time, targetSeconds) * targetSeconds;
+        if (bucket < bucketStart) return null;
+        if (bucket > bucketStart) {
+            bucketStart = bucket;
+            Arrays.fill(slots, null);
+        }
+        slots[(int) ((time - bucket) / sourceSeconds)] = candle;
+
+        StreamingEvent.Candle first = null;
+        StreamingEvent.Candle last = null;
+        BigDecimal high = null;
+        BigDecimal low = null;
+        BigDecimal volume = BigDecimal.ZERO;
+        for (final var slot : slots) {
+            if (slot == null) continue;
+            if (first == null) {
+                first = slot;
+                high = slot.getHighestPrice();
+                low = slot.getLowestPrice();
+            } else {
+                high = high.max(slot.getHighestPrice());
+                low = low.min(slot.getLowestPrice());
+            }
+            last = slot;
+            volume = volume.add(slot.getTradingValue());
+        }
+
+        return new StreamingEvent.Candle(
+                first.getOpenPrice(),
+                last.getClosingPrice(),
+                high,
+                low,
+                volume,
+                ZonedDateTime.ofInstant(Instant.ofEpochSecond(bucket), ZoneOffset.UTC),
+                target,
+                candle.getFigi()
+        );
+    }
+
+    private static Candle rolledUp(final Candle first,
+                                   final CandleInterval target,
+                                   final long bucket,
+                                   final BigDecimal close,
+                                   final BigDecimal high,
+                                   final BigDecimal low,
+                                   final BigDecimal volume) {
+        return new Candle(
+                first.getFigi(),
+                target,
+                first.getO(),
+                close,
+                high,
+                low,
+                volume,
+                OffsetDateTime.ofInstant(Instant.ofEpochSecond(bucket), ZoneOffset.UTC)
+        );
+    }
+
+    private static long checkedTargetSeconds(final CandleInterval source, final CandleInterval target) {
+        final var sourceSeconds = CandleIntervals.getDuration(source).getSeconds();
+        final var targetSeconds = CandleIntervals.getDuration(target).getSeconds();
+        if (target == CandleInterval.WEEK || target == CandleInterval.MONTH ||
+                targetSeconds <= sourceSeconds || targetSeconds % sourceSeconds != 0) {
+            throw new IllegalArgumentException("Свечи " + target + " не собираются из свечей " + source);
+        }
+        return targetSeconds;
+    }
+}
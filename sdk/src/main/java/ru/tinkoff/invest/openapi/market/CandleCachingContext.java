@@ -0,0 +1,143 @@
+package ru.tinkoff.invest.openapi.market;
+
+import ru.tinkoff.invest.openapi.data.Candle;
+import ru.tinkoff.invest.openapi.data.CandleInterval;
+import ru.tinkoff.invest.openapi.data.HistoricalCandles;
+import ru.tinkoff.invest.openapi.wrapper.Context;
+import ru.tinkoff.invest.openapi.wrapper.ContextDecorator;
+
+import java.io.IOException;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Контекст, отвечающий на запросы исторических свечей из локального хранилища. В OpenAPI запрашиваются только
+ * отсутствующие в хранилище промежутки (через {@link CandleLoader}, так что их длина не ограничена), а полученные
+ * завершённые свечи сохраняются для следующих запросов.
+ */
+public class CandleCachingContext extends ContextDecorator {
+
+    private static final int DEFAULT_PARALLELISM = 4;
+
+    private final CandleStore store;
+    private final CandleLoader loader;
+    private final Logger logger;
+
+    /**
+     * @param context Исходный контекст.
+     * @param store Хранилище свечей.
+     * @param logger Экзепляр логгера.
+     */
+    public CandleCachingContext(final Context context, final CandleStore store, final Logger logger) {
+        this(context, store, new CandleLoader(context, DEFAULT_PARALLELISM, logger), logger);
+    }
+
+    /**
+     * @param context Исходный контекст.
+     * @param store Хранилище свечей.
+     * @param loader Загрузчик недостающих свечей.
+     * @param logger Экзепляр логгера.
+     */
+    public CandleCachingContext(final Context context,
+                                final CandleStore store,
+                                final CandleLoader loader,
+                                final Logger logger) {
+        super(context);
+        this.store = store;
+        this.loader = loader;
+        this.logger = logger;
+    }
+
+    /**
+     * Получение используемого хранилища.
+     */
+    public CandleStore getStore() {
+        return store;
+    }
+
+    @Override
+    public CompletableFuture<HistoricalCandles> getMarketCandles(final String figi,
+                                                                 final OffsetDateTime from,
+                                                                 final OffsetDateTime to,
+                                                                 final CandleInterval interval) {
+        final var fromInstant = from.toInstant();
+        final var toInstant = to.toInstant();
+
+        final List<CandleStore.Range> gaps;
+        try {
+            gaps = store.findGaps(figi, interval, fromInstant, toInstant);
+        } catch (IOException ex) {
+            logger.log(Level.WARNING, "Не удалось прочитать хранилище свечей.", ex);
+            return super.getMarketCandles(figi, from, to, interval);
+        }
+
+        final var fetches = new ArrayList<CompletableFuture<List<Candle>>>(gaps.size());
+        for (final var gap : gaps) {
+            fetches.add(fetchGap(figi, interval, gap));
+        }
+
+        return CompletableFuture.allOf(fetches.toArray(CompletableFuture[]::new)).thenApply(ignored -> {
+            final var candles = new TreeMap<Instant, Candle>();
+            try {
+                for (final var candle : store.read(figi, interval, fromInstant, toInstant)) {
+                    candles.put(candle.getTime().toInstant(), candle);
+                }
+            } catch (IOException ex) {
+                throw new CompletionException(ex);
+            }
+            for (final var fetch : fetches) {
+                for (final var candle : fetch.join()) {
+                    candles.put(candle.getTime().toInstant(), candle);
+                }
+            }
+
+            return new HistoricalCandles(figi, interval, new ArrayList<>(candles.values()));
+        });
+    }
+
+    private CompletableFuture<List<Candle>> fetchGap(final String figi,
+                                                     final CandleInterval interval,
+                                                     final CandleStore.Range gap) {
+        return loader.load(
+                figi,
+                OffsetDateTime.ofInstant(gap.getFrom(), ZoneOffset.UTC),
+                OffsetDateTime.ofInstant(gap.getTo(), ZoneOffset.UTC),
+                interval
+        ).thenApply(historicalCandles -> {
+            final var candles = historicalCandles.getCandles();
+            persist(figi, interval, gap, candles);
+            return candles;
+        });
+    }
+
+    private void persist(final String figi,
+                         final CandleInterval interval,
+                         final CandleStore.Range gap,
+                         final List<Candle> candles) {
+        // последняя свеча может быть ещё не сформирована, поэтому сохраняется только то, что точно завершено
+        final var stableEnd = Instant.now().minus(CandleIntervals.getDuration(interval));
+        final var end = gap.getTo().isAfter(stableEnd) ? stableEnd : gap.getTo();
+        if (!gap.getFrom().isBefore(end)) return;
+
+        final var completed = new ArrayList<Candle>(candles.size());
+        for (final var candle : candles) {
+            if (candle.getTime().toInstant().isBefore(end)) {
+                completed.add(candle);
+            }
+        }
+
+        try {
+            store.write(figi, interval, gap.getFrom(), end, completed);
+        } catch (IOException ex) {
+            logger.log(Level.WARNING, "Не удалось сохранить свечи в хранилище.", ex);
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package ru.tinkoff.invest.openapi.market;
+
+import ru.tinkoff.invest.openapi.data.CandleInterval;
+
+import java.time.Duration;
+
+/**
+ * Вспомогательные сведения об интервалах свечей.
+ */
+public final class CandleIntervals {
+
+    private CandleIntervals() {}
+
+    /**
+     * Длительность отрезка времени, описываемого одной свечой. Для месячных свечей берётся максимально возможная
+     * длина месяца.
+     *
+     * @param interval Интервал свечей.
+     * @return Длительность.
+     */
+    public static Duration getDuration(final CandleInterval interval) {
+        switch (interval) {
+            case ONE_MIN:
+                return Duration.ofMinutes(1);
+            case TWO_MIN:
+                return Duration.ofMinutes(2);
+            case THREE_MIN:
+                return Duration.ofMinutes(3);
+            case FIVE_MIN:
+                return Duration.ofMinutes(5);
+            case TEN_MIN:
+                return Duration.ofMinutes(10);
+            case QUARTER_HOUR:
+                return Duration.ofMinutes(15);
+            case HALF_HOUR:
+                return Duration.ofMinutes(30);
+            case HOUR:
+                return Duration.ofHours(1);
+            case TWO_HOUR:
+                return Duration.ofHours(2);
+            case FOUR_HOUR:
+                return Duration.ofHours(4);
+            case DAY:
+                return Duration.ofDays(1);
+            case WEEK:
+                return Duration.ofDays(7);
+            case MONTH:
+                return Duration.ofDays(31);
+        }
+
+        throw new IllegalArgumentException("Неизвестный интервал свечей: " + interval);
+    }
+
+    /**
+     * Максимальный промежуток времени, который OpenAPI отдаёт за один запрос свечей. Для календарных ограничений
+     * берётся наименьшая возможная длина (28 дней для месяца, 365 дней для года).
+     *
+     * @param interval Интервал свечей.
+     * @return Длительность.
+     */
+    public static Duration getMaxSearchWindow(final CandleInterval interval) {
+        switch (interval) {
+            case ONE_MIN:
+            case TWO_MIN:
+            case THREE_MIN:
+            case FIVE_MIN:
+            case TEN_MIN:
+            case QUARTER_HOUR:
+            case HALF_HOUR:
+                return Duration.ofDays(1);
+            case HOUR:
+                return Duration.ofDays(7);
+            case TWO_HOUR:
+                return Duration.ofDays(14);
+            case FOUR_HOUR:
+                return Duration.ofDays(28);
+            case DAY:
+                return Duration.ofDays(365);
+            case WEEK:
+                return Duration.ofDays(2 * 365);
+            case MONTH:
+                return Duration.ofDays(10 * 365);
+        }
+
+        throw new IllegalArgumentException("Неизвестный интервал свечей: " + interval);
+    }
+}
@@ -0,0 +1,164 @@
+package ru.tinkoff.invest.openapi.market;
+
+import ru.tinkoff.invest.openapi.data.Candle;
+import ru.tinkoff.invest.openapi.data.CandleInterval;
+import ru.tinkoff.invest.openapi.data.HistoricalCandles;
+import ru.tinkoff.invest.openapi.exceptions.BadCandlesSearchingIntervalException;
+import ru.tinkoff.invest.openapi.wrapper.Context;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.logging.Logger;
+
+/**
+ * Загрузчик исторических свечей за произвольный промежуток времени.
+ *
+ * Промежуток режется на куски не длиннее максимально допустимого для интервала окна
+ * ({@link CandleIntervals#getMaxSearchWindow(CandleInterval)}), куски запрашиваются параллельно, но не более чем
+ * заданным числом одновременных запросов, а результаты сливаются в один упорядоченный список без повторов.
+ * Если сервер всё же отвергает кусок с {@link BadCandlesSearchingIntervalException} (в исключении при этом
+ * повторяется сам отвергнутый промежуток, а не допустимое окно), окно уменьшается вдвое, запоминается для
+ * интервала, и кусок перезапрашивается частями. Окно не становится короче одной свечи.
+ */
+public class CandleLoader {
+
+    private final Context context;
+    private final int parallelism;
+    private final Logger logger;
+    private final ConcurrentMap<CandleInterval, Duration> learnedWindows;
+
+    /**
+     * @param context Контекст OpenAPI, через который запрашиваются свечи.
+     * @param parallelism Наибольшее число одновременных запросов.
+     * @param logger Экзепляр логгера.
+     */
+    public CandleLoader(final Context context, final int parallelism, final Logger logger) {
+        if (parallelism <= 0) {
+            throw new IllegalArgumentException("parallelism должно быть положительным");
+        }
+
+        this.context = context;
+        this.parallelism = parallelism;
+        this.logger = logger;
+        this.learnedWindows = new ConcurrentHashMap<>();
+    }
+
+    /**
+     * Получение окна, которым сейчас режутся запросы для интервала.
+     *
+     * @param interval Интервал свечей.
+     * @return Длительность окна.
+     */
+    public Duration getWindow(final CandleInterval interval) {
+        return learnedWindows.getOrDefault(interval, CandleIntervals.getMaxSearchWindow(interval));
+    }
+
+    /**
+     * Загрузка свечей за промежуток времени любой длины.
+     *
+     * @param figi Идентификатор инструмента.
+     * @param from Начало промежутка.
+     * @param to Конец промежутка.
+     * @param interval Интервал свечей.
+     * @return Упорядоченные по времени свечи без повторов.
+     */
+    public CompletableFuture<HistoricalCandles> load(final String figi,
+                                                     final OffsetDateTime from,
+                                                     final OffsetDateTime to,
+                                                     final CandleInterval interval) {
+        final var job = new Job(figi, interval);
+        job.split(from.toInstant(), to.toInstant(), getWindow(interval));
+
+        final var lanes = new CompletableFuture<?>[Math.min(parallelism, Math.max(job.chunks.size(), 1))];
+        for (int i = 0; i < lanes.length; i++) {
+            lanes[i] = job.nextChunk();
+        }
+
+        return CompletableFuture.allOf(lanes).thenApply(ignored ->
+                new HistoricalCandles(figi, interval, new ArrayList<>(job.candles.values()))
+        );
+    }
+
+    /**
+     * Состояние одной загрузки: очередь ещё не запрошенных кусков и уже полученные свечи.
+     */
+    private final class Job {
+        private final String figi;
+        private final CandleInterval interval;
+        private final Queue<CandleStore.Range> chunks;
+        private final ConcurrentSkipListMap<Instant, Candle> candles;
+        private volatile boolean failed;
+
+        private Job(String figi, CandleInterval interval) {
+            this.figi = figi;
+            this.interval = interval;
+            this.chunks = new ConcurrentLinkedQueue<>();
+            this.candles = new ConcurrentSkipListMap<>();
+        }
+
+        private void split(final Instant from, final Instant to, final Duration window) {
+            var cursor = from;
+            while (cursor.isBefore(to)) {
+                final var end = cursor.plus(window);
+                final var chunkEnd = end.isBefore(to) ? end : to;
+                chunks.add(new CandleStore.Range(cursor, chunkEnd));
+                cursor = chunkEnd;
+            }
+        }
+
+        private CompletableFuture<Void> nextChunk() {
+            final var chunk = chunks.poll();
+            if (chunk == null || failed) return CompletableFuture.completedFuture(null);
+
+            return fetch(chunk).thenCompose(ignored -> nextChunk());
+        }
+
+        private CompletableFuture<Void> fetch(final CandleStore.Range chunk) {
+            return context.getMarketCandles(
+                    figi,
+                    OffsetDateTime.ofInstant(chunk.getFrom(), ZoneOffset.UTC),
+                    OffsetDateTime.ofInstant(chunk.getTo(), ZoneOffset.UTC),
+                    interval
+            ).handle((historicalCandles, ex) -> {
+                if (ex == null) {
+                    for (final var candle : historicalCandles.getCandles()) {
+                        candles.put(candle.getTime().toInstant(), candle);
+                    }
+                    return CompletableFuture.<Void>completedFuture(null);
+                }
+
+                var realEx = ex;
+                while (realEx instanceof CompletionException && realEx.getCause() != null) {
+                    realEx = realEx.getCause();
+                }
+                if (!(realEx instanceof BadCandlesSearchingIntervalException)) {
+                    failed = true;
+                    return CompletableFuture.<Void>failedFuture(realEx);
+                }
+
+                final var halved = Duration.between(chunk.getFrom(), chunk.getTo()).dividedBy(2);
+                final var current = getWindow(interval);
+                final var window = halved.compareTo(current) <= 0 ? halved : current;
+                if (window.compareTo(CandleIntervals.getDuration(interval)) < 0) {
+                    failed = true;
+                    return CompletableFuture.<Void>failedFuture(realEx);
+                }
+
+                learnedWindows.merge(interval, window, (a, b) -> a.compareTo(b) <= 0 ? a : b);
+                logger.fine("Окно запроса свечей " + interval + " уменьшено до " + window);
+                split(chunk.getFrom(), chunk.getTo(), window);
+                return CompletableFuture.<Void>completedFuture(null);
+            }).thenCompose(x -> x);
+        }
+    }
+}
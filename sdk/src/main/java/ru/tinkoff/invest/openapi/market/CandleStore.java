@@ -0,0 +1,393 @@
+package ru.tinkoff.invest.openapi.market;
+
+import ru.tinkoff.invest.openapi.data.Candle;
+import ru.tinkoff.invest.openapi.data.CandleInterval;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Objects;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.regex.Pattern;
+
+/**
+ * Локальное хранилище исторических свечей.
+ *
+ * Данные по каждой паре (FIGI, интервал) лежат в отдельном каталоге в виде сегментов. Сегмент описывает один
+ * загруженный промежуток времени [from, to) и называется {@code <from>-<to>.seg} (миллисекунды от начала эпохи).
+ * Внутри сегмента свечи хранятся по колонкам: время, цены открытия, максимума, минимума и закрытия и объём в виде
+ * long с общим для колонки масштабом. Файлы отображаются в память, а поиск по времени идёт двоичным поиском по колонке времени.
+ * Сегменты прежних версий формата не учитываются: их промежутки загружаются и записываются заново.
+ *
+ * Промежутки, покрытые сегментами, считаются загруженными целиком, поэтому в хранилище надо класть только
+ * завершённые свечи.
+ */
+public class CandleStore {
+
+    private static final int MAGIC = 0x54434453; // "TCDS"
+    private static final short VERSION = 2;
+    private static final int COLUMNS = 6;
+    private static final int SCALES_OFFSET = Integer.BYTES + Short.BYTES + Integer.BYTES;
+    private static final int HEADER_SIZE = SCALES_OFFSET + (COLUMNS - 1) * Integer.BYTES;
+    private static final Pattern segmentName = Pattern.compile("(-?\\d+)-(-?\\d+)\\.seg");
+
+    private final Path root;
+    private final Map<Key, NavigableMap<Instant, Segment>> segments;
+
+    /**
+     * Промежуток времени [from, to).
+     */
+    public static final class Range {
+        private final Instant from;
+        private final Instant to;
+
+        public Range(Instant from, Instant to) {
+            this.from = from;
+            this.to = to;
+        }
+
+        public Instant getFrom() {
+            return from;
+        }
+
+        public Instant getTo() {
+            return to;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            final var range = (Range) o;
+            return from.equals(range.from) && to.equals(range.to);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(from, to);
+        }
+
+        @Override
+        public String toString() {
+            return "[" + from + ", " + to + ")";
+        }
+    }
+
+    private static final class Key {
+        private final String figi;
+        private final CandleInterval interval;
+
+        private Key(String figi, CandleInterval interval) {
+            this.figi = figi;
+            this.interval = interval;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            final var key = (Key) o;
+            return figi.equals(key.figi) && interval == key.interval;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(figi, interval);
+        }
+    }
+
+    private static final class Segment {
+        private final Instant from;
+        private final Instant to;
+        private final Path file;
+        private volatile ByteBuffer buffer;
+
+        private Segment(Instant from, Instant to, Path file) {
+            this.from = from;
+            this.to = to;
+            this.file = file;
+        }
+
+        private ByteBuffer map() throws IOException {
+            var result = buffer;
+            if (result == null) {
+                try (final var channel = FileChannel.open(file, StandardOpenOption.READ)) {
+                    result = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+                }
+                if (result.capacity() < HEADER_SIZE ||
+                        result.getInt(0) != MAGIC ||
+                        result.getShort(Integer.BYTES) != VERSION) {
+                    throw new IOException("Неизвестный формат сегмента свечей: " + file);
+                }
+                buffer = result;
+            }
+            return result;
+        }
+    }
+
+    /**
+     * @param root Корневой каталог хранилища.
+     */
+    public CandleStore(final Path root) {
+        this.root = root;
+        this.segments = new ConcurrentHashMap<>();
+    }
+
+    /**
+     * Поиск промежутков, которых ещё нет в хранилище.
+     *
+     * @param figi Идентификатор инструмента.
+     * @param interval Интервал свечей.
+     * @param from Начало запрашиваемого промежутка.
+     * @param to Конец запрашиваемого промежутка.
+     * @return Упорядоченный список непокрытых промежутков (пустой, если всё уже есть).
+     */
+    public List<Range> findGaps(final String figi,
+                                final CandleInterval interval,
+                                final Instant from,
+                                final Instant to) throws IOException {
+        final var result = new ArrayList<Range>();
+        var cursor = from;
+
+        for (final var segment : overlapping(figi, interval, from, to)) {
+            if (segment.from.isAfter(cursor)) {
+                result.add(new Range(cursor, segment.from));
+            }
+            if (segment.to.isAfter(cursor)) {
+                cursor = segment.to;
+            }
+            if (!cursor.isBefore(to)) break;
+        }
+        if (cursor.isBefore(to)) {
+            result.add(new Range(cursor, to));
+        }
+
+        return result;
+    }
+
+    /**
+     * Чтение свечей из хранилища.
+     *
+     * @param figi Идентификатор инструмента.
+     * @param interval Интервал свечей.
+     * @param from Начало промежутка (включительно).
+     * @param to Конец промежутка (не включительно).
+     * @return Упорядоченные по времени свечи.
+     */
+    public List<Candle> read(final String figi,
+                             final CandleInterval interval,
+                             final Instant from,
+                             final Instant to) throws IOException {
+        final var result = new TreeMap<Long, Candle>();
+        final var fromSeconds = from.getEpochSecond() + (from.getNano() > 0 ? 1 : 0);
+        final var toSeconds = to.getEpochSecond() + (to.getNano() > 0 ? 1 : 0);
+
+        for (final var segment : overlapping(figi, interval, from, to)) {
+            final var buffer = segment.map();
+            final var count = buffer.getInt(Integer.BYTES + Short.BYTES);
+
+            for (int i = lowerBound(buffer, count, fromSeconds); i < count; i++) {
+                final var time = column(buffer, count, 0, i);
+                if (time >= toSeconds) break;
+                result.put(time, new Candle(
+                        figi,
+                        interval,
+                        decimal(buffer, count, 1, i),
+                        decimal(buffer, count, 4, i),
+                        decimal(buffer, count, 2, i),
+                        decimal(buffer, count, 3, i),
+                        decimal(buffer, count, 5, i),
+                        OffsetDateTime.ofInstant(Instant.ofEpochSecond(time), ZoneOffset.UTC)
+                ));
+            }
+        }
+
+        return new ArrayList<>(result.values());
+    }
+
+    /**
+     * Запись загруженного промежутка. Все свечи должны относиться к промежутку [from, to), а сам промежуток после
+     * записи считается покрытым. Если значения какой-то колонки при общем для неё масштабе не помещаются в long,
+     * промежуток не записывается и остаётся непокрытым.
+     *
+     * @param figi Идентификатор инструмента.
+     * @param interval Интервал свечей.
+     * @param from Начало промежутка.
+     * @param to Конец промежутка.
+     * @param candles Свечи промежутка.
+     */
+    public void write(final String figi,
+                      final CandleInterval interval,
+                      final Instant from,
+                      final Instant to,
+                      final List<Candle> candles) throws IOException {
+        if (!from.isBefore(to)) return;
+
+        final var sorted = new TreeMap<Long, Candle>();
+        for (final var candle : candles) {
+            sorted.put(candle.getTime().toEpochSecond(), candle);
+        }
+
+        final var scales = new int[COLUMNS];
+        for (final var candle : sorted.values()) {
+            scales[1] = Math.max(scales[1], candle.getO().scale());
+            scales[2] = Math.max(scales[2], candle.getH().scale());
+            scales[3] = Math.max(scales[3], candle.getL().scale());
+            scales[4] = Math.max(scales[4], candle.getC().scale());
+            scales[5] = Math.max(scales[5], candle.getV().scale());
+        }
+
+        final var count = sorted.size();
+        final var buffer = ByteBuffer.allocate(HEADER_SIZE + COLUMNS * Long.BYTES * count);
+        buffer.putInt(MAGIC);
+        buffer.putShort(VERSION);
+        buffer.putInt(count);
+        for (int column = 1; column < COLUMNS; column++) {
+            buffer.putInt(scales[column]);
+        }
+
+        try {
+            var i = 0;
+            for (final var entry : sorted.entrySet()) {
+                final var candle = entry.getValue();
+                putColumn(buffer, count, 0, i, entry.getKey());
+                putColumn(buffer, count, 1, i, unscaled(candle.getO(), scales[1]));
+                putColumn(buffer, count, 2, i, unscaled(candle.getH(), scales[2]));
+                putColumn(buffer, count, 3, i, unscaled(candle.getL(), scales[3]));
+                putColumn(buffer, count, 4, i, unscaled(candle.getC(), scales[4]));
+                putColumn(buffer, count, 5, i, unscaled(candle.getV(), scales[5]));
+                i++;
+            }
+        } catch (ArithmeticException ex) {
+            // такие свечи каждый раз загружаются заново
+            return;
+        }
+        buffer.position(0);
+
+        final var key = new Key(figi, interval);
+        final var directory = directoryOf(key);
+        Files.createDirectories(directory);
+        final var file = directory.resolve(from.toEpochMilli() + "-" + to.toEpochMilli() + ".seg");
+        final var tmp = Files.createTempFile(directory, file.getFileName().toString(), ".tmp");
+        try {
+            try (final var channel = FileChannel.open(tmp, StandardOpenOption.WRITE)) {
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+            }
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+
+        index(key).put(from, new Segment(from, to, file));
+    }
+
+    private List<Segment> overlapping(final String figi,
+                                      final CandleInterval interval,
+                                      final Instant from,
+                                      final Instant to) throws IOException {
+        if (!from.isBefore(to)) return List.of();
+
+        final var index = index(new Key(figi, interval));
+        final var result = new ArrayList<Segment>();
+        final var first = index.floorKey(from);
+
+        for (final var segment : index.subMap(first == null ? from : first, true, to, false).values()) {
+            if (segment.to.isAfter(from)) {
+                result.add(segment);
+            }
+        }
+
+        return result;
+    }
+
+    private NavigableMap<Instant, Segment> index(final Key key) throws IOException {
+        final var existing = segments.get(key);
+        if (existing != null) return existing;
+
+        final var loaded = new ConcurrentSkipListMap<Instant, Segment>();
+        final var directory = directoryOf(key);
+        if (Files.isDirectory(directory)) {
+            try (final var files = Files.newDirectoryStream(directory, "*.seg")) {
+                for (final var file : files) {
+                    final var matcher = segmentName.matcher(file.getFileName().toString());
+                    if (matcher.matches() && isCurrentVersion(file)) {
+                        final var from = Instant.ofEpochMilli(Long.parseLong(matcher.group(1)));
+                        final var to = Instant.ofEpochMilli(Long.parseLong(matcher.group(2)));
+                        final var known = loaded.get(from);
+                        if (known == null || known.to.isBefore(to)) {
+                            loaded.put(from, new Segment(from, to, file));
+                        }
+                    }
+                }
+            }
+        }
+
+        final var raced = segments.putIfAbsent(key, loaded);
+        return raced == null ? loaded : raced;
+    }
+
+    private static boolean isCurrentVersion(final Path file) throws IOException {
+        final var header = ByteBuffer.allocate(Integer.BYTES + Short.BYTES);
+        try (final var channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            while (header.hasRemaining()) {
+                if (channel.read(header) < 0) return false;
+            }
+        }
+        return header.getInt(0) == MAGIC && header.getShort(Integer.BYTES) == VERSION;
+    }
+
+    private Path directoryOf(final Key key) {
+        return root.resolve(key.figi).resolve(key.interval.name());
+    }
+
+    private static int lowerBound(final ByteBuffer buffer, final int count, final long time) {
+        var low = 0;
+        var high = count;
+        while (low < high) {
+            final var middle = (low + high) >>> 1;
+            if (column(buffer, count, 0, middle) < time) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    private static long column(final ByteBuffer buffer, final int count, final int column, final int row) {
+        return buffer.getLong(HEADER_SIZE + (column * count + row) * Long.BYTES);
+    }
+
+    private static BigDecimal decimal(final ByteBuffer buffer, final int count, final int column, final int row) {
+        final var scale = buffer.getInt(SCALES_OFFSET + (column - 1) * Integer.BYTES);
+        return BigDecimal.valueOf(column(buffer, count, column, row), scale);
+    }
+
+    private static void putColumn(final ByteBuffer buffer,
+                                  final int count,
+                                  final int column,
+                                  final int row,
+                                  final long value) {
+        buffer.putLong(HEADER_SIZE + (column * count + row) * Long.BYTES, value);
+    }
+
+    private static long unscaled(final BigDecimal value, final int scale) {
+        return value.setScale(scale).unscaledValue().longValueExact();
+    }
+}
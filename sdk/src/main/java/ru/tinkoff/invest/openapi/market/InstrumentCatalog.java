@@ -0,0 +1,320 @@
+package ru.tinkoff.invest.openapi.market;
+
+import ru.tinkoff.invest.openapi.data.Instrument;
+import ru.tinkoff.invest.openapi.data.InstrumentType;
+import ru.tinkoff.invest.openapi.wrapper.Context;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Локальный справочник биржевых инструментов.
+ *
+ * Загружает полные списки акций, бондов, фондов и валют и строит по ним индексы по FIGI, тикеру и ISIN.
+ * Индексы неизменяемы и целиком подменяются при каждом обновлении, поэтому чтение не требует блокировок и не
+ * мешает фоновому обновлению.
+ *
+ * Если задан файл снимка, то при запуске справочник сначала поднимается из него (без обращения к сети), а после
+ * каждой успешной загрузки из OpenAPI снимок перезаписывается.
+ */
+public class InstrumentCatalog implements AutoCloseable {
+
+    private final Context context;
+    private final Duration ttl;
+    private final Path snapshotFile;
+    private final Logger logger;
+    private final LongAdder hits;
+    private final LongAdder misses;
+    private volatile Index index;
+    private ScheduledExecutorService refresher;
+
+    /**
+     * Неизменяемый набор индексов, построенный по одной загрузке справочника.
+     */
+    private static final class Index {
+        private static final Index EMPTY = new Index(Map.of(), Instant.EPOCH);
+
+        private final Map<String, Instrument> byFigi;
+        private final Map<String, List<Instrument>> byTicker;
+        private final Map<String, Instrument> byIsin;
+        private final Map<String, InstrumentType> typeByFigi;
+        private final Instant loadedAt;
+
+        private Index(Map<InstrumentType, List<Instrument>> instruments, Instant loadedAt) {
+            final var byFigi = new HashMap<String, Instrument>();
+            final var byTicker = new HashMap<String, List<Instrument>>();
+            final var byIsin = new HashMap<String, Instrument>();
+            final var typeByFigi = new HashMap<String, InstrumentType>();
+
+            for (final var entry : instruments.entrySet()) {
+                for (final var instrument : entry.getValue()) {
+                    byFigi.put(instrument.getFigi(), instrument);
+                    typeByFigi.put(instrument.getFigi(), entry.getKey());
+                    if (instrument.getTicker() != null) {
+                        byTicker.computeIfAbsent(instrument.getTicker(), t -> new ArrayList<>(1)).add(instrument);
+                    }
+                    if (instrument.getIsin() != null) {
+                        byIsin.put(instrument.getIsin(), instrument);
+                    }
+                }
+            }
+            byTicker.replaceAll((ticker, list) -> List.copyOf(list));
+
+            this.byFigi = byFigi;
+            this.byTicker = byTicker;
+            this.byIsin = byIsin;
+            this.typeByFigi = typeByFigi;
+            this.loadedAt = loadedAt;
+        }
+    }
+
+    /**
+     * Создаёт пустой справочник. Загрузка данных при этом не производится!
+     *
+     * @param context Контекст OpenAPI, из которого загружаются списки инструментов.
+     * @param ttl Время жизни загруженных данных, после которого справочник обновляется в фоне.
+     * @param logger Экзепляр логгера.
+     */
+    public InstrumentCatalog(final Context context, final Duration ttl, final Logger logger) {
+        this(context, ttl, null, logger);
+    }
+
+    /**
+     * Создаёт пустой справочник, сохраняемый между запусками в файл. Загрузка данных при этом не производится!
+     *
+     * @param context Контекст OpenAPI, из которого загружаются списки инструментов.
+     * @param ttl Время жизни загруженных данных, после которого справочник обновляется в фоне.
+     * @param snapshotFile Путь к файлу снимка справочника (может быть null).
+     * @param logger Экзепляр логгера.
+     */
+    public InstrumentCatalog(final Context context,
+                             final Duration ttl,
+                             final Path snapshotFile,
+                             final Logger logger) {
+        if (ttl.isNegative() || ttl.isZero()) {
+            throw new IllegalArgumentException("ttl должно быть положительным");
+        }
+
+        this.context = context;
+        this.ttl = ttl;
+        this.snapshotFile = snapshotFile;
+        this.logger = logger;
+        this.hits = new LongAdder();
+        this.misses = new LongAdder();
+        this.index = Index.EMPTY;
+    }
+
+    /**
+     * Запускает первичную загрузку и периодическое обновление справочника. Повторный вызов ничего не делает.
+     *
+     * Если есть файл снимка, то он читается синхронно ещё до обращения к OpenAPI, и справочник становится доступен
+     * сразу по возвращении из метода.
+     *
+     * @return Результат первичной загрузки.
+     */
+    public synchronized CompletableFuture<Void> start() {
+        if (refresher != null) return CompletableFuture.completedFuture(null);
+
+        loadSnapshot();
+
+        refresher = Executors.newSingleThreadScheduledExecutor(r -> {
+            final var thread = new Thread(r, "instrument-catalog-refresher");
+            thread.setDaemon(true);
+            return thread;
+        });
+        refresher.scheduleWithFixedDelay(() -> {
+            try {
+                refresh().join();
+            } catch (Exception ex) {
+                logger.log(Level.WARNING, "Не удалось обновить справочник инструментов.", ex);
+            }
+        }, ttl.toMillis(), ttl.toMillis(), TimeUnit.MILLISECONDS);
+
+        return refresh();
+    }
+
+    /**
+     * Загружает справочник заново и атомарно подменяет им текущий.
+     *
+     * @return Результат загрузки.
+     */
+    public CompletableFuture<Void> refresh() {
+        final var stocks = context.getMarketStocks();
+        final var bonds = context.getMarketBonds();
+        final var etfs = context.getMarketEtfs();
+        final var currencies = context.getMarketCurrencies();
+
+        return CompletableFuture.allOf(stocks, bonds, etfs, currencies).thenAccept(ignored -> {
+            final var instruments = new EnumMap<InstrumentType, List<Instrument>>(InstrumentType.class);
+            instruments.put(InstrumentType.Stock, stocks.join().getInstruments());
+            instruments.put(InstrumentType.Bond, bonds.join().getInstruments());
+            instruments.put(InstrumentType.ETF, etfs.join().getInstruments());
+            instruments.put(InstrumentType.Currency, currencies.join().getInstruments());
+            final var loadedAt = Instant.now();
+            replace(instruments, loadedAt);
+            logger.fine("Справочник инструментов обновлён, инструментов: " + index.byFigi.size());
+            saveSnapshot(instruments, loadedAt);
+        });
+    }
+
+    /**
+     * Загружает справочник из файла снимка, если он задан и ещё ничего не загружено.
+     *
+     * @return Удалось ли загрузить снимок.
+     */
+    public boolean loadSnapshot() {
+        if (snapshotFile == null || isLoaded() || !Files.exists(snapshotFile)) return false;
+
+        try {
+            final var snapshot = InstrumentCatalogFile.read(snapshotFile);
+            synchronized (this) {
+                if (isLoaded()) return false;
+                replace(snapshot.getInstruments(), snapshot.getSavedAt());
+            }
+            logger.fine("Справочник инструментов загружен из снимка от " + snapshot.getSavedAt());
+            return true;
+        } catch (IOException ex) {
+            logger.log(Level.WARNING, "Не удалось прочитать снимок справочника инструментов.", ex);
+            return false;
+        }
+    }
+
+    /**
+     * Подмена текущих данных справочника.
+     *
+     * @param instruments Инструменты по типам.
+     * @param loadedAt Момент получения данных.
+     */
+    synchronized void replace(final Map<InstrumentType, List<Instrument>> instruments, final Instant loadedAt) {
+        this.index = new Index(instruments, loadedAt);
+    }
+
+    /**
+     * Поиск инструмента по FIGI.
+     *
+     * @param figi Идентификатор инструмента.
+     * @return Возможно найденный инструмент.
+     */
+    public Optional<Instrument> findByFigi(final String figi) {
+        return count(Optional.ofNullable(index.byFigi.get(figi)));
+    }
+
+    /**
+     * Поиск инструментов по тикеру.
+     *
+     * @param ticker Тикер.
+     * @return Список найденных инструментов (может быть пустым).
+     */
+    public List<Instrument> findByTicker(final String ticker) {
+        final var found = index.byTicker.getOrDefault(ticker, List.of());
+        (found.isEmpty() ? misses : hits).increment();
+        return found;
+    }
+
+    /**
+     * Поиск инструмента по ISIN.
+     *
+     * @param isin Международный идентификационный код ценной бумаги.
+     * @return Возможно найденный инструмент.
+     */
+    public Optional<Instrument> findByIsin(final String isin) {
+        return count(Optional.ofNullable(index.byIsin.get(isin)));
+    }
+
+    /**
+     * Получение типа инструмента.
+     *
+     * @param figi Идентификатор инструмента.
+     * @return Тип, если инструмент есть в справочнике.
+     */
+    public Optional<InstrumentType> getInstrumentType(final String figi) {
+        return Optional.ofNullable(index.typeByFigi.get(figi));
+    }
+
+    /**
+     * Получение всех инструментов справочника.
+     *
+     * @return Инструменты по типам.
+     */
+    public Map<InstrumentType, List<Instrument>> getInstruments() {
+        final var current = index;
+        final var result = new EnumMap<InstrumentType, List<Instrument>>(InstrumentType.class);
+        for (final var instrument : current.byFigi.values()) {
+            result.computeIfAbsent(current.typeByFigi.get(instrument.getFigi()), t -> new ArrayList<>())
+                    .add(instrument);
+        }
+        return result;
+    }
+
+    /**
+     * Загружены ли уже данные.
+     */
+    public boolean isLoaded() {
+        return index != Index.EMPTY;
+    }
+
+    /**
+     * Момент получения текущих данных справочника.
+     */
+    public Instant getLoadedAt() {
+        return index.loadedAt;
+    }
+
+    /**
+     * Время жизни данных справочника.
+     */
+    public Duration getTtl() {
+        return ttl;
+    }
+
+    /**
+     * Количество успешных поисков.
+     */
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    /**
+     * Количество неуспешных поисков.
+     */
+    public long getMissCount() {
+        return misses.sum();
+    }
+
+    /**
+     * Останавливает фоновое обновление.
+     */
+    @Override
+    public synchronized void close() {
+        if (refresher != null) {
+            refresher.shutdownNow();
+            refresher = null;
+        }
+    }
+
+    private void saveSnapshot(final Map<InstrumentType, List<Instrument>> instruments, final Instant loadedAt) {
+        if (snapshotFile == null) return;
+
+        try {
+            InstrumentCatalogFile.write(snapshotFile, instruments, loadedAt);
+        } catch (IOException ex) {
+            logger.log(Level.WARNING, "Не удалось сохранить снимок справочника инструментов.", ex);
+        }
+    }
+
+    private <T> Optional<T> count(final Optional<T> result) {
+        (result.isPresent() ? hits : misses).increment();
+        return result;
+    }
+}
@@ -0,0 +1,58 @@
+package ru.tinkoff.invest.openapi.market;
+
+import ru.tinkoff.invest.openapi.data.Instrument;
+import ru.tinkoff.invest.openapi.data.InstrumentsList;
+import ru.tinkoff.invest.openapi.wrapper.Context;
+import ru.tinkoff.invest.openapi.wrapper.ContextDecorator;
+
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Контекст, отвечающий на поиск инструментов по тикеру и FIGI из локального справочника. Если справочник ещё не
+ * загружен или инструмент в нём не нашёлся, запрос уходит в OpenAPI.
+ */
+public class InstrumentCatalogContext extends ContextDecorator {
+
+    private final InstrumentCatalog catalog;
+
+    /**
+     * @param context Исходный контекст.
+     * @param catalog Справочник инструментов.
+     */
+    public InstrumentCatalogContext(final Context context, final InstrumentCatalog catalog) {
+        super(context);
+        this.catalog = catalog;
+    }
+
+    /**
+     * Получение используемого справочника.
+     */
+    public InstrumentCatalog getCatalog() {
+        return catalog;
+    }
+
+    @Override
+    public CompletableFuture<InstrumentsList> searchMarketInstrumentsByTicker(String ticker) {
+        if (catalog.isLoaded()) {
+            final var found = catalog.findByTicker(ticker);
+            if (!found.isEmpty()) {
+                return CompletableFuture.completedFuture(new InstrumentsList(found.size(), found));
+            }
+        }
+
+        return super.searchMarketInstrumentsByTicker(ticker);
+    }
+
+    @Override
+    public CompletableFuture<Optional<Instrument>> searchMarketInstrumentByFigi(String figi) {
+        if (catalog.isLoaded()) {
+            final var found = catalog.findByFigi(figi);
+            if (found.isPresent()) {
+                return CompletableFuture.completedFuture(found);
+            }
+        }
+
+        return super.searchMarketInstrumentByFigi(figi);
+    }
+}
@@ -0,0 +1,238 @@
+package ru.tinkoff.invest.openapi.market;
+
+import ru.tinkoff.invest.openapi.data.Currency;
+import ru.tinkoff.invest.openapi.data.Instrument;
+import ru.tinkoff.invest.openapi.data.InstrumentType;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+ * Компактный двоичный снимок справочника инструментов на диске.
+ *
+ * Формат файла: заголовок (сигнатура, версия, момент получения данных, количество записей), записи об
+ * инструментах и контрольная сумма CRC32 всего предшествующего содержимого. Необязательные поля предваряются
+ * признаком наличия значения. Строки хранятся в UTF-8 с длиной впереди, минимальный шаг цены - в виде масштаба и
+ * байтов немасштабированного значения. Файл читается через отображение в память, так что загрузка занимает единицы
+ * миллисекунд.
+ */
+public final class InstrumentCatalogFile {
+
+    private static final int MAGIC = 0x54494346; // "TICF"
+    private static final short VERSION = 2;
+    private static final byte NO_VALUE = -1;
+    private static final byte ABSENT = 0;
+    private static final byte PRESENT = 1;
+
+    private InstrumentCatalogFile() {}
+
+    /**
+     * Содержимое снимка.
+     */
+    public static final class Snapshot {
+        private final Map<InstrumentType, List<Instrument>> instruments;
+        private final Instant savedAt;
+
+        Snapshot(Map<InstrumentType, List<Instrument>> instruments, Instant savedAt) {
+            this.instruments = instruments;
+            this.savedAt = savedAt;
+        }
+
+        /**
+         * Инструменты по типам.
+         */
+        public Map<InstrumentType, List<Instrument>> getInstruments() {
+            return instruments;
+        }
+
+        /**
+         * Момент получения данных, сохранённых в снимке.
+         */
+        public Instant getSavedAt() {
+            return savedAt;
+        }
+    }
+
+    /**
+     * Запись снимка. Файл сначала пишется во временный, а затем атомарно подменяет существующий.
+     *
+     * @param file Путь к файлу снимка.
+     * @param instruments Инструменты по типам.
+     * @param savedAt Момент получения данных.
+     */
+    public static void write(final Path file,
+                             final Map<InstrumentType, List<Instrument>> instruments,
+                             final Instant savedAt) throws IOException {
+        final var bytes = new ByteArrayOutputStream(64 * 1024);
+        final var out = new DataOutputStream(bytes);
+
+        var count = 0;
+        for (final var list : instruments.values()) {
+            count += list.size();
+        }
+
+        out.writeInt(MAGIC);
+        out.writeShort(VERSION);
+        out.writeLong(savedAt.toEpochMilli());
+        out.writeInt(count);
+
+        for (final var entry : instruments.entrySet()) {
+            for (final var instrument : entry.getValue()) {
+                out.writeByte(entry.getKey().ordinal());
+                out.writeInt(instrument.getLot());
+                out.writeByte(instrument.getCurrency() == null ? NO_VALUE : instrument.getCurrency().ordinal());
+                writeDecimal(out, instrument.getMinPriceIncrement());
+                writeString(out, instrument.getFigi());
+                writeString(out, instrument.getTicker());
+                writeString(out, instrument.getIsin());
+                writeString(out, instrument.getName());
+            }
+        }
+
+        final var crc = new CRC32();
+        crc.update(bytes.toByteArray());
+        out.writeInt((int) crc.getValue());
+        out.flush();
+
+        final var parent = file.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+        final var tmp = Files.createTempFile(parent, file.getFileName().toString(), ".tmp");
+        try {
+            Files.write(tmp, bytes.toByteArray());
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+
+    /**
+     * Чтение снимка с проверкой сигнатуры, версии и контрольной суммы.
+     *
+     * @param file Путь к файлу снимка.
+     * @return Содержимое снимка.
+     * @throws IOException Если файл не читается или повреждён.
+     */
+    public static Snapshot read(final Path file) throws IOException {
+        try (final var channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            final var size = channel.size();
+            if (size < 22 || size > Integer.MAX_VALUE) {
+                throw new IOException("Недопустимый размер файла снимка справочника: " + size);
+            }
+
+            final ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+
+            final var crc = new CRC32();
+            crc.update(buffer.duplicate().limit((int) size - Integer.BYTES));
+            if ((int) crc.getValue() != buffer.getInt((int) size - Integer.BYTES)) {
+                throw new IOException("Не сошлась контрольная сумма снимка справочника.");
+            }
+
+            if (buffer.getInt() != MAGIC || buffer.getShort() != VERSION) {
+                throw new IOException("Неизвестный формат снимка справочника.");
+            }
+
+            final var savedAt = Instant.ofEpochMilli(buffer.getLong());
+            final var count = buffer.getInt();
+            final var types = InstrumentType.values();
+            final var currencies = Currency.values();
+            final var instruments = new EnumMap<InstrumentType, List<Instrument>>(InstrumentType.class);
+
+            for (int i = 0; i < count; i++) {
+                final var type = types[buffer.get()];
+                final var lot = buffer.getInt();
+                final var currencyOrdinal = buffer.get();
+                final var minPriceIncrement = readDecimal(buffer);
+                final var figi = readString(buffer);
+                final var ticker = readString(buffer);
+                final var isin = readString(buffer);
+                final var name = readString(buffer);
+
+                instruments.computeIfAbsent(type, t -> new ArrayList<>()).add(new Instrument(
+                        figi,
+                        ticker,
+                        isin,
+                        minPriceIncrement,
+                        lot,
+                        currencyOrdinal == NO_VALUE ? null : currencies[currencyOrdinal],
+                        name
+                ));
+            }
+
+            return new Snapshot(instruments, savedAt);
+        } catch (BufferUnderflowException | IndexOutOfBoundsException | ArithmeticException ex) {
+            throw new IOException("Снимок справочника повреждён.", ex);
+        }
+    }
+
+    private static void writeDecimal(final DataOutputStream out, final BigDecimal value) throws IOException {
+        if (value == null) {
+            out.writeByte(ABSENT);
+        } else {
+            out.writeByte(PRESENT);
+            out.writeInt(value.scale());
+            writeBytes(out, value.unscaledValue().toByteArray());
+        }
+    }
+
+    private static BigDecimal readDecimal(final ByteBuffer buffer) throws IOException {
+        if (!readPresence(buffer)) return null;
+        final var scale = buffer.getInt();
+        return new BigDecimal(new BigInteger(readBytes(buffer)), scale);
+    }
+
+    private static void writeString(final DataOutputStream out, final String value) throws IOException {
+        if (value == null) {
+            out.writeByte(ABSENT);
+        } else {
+            out.writeByte(PRESENT);
+            writeBytes(out, value.getBytes(StandardCharsets.UTF_8));
+        }
+    }
+
+    private static String readString(final ByteBuffer buffer) throws IOException {
+        if (!readPresence(buffer)) return null;
+        return new String(readBytes(buffer), StandardCharsets.UTF_8);
+    }
+
+    private static boolean readPresence(final ByteBuffer buffer) throws IOException {
+        final var presence = buffer.get();
+        if (presence != ABSENT && presence != PRESENT) {
+            throw new IOException("Снимок справочника повреждён: недопустимый признак значения " + presence);
+        }
+        return presence == PRESENT;
+    }
+
+    private static void writeBytes(final DataOutputStream out, final byte[] bytes) throws IOException {
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static byte[] readBytes(final ByteBuffer buffer) throws IOException {
+        final var length = buffer.getInt();
+        if (length < 0 || length > buffer.remaining()) {
+            throw new IOException("Снимок справочника повреждён: недопустимая длина значения " + length);
+        }
+        final var bytes = new byte[length];
+        buffer.get(bytes);
+        return bytes;
+    }
+}
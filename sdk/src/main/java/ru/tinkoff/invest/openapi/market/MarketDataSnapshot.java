@@ -0,0 +1,160 @@
+package ru.tinkoff.invest.openapi.market;
+
+import ru.tinkoff.invest.openapi.data.CandleInterval;
+import ru.tinkoff.invest.openapi.data.StreamingEvent;
+import ru.tinkoff.invest.openapi.wrapper.BackpressurePolicy;
+import ru.tinkoff.invest.openapi.wrapper.Context;
+import ru.tinkoff.invest.openapi.wrapper.StreamingSubscription;
+
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Последние события streaming по каждому инструменту, доступные из любого потока.
+ *
+ * Для каждого инструмента хранятся последний стакан, последняя информация об инструменте и последняя свеча каждого
+ * интервала. Запись - это атомарная замена ссылки, а чтение не берёт блокировок, поэтому снимок можно опрашивать из
+ * обработчиков запросов, проверок рисков и т.п., не мешая рассылке событий.
+ *
+ * Снимок наполняется как подписчик контекста ({@link #attach(Context)}) или явными вызовами {@link #update}.
+ */
+public class MarketDataSnapshot implements Flow.Subscriber<StreamingEvent> {
+
+    // промежуточные обновления одного потока снимку не нужны, поэтому подписка объединяет их. Буфер не
+    // ограничивается: в нём не больше одного события на поток, а при вытеснении снимок хранил бы устаревшее
+    // значение потока до его следующего события
+    private static final int ATTACH_BUFFER_SIZE = Integer.MAX_VALUE;
+    private static final CandleInterval[] intervals = CandleInterval.values();
+
+    private final ConcurrentMap<String, InstrumentSlots> instruments;
+    private volatile Flow.Subscription subscription;
+
+    public MarketDataSnapshot() {
+        this.instruments = new ConcurrentHashMap<>();
+    }
+
+    /**
+     * Подписка снимка на все события контекста.
+     *
+     * @param context Контекст.
+     * @return Подписка.
+     */
+    public StreamingSubscription attach(final Context context) {
+        return context.subscribe(this, null, BackpressurePolicy.ConflateLatest, ATTACH_BUFFER_SIZE);
+    }
+
+    /**
+     * Отписка снимка от контекста. Сохранённые события остаются доступными.
+     */
+    public void detach() {
+        final var current = subscription;
+        if (current != null) {
+            current.cancel();
+        }
+    }
+
+    /**
+     * Учёт очередного события. События без инструмента (ошибки) пропускаются.
+     *
+     * @param event Событие.
+     */
+    public void update(final StreamingEvent event) {
+        if (event instanceof StreamingEvent.Candle) {
+            final var candle = (StreamingEvent.Candle) event;
+            final var slots = slotsFor(candle.getFigi());
+            slots.candles.set(candle.getInterval().ordinal(), candle);
+            slots.lastCandle.set(candle);
+        } else if (event instanceof StreamingEvent.Orderbook) {
+            final var orderbook = (StreamingEvent.Orderbook) event;
+            slotsFor(orderbook.getFigi()).orderbook.set(orderbook);
+        } else if (event instanceof StreamingEvent.InstrumentInfo) {
+            final var info = (StreamingEvent.InstrumentInfo) event;
+            slotsFor(info.getFigi()).instrumentInfo.set(info);
+        }
+    }
+
+    /**
+     * Последняя свеча инструмента заданного интервала.
+     *
+     * @param figi Идентификатор инструмента.
+     * @param interval Интервал свечи.
+     */
+    public Optional<StreamingEvent.Candle> getCandle(final String figi, final CandleInterval interval) {
+        final var slots = instruments.get(figi);
+        return slots == null ? Optional.empty() : Optional.ofNullable(slots.candles.get(interval.ordinal()));
+    }
+
+    /**
+     * Последняя свеча инструмента любого интервала.
+     *
+     * @param figi Идентификатор инструмента.
+     */
+    public Optional<StreamingEvent.Candle> getLastCandle(final String figi) {
+        final var slots = instruments.get(figi);
+        return slots == null ? Optional.empty() : Optional.ofNullable(slots.lastCandle.get());
+    }
+
+    /**
+     * Последний стакан инструмента.
+     *
+     * @param figi Идентификатор инструмента.
+     */
+    public Optional<StreamingEvent.Orderbook> getOrderbook(final String figi) {
+        final var slots = instruments.get(figi);
+        return slots == null ? Optional.empty() : Optional.ofNullable(slots.orderbook.get());
+    }
+
+    /**
+     * Последняя информация об инструменте.
+     *
+     * @param figi Идентификатор инструмента.
+     */
+    public Optional<StreamingEvent.InstrumentInfo> getInstrumentInfo(final String figi) {
+        final var slots = instruments.get(figi);
+        return slots == null ? Optional.empty() : Optional.ofNullable(slots.instrumentInfo.get());
+    }
+
+    /**
+     * Инструменты, по которым получено хотя бы одно событие.
+     */
+    public Set<String> getFigis() {
+        return Set.copyOf(instruments.keySet());
+    }
+
+    @Override
+    public void onSubscribe(final Flow.Subscription subscription) {
+        this.subscription = subscription;
+        subscription.request(Long.MAX_VALUE);
+    }
+
+    @Override
+    public void onNext(final StreamingEvent item) {
+        update(item);
+    }
+
+    @Override
+    public void onError(final Throwable throwable) {
+    }
+
+    @Override
+    public void onComplete() {
+    }
+
+    private InstrumentSlots slotsFor(final String figi) {
+        final var slots = instruments.get(figi);
+        return slots != null ? slots : instruments.computeIfAbsent(figi, f -> new InstrumentSlots());
+    }
+
+    private static final class InstrumentSlots {
+        private final AtomicReferenceArray<StreamingEvent.Candle> candles =
+                new AtomicReferenceArray<>(intervals.length);
+        private final AtomicReference<StreamingEvent.Candle> lastCandle = new AtomicReference<>();
+        private final AtomicReference<StreamingEvent.Orderbook> orderbook = new AtomicReference<>();
+        private final AtomicReference<StreamingEvent.InstrumentInfo> instrumentInfo = new AtomicReference<>();
+    }
+}
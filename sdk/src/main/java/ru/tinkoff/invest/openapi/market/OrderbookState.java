@@ -0,0 +1,354 @@
+package ru.tinkoff.invest.openapi.market;
+
+import ru.tinkoff.invest.openapi.data.StreamingEvent;
+import ru.tinkoff.invest.openapi.data.TickSize;
+
+import java.math.BigDecimal;
+
+/**
+ * Текущее состояние стакана одного инструмента, поддерживаемое по снимкам из streaming.
+ *
+ * Уровни каждой стороны хранятся упорядоченными (лучшая цена первой) в массивах цен в шагах, количеств и
+ * накопленных количеств. Очередной снимок сравнивается с текущим состоянием слиянием двух упорядоченных
+ * последовательностей, и подписчику сообщается только об изменившихся уровнях. Лучшие цены, спред, середина и
+ * накопленный объём до заданного уровня вычисляются за O(1), а применение снимка в установившемся режиме не
+ * создаёт объектов.
+ *
+ * Экземпляр не потокобезопасен и рассчитан на использование из одного потока (например, потока стратегии).
+ */
+public class OrderbookState {
+
+    /**
+     * Сторона стакана.
+     */
+    public enum Side {
+        Bid,
+        Ask
+    }
+
+    /**
+     * Получатель изменений уровней стакана.
+     */
+    @FunctionalInterface
+    public interface LevelChangeListener {
+
+        /**
+         * Изменение уровня. Появление уровня сообщается с oldQuantity = 0, исчезновение - с newQuantity = 0.
+         *
+         * @param side Сторона стакана.
+         * @param priceTicks Цена уровня в шагах цены.
+         * @param oldQuantity Прежнее количество на уровне.
+         * @param newQuantity Новое количество на уровне.
+         */
+        void onLevelChange(Side side, long priceTicks, long oldQuantity, long newQuantity);
+    }
+
+    private final String figi;
+    private final TickSize tickSize;
+    private Levels bids;
+    private Levels asks;
+    private Levels spareBids;
+    private Levels spareAsks;
+    private long snapshotsCount;
+
+    /**
+     * @param figi Идентификатор инструмента.
+     * @param tickSize Шаг цены инструмента.
+     */
+    public OrderbookState(final String figi, final TickSize tickSize) {
+        this.figi = figi;
+        this.tickSize = tickSize;
+        this.bids = new Levels();
+        this.asks = new Levels();
+        this.spareBids = new Levels();
+        this.spareAsks = new Levels();
+    }
+
+    public String getFigi() {
+        return figi;
+    }
+
+    public TickSize getTickSize() {
+        return tickSize;
+    }
+
+    /**
+     * Число применённых снимков.
+     */
+    public long getSnapshotsCount() {
+        return snapshotsCount;
+    }
+
+    /**
+     * Применение очередного снимка стакана без получения изменений.
+     *
+     * @param snapshot Снимок.
+     * @return Число изменившихся уровней.
+     */
+    public int apply(final StreamingEvent.Orderbook snapshot) {
+        return apply(snapshot, null);
+    }
+
+    /**
+     * Применение очередного снимка стакана.
+     *
+     * @param snapshot Снимок.
+     * @param listener Получатель изменений уровней или null.
+     * @return Число изменившихся уровней.
+     */
+    public int apply(final StreamingEvent.Orderbook snapshot, final LevelChangeListener listener) {
+        if (!figi.equals(snapshot.getFigi())) {
+            throw new IllegalArgumentException("Снимок стакана другого инструмента: " + snapshot.getFigi());
+        }
+
+        final var newBids = spareBids;
+        newBids.clear(snapshot.getBidsCount());
+        for (int i = 0; i < snapshot.getBidsCount(); i++) {
+            newBids.add(-1, snapshot.getBidPriceTicks(i, tickSize), snapshot.getBidQuantity(i));
+        }
+        newBids.accumulate();
+
+        final var newAsks = spareAsks;
+        newAsks.clear(snapshot.getAsksCount());
+        for (int i = 0; i < snapshot.getAsksCount(); i++) {
+            newAsks.add(1, snapshot.getAskPriceTicks(i, tickSize), snapshot.getAskQuantity(i));
+        }
+        newAsks.accumulate();
+
+        final var changes = diff(Side.Bid, -1, bids, newBids, listener) +
+                diff(Side.Ask, 1, asks, newAsks, listener);
+
+        spareBids = bids;
+        bids = newBids;
+        spareAsks = asks;
+        asks = newAsks;
+        snapshotsCount++;
+
+        return changes;
+    }
+
+    /**
+     * Количество уровней предложений о покупке.
+     */
+    public int getBidsCount() {
+        return bids.count;
+    }
+
+    /**
+     * Количество уровней предложений о продаже.
+     */
+    public int getAsksCount() {
+        return asks.count;
+    }
+
+    /**
+     * Цена предложения о покупке в шагах цены.
+     *
+     * @param level Номер уровня (0 - лучшая цена).
+     */
+    public long getBidPriceTicks(final int level) {
+        return bids.price(level);
+    }
+
+    /**
+     * Количество в предложении о покупке.
+     *
+     * @param level Номер уровня (0 - лучшая цена).
+     */
+    public long getBidQuantity(final int level) {
+        return bids.quantity(level);
+    }
+
+    /**
+     * Цена предложения о продаже в шагах цены.
+     *
+     * @param level Номер уровня (0 - лучшая цена).
+     */
+    public long getAskPriceTicks(final int level) {
+        return asks.price(level);
+    }
+
+    /**
+     * Количество в предложении о продаже.
+     *
+     * @param level Номер уровня (0 - лучшая цена).
+     */
+    public long getAskQuantity(final int level) {
+        return asks.quantity(level);
+    }
+
+    /**
+     * Лучшая цена покупки в шагах цены.
+     */
+    public long getBestBidTicks() {
+        return bids.price(0);
+    }
+
+    /**
+     * Лучшая цена продажи в шагах цены.
+     */
+    public long getBestAskTicks() {
+        return asks.price(0);
+    }
+
+    /**
+     * Спред в шагах цены.
+     */
+    public long getSpreadTicks() {
+        return getBestAskTicks() - getBestBidTicks();
+    }
+
+    /**
+     * Середина между лучшими ценами.
+     */
+    public BigDecimal getMidPrice() {
+        final var ticks = BigDecimal.valueOf(getBestBidTicks() + getBestAskTicks());
+        return tickSize.getMinPriceIncrement().multiply(ticks).divide(BigDecimal.valueOf(2));
+    }
+
+    /**
+     * Суммарное количество предложений о покупке на лучших уровнях.
+     *
+     * @param levels Число уровней (если уровней меньше, суммируются все).
+     */
+    public long getCumulativeBidQuantity(final int levels) {
+        return bids.cumulative(levels);
+    }
+
+    /**
+     * Суммарное количество предложений о продаже на лучших уровнях.
+     *
+     * @param levels Число уровней (если уровней меньше, суммируются все).
+     */
+    public long getCumulativeAskQuantity(final int levels) {
+        return asks.cumulative(levels);
+    }
+
+    @Override
+    public String toString() {
+        return "OrderbookState(figi = " + figi +
+                ", bids = " + bids +
+                ", asks = " + asks +
+                ")";
+    }
+
+    /**
+     * Слияние прежних и новых уровней одной стороны. Уровни упорядочены по возрастанию direction * price.
+     */
+    private static int diff(final Side side,
+                            final int direction,
+                            final Levels before,
+                            final Levels after,
+                            final LevelChangeListener listener) {
+        var changes = 0;
+        var i = 0;
+        var j = 0;
+        while (i < before.count || j < after.count) {
+            final long oldQuantity;
+            final long newQuantity;
+            final long price;
+            if (j == after.count ||
+                    (i < before.count && direction * before.prices[i] < direction * after.prices[j])) {
+                price = before.prices[i];
+                oldQuantity = before.quantities[i++];
+                newQuantity = 0;
+            } else if (i == before.count || before.prices[i] != after.prices[j]) {
+                price = after.prices[j];
+                oldQuantity = 0;
+                newQuantity = after.quantities[j++];
+            } else {
+                price = before.prices[i];
+                oldQuantity = before.quantities[i++];
+                newQuantity = after.quantities[j++];
+            }
+
+            if (oldQuantity != newQuantity) {
+                changes++;
+                if (listener != null) {
+                    listener.onLevelChange(side, price, oldQuantity, newQuantity);
+                }
+            }
+        }
+
+        return changes;
+    }
+
+    /**
+     * Уровни одной стороны стакана.
+     */
+    private static final class Levels {
+        private long[] prices = new long[0];
+        private long[] quantities = new long[0];
+        private long[] cumulative = new long[0];
+        private int count;
+
+        void clear(final int capacity) {
+            if (prices.length < capacity) {
+                prices = new long[capacity];
+                quantities = new long[capacity];
+                cumulative = new long[capacity];
+            }
+            count = 0;
+        }
+
+        /**
+         * Добавление уровня с сохранением порядка. Уровни в снимке обычно уже упорядочены, так что вставка сводится
+         * к дописыванию в конец; уровни с одинаковой ценой в шагах объединяются.
+         */
+        void add(final int direction, final long price, final long quantity) {
+            var position = count;
+            while (position > 0 && direction * prices[position - 1] > direction * price) {
+                position--;
+            }
+            if (position > 0 && prices[position - 1] == price) {
+                quantities[position - 1] += quantity;
+                return;
+            }
+
+            System.arraycopy(prices, position, prices, position + 1, count - position);
+            System.arraycopy(quantities, position, quantities, position + 1, count - position);
+            prices[position] = price;
+            quantities[position] = quantity;
+            count++;
+        }
+
+        void accumulate() {
+            long sum = 0;
+            for (int i = 0; i < count; i++) {
+                sum += quantities[i];
+                cumulative[i] = sum;
+            }
+        }
+
+        long price(final int level) {
+            checkLevel(level);
+            return prices[level];
+        }
+
+        long quantity(final int level) {
+            checkLevel(level);
+            return quantities[level];
+        }
+
+        long cumulative(final int levels) {
+            if (levels <= 0 || count == 0) return 0;
+            return cumulative[Math.min(levels, count) - 1];
+        }
+
+        private void checkLevel(final int level) {
+            if (level < 0 || level >= count) {
+                throw new IllegalStateException("В стакане нет уровня " + level + ".");
+            }
+        }
+
+        @Override
+        public String toString() {
+            final var result = new StringBuilder("[");
+            for (int i = 0; i < count; i++) {
+                if (i > 0) result.append(", ");
+                result.append(prices[i]).append(':').append(quantities[i]);
+            }
+            return result.append(']').toString();
+        }
+    }
+}
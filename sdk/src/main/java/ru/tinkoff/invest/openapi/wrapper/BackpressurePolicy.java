@@ -0,0 +1,27 @@
+package ru.tinkoff.invest.openapi.wrapper;
+
+/**
+ * Поведение подписки на события streaming при заполнении её буфера (когда подписчик не успевает их обрабатывать).
+ */
+public enum BackpressurePolicy {
+
+    /**
+     * Рассылка ждёт, пока в буфере появится место. Задержка распространяется вверх по конвейеру, вплоть до
+     * приёма сообщений из WebSocket.
+     */
+    Block,
+
+    /**
+     * Из буфера выбрасывается самое старое событие.
+     */
+    DropOldest,
+
+    /**
+     * В буфере хранится только последнее событие каждого потока ({@link StreamingKey}): новое событие заменяет
+     * ещё не доставленное старое. Если буфер всё равно полон, выбрасывается самое старое событие, поэтому для
+     * хранения последних значений буфер должен вмещать все потоки подписки. События без потока (ошибки) занимают
+     * одно общее место: новая ошибка заменяет старую и в число выброшенных не входит.
+     */
+    ConflateLatest
+
+}
@@ -1,7 +1,15 @@
 package ru.tinkoff.invest.openapi.wrapper;
 
+import ru.tinkoff.invest.openapi.data.StreamingRequest;
+
 import java.net.http.HttpClient;
 import java.net.http.WebSocket;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Flow;
+import java.util.function.Function;
 
 /**
  * Интерфейс подключения к OpenAPI.
@@ -39,17 +47,161 @@ public interface Connection<C extends Context> extends AutoCloseable {
     HttpClient getHttpClient();
 
     /**
-     * WebSocket-клиент, используемый для получения потока рыночной информации.
+     * WebSocket-клиент, используемый для получения потока рыночной информации (при нескольких streaming-соединениях -
+     * первый из них). После восстановления соединения возвращается новый клиент.
      *
      * @return WebSocket-клиент.
      */
     WebSocket getWebSocket();
 
     /**
-     * Обработчик сообщений получаемых через WebSocket-клиент.
+     * WebSocket-клиент, через который оформляются подписки по инструменту. Инструменты распределяются между
+     * streaming-соединениями согласованным хешированием FIGI, так что все потоки одного инструмента идут через одно
+     * соединение.
+     *
+     * @param figi Идентификатор инструмента.
+     * @return WebSocket-клиент.
+     */
+    default WebSocket getWebSocket(String figi) {
+        return getWebSocket();
+    }
+
+    /**
+     * Номер streaming-соединения, обслуживающего инструмент.
+     *
+     * @param figi Идентификатор инструмента.
+     * @return Номер соединения в пуле.
+     */
+    default int getStreamingSocketIndex(String figi) {
+        return 0;
+    }
+
+    /**
+     * Обработчик сообщений получаемых через WebSocket-клиент (при нескольких streaming-соединениях - через первый
+     * из них).
      *
      * @return Обработчик сообщений.
      */
     WebSocketListener getListener();
 
+    /**
+     * Обработчики сообщений всех streaming-соединений, по порядку их номеров. Сообщения каждого соединения
+     * обрабатываются в своём потоке.
+     *
+     * @return Обработчики сообщений.
+     */
+    default List<WebSocketListener> getListeners() {
+        return List.of(getListener());
+    }
+
+    /**
+     * Отправка запроса через streaming-соединение, обслуживающее поток. Запросы через одно соединение уходят друг за
+     * другом, из каких бы контекстов подключения они ни отправлялись. Действующие подписки переотправляются после
+     * восстановления соединения - один раз на всё подключение.
+     *
+     * @param request Запрос.
+     * @return Результат отправки.
+     */
+    CompletableFuture<Void> sendStreamingRequest(StreamingRequest request);
+
+    /**
+     * Подписка на восстановление WebSocket-соединений. Событие приходит, когда {@link #getWebSocket(String)} уже
+     * возвращает новое соединение, но подписки streaming на нём ещё не переотправлены.
+     *
+     * @param subscriber Подписчик.
+     */
+    void subscribeOnReconnect(Flow.Subscriber<ReconnectEvent> subscriber);
+
+    /**
+     * Добавление действия при восстановлении WebSocket-соединения (например, восполнения пропущенного за время
+     * разрыва). Подписки streaming переотправляются, когда завершатся все такие действия.
+     *
+     * @param action Действие.
+     */
+    void addRecoveryAction(Function<ReconnectEvent, CompletableFuture<Void>> action);
+
+    /**
+     * Показатели восстановления WebSocket-соединений, сведённые по всем streaming-соединениям.
+     *
+     * @return Показатели.
+     */
+    ReconnectMetrics getReconnectMetrics();
+
+    /**
+     * Принудительное восстановление streaming-соединения, например если соединение открыто, но данные по нему
+     * перестали приходить. Если соединение уже восстанавливается, ничего не происходит.
+     *
+     * @param socketIndex Номер соединения в пуле.
+     */
+    void reconnect(int socketIndex);
+
+    /**
+     * Время молчания, после которого поток streaming считается устаревшим. Соединение, по которому за это время не
+     * пришло ни одного фрейма (по соединениям периодически отправляется ping), восстанавливается.
+     *
+     * @return Время молчания.
+     */
+    Duration getStaleStreamTimeout();
+
+    /**
+     * Изменение времени молчания, после которого поток streaming считается устаревшим.
+     *
+     * @param timeout Время молчания.
+     */
+    void setStaleStreamTimeout(Duration timeout);
+
+    /**
+     * Наибольшее число одновременно выполняемых запросов к rest-составляющей OpenAPI (общее для всех контекстов
+     * подключения). Остальные запросы ждут в очереди по классам приоритета ({@link RequestPriority}).
+     *
+     * @return Число запросов.
+     */
+    int getMaxRequestsInFlight();
+
+    /**
+     * Изменение наибольшего числа одновременно выполняемых запросов к rest-составляющей OpenAPI.
+     *
+     * @param maxRequestsInFlight Число запросов.
+     */
+    void setMaxRequestsInFlight(int maxRequestsInFlight);
+
+    /**
+     * Показатели очередей запросов к rest-составляющей OpenAPI.
+     *
+     * @return Показатели по классам приоритета.
+     */
+    Map<RequestPriority, RequestMetrics> getRequestMetrics();
+
+    /**
+     * Ограничение частоты запросов к группе методов rest-составляющей OpenAPI (общее для всех контекстов
+     * подключения). Запросы сверх ограничения не отклоняются, а ждут; после ответов 429 ограничение временно
+     * ужесточается.
+     *
+     * @param group Группа методов.
+     * @return Запросов в минуту.
+     */
+    int getRateLimit(EndpointGroup group);
+
+    /**
+     * Изменение ограничения частоты запросов к группе методов rest-составляющей OpenAPI.
+     *
+     * @param group Группа методов.
+     * @param requestsPerMinute Запросов в минуту.
+     */
+    void setRateLimit(EndpointGroup group, int requestsPerMinute);
+
+    /**
+     * Показатели ограничения частоты запросов, в том числе гистограммы времени ожидания.
+     *
+     * @return Показатели по группам методов.
+     */
+    Map<EndpointGroup, RateLimitMetrics> getRateLimitMetrics();
+
+    /**
+     * Показатели каждого из streaming-соединений.
+     *
+     * @return Показатели по порядку номеров соединений.
+     */
+    List<StreamingSocketMetrics> getStreamingMetrics();
+
 }
@@ -5,7 +5,9 @@ import ru.tinkoff.invest.openapi.data.*;
 import java.time.OffsetDateTime;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
 import java.util.concurrent.Flow;
 
 /**
@@ -70,6 +72,27 @@ public interface Context extends Flow.Publisher<StreamingEvent> {
      */
     CompletableFuture<InstrumentsList> getMarketEtfs();
 
+    /**
+     * Получение списка инструментов заданного типа в виде потока. Инструменты выдаются подписчику по мере разбора
+     * ответа OpenAPI, не дожидаясь загрузки всего списка. Запрос выполняется заново для каждого подписчика.
+     * Отказ от подписки прерывает загрузку и разбор ответа. Ответ разбирается в отдельном потоке, который ждёт, пока
+     * подписчик не запросит следующие инструменты.
+     *
+     * @param instrumentType Тип инструментов.
+     * @return Поток инструментов.
+     */
+    Flow.Publisher<Instrument> streamMarketInstruments(InstrumentType instrumentType);
+
+    /**
+     * Получение списка инструментов заданного типа в виде потока с разбором ответа в заданном исполнителе.
+     *
+     * @param instrumentType Тип инструментов.
+     * @param executor Исполнитель, в котором читается и разбирается ответ. Чтение блокируется, пока подписчик не
+     *                 запросит следующие инструменты.
+     * @return Поток инструментов.
+     */
+    Flow.Publisher<Instrument> streamMarketInstruments(InstrumentType instrumentType, Executor executor);
+
     /**
      * Получение текущего состояния торгового "стакана".
      *
@@ -87,6 +110,10 @@ public interface Context extends Flow.Publisher<StreamingEvent> {
     /**
      * Получение исторических данных по свечам.
      *
+     * Свечи интервалов, которых нет в OpenAPI (2 и 4 часа), собираются из часовых. Их отрезки выровнены по началу
+     * эпохи в UTC, и отдаются только свечи, отрезки которых целиком лежат в [from, to): текущая, ещё не закрытая
+     * свеча приходит только через streaming.
+     *
      * @param figi Идентификатор инструмента.
      * @param from Начальный момент рассматриваемого отрезка временного интервала.
      * @param to Конечный момент рассматриваемого отрезка временного интервала.
@@ -131,6 +158,58 @@ public interface Context extends Flow.Publisher<StreamingEvent> {
      */
     CompletableFuture<OperationsList> getOperations(OffsetDateTime from, OffsetDateTime to, String figi);
 
+    /**
+     * Подписка на события только заданных потоков: подписчик не получает событий по другим инструментам, интервалам
+     * и глубинам стакана (ошибки streaming получают все). Подписка на сервере по-прежнему оформляется через
+     * {@link #sendStreamingRequest}. Чтобы отписаться, достаточно отменить полученную {@link Flow.Subscription}.
+     * Буфер подписки имеет размер {@link Flow#defaultBufferSize()}, а при его заполнении рассылка ждёт
+     * ({@link BackpressurePolicy#Block}).
+     *
+     * @param subscriber Подписчик.
+     * @param keys Интересующие потоки.
+     */
+    void subscribe(Flow.Subscriber<? super StreamingEvent> subscriber, Set<StreamingKey> keys);
+
+    /**
+     * Подписка на события заданных потоков с ограниченным буфером и заданным поведением при его заполнении.
+     * Подписчик получает в {@link Flow.Subscriber#onSubscribe} ту же подписку, что возвращается из метода.
+     *
+     * @param subscriber Подписчик.
+     * @param keys Интересующие потоки или null, если нужны все события.
+     * @param policy Поведение при заполнении буфера.
+     * @param bufferSize Размер буфера.
+     * @return Подписка со счётчиками буферизованных и выброшенных событий.
+     */
+    StreamingSubscription subscribe(Flow.Subscriber<? super StreamingEvent> subscriber,
+                                    Set<StreamingKey> keys,
+                                    BackpressurePolicy policy,
+                                    int bufferSize);
+
+    /**
+     * Подписка на стаканы инструмента с объединением: пока подписчик не запросил следующий стакан, хранится только
+     * последний пришедший, так что подписчик всегда получает самый свежий стакан, а не очередь устаревших.
+     * Подписка на сервере по-прежнему оформляется через {@link #sendStreamingRequest}.
+     *
+     * @param subscriber Подписчик.
+     * @param figi Идентификатор инструмента.
+     * @param depth Глубина стакана.
+     * @return Подписка, {@link StreamingSubscription#getDroppedCount()} которой - число пропущенных стаканов.
+     */
+    StreamingSubscription subscribeConflatedOrderbook(Flow.Subscriber<? super StreamingEvent.Orderbook> subscriber,
+                                                      String figi,
+                                                      int depth);
+
+    /**
+     * Потоки streaming, по которым дольше {@link Connection#getStaleStreamTimeout()} не приходило событий. Подписка
+     * на такой поток переоформляется, а если замолчали все потоки streaming-соединения, оно восстанавливается. Если
+     * поток снова замолкает, следующее вмешательство откладывается вдвое дольше. Потоки информации об инструменте
+     * не проверяются. Стратегиям не стоит принимать решения по данным устаревших потоков.
+     *
+     * @return Ключи потоков в том виде, в каком подписки оформлены на сервере (2-х и 4-х часовые свечи собираются
+     * из часовых).
+     */
+    Set<StreamingKey> getStaleStreams();
+
     /**
      * Убирает рассылку для всех подписанных по {@link Flow.Publisher#subscribe}.
      */
@@ -0,0 +1,151 @@
+package ru.tinkoff.invest.openapi.wrapper;
+
+import ru.tinkoff.invest.openapi.data.*;
+
+import java.time.OffsetDateTime;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+
+/**
+ * Базовый класс обёрток над контекстом. Все вызовы по умолчанию передаются исходному контексту, наследники
+ * переопределяют только то, что им нужно.
+ */
+public abstract class ContextDecorator implements Context {
+
+    /**
+     * Исходный контекст.
+     */
+    protected final Context context;
+
+    protected ContextDecorator(Context context) {
+        this.context = context;
+    }
+
+    @Override
+    public CompletableFuture<List<Order>> getOrders() {
+        return context.getOrders();
+    }
+
+    @Override
+    public CompletableFuture<PlacedLimitOrder> placeLimitOrder(LimitOrder limitOrder) {
+        return context.placeLimitOrder(limitOrder);
+    }
+
+    @Override
+    public CompletableFuture<Void> cancelOrder(String orderId) {
+        return context.cancelOrder(orderId);
+    }
+
+    @Override
+    public CompletableFuture<Portfolio> getPortfolio() {
+        return context.getPortfolio();
+    }
+
+    @Override
+    public CompletableFuture<PortfolioCurrencies> getPortfolioCurrencies() {
+        return context.getPortfolioCurrencies();
+    }
+
+    @Override
+    public CompletableFuture<InstrumentsList> getMarketStocks() {
+        return context.getMarketStocks();
+    }
+
+    @Override
+    public CompletableFuture<InstrumentsList> getMarketBonds() {
+        return context.getMarketBonds();
+    }
+
+    @Override
+    public CompletableFuture<InstrumentsList> getMarketEtfs() {
+        return context.getMarketEtfs();
+    }
+
+    @Override
+    public Flow.Publisher<Instrument> streamMarketInstruments(InstrumentType instrumentType) {
+        return context.streamMarketInstruments(instrumentType);
+    }
+
+    @Override
+    public Flow.Publisher<Instrument> streamMarketInstruments(InstrumentType instrumentType, Executor executor) {
+        return context.streamMarketInstruments(instrumentType, executor);
+    }
+
+    @Override
+    public CompletableFuture<Orderbook> getMarketOrderbook(String figi, int depth) {
+        return context.getMarketOrderbook(figi, depth);
+    }
+
+    @Override
+    public CompletableFuture<InstrumentsList> getMarketCurrencies() {
+        return context.getMarketCurrencies();
+    }
+
+    @Override
+    public CompletableFuture<HistoricalCandles> getMarketCandles(String figi,
+                                                                 OffsetDateTime from,
+                                                                 OffsetDateTime to,
+                                                                 CandleInterval interval) {
+        return context.getMarketCandles(figi, from, to, interval);
+    }
+
+    @Override
+    public CompletableFuture<InstrumentsList> searchMarketInstrumentsByTicker(String ticker) {
+        return context.searchMarketInstrumentsByTicker(ticker);
+    }
+
+    @Override
+    public CompletableFuture<Optional<Instrument>> searchMarketInstrumentByFigi(String figi) {
+        return context.searchMarketInstrumentByFigi(figi);
+    }
+
+    @Override
+    public CompletableFuture<Void> sendStreamingRequest(StreamingRequest request) {
+        return context.sendStreamingRequest(request);
+    }
+
+    @Override
+    public CompletableFuture<OperationsList> getOperations(OffsetDateTime from, OffsetDateTime to, String figi) {
+        return context.getOperations(from, to, figi);
+    }
+
+    @Override
+    public void subscribe(Flow.Subscriber<? super StreamingEvent> subscriber) {
+        context.subscribe(subscriber);
+    }
+
+    @Override
+    public void subscribe(Flow.Subscriber<? super StreamingEvent> subscriber, Set<StreamingKey> keys) {
+        context.subscribe(subscriber, keys);
+    }
+
+    @Override
+    public StreamingSubscription subscribe(Flow.Subscriber<? super StreamingEvent> subscriber,
+                                           Set<StreamingKey> keys,
+                                           BackpressurePolicy policy,
+                                           int bufferSize) {
+        return context.subscribe(subscriber, keys, policy, bufferSize);
+    }
+
+    @Override
+    public StreamingSubscription subscribeConflatedOrderbook(Flow.Subscriber<? super StreamingEvent.Orderbook> subscriber,
+                                                             String figi,
+                                                             int depth) {
+        return context.subscribeConflatedOrderbook(subscriber, figi, depth);
+    }
+
+    @Override
+    public Set<StreamingKey> getStaleStreams() {
+        return context.getStaleStreams();
+    }
+
+    @Override
+    public void unsubscribe() {
+        context.unsubscribe();
+    }
+
+}
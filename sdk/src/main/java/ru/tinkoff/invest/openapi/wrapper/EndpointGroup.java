@@ -0,0 +1,33 @@
+package ru.tinkoff.invest.openapi.wrapper;
+
+/**
+ * Группа методов rest-составляющей OpenAPI с общим ограничением частоты запросов.
+ */
+public enum EndpointGroup {
+
+    /**
+     * Заявки: /orders.
+     */
+    Orders,
+
+    /**
+     * Портфель: /portfolio.
+     */
+    Portfolio,
+
+    /**
+     * Рыночные данные: /market/*.
+     */
+    Market,
+
+    /**
+     * Операции: /operations.
+     */
+    Operations,
+
+    /**
+     * Остальные методы (например, настройка "песочницы").
+     */
+    Other
+
+}
@@ -0,0 +1,94 @@
+package ru.tinkoff.invest.openapi.wrapper;
+
+import java.time.Duration;
+import java.util.NavigableMap;
+
+/**
+ * Показатели ограничения частоты запросов одной группы методов ({@link EndpointGroup}).
+ */
+public final class RateLimitMetrics {
+
+    private final EndpointGroup group;
+    private final int configuredLimit;
+    private final double currentLimit;
+    private final long acquiredCount;
+    private final long throttledCount;
+    private final Duration maxWaitTime;
+    private final NavigableMap<Duration, Long> waitHistogram;
+
+    public RateLimitMetrics(final EndpointGroup group,
+                            final int configuredLimit,
+                            final double currentLimit,
+                            final long acquiredCount,
+                            final long throttledCount,
+                            final Duration maxWaitTime,
+                            final NavigableMap<Duration, Long> waitHistogram) {
+        this.group = group;
+        this.configuredLimit = configuredLimit;
+        this.currentLimit = currentLimit;
+        this.acquiredCount = acquiredCount;
+        this.throttledCount = throttledCount;
+        this.maxWaitTime = maxWaitTime;
+        this.waitHistogram = waitHistogram;
+    }
+
+    public EndpointGroup getGroup() {
+        return group;
+    }
+
+    /**
+     * Заданное ограничение, запросов в минуту.
+     */
+    public int getConfiguredLimit() {
+        return configuredLimit;
+    }
+
+    /**
+     * Действующее ограничение, запросов в минуту: после ответов 429 оно снижается и постепенно возвращается
+     * к заданному.
+     */
+    public double getCurrentLimit() {
+        return currentLimit;
+    }
+
+    /**
+     * Число пропущенных запросов.
+     */
+    public long getAcquiredCount() {
+        return acquiredCount;
+    }
+
+    /**
+     * Число ответов 429 (слишком много запросов).
+     */
+    public long getThrottledCount() {
+        return throttledCount;
+    }
+
+    /**
+     * Наибольшее время ожидания запроса.
+     */
+    public Duration getMaxWaitTime() {
+        return maxWaitTime;
+    }
+
+    /**
+     * Гистограмма времени ожидания: нижняя граница интервала - число запросов, ждавших не меньше её, но меньше
+     * следующей границы.
+     */
+    public NavigableMap<Duration, Long> getWaitHistogram() {
+        return waitHistogram;
+    }
+
+    @Override
+    public String toString() {
+        return "RateLimitMetrics(group = " + group +
+                ", configuredLimit = " + configuredLimit +
+                ", currentLimit = " + currentLimit +
+                ", acquiredCount = " + acquiredCount +
+                ", throttledCount = " + throttledCount +
+                ", maxWaitTime = " + maxWaitTime +
+                ", waitHistogram = " + waitHistogram +
+                ")";
+    }
+}
@@ -0,0 +1,69 @@
+package ru.tinkoff.invest.openapi.wrapper;
+
+import java.time.Duration;
+import java.time.Instant;
+
+/**
+ * Событие восстановления WebSocket-соединения.
+ */
+public final class ReconnectEvent {
+
+    private final int socketIndex;
+    private final Instant disconnectedAt;
+    private final Instant reconnectedAt;
+    private final int attempts;
+
+    /**
+     * @param socketIndex Номер соединения в пуле streaming-соединений.
+     * @param disconnectedAt Момент обнаружения разрыва.
+     * @param reconnectedAt Момент установки нового соединения.
+     * @param attempts Число понадобившихся попыток.
+     */
+    public ReconnectEvent(final int socketIndex,
+                          final Instant disconnectedAt,
+                          final Instant reconnectedAt,
+                          final int attempts) {
+        this.socketIndex = socketIndex;
+        this.disconnectedAt = disconnectedAt;
+        this.reconnectedAt = reconnectedAt;
+        this.attempts = attempts;
+    }
+
+    /**
+     * Номер восстановленного соединения в пуле (см. {@link Connection#getStreamingSocketIndex(String)}).
+     */
+    public int getSocketIndex() {
+        return socketIndex;
+    }
+
+    /**
+     * Момент обнаружения разрыва: события streaming, пришедшие бы после него, потеряны.
+     */
+    public Instant getDisconnectedAt() {
+        return disconnectedAt;
+    }
+
+    public Instant getReconnectedAt() {
+        return reconnectedAt;
+    }
+
+    public int getAttempts() {
+        return attempts;
+    }
+
+    /**
+     * Время восстановления соединения.
+     */
+    public Duration getTimeToRecover() {
+        return Duration.between(disconnectedAt, reconnectedAt);
+    }
+
+    @Override
+    public String toString() {
+        return "ReconnectEvent(socketIndex = " + socketIndex +
+                ", disconnectedAt = " + disconnectedAt +
+                ", reconnectedAt = " + reconnectedAt +
+                ", attempts = " + attempts +
+                ")";
+    }
+}
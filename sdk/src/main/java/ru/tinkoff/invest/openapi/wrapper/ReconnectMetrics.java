@@ -0,0 +1,83 @@
+package ru.tinkoff.invest.openapi.wrapper;
+
+import java.time.Duration;
+
+/**
+ * Показатели восстановления WebSocket-соединения.
+ */
+public final class ReconnectMetrics {
+
+    private final boolean connected;
+    private final long reconnectsCount;
+    private final long failedAttemptsCount;
+    private final Duration lastTimeToRecover;
+    private final Duration maxTimeToRecover;
+    private final Duration totalDowntime;
+
+    public ReconnectMetrics(final boolean connected,
+                            final long reconnectsCount,
+                            final long failedAttemptsCount,
+                            final Duration lastTimeToRecover,
+                            final Duration maxTimeToRecover,
+                            final Duration totalDowntime) {
+        this.connected = connected;
+        this.reconnectsCount = reconnectsCount;
+        this.failedAttemptsCount = failedAttemptsCount;
+        this.lastTimeToRecover = lastTimeToRecover;
+        this.maxTimeToRecover = maxTimeToRecover;
+        this.totalDowntime = totalDowntime;
+    }
+
+    /**
+     * Установлено ли соединение в данный момент.
+     */
+    public boolean isConnected() {
+        return connected;
+    }
+
+    /**
+     * Число восстановлений соединения.
+     */
+    public long getReconnectsCount() {
+        return reconnectsCount;
+    }
+
+    /**
+     * Число неудачных попыток восстановления.
+     */
+    public long getFailedAttemptsCount() {
+        return failedAttemptsCount;
+    }
+
+    /**
+     * Время последнего восстановления (нулевое, если восстановлений не было).
+     */
+    public Duration getLastTimeToRecover() {
+        return lastTimeToRecover;
+    }
+
+    /**
+     * Наибольшее время восстановления.
+     */
+    public Duration getMaxTimeToRecover() {
+        return maxTimeToRecover;
+    }
+
+    /**
+     * Суммарное время без соединения по завершённым восстановлениям.
+     */
+    public Duration getTotalDowntime() {
+        return totalDowntime;
+    }
+
+    @Override
+    public String toString() {
+        return "ReconnectMetrics(connected = " + connected +
+                ", reconnectsCount = " + reconnectsCount +
+                ", failedAttemptsCount = " + failedAttemptsCount +
+                ", lastTimeToRecover = " + lastTimeToRecover +
+                ", maxTimeToRecover = " + maxTimeToRecover +
+                ", totalDowntime = " + totalDowntime +
+                ")";
+    }
+}
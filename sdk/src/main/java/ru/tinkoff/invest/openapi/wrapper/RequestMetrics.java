@@ -0,0 +1,80 @@
+package ru.tinkoff.invest.openapi.wrapper;
+
+import java.time.Duration;
+
+/**
+ * Показатели очереди запросов одного класса приоритета ({@link RequestPriority}).
+ */
+public final class RequestMetrics {
+
+    private final RequestPriority priority;
+    private final long submittedCount;
+    private final int queuedCount;
+    private final int inFlightCount;
+    private final Duration averageQueueTime;
+    private final Duration maxQueueTime;
+
+    public RequestMetrics(final RequestPriority priority,
+                          final long submittedCount,
+                          final int queuedCount,
+                          final int inFlightCount,
+                          final Duration averageQueueTime,
+                          final Duration maxQueueTime) {
+        this.priority = priority;
+        this.submittedCount = submittedCount;
+        this.queuedCount = queuedCount;
+        this.inFlightCount = inFlightCount;
+        this.averageQueueTime = averageQueueTime;
+        this.maxQueueTime = maxQueueTime;
+    }
+
+    public RequestPriority getPriority() {
+        return priority;
+    }
+
+    /**
+     * Число запросов, поставленных в очередь за всё время.
+     */
+    public long getSubmittedCount() {
+        return submittedCount;
+    }
+
+    /**
+     * Число запросов, ожидающих отправки.
+     */
+    public int getQueuedCount() {
+        return queuedCount;
+    }
+
+    /**
+     * Число отправленных запросов, ответ на которые ещё не получен.
+     */
+    public int getInFlightCount() {
+        return inFlightCount;
+    }
+
+    /**
+     * Среднее время ожидания в очереди по отправленным запросам.
+     */
+    public Duration getAverageQueueTime() {
+        return averageQueueTime;
+    }
+
+    /**
+     * Наибольшее время ожидания в очереди.
+     */
+    public Duration getMaxQueueTime() {
+        return maxQueueTime;
+    }
+
+    @Override
+    public String toString() {
+        return "RequestMetrics(priority = " + priority +
+                ", submittedCount = " + submittedCount +
+                ", queuedCount = " + queuedCount +
+                ", inFlightCount = " + inFlightCount +
+                ", averageQueueTime = " + averageQueueTime +
+                ", maxQueueTime = " + maxQueueTime +
+                ")";
+    }
+}
@@ -0,0 +1,24 @@
+package ru.tinkoff.invest.openapi.wrapper;
+
+/**
+ * Класс приоритета запроса к rest-составляющей OpenAPI. Когда число одновременных запросов исчерпано, из очереди
+ * первыми отправляются запросы более приоритетного класса (классы перечислены по убыванию приоритета).
+ */
+public enum RequestPriority {
+
+    /**
+     * Выставление и отмена заявок.
+     */
+    Orders,
+
+    /**
+     * Состояние счёта: портфель, список заявок, операции, настройка "песочницы".
+     */
+    Account,
+
+    /**
+     * Рыночные данные: инструменты, стаканы, свечи.
+     */
+    MarketData
+
+}
@@ -0,0 +1,146 @@
+package ru.tinkoff.invest.openapi.wrapper;
+
+import ru.tinkoff.invest.openapi.data.CandleInterval;
+import ru.tinkoff.invest.openapi.data.StreamingEvent;
+import ru.tinkoff.invest.openapi.data.StreamingRequest;
+
+import java.util.Objects;
+
+/**
+ * Ключ потока событий streaming: тип события, идентификатор инструмента и, в зависимости от типа, интервал свечей
+ * или глубина стакана. По ключам события доставляются только заинтересованным подписчикам
+ * (см. {@link Context#subscribe(java.util.concurrent.Flow.Subscriber, java.util.Set)}).
+ */
+public final class StreamingKey {
+
+    /**
+     * Тип события.
+     */
+    public enum Type {
+        Candle,
+        Orderbook,
+        InstrumentInfo
+    }
+
+    private final Type type;
+    private final String figi;
+    private final CandleInterval interval;
+    private final int depth;
+
+    private StreamingKey(final Type type, final String figi, final CandleInterval interval, final int depth) {
+        this.type = type;
+        this.figi = figi;
+        this.interval = interval;
+        this.depth = depth;
+    }
+
+    public static StreamingKey candle(final String figi, final CandleInterval interval) {
+        return new StreamingKey(Type.Candle, figi, interval, 0);
+    }
+
+    public static StreamingKey orderbook(final String figi, final int depth) {
+        return new StreamingKey(Type.Orderbook, figi, null, depth);
+    }
+
+    public static StreamingKey instrumentInfo(final String figi) {
+        return new StreamingKey(Type.InstrumentInfo, figi, null, 0);
+    }
+
+    /**
+     * Ключ, к которому относится событие.
+     *
+     * @param event Событие.
+     * @return Ключ или null, если событие не относится к конкретному инструменту (например, ошибка).
+     */
+    public static StreamingKey of(final StreamingEvent event) {
+        if (event instanceof StreamingEvent.Candle) {
+            final var candle = (StreamingEvent.Candle) event;
+            return candle(candle.getFigi(), candle.getInterval());
+        } else if (event instanceof StreamingEvent.Orderbook) {
+            final var orderbook = (StreamingEvent.Orderbook) event;
+            return orderbook(orderbook.getFigi(), orderbook.getDepth());
+        } else if (event instanceof StreamingEvent.InstrumentInfo) {
+            return instrumentInfo(((StreamingEvent.InstrumentInfo) event).getFigi());
+        }
+        return null;
+    }
+
+    /**
+     * Ключ потока, который затрагивает запрос.
+     *
+     * @param request Запрос на подписку или отписку.
+     * @return Ключ.
+     */
+    public static StreamingKey of(final StreamingRequest request) {
+        if (request instanceof StreamingRequest.CandleSubscribeRequest) {
+            final var subscribe = (StreamingRequest.CandleSubscribeRequest) request;
+            return candle(subscribe.getFigi(), subscribe.getInterval());
+        } else if (request instanceof StreamingRequest.CandleUnsubscribeRequest) {
+            final var unsubscribe = (StreamingRequest.CandleUnsubscribeRequest) request;
+            return candle(unsubscribe.getFigi(), unsubscribe.getInterval());
+        } else if (request instanceof StreamingRequest.OrderbookSubscribeRequest) {
+            final var subscribe = (StreamingRequest.OrderbookSubscribeRequest) request;
+            return orderbook(subscribe.getFigi(), subscribe.getDepth());
+        } else if (request instanceof StreamingRequest.OrderbookUnsubscribeRequest) {
+            final var unsubscribe = (StreamingRequest.OrderbookUnsubscribeRequest) request;
+            return orderbook(unsubscribe.getFigi(), unsubscribe.getDepth());
+        } else if (request instanceof StreamingRequest.InstrumentInfoSubscribeRequest) {
+            return instrumentInfo(((StreamingRequest.InstrumentInfoSubscribeRequest) request).getFigi());
+        } else if (request instanceof StreamingRequest.InstrumentInfoUnsubscribeRequest) {
+            return instrumentInfo(((StreamingRequest.InstrumentInfoUnsubscribeRequest) request).getFigi());
+        }
+        throw new IllegalArgumentException("Неизвестный запрос " + request);
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    public String getFigi() {
+        return figi;
+    }
+
+    /**
+     * Интервал свечей (только для {@link Type#Candle}).
+     */
+    public CandleInterval getInterval() {
+        return interval;
+    }
+
+    /**
+     * Глубина стакана (только для {@link Type#Orderbook}).
+     */
+    public int getDepth() {
+        return depth;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof StreamingKey)) return false;
+
+        final var other = (StreamingKey) o;
+        return type == other.type && depth == other.depth && interval == other.interval &&
+                Objects.equals(figi, other.figi);
+    }
+
+    @Override
+    public int hashCode() {
+        var result = type.hashCode();
+        result = 31 * result + Objects.hashCode(figi);
+        result = 31 * result + Objects.hashCode(interval);
+        return 31 * result + depth;
+    }
+
+    @Override
+    public String toString() {
+        switch (type) {
+            case Candle:
+                return "candle(" + figi + ", " + interval + ")";
+            case Orderbook:
+                return "orderbook(" + figi + ", " + depth + ")";
+            default:
+                return "instrument_info(" + figi + ")";
+        }
+    }
+}
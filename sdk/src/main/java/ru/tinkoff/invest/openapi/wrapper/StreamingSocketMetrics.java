@@ -0,0 +1,60 @@
+package ru.tinkoff.invest.openapi.wrapper;
+
+/**
+ * Показатели одного соединения из пула streaming-соединений.
+ */
+public final class StreamingSocketMetrics {
+
+    private final int socketIndex;
+    private final long messagesCount;
+    private final double messagesPerSecond;
+    private final ReconnectMetrics reconnectMetrics;
+
+    public StreamingSocketMetrics(final int socketIndex,
+                                  final long messagesCount,
+                                  final double messagesPerSecond,
+                                  final ReconnectMetrics reconnectMetrics) {
+        this.socketIndex = socketIndex;
+        this.messagesCount = messagesCount;
+        this.messagesPerSecond = messagesPerSecond;
+        this.reconnectMetrics = reconnectMetrics;
+    }
+
+    /**
+     * Номер соединения в пуле.
+     */
+    public int getSocketIndex() {
+        return socketIndex;
+    }
+
+    /**
+     * Число сообщений, полученных через соединение (включая все его восстановления).
+     */
+    public long getMessagesCount() {
+        return messagesCount;
+    }
+
+    /**
+     * Среднее число сообщений в секунду с предыдущего получения показателей (при первом получении - с момента
+     * подключения).
+     */
+    public double getMessagesPerSecond() {
+        return messagesPerSecond;
+    }
+
+    /**
+     * Показатели восстановления соединения.
+     */
+    public ReconnectMetrics getReconnectMetrics() {
+        return reconnectMetrics;
+    }
+
+    @Override
+    public String toString() {
+        return "StreamingSocketMetrics(socketIndex = " + socketIndex +
+                ", messagesCount = " + messagesCount +
+                ", messagesPerSecond = " + messagesPerSecond +
+                ", reconnectMetrics = " + reconnectMetrics +
+                ")";
+    }
+}
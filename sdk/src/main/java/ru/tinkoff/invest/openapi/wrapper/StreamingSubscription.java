@@ -0,0 +1,30 @@
+package ru.tinkoff.invest.openapi.wrapper;
+
+import java.util.concurrent.Flow;
+
+/**
+ * Подписка на события streaming с ограниченным буфером.
+ */
+public interface StreamingSubscription extends Flow.Subscription {
+
+    /**
+     * Поведение при заполнении буфера.
+     */
+    BackpressurePolicy getPolicy();
+
+    /**
+     * Размер буфера.
+     */
+    int getCapacity();
+
+    /**
+     * Число событий в буфере, ещё не доставленных подписчику.
+     */
+    int getBufferedCount();
+
+    /**
+     * Число событий, выброшенных или заменённых более свежими из-за заполнения буфера.
+     */
+    long getDroppedCount();
+
+}
@@ -0,0 +1,206 @@
+package ru.tinkoff.invest.openapi.wrapper;
+
+import ru.tinkoff.invest.openapi.data.StreamingRequest;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Контекст, который ведёт учёт подписок streaming и отправляет на сервер только действительно нужные запросы.
+ *
+ * Подписки считаются по ключам потоков ({@link StreamingKey}): запрос на подписку уходит на сервер, только когда
+ * на поток подписывается первый потребитель, а запрос на отписку - когда отписывается последний. Так несколько
+ * стратегий по одному инструменту не дублируют подписку и не отписывают друг друга.
+ *
+ * Запросы копятся в течение короткого окна и отправляются пачкой, друг за другом; подписка и отписка на один
+ * поток внутри окна взаимно уничтожаются. Если запрос не удалось отправить, поток снова считается в прежнем
+ * состоянии, и подписка уходит на сервер повторно со следующим подписчиком. Активные подписки после восстановления соединения переотправляет исходный
+ * контекст: он сам ведёт учёт потоков, оформленных на сервере.
+ */
+public class SubscriptionManagingContext extends ContextDecorator {
+
+    private static final Duration DEFAULT_SEND_WINDOW = Duration.ofMillis(10);
+
+    private final Duration sendWindow;
+    private final Object lock;
+    // защищены lock
+    private final Map<StreamingKey, Integer> referenceCounts;
+    private final Set<StreamingKey> activeOnServer;
+    private final Map<StreamingKey, StreamingRequest> pending;
+    // отметка последнего отправляемого запроса по каждому потоку: откатывается только он
+    private final Map<StreamingKey, Object> sending;
+    private CompletableFuture<Void> pendingSent;
+    private CompletableFuture<Void> lastSent;
+
+    /**
+     * @param context Исходный контекст.
+     */
+    public SubscriptionManagingContext(final Context context) {
+        this(context, DEFAULT_SEND_WINDOW);
+    }
+
+    /**
+     * @param context Исходный контекст.
+     * @param sendWindow Окно, в течение которого запросы копятся перед отправкой (нулевое - отправка сразу).
+     */
+    public SubscriptionManagingContext(final Context context, final Duration sendWindow) {
+        super(context);
+        this.sendWindow = sendWindow;
+        this.lock = new Object();
+        this.referenceCounts = new HashMap<>();
+        this.activeOnServer = new HashSet<>();
+        this.pending = new LinkedHashMap<>();
+        this.sending = new HashMap<>();
+        this.lastSent = CompletableFuture.completedFuture(null);
+    }
+
+    /**
+     * Отправка запроса с учётом уже оформленных подписок.
+     *
+     * @param request Запрос.
+     * @return Завершается, когда отправлены все запросы окна, в которое попал этот (или сразу, если отправлять
+     * ничего не понадобилось).
+     */
+    @Override
+    public CompletableFuture<Void> sendStreamingRequest(final StreamingRequest request) {
+        final var key = StreamingKey.of(request);
+        final CompletableFuture<Void> result;
+        final boolean schedule;
+
+        synchronized (lock) {
+            final var count = referenceCounts.getOrDefault(key, 0);
+            if (isSubscribe(request)) {
+                referenceCounts.put(key, count + 1);
+                // подписка уже оформлена или ждёт отправки (если прежняя отправка не удалась, она повторяется)
+                if (count > 0 && (activeOnServer.contains(key) || pending.containsKey(key))) {
+                    return CompletableFuture.completedFuture(null);
+                }
+                change(key, request, true);
+            } else {
+                if (count == 0) return CompletableFuture.completedFuture(null);
+                if (count > 1) {
+                    referenceCounts.put(key, count - 1);
+                    return CompletableFuture.completedFuture(null);
+                }
+                referenceCounts.remove(key);
+                change(key, request, false);
+            }
+
+            if (pending.isEmpty()) return CompletableFuture.completedFuture(null);
+            schedule = pendingSent == null;
+            if (schedule) {
+                pendingSent = new CompletableFuture<>();
+            }
+            result = pendingSent.copy();
+        }
+
+        if (schedule) {
+            scheduleFlush();
+        }
+        return result;
+    }
+
+    /**
+     * Активные подписки с числом потребителей каждой.
+     */
+    public Map<StreamingKey, Integer> getActiveSubscriptions() {
+        synchronized (lock) {
+            return Map.copyOf(referenceCounts);
+        }
+    }
+
+    /**
+     * Учёт изменения потока в ожидающих отправки запросах. Вызывается под lock.
+     */
+    private void change(final StreamingKey key, final StreamingRequest request, final boolean subscribe) {
+        if (activeOnServer.contains(key) == subscribe) {
+            // противоположный запрос ещё не отправлен - оба не нужны
+            pending.remove(key);
+        } else {
+            pending.put(key, request);
+        }
+    }
+
+    private void scheduleFlush() {
+        if (sendWindow.isZero()) {
+            flush();
+        } else {
+            CompletableFuture.delayedExecutor(sendWindow.toNanos(), TimeUnit.NANOSECONDS).execute(this::flush);
+        }
+    }
+
+    private CompletableFuture<Void> flush() {
+        final CompletableFuture<Void> sent;
+        final CompletableFuture<Void> all;
+        synchronized (lock) {
+            // WebSocket не допускает одновременных отправок, поэтому запросы уходят друг за другом, в том числе
+            // после запросов предыдущей пачки; ошибка одного запроса не мешает отправке следующих
+            var chain = lastSent.exceptionally(ex -> null);
+            final var results = new ArrayList<CompletableFuture<Void>>(pending.size());
+            for (final var entry : pending.entrySet()) {
+                final var key = entry.getKey();
+                final var request = entry.getValue();
+                if (isSubscribe(request)) {
+                    activeOnServer.add(key);
+                } else {
+                    activeOnServer.remove(key);
+                }
+
+                final var mark = new Object();
+                sending.put(key, mark);
+                final var result = chain.thenCompose(ignored -> super.sendStreamingRequest(request))
+                        .whenComplete((ignored, ex) -> onSent(key, request, mark, ex));
+                results.add(result);
+                chain = result.exceptionally(ex -> null);
+            }
+            pending.clear();
+            sent = pendingSent;
+            pendingSent = null;
+
+            all = CompletableFuture.allOf(results.toArray(new CompletableFuture<?>[0]));
+            lastSent = chain;
+        }
+
+        if (sent != null) {
+            all.whenComplete((ignored, ex) -> {
+                if (ex != null) {
+                    sent.completeExceptionally(ex);
+                } else {
+                    sent.complete(null);
+                }
+            });
+        }
+        return all;
+    }
+
+    /**
+     * Завершение отправки запроса. Если отправить не удалось и более поздних запросов по потоку не было, поток
+     * возвращается в прежнее состояние на сервере.
+     */
+    private void onSent(final StreamingKey key, final StreamingRequest request, final Object mark, final Throwable ex) {
+        synchronized (lock) {
+            if (sending.get(key) != mark) return;
+            sending.remove(key);
+            if (ex == null) return;
+
+            if (isSubscribe(request)) {
+                activeOnServer.remove(key);
+            } else {
+                activeOnServer.add(key);
+            }
+        }
+    }
+
+    private static boolean isSubscribe(final StreamingRequest request) {
+        return request instanceof StreamingRequest.CandleSubscribeRequest ||
+                request instanceof StreamingRequest.OrderbookSubscribeRequest ||
+                request instanceof StreamingRequest.InstrumentInfoSubscribeRequest;
+    }
+}
@@ -2,7 +2,6 @@ package ru.tinkoff.invest.openapi.wrapper;
 
 import java.net.http.WebSocket;
 import java.util.concurrent.Flow;
-import java.util.function.Consumer;
 
 /**
  * Обратчик сообщений принимаемых WebSocket-клиентом с возможностью задания отдельного потребителя.
@@ -12,22 +11,25 @@ public interface WebSocketListener extends WebSocket.Listener {
     /**
      * Подписка на событие получения очередного сообщения.
      *
+     * Сообщение может быть буфером, который переиспользуется после возврата из
+     * {@link Flow.Subscriber#onNext}, поэтому сохранять его следует через {@link CharSequence#toString()}.
+     *
      * @param subscriber Подписчик.
      */
-    void subscribeOnMessage(Flow.Subscriber<String> subscriber);
+    void subscribeOnMessage(Flow.Subscriber<CharSequence> subscriber);
 
     /**
      * Подписывание на событие закрытия WebSocket-соединения.
      *
-     * @param subscriber Подписчик.
+     * @param subscriber Подписчик, получающий закрывшееся соединение.
      */
-    void subscribeOnClose(Flow.Subscriber<Void> subscriber);
+    void subscribeOnClose(Flow.Subscriber<WebSocket> subscriber);
 
     /**
      * Подписывание на событие ошибки в работе WebSocket-соединения.
      *
-     * @param subscriber Подписчик.
+     * @param subscriber Подписчик, получающий соединение, в котором произошла ошибка.
      */
-    void subscribeOnError(Flow.Subscriber<Void> subscriber);
+    void subscribeOnError(Flow.Subscriber<WebSocket> subscriber);
 
 }
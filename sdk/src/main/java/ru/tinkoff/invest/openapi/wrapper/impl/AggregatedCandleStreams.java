@@ -0,0 +1,112 @@
+package ru.tinkoff.invest.openapi.wrapper.impl;
+
+import ru.tinkoff.invest.openapi.data.CandleInterval;
+import ru.tinkoff.invest.openapi.data.StreamingEvent;
+import ru.tinkoff.invest.openapi.data.StreamingRequest;
+import ru.tinkoff.invest.openapi.market.CandleAggregator;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+
+/**
+ * Подписки на свечи интервалов, которых нет в streaming (2-х и 4-х часовые).
+ *
+ * Вместо них на сервере оформляется подписка на часовые свечи, из которых собираются нужные. Часовые свечи,
+ * на которые не было явной подписки, подписчикам не передаются.
+ */
+final class AggregatedCandleStreams {
+
+    private static final CandleInterval SOURCE_INTERVAL = CandleInterval.HOUR;
+
+    private final Map<String, Map<CandleInterval, CandleAggregator>> aggregators;
+    private final Set<String> explicitSourceSubscriptions;
+
+    AggregatedCandleStreams() {
+        this.aggregators = new ConcurrentHashMap<>();
+        this.explicitSourceSubscriptions = ConcurrentHashMap.newKeySet();
+    }
+
+    /**
+     * Собираются ли свечи данного интервала на стороне клиента.
+     */
+    static boolean isAggregated(CandleInterval interval) {
+        return interval == CandleInterval.TWO_HOUR || interval == CandleInterval.FOUR_HOUR;
+    }
+
+    /**
+     * Интервал свечей, из которых собираются недостающие.
+     */
+    static CandleInterval sourceInterval() {
+        return SOURCE_INTERVAL;
+    }
+
+    /**
+     * Замена запроса к streaming на тот, что действительно нужно отправить на сервер.
+     *
+     * @param request Исходный запрос.
+     * @return Запрос для отправки или null, если отправлять ничего не надо.
+     */
+    synchronized StreamingRequest translate(StreamingRequest request) {
+        if (request instanceof StreamingRequest.CandleSubscribeRequest) {
+            final var subscribe = (StreamingRequest.CandleSubscribeRequest) request;
+            final var figi = subscribe.getFigi();
+            if (isAggregated(subscribe.getInterval())) {
+                final var sourceActive = isSourceActive(figi);
+                aggregators.computeIfAbsent(figi, f -> new ConcurrentHashMap<>())
+                        .putIfAbsent(subscribe.getInterval(),
+                                new CandleAggregator(SOURCE_INTERVAL, subscribe.getInterval()));
+                return sourceActive ? null : StreamingRequest.subscribeCandle(figi, SOURCE_INTERVAL);
+            } else if (subscribe.getInterval() == SOURCE_INTERVAL) {
+                explicitSourceSubscriptions.add(figi);
+            }
+        } else if (request instanceof StreamingRequest.CandleUnsubscribeRequest) {
+            final var unsubscribe = (StreamingRequest.CandleUnsubscribeRequest) request;
+            final var figi = unsubscribe.getFigi();
+            if (isAggregated(unsubscribe.getInterval())) {
+                final var forFigi = aggregators.get(figi);
+                if (forFigi == null || forFigi.remove(unsubscribe.getInterval()) == null) return null;
+                if (forFigi.isEmpty()) {
+                    aggregators.remove(figi);
+                }
+                return isSourceActive(figi) ? null : StreamingRequest.unsubscribeCandle(figi, SOURCE_INTERVAL);
+            } else if (unsubscribe.getInterval() == SOURCE_INTERVAL) {
+                explicitSourceSubscriptions.remove(figi);
+                if (aggregators.containsKey(figi)) return null;
+            }
+        }
+
+        return request;
+    }
+
+    /**
+     * Передача события подписчикам с попутной сборкой недостающих интервалов.
+     *
+     * @param event Событие из streaming.
+     * @param sink Получатель событий.
+     */
+    void dispatch(StreamingEvent event, Consumer<StreamingEvent> sink) {
+        if (event instanceof StreamingEvent.Candle) {
+            final var candle = (StreamingEvent.Candle) event;
+            if (candle.getInterval() == SOURCE_INTERVAL) {
+                final var forFigi = aggregators.get(candle.getFigi());
+                if (forFigi != null) {
+                    for (final var aggregator : forFigi.values()) {
+                        final var rolledUp = aggregator.onCandle(candle);
+                        if (rolledUp != null) {
+                            sink.accept(rolledUp);
+                        }
+                    }
+                    if (!explicitSourceSubscriptions.contains(candle.getFigi())) return;
+                }
+            }
+        }
+
+        sink.accept(event);
+    }
+
+    private boolean isSourceActive(String figi) {
+        return explicitSourceSubscriptions.contains(figi) || aggregators.containsKey(figi);
+    }
+}
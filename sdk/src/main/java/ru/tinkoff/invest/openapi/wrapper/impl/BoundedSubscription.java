@@ -0,0 +1,308 @@
+package ru.tinkoff.invest.openapi.wrapper.impl;
+
+import ru.tinkoff.invest.openapi.data.StreamingEvent;
+import ru.tinkoff.invest.openapi.wrapper.BackpressurePolicy;
+import ru.tinkoff.invest.openapi.wrapper.StreamingKey;
+import ru.tinkoff.invest.openapi.wrapper.StreamingSubscription;
+
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * Подписка одного подписчика с ограниченным буфером и заданным поведением при его заполнении.
+ *
+ * События доставляются в потоках исполнителя строго последовательно и только в пределах запрошенного подписчиком
+ * количества. После отмены подписки подписчик больше ничего не получает, даже если события уже были в буфере.
+ */
+final class BoundedSubscription implements StreamingSubscription {
+
+    // общее место в буфере ConflateLatest для событий без ключа потока (ошибок)
+    private static final Object UNKEYED_SLOT = new Object();
+
+    private final Flow.Subscriber<? super StreamingEvent> subscriber;
+    private final BackpressurePolicy policy;
+    private final int capacity;
+    private final Executor executor;
+    private final Consumer<BoundedSubscription> onCancel;
+
+    private final Object lock;
+    private final ArrayDeque<StreamingEvent> queue;
+    private final LinkedHashMap<Object, StreamingEvent> latest;
+    private final AtomicInteger wip;
+
+    // защищены lock
+    private long demand;
+    private long dropped;
+    private boolean cancelled;
+    private boolean completed;
+
+    // используются только при доставке
+    private boolean started;
+    private boolean completionDelivered;
+
+    /**
+     * @param subscriber Подписчик.
+     * @param policy Поведение при заполнении буфера.
+     * @param capacity Размер буфера.
+     * @param executor Исполнитель, в потоках которого вызывается подписчик.
+     * @param onCancel Действие при отмене подписки подписчиком.
+     */
+    BoundedSubscription(Flow.Subscriber<? super StreamingEvent> subscriber,
+                        BackpressurePolicy policy,
+                        int capacity,
+                        Executor executor,
+                        Consumer<BoundedSubscription> onCancel) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Размер буфера должен быть положительным.");
+        }
+
+        this.subscriber = subscriber;
+        this.policy = policy;
+        this.capacity = capacity;
+        this.executor = executor;
+        this.onCancel = onCancel;
+        this.lock = new Object();
+        this.queue = policy == BackpressurePolicy.ConflateLatest ? null : new ArrayDeque<>();
+        this.latest = policy == BackpressurePolicy.ConflateLatest ? new LinkedHashMap<>() : null;
+        this.wip = new AtomicInteger();
+    }
+
+    /**
+     * Передача подписчику {@link Flow.Subscriber#onSubscribe}.
+     */
+    void start() {
+        schedule();
+    }
+
+    /**
+     * Постановка события в буфер.
+     *
+     * @param event Событие.
+     */
+    void offer(StreamingEvent event) {
+        synchronized (lock) {
+            if (cancelled || completed) return;
+
+            switch (policy) {
+                case Block:
+                    if (!awaitCapacity()) return;
+                    queue.addLast(event);
+                    break;
+                case DropOldest:
+                    if (queue.size() >= capacity) {
+                        queue.pollFirst();
+                        dropped++;
+                    }
+                    queue.addLast(event);
+                    break;
+                case ConflateLatest:
+                    final var key = StreamingKey.of(event);
+                    final Object slot = key == null ? UNKEYED_SLOT : key;
+                    if (latest.containsKey(slot)) {
+                        countConflated(latest.get(slot));
+                    } else if (latest.size() >= capacity) {
+                        final Iterator<StreamingEvent> eldest = latest.values().iterator();
+                        countConflated(eldest.next());
+                        eldest.remove();
+                    }
+                    latest.put(slot, event);
+                    break;
+            }
+        }
+
+        schedule();
+    }
+
+    /**
+     * Завершение подписки: после доставки уже буферизованных событий подписчик получает
+     * {@link Flow.Subscriber#onComplete}.
+     */
+    void complete() {
+        synchronized (lock) {
+            completed = true;
+            lock.notifyAll();
+        }
+
+        schedule();
+    }
+
+    @Override
+    public void request(long n) {
+        if (n <= 0) {
+            cancel();
+            executor.execute(() -> subscriber.onError(
+                    new IllegalArgumentException("Запрошено неположительное число событий: " + n)));
+            return;
+        }
+
+        synchronized (lock) {
+            demand = demand + n < 0 ? Long.MAX_VALUE : demand + n;
+        }
+
+        schedule();
+    }
+
+    @Override
+    public void cancel() {
+        synchronized (lock) {
+            if (cancelled) return;
+            cancelled = true;
+            clear();
+            lock.notifyAll();
+        }
+
+        onCancel.accept(this);
+    }
+
+    @Override
+    public BackpressurePolicy getPolicy() {
+        return policy;
+    }
+
+    @Override
+    public int getCapacity() {
+        return capacity;
+    }
+
+    @Override
+    public int getBufferedCount() {
+        synchronized (lock) {
+            return size();
+        }
+    }
+
+    @Override
+    public long getDroppedCount() {
+        synchronized (lock) {
+            return dropped;
+        }
+    }
+
+    /**
+     * Ожидание места в буфере. Вызывается под lock. Если поток принадлежит {@link ForkJoinPool}, на время ожидания
+     * пул получает компенсирующий поток.
+     *
+     * @return false, если подписка отменена или завершена, либо ожидание прервано (событие тогда считается
+     * выброшенным).
+     */
+    private boolean awaitCapacity() {
+        if (size() < capacity) return true;
+
+        try {
+            ForkJoinPool.managedBlock(new ForkJoinPool.ManagedBlocker() {
+                @Override
+                public boolean block() throws InterruptedException {
+                    while (!isReleasable()) {
+                        lock.wait();
+                    }
+                    return true;
+                }
+
+                @Override
+                public boolean isReleasable() {
+                    return cancelled || completed || size() < capacity;
+                }
+            });
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            dropped++;
+            return false;
+        }
+
+        return !cancelled && !completed;
+    }
+
+    private void schedule() {
+        if (wip.getAndIncrement() == 0) {
+            executor.execute(this::drainLoop);
+        }
+    }
+
+    private void drainLoop() {
+        var missed = 1;
+        do {
+            drain();
+            missed = wip.addAndGet(-missed);
+        } while (missed != 0);
+    }
+
+    private void drain() {
+        if (!started) {
+            started = true;
+            subscriber.onSubscribe(this);
+        }
+
+        while (true) {
+            final StreamingEvent next;
+            synchronized (lock) {
+                if (cancelled || completionDelivered) return;
+
+                if (size() == 0) {
+                    if (!completed) return;
+                    completionDelivered = true;
+                    next = null;
+                } else {
+                    if (demand == 0) return;
+                    next = poll();
+                    if (demand != Long.MAX_VALUE) {
+                        demand--;
+                    }
+                    lock.notifyAll();
+                }
+            }
+
+            if (next == null) {
+                subscriber.onComplete();
+                return;
+            }
+
+            try {
+                subscriber.onNext(next);
+            } catch (Throwable ex) {
+                cancel();
+                subscriber.onError(ex);
+                return;
+            }
+        }
+    }
+
+    /**
+     * Учёт события, вытесненного из буфера ConflateLatest. Вытесненные ошибки не учитываются: число выброшенных
+     * событий относится только к потокам.
+     */
+    private void countConflated(StreamingEvent event) {
+        if (StreamingKey.of(event) != null) {
+            dropped++;
+        }
+    }
+
+    private int size() {
+        return queue != null ? queue.size() : latest.size();
+    }
+
+    private StreamingEvent poll() {
+        if (queue != null) {
+            return queue.pollFirst();
+        }
+
+        final Iterator<Map.Entry<Object, StreamingEvent>> eldest = latest.entrySet().iterator();
+        final var result = eldest.next().getValue();
+        eldest.remove();
+        return result;
+    }
+
+    private void clear() {
+        if (queue != null) {
+            queue.clear();
+        } else {
+            latest.clear();
+        }
+    }
+}
@@ -8,11 +8,8 @@ import ru.tinkoff.invest.openapi.wrapper.SandboxContext;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
-import java.net.URI;
 import java.net.http.HttpClient;
-import java.net.http.WebSocket;
 import java.net.http.WebSocketHandshakeException;
-import java.time.Duration;
 import java.util.Properties;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.CompletionException;
@@ -28,13 +25,28 @@ public class ConnectionFactory {
     private ConnectionFactory() {}
 
     /**
-     * Создание обычного подключения к OpenAPI.
+     * Создание обычного подключения к OpenAPI с одним streaming-соединением.
      *
      * @param token Авторизационный токен.
      * @return Подключение с обычным контекстом.
      */
     public static CompletableFuture<Connection<Context>> connect(String token, Logger logger) {
+        return connect(token, 1, logger);
+    }
+
+    /**
+     * Создание обычного подключения к OpenAPI.
+     *
+     * @param token Авторизационный токен.
+     * @param streamingConnections Число параллельных streaming-соединений, между которыми распределяются
+     *                             подписки по инструментам.
+     * @return Подключение с обычным контекстом.
+     */
+    public static CompletableFuture<Connection<Context>> connect(String token,
+                                                                 int streamingConnections,
+                                                                 Logger logger) {
         final var prop = extractConfig(logger);
+        OpenApiCodec.getInstance().warmUp();
 
         final var host = prop.getProperty("openapi.host");
         final var streamingHost = prop.getProperty("openapi.streaming");
@@ -43,27 +55,40 @@ public class ConnectionFactory {
                 .version(HttpClient.Version.HTTP_2)  // this is the default
                 .build();
         final var authToken = "Bearer " + token;
-        final var builder = httpClient.newWebSocketBuilder();
-        builder.header("Authorization", authToken);
-        builder.connectTimeout(Duration.ofSeconds(10));
-        final var listener = new WebSocketListenerImpl();
 
         return createAllStuff(
-                builder,
+                httpClient,
                 streamingHost,
-                listener,
-                webSocket -> new ConnectionImpl(host, authToken, httpClient, webSocket, listener, logger)
+                authToken,
+                streamingConnections,
+                logger,
+                streamingSockets -> new ConnectionImpl(host, authToken, httpClient, streamingSockets, logger)
         );
     }
 
     /**
-     * Создание подключения к OpenAPI в режиме "песочницы".
+     * Создание подключения к OpenAPI в режиме "песочницы" с одним streaming-соединением.
      *
      * @param token Авторизационный токен.
      * @return Подключение с контекстом "песочницы".
      */
     public static CompletableFuture<Connection<SandboxContext>> connectSandbox(String token, Logger logger) {
+        return connectSandbox(token, 1, logger);
+    }
+
+    /**
+     * Создание подключения к OpenAPI в режиме "песочницы".
+     *
+     * @param token Авторизационный токен.
+     * @param streamingConnections Число параллельных streaming-соединений, между которыми распределяются
+     *                             подписки по инструментам.
+     * @return Подключение с контекстом "песочницы".
+     */
+    public static CompletableFuture<Connection<SandboxContext>> connectSandbox(String token,
+                                                                               int streamingConnections,
+                                                                               Logger logger) {
         final var prop = extractConfig(logger);
+        OpenApiCodec.getInstance().warmUp();
 
         final var host = prop.getProperty("openapi.host-sandbox");
         final var streamingHost = prop.getProperty("openapi.streaming");
@@ -72,24 +97,24 @@ public class ConnectionFactory {
                 .version(HttpClient.Version.HTTP_2)  // this is the default
                 .build();
         final var authToken = "Bearer " + token;
-        final var builder = httpClient.newWebSocketBuilder();
-        builder.header("Authorization", authToken);
-        builder.connectTimeout(Duration.ofSeconds(10));
-        final var listener = new WebSocketListenerImpl();
 
         return createAllStuff(
-                builder,
+                httpClient,
                 streamingHost,
-                listener,
-                webSocket -> new SandboxConnectionImpl(host, authToken, httpClient, webSocket, listener, logger)
+                authToken,
+                streamingConnections,
+                logger,
+                streamingSockets -> new SandboxConnectionImpl(host, authToken, httpClient, streamingSockets, logger)
         );
     }
 
-    private static <T> CompletableFuture<T> createAllStuff(WebSocket.Builder builder,
+    private static <T> CompletableFuture<T> createAllStuff(HttpClient httpClient,
                                                         String streamingHost,
-                                                        WebSocket.Listener listener,
-                                                        Function<WebSocket, T> connectionCreator) {
-        return builder.buildAsync(URI.create(streamingHost), listener)
+                                                        String authToken,
+                                                        int streamingConnections,
+                                                        Logger logger,
+                                                        Function<StreamingSocketPool, T> connectionCreator) {
+        return StreamingSocketPool.open(httpClient, streamingHost, authToken, streamingConnections, logger)
                 .thenApply(connectionCreator)
                 .exceptionally(th -> {
                     if (th.getCause() instanceof WebSocketHandshakeException) {
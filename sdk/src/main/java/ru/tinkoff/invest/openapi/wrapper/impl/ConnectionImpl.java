@@ -1,17 +1,25 @@
 package ru.tinkoff.invest.openapi.wrapper.impl;
 
+import ru.tinkoff.invest.openapi.data.StreamingRequest;
 import ru.tinkoff.invest.openapi.wrapper.Connection;
+import ru.tinkoff.invest.openapi.wrapper.EndpointGroup;
 import ru.tinkoff.invest.openapi.wrapper.Context;
+import ru.tinkoff.invest.openapi.wrapper.RateLimitMetrics;
+import ru.tinkoff.invest.openapi.wrapper.ReconnectEvent;
+import ru.tinkoff.invest.openapi.wrapper.ReconnectMetrics;
+import ru.tinkoff.invest.openapi.wrapper.RequestMetrics;
+import ru.tinkoff.invest.openapi.wrapper.RequestPriority;
+import ru.tinkoff.invest.openapi.wrapper.StreamingSocketMetrics;
 import ru.tinkoff.invest.openapi.wrapper.WebSocketListener;
 
-import java.net.URI;
 import java.net.http.HttpClient;
 import java.net.http.WebSocket;
 import java.time.Duration;
+import java.util.List;
+import java.util.Map;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.Flow;
-import java.util.concurrent.TimeUnit;
-import java.util.logging.Level;
+import java.util.function.Function;
 import java.util.logging.Logger;
 
 class ConnectionImpl implements Connection<Context> {
@@ -19,35 +27,28 @@ class ConnectionImpl implements Connection<Context> {
     private final String host;
     private final String authToken;
     private final HttpClient httpClient;
-    private WebSocket webSocket;
-    private WebSocketListener listener;
+    private final StreamingSocketPool streamingSockets;
+    private final RequestScheduler requestScheduler;
+    private final RateLimiter rateLimiter;
     private final Logger logger;
-    /**
-     * Индикатор закрытия в "нормальном" режиме, не по инициативе сервера.
-     */
-    private boolean closedNormally;
 
     ConnectionImpl(String host,
                    String authToken,
                    HttpClient httpClient,
-                   WebSocket webSocket,
-                   WebSocketListener listener,
+                   StreamingSocketPool streamingSockets,
                    Logger logger) {
-        this.closedNormally = false;
         this.host = host;
         this.authToken = authToken;
         this.httpClient = httpClient;
-        this.webSocket = webSocket;
-        this.listener = listener;
+        this.streamingSockets = streamingSockets;
+        this.requestScheduler = new RequestScheduler();
+        this.rateLimiter = new RateLimiter();
         this.logger = logger;
-
-        this.listener.subscribeOnClose(new OnCloseSubscriber());
-        this.listener.subscribeOnError(new OnErrorSubscriber());
     }
 
     @Override
     public Context context() {
-        return new ContextImpl(this, logger);
+        return new ContextImpl(this, requestScheduler, rateLimiter, logger);
     }
 
     @Override
@@ -67,112 +68,101 @@ class ConnectionImpl implements Connection<Context> {
 
     @Override
     public WebSocket getWebSocket() {
-        return this.webSocket;
+        return streamingSockets.getWebSocket(0);
+    }
+
+    @Override
+    public WebSocket getWebSocket(String figi) {
+        return streamingSockets.getWebSocket(figi);
+    }
+
+    @Override
+    public int getStreamingSocketIndex(String figi) {
+        return streamingSockets.socketIndexOf(figi);
     }
 
     @Override
     public WebSocketListener getListener() {
-        return listener;
+        return streamingSockets.getListeners().get(0);
+    }
+
+    @Override
+    public List<WebSocketListener> getListeners() {
+        return streamingSockets.getListeners();
+    }
+
+    @Override
+    public CompletableFuture<Void> sendStreamingRequest(StreamingRequest request) {
+        return streamingSockets.send(request);
+    }
+
+    @Override
+    public void subscribeOnReconnect(Flow.Subscriber<ReconnectEvent> subscriber) {
+        streamingSockets.subscribe(subscriber);
+    }
+
+    @Override
+    public void addRecoveryAction(Function<ReconnectEvent, CompletableFuture<Void>> action) {
+        streamingSockets.addRecoveryAction(action);
+    }
+
+    @Override
+    public ReconnectMetrics getReconnectMetrics() {
+        return streamingSockets.getReconnectMetrics();
+    }
+
+    @Override
+    public void reconnect(int socketIndex) {
+        streamingSockets.reconnect(socketIndex, "Запрошено восстановление streaming-соединения " + socketIndex);
+    }
+
+    @Override
+    public Duration getStaleStreamTimeout() {
+        return streamingSockets.getStaleTimeout();
+    }
+
+    @Override
+    public void setStaleStreamTimeout(Duration timeout) {
+        streamingSockets.setStaleTimeout(timeout);
+    }
+
+    @Override
+    public List<StreamingSocketMetrics> getStreamingMetrics() {
+        return streamingSockets.getStreamingMetrics();
+    }
+
+    @Override
+    public int getMaxRequestsInFlight() {
+        return requestScheduler.getMaxInFlight();
+    }
+
+    @Override
+    public void setMaxRequestsInFlight(int maxRequestsInFlight) {
+        requestScheduler.setMaxInFlight(maxRequestsInFlight);
+    }
+
+    @Override
+    public Map<RequestPriority, RequestMetrics> getRequestMetrics() {
+        return requestScheduler.getMetrics();
+    }
+
+    @Override
+    public int getRateLimit(EndpointGroup group) {
+        return rateLimiter.getLimit(group);
+    }
+
+    @Override
+    public void setRateLimit(EndpointGroup group, int requestsPerMinute) {
+        rateLimiter.setLimit(group, requestsPerMinute);
+    }
+
+    @Override
+    public Map<EndpointGroup, RateLimitMetrics> getRateLimitMetrics() {
+        return rateLimiter.getMetrics();
     }
 
     @Override
     public void close() throws Exception {
-        closedNormally = true;
-        webSocket.sendClose(WebSocket.NORMAL_CLOSURE, "Session closed");
-    }
-
-    private class OnCloseSubscriber implements Flow.Subscriber<Void> {
-
-        private int tryCount = 0;
-
-        @Override
-        public void onSubscribe(Flow.Subscription subscription) {
-            subscription.request(Long.MAX_VALUE);
-        }
-
-        @Override
-        public void onNext(Void item) {
-            if (closedNormally) return;
-
-            tryCount = tryCount == 0 ? 1 : tryCount*2;
-            logger.log(
-                    Level.WARNING,
-                    "WebSocket-соединение закрыто по инициативе сервера. Попытка восстановать соединение #" +
-                            tryCount
-            );
-
-            CompletableFuture.delayedExecutor(tryCount, TimeUnit.SECONDS).execute(() -> {
-                final var builder = httpClient.newWebSocketBuilder();
-                builder.header("Authorization", authToken);
-                builder.connectTimeout(Duration.ofSeconds(10));
-                final var newListener = new WebSocketListenerImpl();
-                builder.buildAsync(URI.create(getHost()), newListener).thenApply(ws -> {
-                    webSocket = ws;
-                    listener = newListener;
-                    if (!ws.isInputClosed() && !ws.isOutputClosed()) tryCount = 0;
-                    return null;
-                });
-            });
-        }
-
-        @Override
-        public void onError(Throwable throwable) {
-            logger.log(
-                    Level.SEVERE,
-                    "Что-то пошло не так в подписке на стрим закрытия WebSocket-соединения.",
-                    throwable
-            );
-        }
-
-        @Override
-        public void onComplete() {
-        }
-    }
-
-    private class OnErrorSubscriber implements Flow.Subscriber<Void> {
-
-        private int tryCount = 0;
-
-        @Override
-        public void onSubscribe(Flow.Subscription subscription) {
-            subscription.request(Long.MAX_VALUE);
-        }
-
-        @Override
-        public void onNext(Void item) {
-            if (closedNormally) return;
-
-            tryCount = tryCount == 0 ? 1 : tryCount*2;
-            logger.log(
-                    Level.WARNING,
-                    "В WebSocket-соединении произошла ошибка. Попытка восстановать соединение #" + tryCount
-            );
-
-            CompletableFuture.delayedExecutor(tryCount, TimeUnit.SECONDS).execute(() -> {
-                final var builder = httpClient.newWebSocketBuilder();
-                builder.header("Authorization", authToken);
-                builder.connectTimeout(Duration.ofSeconds(10));
-                final var newListener = new WebSocketListenerImpl();
-                builder.buildAsync(URI.create(getHost()), newListener).thenApply(ws -> {
-                    webSocket = ws;
-                    listener = newListener;
-                    if (!ws.isInputClosed() && !ws.isOutputClosed()) tryCount = 0;
-                    return null;
-                });
-            });
-        }
-
-        @Override
-        public void onError(Throwable throwable) {
-            logger.log(
-                    Level.SEVERE,
-                    "Что-то пошло не так в подписке на стрим ошибки в WebSocket-соединении.",
-                    throwable
-            );
-        }
-
-        @Override
-        public void onComplete() {
-        }
+        streamingSockets.close();
     }
 }
@@ -1,31 +1,55 @@
 package ru.tinkoff.invest.openapi.wrapper.impl;
 
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
 import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
 import com.fasterxml.jackson.core.type.TypeReference;
-import com.fasterxml.jackson.databind.DeserializationFeature;
-import com.fasterxml.jackson.databind.MapperFeature;
-import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
 import ru.tinkoff.invest.openapi.exceptions.BadCandlesSearchingIntervalException;
+import ru.tinkoff.invest.openapi.market.CandleAggregator;
+import ru.tinkoff.invest.openapi.market.CandleIntervals;
+import ru.tinkoff.invest.openapi.market.CandleLoader;
+import ru.tinkoff.invest.openapi.wrapper.BackpressurePolicy;
 import ru.tinkoff.invest.openapi.wrapper.Connection;
 import ru.tinkoff.invest.openapi.wrapper.Context;
+import ru.tinkoff.invest.openapi.wrapper.ReconnectEvent;
+import ru.tinkoff.invest.openapi.wrapper.RequestPriority;
+import ru.tinkoff.invest.openapi.wrapper.StreamingKey;
+import ru.tinkoff.invest.openapi.wrapper.StreamingSubscription;
 import ru.tinkoff.invest.openapi.data.*;
 import ru.tinkoff.invest.openapi.exceptions.OpenApiException;
 
 import java.io.IOException;
+import java.io.InputStream;
 import java.math.BigDecimal;
 import java.net.URI;
 import java.net.URLEncoder;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
 import java.nio.charset.StandardCharsets;
+import java.time.Duration;
 import java.time.LocalDate;
 import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.Flow;
 import java.util.concurrent.SubmissionPublisher;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+import java.util.function.LongSupplier;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.regex.Pattern;
@@ -46,17 +70,47 @@ class ContextImpl implements Context {
     private static final String MARKET_SEARCH_BYTICKER_PATH = "/market/search/by-ticker";
     private static final String MARKET_SEARCH_BYFIGI_PATH = "/market/search/by-figi";
     private static final String OPERATIONS_PATH = "/operations";
+    private static final String MARKET_PATH_PREFIX = "/market/";
 
     private static final String NOT_FOUND_MESSAGE_CODE = "ACCESS_DENIED";
     private static final String CANDLE_INTERVAL_ERROR_CODE = "CANDLE_INTERVAL_ERROR";
-
-    private static final TypeReference<OpenApiResponse<OpenApiException>> openApiExceptionTypeReference =
-            new TypeReference<>(){};
-
-    private final Connection connection;
-    private SubmissionPublisher<StreamingEvent> streaming;
+    private static final int AGGREGATED_CANDLES_PARALLELISM = 2;
+    // место под последний стакан и под событие об ошибке, чтобы ошибка не вытесняла стакан
+    private static final int CONFLATED_ORDERBOOK_BUFFER_SIZE = 2;
+    // за время молчания, после которого поток считается устаревшим, успевает пройти несколько проверок
+    private static final int STALE_CHECKS_PER_TIMEOUT = 3;
+    private static final Duration MAX_STALE_CHECK_PERIOD = Duration.ofSeconds(1);
+    // допустимое молчание потока после каждого вмешательства удваивается, но не более чем в 32 раза
+    private static final int MAX_STALE_BACKOFF = 5;
+    /**
+     * Исполнитель разбора потоковых ответов со списками инструментов: разбор блокируется, пока подписчик не запросит
+     * следующие инструменты, поэтому у каждой загрузки свой поток.
+     */
+    private static final ExecutorService INSTRUMENTS_EXECUTOR = Executors.newCachedThreadPool(runnable -> {
+        final var thread = new Thread(runnable, "openapi-instruments");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private static final int TOO_MANY_REQUESTS_STATUS = 429;
+    private static final int MAX_THROTTLED_RETRIES = 3;
+
+    private final Connection<?> connection;
+    private final RequestScheduler scheduler;
+    private final RateLimiter rateLimiter;
+    private final StreamingEventRouter router;
     private final Logger logger;
-    private final ObjectMapper mapper;
+    private final OpenApiCodec codec;
+    private final CandleLoader sourceCandlesLoader;
+    private final AggregatedCandleStreams aggregatedCandles;
+    /**
+     * Подписки, оформленные через контекст (уже после пересчёта агрегированных свечей), для проверки потоков и
+     * восполнения пропущенного после восстановления соединения.
+     */
+    private final Map<StreamingKey, ActiveStream> activeStreams;
+    // изменение активных потоков и постановка запроса в очередь отправки выполняются атомарно
+    private final Object streamsLock;
+    private final LongSupplier clock;
+    private final AtomicBoolean watchingStreams;
     private static final Pattern badCandleErrorExtractor =
             Pattern.compile("Bad candle interval: from=(\\d+-\\d+-\\d+T\\d+:\\d+:\\d+Z) to=(\\d+-\\d+-\\d+T\\d+:\\d+:\\d+Z) expected");
 
@@ -75,21 +129,52 @@ class ContextImpl implements Context {
         }
     }
 
-    ContextImpl(Connection connection, Logger logger) {
+    ContextImpl(Connection<?> connection, Logger logger) {
+        this(connection, new RequestScheduler(), new RateLimiter(), logger);
+    }
+
+    /**
+     * @param scheduler Планировщик запросов, общий для всех контекстов подключения.
+     * @param rateLimiter Ограничение частоты запросов, общее для всех контекстов подключения.
+     */
+    ContextImpl(Connection<?> connection, RequestScheduler scheduler, RateLimiter rateLimiter, Logger logger) {
+        this(connection, scheduler, rateLimiter, System::nanoTime, logger);
+    }
+
+    /**
+     * @param scheduler Планировщик запросов, общий для всех контекстов подключения.
+     * @param rateLimiter Ограничение частоты запросов, общее для всех контекстов подключения.
+     * @param clock Источник времени в наносекундах для проверки потоков streaming.
+     */
+    ContextImpl(Connection<?> connection,
+                RequestScheduler scheduler,
+                RateLimiter rateLimiter,
+                LongSupplier clock,
+                Logger logger) {
         this.connection = connection;
-        this.streaming = new SubmissionPublisher<>();
-        this.connection.getListener().subscribeOnMessage(new OnMessageSubscriber());
+        this.scheduler = scheduler;
+        this.rateLimiter = rateLimiter;
+        this.clock = clock;
+        this.router = new StreamingEventRouter();
         this.logger = logger;
-        this.mapper = new ObjectMapper();
-
-        mapper.configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
-        mapper.registerModule(new JavaTimeModule());
-        mapper.enable(MapperFeature.ACCEPT_CASE_INSENSITIVE_ENUMS);
+        this.codec = OpenApiCodec.getInstance();
+        this.sourceCandlesLoader = new CandleLoader(this, AGGREGATED_CANDLES_PARALLELISM, logger);
+        this.aggregatedCandles = new AggregatedCandleStreams();
+        this.activeStreams = new ConcurrentHashMap<>();
+        this.streamsLock = new Object();
+        this.watchingStreams = new AtomicBoolean(false);
+
+        // сообщения каждого streaming-соединения разбираются в его потоке; события одного инструмента идут через одно
+        // соединение, так что их порядок сохраняется
+        for (final var listener : this.connection.getListeners()) {
+            listener.subscribeOnMessage(new OnMessageSubscriber());
+        }
+        this.connection.addRecoveryAction(this::recover);
     }
 
     @Override
     public CompletableFuture<List<Order>> getOrders() {
-        return sendGetRequest(ORDERS_PATH, new TypeReference<OpenApiResponse<List<Order>>>(){})
+        return sendGetRequest(ORDERS_PATH, OpenApiCodec.ordersTypeReference)
                 .thenApply(oar -> oar.payload);
     }
 
@@ -98,7 +183,7 @@ class ContextImpl implements Context {
         final var payload = new LimitOrderDto(limitOrder);
         final var pathWithParam = ORDERS_LIMITORDER_PATH + "?figi="
                 + URLEncoder.encode(limitOrder.getFigi(), StandardCharsets.UTF_8);
-        return sendPostRequest(pathWithParam, payload, new TypeReference<OpenApiResponse<PlacedLimitOrder>>(){})
+        return sendPostRequest(pathWithParam, payload, OpenApiCodec.placedLimitOrderTypeReference)
                 .thenApply(oar -> {
                     final var plo = oar.payload;
                     return new PlacedLimitOrder(
@@ -118,46 +203,109 @@ class ContextImpl implements Context {
     public CompletableFuture<Void> cancelOrder(String orderId) {
         final var pathWithParam = ORDERS_CANCEL_PATH + "?orderId=" +
                 URLEncoder.encode(orderId, StandardCharsets.UTF_8);
-        return sendPostRequest(pathWithParam, null, new TypeReference<OpenApiResponse<EmptyPayload>>(){})
+        return sendPostRequest(pathWithParam, null, OpenApiCodec.emptyPayloadTypeReference)
                 .thenApply(oar -> null);
     }
 
     @Override
     public CompletableFuture<Portfolio> getPortfolio() {
-        return sendGetRequest(PORTFOLIO_PATH, new TypeReference<OpenApiResponse<Portfolio>>(){})
+        return sendGetRequest(PORTFOLIO_PATH, OpenApiCodec.portfolioTypeReference)
                 .thenApply(oar -> oar.payload);
     }
 
     @Override
     public CompletableFuture<PortfolioCurrencies> getPortfolioCurrencies() {
-        return sendGetRequest(PORTFOLIO_CURRENCIES_PATH, new TypeReference<OpenApiResponse<PortfolioCurrencies>>(){})
+        return sendGetRequest(PORTFOLIO_CURRENCIES_PATH, OpenApiCodec.portfolioCurrenciesTypeReference)
                 .thenApply(oar -> oar.payload);
     }
 
     @Override
     public CompletableFuture<InstrumentsList> getMarketStocks() {
-        return sendGetRequest(MARKET_STOCKS_PATH, new TypeReference<OpenApiResponse<InstrumentsList>>(){})
+        return sendGetRequest(MARKET_STOCKS_PATH, OpenApiCodec.instrumentsListTypeReference)
                 .thenApply(oar -> oar.payload);
     }
 
     @Override
     public CompletableFuture<InstrumentsList> getMarketBonds() {
-        return sendGetRequest(MARKET_BONDS_PATH, new TypeReference<OpenApiResponse<InstrumentsList>>(){})
+        return sendGetRequest(MARKET_BONDS_PATH, OpenApiCodec.instrumentsListTypeReference)
                 .thenApply(oar -> oar.payload);
     }
 
     @Override
     public CompletableFuture<InstrumentsList> getMarketEtfs() {
-        return sendGetRequest(MARKET_ETFS_PATH, new TypeReference<OpenApiResponse<InstrumentsList>>(){})
+        return sendGetRequest(MARKET_ETFS_PATH, OpenApiCodec.instrumentsListTypeReference)
                 .thenApply(oar -> oar.payload);
     }
 
     @Override
     public CompletableFuture<InstrumentsList> getMarketCurrencies() {
-        return sendGetRequest(MARKET_CURRENCIES_PATH, new TypeReference<OpenApiResponse<InstrumentsList>>(){})
+        return sendGetRequest(MARKET_CURRENCIES_PATH, OpenApiCodec.instrumentsListTypeReference)
                 .thenApply(oar -> oar.payload);
     }
 
+    @Override
+    public Flow.Publisher<Instrument> streamMarketInstruments(InstrumentType instrumentType) {
+        return streamMarketInstruments(instrumentType, INSTRUMENTS_EXECUTOR);
+    }
+
+    @Override
+    public Flow.Publisher<Instrument> streamMarketInstruments(InstrumentType instrumentType, Executor executor) {
+        final String path;
+        switch (instrumentType) {
+            case Stock:
+                path = MARKET_STOCKS_PATH;
+                break;
+            case Bond:
+                path = MARKET_BONDS_PATH;
+                break;
+            case ETF:
+                path = MARKET_ETFS_PATH;
+                break;
+            case Currency:
+                path = MARKET_CURRENCIES_PATH;
+                break;
+            default:
+                throw new IllegalArgumentException("Неизвестный тип инструментов: " + instrumentType);
+        }
+
+        return subscriber -> {
+            final var publisher = new SubmissionPublisher<Instrument>();
+            final var sending = new AtomicReference<CompletableFuture<?>>();
+            publisher.subscribe(new CancellableSubscriber<>(subscriber, () -> {
+                final var sent = sending.get();
+                if (sent != null) {
+                    sent.cancel(true);
+                }
+            }));
+
+            // место в планировщике занято только до получения заголовков ответа: тело читается столько, сколько
+            // его читает подписчик, и не должно задерживать остальные запросы
+            rateLimiter.acquire(RateLimiter.groupOf(path)).thenCompose(ignored ->
+                    scheduler.submit(RequestPriority.MarketData, () -> {
+                        if (!publisher.hasSubscribers()) {
+                            // подписчик отказался, пока запрос ждал очереди
+                            return CompletableFuture.<HttpResponse<InputStream>>completedFuture(null);
+                        }
+
+                        final var sent = connection.getHttpClient()
+                                .sendAsync(buildGetRequest(path), HttpResponse.BodyHandlers.ofInputStream());
+                        sending.set(sent);
+                        if (!publisher.hasSubscribers()) {
+                            sent.cancel(true);
+                        }
+                        return sent;
+                    })
+            ).thenAcceptAsync(response -> {
+                if (response != null) {
+                    publishInstruments(response, publisher);
+                }
+            }, executor).exceptionally(ex -> {
+                publisher.closeExceptionally(ex);
+                return null;
+            });
+        };
+    }
+
     @Override
     public CompletableFuture<Orderbook> getMarketOrderbook(String figi, int depth) {
         if (depth < 1 || depth > 20) {
@@ -167,7 +315,7 @@ class ContextImpl implements Context {
         }
 
         final var pathWithParam = MARKET_ORDERBOOK_PATH + "?figi=" + figi + "&depth=" + depth;
-        return sendGetRequest(pathWithParam, new TypeReference<OpenApiResponse<Orderbook>>(){})
+        return sendGetRequest(pathWithParam, OpenApiCodec.orderbookTypeReference)
                 .thenApply(oar -> oar.payload);
     }
 
@@ -176,22 +324,36 @@ class ContextImpl implements Context {
                                                                  OffsetDateTime from,
                                                                  OffsetDateTime to,
                                                                  CandleInterval interval) {
-        if (interval == CandleInterval.TWO_HOUR || interval == CandleInterval.FOUR_HOUR) {
-            return CompletableFuture.failedFuture(
-                    new IllegalArgumentException("2-х и 4-х часовые свечные интервалы пока не поддерживаются.")
-            );
+        if (AggregatedCandleStreams.isAggregated(interval)) {
+            // таких свечей OpenAPI не отдаёт, они собираются из часовых
+            // запрашиваются только отрезки, целиком лежащие в промежутке; неполные крайние свечи не отдаются
+            final var sourceInterval = AggregatedCandleStreams.sourceInterval();
+            final var alignedFrom = CandleAggregator.firstBucketStart(from.toInstant(), interval);
+            final var alignedTo = CandleAggregator.bucketStart(to.toInstant(), interval);
+            if (!alignedFrom.isBefore(alignedTo)) {
+                return CompletableFuture.completedFuture(new HistoricalCandles(figi, interval, List.of()));
+            }
+            return sourceCandlesLoader.load(
+                    figi,
+                    OffsetDateTime.ofInstant(alignedFrom, ZoneOffset.UTC),
+                    OffsetDateTime.ofInstant(alignedTo, ZoneOffset.UTC),
+                    sourceInterval
+            ).thenApply(hc -> new HistoricalCandles(
+                    figi,
+                    interval,
+                    CandleAggregator.aggregate(hc.getCandles(), sourceInterval, interval, alignedFrom, alignedTo)
+            ));
         }
 
         try {
-            ObjectMapper objectMapper = new ObjectMapper();
-            var renderedInterval = objectMapper.writeValueAsString(interval);
+            var renderedInterval = codec.writerFor(CandleInterval.class).writeValueAsString(interval);
             renderedInterval = renderedInterval.substring(1, renderedInterval.length()-1);
 
             final var pathWithParam = MARKET_CANDLES_PATH + "?figi=" + figi + "&from="
                     + URLEncoder.encode(from.toString(), StandardCharsets.UTF_8)
                     + "&to=" + URLEncoder.encode(to.toString(), StandardCharsets.UTF_8)
                     + "&interval=" + renderedInterval;
-            return sendGetRequest(pathWithParam, new TypeReference<OpenApiResponse<HistoricalCandles>>(){})
+            return sendGetRequest(pathWithParam, OpenApiCodec.historicalCandlesTypeReference)
                     .handle((oar, ex) -> {
                         if (ex == null) {
                             return CompletableFuture.completedFuture(oar.payload);
@@ -220,7 +382,7 @@ class ContextImpl implements Context {
     public CompletableFuture<InstrumentsList> searchMarketInstrumentsByTicker(String ticker) {
         final var pathWithParam = MARKET_SEARCH_BYTICKER_PATH + "?ticker=" +
                 URLEncoder.encode(ticker, StandardCharsets.UTF_8);
-        return sendGetRequest(pathWithParam, new TypeReference<OpenApiResponse<InstrumentsList>>(){})
+        return sendGetRequest(pathWithParam, OpenApiCodec.instrumentsListTypeReference)
                 .thenApply(oar -> oar.payload);
     }
 
@@ -228,7 +390,7 @@ class ContextImpl implements Context {
     public CompletableFuture<Optional<Instrument>> searchMarketInstrumentByFigi(String figi) {
         final var pathWithParam = MARKET_SEARCH_BYFIGI_PATH + "?figi=" +
                 URLEncoder.encode(figi, StandardCharsets.UTF_8);
-        return sendGetRequest(pathWithParam, new TypeReference<OpenApiResponse<Instrument>>(){})
+        return sendGetRequest(pathWithParam, OpenApiCodec.instrumentTypeReference)
                 .handle((oar, ex) -> {
                     if (ex == null) {
                         return CompletableFuture.completedFuture(Optional.of(oar.payload));
@@ -246,12 +408,23 @@ class ContextImpl implements Context {
 
     @Override
     public CompletableFuture<Void> sendStreamingRequest(StreamingRequest request) {
-        try {
-            ObjectMapper objectMapper = new ObjectMapper();
-            final var message = objectMapper.writeValueAsString(request);
-            return connection.getWebSocket().sendText(message, true).thenApply(ws -> null);
-        } catch (JsonProcessingException ex) {
-            return CompletableFuture.failedFuture(ex);
+        final var actualRequest = aggregatedCandles.translate(request);
+        if (actualRequest == null) {
+            return CompletableFuture.completedFuture(null);
+        }
+
+        final var key = StreamingKey.of(actualRequest);
+        synchronized (streamsLock) {
+            if (actualRequest instanceof StreamingRequest.CandleSubscribeRequest ||
+                    actualRequest instanceof StreamingRequest.OrderbookSubscribeRequest ||
+                    actualRequest instanceof StreamingRequest.InstrumentInfoSubscribeRequest) {
+                activeStreams.put(key, new ActiveStream(actualRequest, clock.getAsLong()));
+                watchStreams();
+            } else {
+                activeStreams.remove(key);
+            }
+
+            return connection.sendStreamingRequest(actualRequest);
         }
     }
 
@@ -262,40 +435,67 @@ class ContextImpl implements Context {
                 + "&to=" + URLEncoder.encode(to.toString(), StandardCharsets.UTF_8);
         if (figi != null && !figi.isBlank())
             pathWithParam += "&figi=" + URLEncoder.encode(figi, StandardCharsets.UTF_8);
-        return sendGetRequest(pathWithParam, new TypeReference<OpenApiResponse<OperationsList>>(){})
+        return sendGetRequest(pathWithParam, OpenApiCodec.operationsListTypeReference)
                 .thenApply(oar -> oar.payload);
     }
 
     @Override
     public void subscribe(Flow.Subscriber<? super StreamingEvent> subscriber) {
-        this.streaming.subscribe(subscriber);
+        this.router.subscribe(subscriber, null, BackpressurePolicy.Block, Flow.defaultBufferSize());
+    }
+
+    @Override
+    public void subscribe(Flow.Subscriber<? super StreamingEvent> subscriber, Set<StreamingKey> keys) {
+        this.router.subscribe(subscriber, keys, BackpressurePolicy.Block, Flow.defaultBufferSize());
+    }
+
+    @Override
+    public StreamingSubscription subscribe(Flow.Subscriber<? super StreamingEvent> subscriber,
+                                           Set<StreamingKey> keys,
+                                           BackpressurePolicy policy,
+                                           int bufferSize) {
+        return this.router.subscribe(subscriber, keys, policy, bufferSize);
+    }
+
+    @Override
+    public StreamingSubscription subscribeConflatedOrderbook(Flow.Subscriber<? super StreamingEvent.Orderbook> subscriber,
+                                                             String figi,
+                                                             int depth) {
+        return this.router.subscribe(
+                new OrderbookSubscriber(subscriber),
+                Set.of(StreamingKey.orderbook(figi, depth)),
+                BackpressurePolicy.ConflateLatest,
+                CONFLATED_ORDERBOOK_BUFFER_SIZE
+        );
     }
 
     @Override
     public void unsubscribe() {
-        this.streaming.close();
-        this.streaming = new SubmissionPublisher<>();
+        this.router.closeAll();
     }
 
-    protected <In> CompletableFuture<In> sendGetRequest(String path, TypeReference<In> tr) {
-        final var request = HttpRequest.newBuilder()
-                .uri(URI.create(connection.getHost() + path))
-                .header("Authorization", connection.getAuthToken())
-                .GET()   // this is the default
-                .build();
+    @Override
+    public Set<StreamingKey> getStaleStreams() {
+        final var result = new HashSet<StreamingKey>();
+        for (final var entry : activeStreams.entrySet()) {
+            if (entry.getValue().stale) {
+                result.add(entry.getKey());
+            }
+        }
+        return result;
+    }
 
-        return connection.getHttpClient().sendAsync(request, HttpResponse.BodyHandlers.ofString())
-                .thenCompose(response -> handleResponse(response, tr));
+    protected <In> CompletableFuture<In> sendGetRequest(String path, TypeReference<In> tr) {
+        return sendRequest(buildGetRequest(path), path, false, tr, 0);
     }
 
     protected <Out, In> CompletableFuture<In> sendPostRequest(String path, Out payload, TypeReference<In> tr) {
-        String body;
+        byte[] body;
         if (payload == null) {
-            body = "";
+            body = new byte[0];
         } else {
             try {
-                final var objectMapper = new ObjectMapper();
-                body = objectMapper.writeValueAsString(payload);
+                body = codec.writerFor(payload.getClass()).writeValueAsBytes(payload);
             } catch (JsonProcessingException ex) {
                 return CompletableFuture.failedFuture(ex);
             }
@@ -304,49 +504,425 @@ class ContextImpl implements Context {
         HttpRequest request = HttpRequest.newBuilder()
                 .uri(URI.create(connection.getHost() + path))
                 .header("Authorization", connection.getAuthToken())
-                .POST(HttpRequest.BodyPublishers.ofString(body))
+                .POST(HttpRequest.BodyPublishers.ofByteArray(body))
                 .build();
 
-        return connection.getHttpClient().sendAsync(request, HttpResponse.BodyHandlers.ofString())
-                .thenCompose(response -> handleResponse(response, tr));
+        return sendRequest(request, path, true, tr, 0);
     }
 
-    private <D> CompletableFuture<D> handleResponse(HttpResponse<String> response, TypeReference<D> tr) {
+    /**
+     * Отправка запроса с учётом ограничения частоты. Ответ 429 не передаётся вызывающему сразу: ограничение группы
+     * ужесточается, и запрос повторяется (сервер его не обработал, так что повтор безопасен и для заявок).
+     */
+    private <In> CompletableFuture<In> sendRequest(HttpRequest request,
+                                                   String path,
+                                                   boolean post,
+                                                   TypeReference<In> tr,
+                                                   int attempt) {
+        final var group = RateLimiter.groupOf(path);
+        return rateLimiter.acquire(group)
+                .thenCompose(ignored -> scheduler.submit(priorityOf(path, post), () ->
+                        connection.getHttpClient().sendAsync(request, HttpResponse.BodyHandlers.ofByteArray())
+                ))
+                .thenCompose(response -> {
+                    if (response.statusCode() != TOO_MANY_REQUESTS_STATUS) {
+                        return handleResponse(response, tr);
+                    }
+
+                    rateLimiter.onThrottled(group);
+                    if (attempt >= MAX_THROTTLED_RETRIES) {
+                        return handleResponse(response, tr);
+                    }
+                    logger.fine("Превышена частота запросов к " + path + ", повтор.");
+                    return sendRequest(request, path, post, tr, attempt + 1);
+                });
+    }
+
+    /**
+     * Класс приоритета запроса: выставление и отмена заявок впереди всего, рыночные данные - после остального.
+     */
+    private static RequestPriority priorityOf(String path, boolean post) {
+        if (path.startsWith(MARKET_PATH_PREFIX)) {
+            return RequestPriority.MarketData;
+        } else if (post && path.startsWith(ORDERS_PATH)) {
+            return RequestPriority.Orders;
+        } else {
+            return RequestPriority.Account;
+        }
+    }
+
+    /**
+     * Разбор ответа. Тело ответа передаётся Jackson в виде байтов как есть, без промежуточного декодирования
+     * в строку, что заметно экономит память на больших ответах (списки инструментов, операций).
+     */
+    private <D> CompletableFuture<D> handleResponse(HttpResponse<byte[]> response, TypeReference<D> tr) {
+        if (response.statusCode() != 200) {
+            return CompletableFuture.failedFuture(decodeError(response.statusCode(), response.body()));
+        }
 
         try {
-            switch (response.statusCode()) {
-                case 200:
-                    return CompletableFuture.completedFuture(mapper.readValue(response.body(), tr));
-                case 401:
-                    final var ex401 = new OpenApiException(
-                            "You have no access to that resource.",
-                            NOT_FOUND_MESSAGE_CODE);
-                    return CompletableFuture.failedFuture(ex401);
-                default:
-                    final var answerBody = mapper.<OpenApiResponse<OpenApiException>>readValue(response.body(), openApiExceptionTypeReference);
-                    final var exOther = answerBody.payload;
-                    final var message = "Ошибка при исполнении запроса, trackingId = " + answerBody.trackingId;
-                    logger.log(Level.WARNING, message, exOther);
-                    return CompletableFuture.failedFuture(exOther);
-            }
+            return CompletableFuture.completedFuture(codec.readerFor(tr).readValue(response.body()));
         } catch (IOException ex) {
             return CompletableFuture.failedFuture(ex);
         }
     }
 
-    private class OnMessageSubscriber implements Flow.Subscriber<String> {
+    private Exception decodeError(int statusCode, byte[] body) {
+        if (statusCode == 401) {
+            return new OpenApiException("You have no access to that resource.", NOT_FOUND_MESSAGE_CODE);
+        }
+
+        try {
+            final OpenApiResponse<OpenApiException> answerBody =
+                    codec.readerFor(OpenApiCodec.openApiExceptionTypeReference).readValue(body);
+            final var exOther = answerBody.payload;
+            final var message = "Ошибка при исполнении запроса, trackingId = " + answerBody.trackingId;
+            logger.log(Level.WARNING, message, exOther);
+            return exOther;
+        } catch (IOException ex) {
+            return ex;
+        }
+    }
+
+    private HttpRequest buildGetRequest(String path) {
+        return HttpRequest.newBuilder()
+                .uri(URI.create(connection.getHost() + path))
+                .header("Authorization", connection.getAuthToken())
+                .GET()   // this is the default
+                .build();
+    }
+
+    /**
+     * Потоковый разбор списка инструментов: каждый элемент массива payload.instruments отдаётся подписчикам сразу
+     * после разбора. Если подписчик не успевает, submit блокируется, и чтение тела ответа приостанавливается.
+     */
+    private void publishInstruments(HttpResponse<InputStream> response, SubmissionPublisher<Instrument> publisher) {
+        try (final var body = response.body()) {
+            if (response.statusCode() != 200) {
+                publisher.closeExceptionally(decodeError(response.statusCode(), body.readAllBytes()));
+                return;
+            }
+
+            try (final var parser = codec.createParser(body)) {
+                if (!seekField(parser, "payload") || parser.getCurrentToken() != JsonToken.START_OBJECT ||
+                        !seekField(parser, "instruments") || parser.getCurrentToken() != JsonToken.START_ARRAY) {
+                    throw new JsonParseException(parser, "No data field 'payload.instruments'.");
+                }
+
+                final var instrumentReader = codec.readerFor(Instrument.class);
+                while (parser.nextToken() == JsonToken.START_OBJECT) {
+                    // подписчик отказался - остаток ответа не читается, тело закрывается и загрузка прерывается
+                    if (!publisher.hasSubscribers()) return;
+                    publisher.submit(instrumentReader.readValue(parser));
+                }
+            }
+
+            publisher.close();
+        } catch (Exception ex) {
+            publisher.closeExceptionally(ex);
+        }
+    }
+
+    /**
+     * Перемещение парсера к значению поля с заданным именем в текущем объекте. Остальные поля пропускаются.
+     *
+     * @return Нашлось ли поле.
+     */
+    private static boolean seekField(JsonParser parser, String fieldName) throws IOException {
+        var token = parser.nextToken();
+        if (token == JsonToken.START_OBJECT) {
+            token = parser.nextToken();
+        }
+
+        for (; token == JsonToken.FIELD_NAME; token = parser.nextToken()) {
+            final var currentName = parser.getCurrentName();
+            parser.nextToken();
+            if (fieldName.equals(currentName)) {
+                return true;
+            }
+            parser.skipChildren();
+        }
+
+        return false;
+    }
+
+    /**
+     * Переотправка подписки на поток, если она всё ещё действует: за время ожидания её могли отменить или оформить
+     * заново (тогда запрос уже отправлен).
+     */
+    private CompletableFuture<Void> resubscribe(ActiveStream stream) {
+        synchronized (streamsLock) {
+            if (activeStreams.get(StreamingKey.of(stream.request)) != stream) {
+                return CompletableFuture.completedFuture(null);
+            }
+            return connection.sendStreamingRequest(stream.request);
+        }
+    }
+
+    /**
+     * Восполнение свечей, пропущенных за время разрыва соединения.
+     *
+     * Свечи за время разрыва (с запасом в один интервал - последняя свеча до разрыва могла быть незакрытой)
+     * загружаются через REST и передаются подписчикам так же, как пришедшие из streaming. Подписки соединения
+     * переотправляются пулом streaming-соединений после этого, так что свежие события не обгоняют загруженные.
+     */
+    private CompletableFuture<Void> recover(ReconnectEvent event) {
+        final var to = OffsetDateTime.ofInstant(event.getReconnectedAt(), ZoneOffset.UTC);
+        final var backfills = new ArrayList<CompletableFuture<Void>>();
+        for (final var entry : activeStreams.entrySet()) {
+            final var stream = entry.getValue();
+            if (connection.getStreamingSocketIndex(entry.getKey().getFigi()) != event.getSocketIndex()) continue;
+
+            if (stream.request instanceof StreamingRequest.CandleSubscribeRequest) {
+                final var candleRequest = (StreamingRequest.CandleSubscribeRequest) stream.request;
+                final var interval = candleRequest.getInterval();
+                final var from = OffsetDateTime.ofInstant(
+                        event.getDisconnectedAt().minus(CandleIntervals.getDuration(interval)), ZoneOffset.UTC);
+                backfills.add(sourceCandlesLoader.load(candleRequest.getFigi(), from, to, interval)
+                        .thenAccept(this::publishMissedCandles));
+            }
+        }
+
+        return CompletableFuture.allOf(backfills.toArray(new CompletableFuture<?>[0]));
+    }
+
+    /**
+     * Запуск периодической проверки активных потоков, если она ещё не идёт. Проверка останавливается, когда
+     * активных потоков не остаётся.
+     */
+    private void watchStreams() {
+        if (watchingStreams.compareAndSet(false, true)) {
+            scheduleStaleStreamsCheck();
+        }
+    }
+
+    private void scheduleStaleStreamsCheck() {
+        final var timeout = connection.getStaleStreamTimeout();
+        final var period = timeout.dividedBy(STALE_CHECKS_PER_TIMEOUT).compareTo(MAX_STALE_CHECK_PERIOD) > 0
+                ? MAX_STALE_CHECK_PERIOD
+                : timeout.dividedBy(STALE_CHECKS_PER_TIMEOUT);
+        CompletableFuture.delayedExecutor(period.toNanos(), TimeUnit.NANOSECONDS).execute(() -> {
+            if (activeStreams.isEmpty()) {
+                watchingStreams.set(false);
+                // поток мог добавиться до сброса признака
+                if (activeStreams.isEmpty() || !watchingStreams.compareAndSet(false, true)) return;
+            }
+            try {
+                checkStaleStreams();
+            } catch (Exception ex) {
+                logger.log(Level.SEVERE, "Что-то пошло не так при проверке потоков streaming.", ex);
+            }
+            scheduleStaleStreamsCheck();
+        });
+    }
+
+    /**
+     * Поиск замолчавших потоков. Подписка на замолчавший поток переоформляется, но если замолчали все потоки
+     * streaming-соединения, оно восстанавливается целиком. И то, и другое делается один раз, пока по потоку
+     * снова не придёт событие.
+     *
+     * В ответ на переоформление подписки сервер присылает снимок, но по закрытому рынку следом ничего не приходит.
+     * Чтобы такой поток не переподписывался (а соединение не восстанавливалось) каждые несколько секунд,
+     * допустимое молчание после каждого вмешательства удваивается и сбрасывается, только когда поток присылает
+     * события и после срока молчания, отсчитанного от вмешательства. Потоки информации об инструменте не
+     * проверяются: события по ним приходят лишь при смене статуса инструмента.
+     */
+    private void checkStaleStreams() {
+        final var timeout = connection.getStaleStreamTimeout().toNanos();
+        final var now = clock.getAsLong();
+        final var aliveSockets = new HashSet<Integer>();
+        final var newlyStale = new HashMap<Integer, List<ActiveStream>>();
+
+        for (final var entry : activeStreams.entrySet()) {
+            final var stream = entry.getValue();
+            if (stream.request instanceof StreamingRequest.InstrumentInfoSubscribeRequest) continue;
+            final var socketIndex = connection.getStreamingSocketIndex(entry.getKey().getFigi());
+            if (stream.stale) continue;
+
+            final var silence = now - stream.lastEventNanos;
+            if (silence > timeout << stream.backoff) {
+                // повторное молчание после вмешательства ожидаемо (например, рынок закрыт)
+                logger.log(stream.backoff == 0 ? Level.WARNING : Level.INFO, "По потоку " + entry.getKey() +
+                        " нет событий " + TimeUnit.NANOSECONDS.toMillis(silence) + " мс.");
+                stream.stale = true;
+                stream.interferedAtNanos = now;
+                stream.backoff = Math.min(stream.backoff + 1, MAX_STALE_BACKOFF);
+                newlyStale.computeIfAbsent(socketIndex, i -> new ArrayList<>()).add(stream);
+            } else {
+                aliveSockets.add(socketIndex);
+            }
+        }
+
+        for (final var entry : newlyStale.entrySet()) {
+            final int socketIndex = entry.getKey();
+            if (aliveSockets.contains(socketIndex)) {
+                for (final var stream : entry.getValue()) {
+                    resubscribe(stream).whenComplete((ignored, ex) -> {
+                        if (ex != null) {
+                            logger.log(Level.WARNING, "Не удалось переоформить подписку на замолчавший поток.", ex);
+                        }
+                    });
+                }
+            } else {
+                connection.reconnect(socketIndex);
+            }
+        }
+    }
+
+    /**
+     * Отметка о событии активного потока.
+     */
+    private void onStreamEvent(StreamingEvent event) {
+        final var key = StreamingKey.of(event);
+        if (key == null) return;
+
+        final var stream = activeStreams.get(key);
+        if (stream != null) {
+            final var now = clock.getAsLong();
+            stream.lastEventNanos = now;
+            // событие в ответ на вмешательство не говорит о том, что поток ожил сам
+            if (stream.backoff > 0 &&
+                    now - stream.interferedAtNanos > connection.getStaleStreamTimeout().toNanos()) {
+                stream.backoff = 0;
+            }
+            if (stream.stale) {
+                stream.stale = false;
+                logger.info("Поток " + key + " возобновился.");
+            }
+        }
+    }
+
+    private void publishMissedCandles(HistoricalCandles candles) {
+        final Consumer<StreamingEvent> publish = router::publish;
+        for (final var candle : candles.getCandles()) {
+            final var event = new StreamingEvent.Candle(
+                    candle.getO(),
+                    candle.getC(),
+                    candle.getH(),
+                    candle.getL(),
+                    candle.getV(),
+                    candle.getTime().toZonedDateTime(),
+                    candle.getInterval(),
+                    candle.getFigi()
+            );
+            aggregatedCandles.dispatch(event, publish);
+        }
+    }
+
+    /**
+     * Передача подписчику только стаканов. Остальные события (ошибки) пропускаются, а вместо них у подписки
+     * запрашивается следующее событие, чтобы не расходовать запрос подписчика.
+     */
+    private static class OrderbookSubscriber implements Flow.Subscriber<StreamingEvent> {
+        private final Flow.Subscriber<? super StreamingEvent.Orderbook> subscriber;
+        private Flow.Subscription subscription;
+
+        OrderbookSubscriber(Flow.Subscriber<? super StreamingEvent.Orderbook> subscriber) {
+            this.subscriber = subscriber;
+        }
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            this.subscription = subscription;
+            subscriber.onSubscribe(subscription);
+        }
+
+        @Override
+        public void onNext(StreamingEvent item) {
+            if (item instanceof StreamingEvent.Orderbook) {
+                subscriber.onNext((StreamingEvent.Orderbook) item);
+            } else {
+                subscription.request(1);
+            }
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            subscriber.onError(throwable);
+        }
+
+        @Override
+        public void onComplete() {
+            subscriber.onComplete();
+        }
+    }
+
+    /**
+     * Подписчик, отказ которого от подписки дополнительно прерывает связанную с ней работу.
+     */
+    private static class CancellableSubscriber<T> implements Flow.Subscriber<T> {
+        private final Flow.Subscriber<? super T> subscriber;
+        private final Runnable onCancel;
+
+        CancellableSubscriber(Flow.Subscriber<? super T> subscriber, Runnable onCancel) {
+            this.subscriber = subscriber;
+            this.onCancel = onCancel;
+        }
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            subscriber.onSubscribe(new Flow.Subscription() {
+                @Override
+                public void request(long n) {
+                    subscription.request(n);
+                }
+
+                @Override
+                public void cancel() {
+                    subscription.cancel();
+                    onCancel.run();
+                }
+            });
+        }
+
+        @Override
+        public void onNext(T item) {
+            subscriber.onNext(item);
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            subscriber.onError(throwable);
+        }
+
+        @Override
+        public void onComplete() {
+            subscriber.onComplete();
+        }
+    }
+
+    /**
+     * Подписка, оформленная на сервере, и время последнего события по ней.
+     */
+    private static class ActiveStream {
+        final StreamingRequest request;
+        volatile long lastEventNanos;
+        volatile boolean stale;
+        // момент последнего переоформления подписки или восстановления соединения из-за молчания потока
+        volatile long interferedAtNanos;
+        // степень двойки, на которую умножается допустимое молчание потока
+        volatile int backoff;
+
+        ActiveStream(StreamingRequest request, long subscribedAtNanos) {
+            this.request = request;
+            this.lastEventNanos = subscribedAtNanos;
+        }
+    }
+
+    private class OnMessageSubscriber implements Flow.Subscriber<CharSequence> {
+        private final Consumer<StreamingEvent> publish = router::publish;
+
         @Override
         public void onSubscribe(Flow.Subscription subscription) {
             subscription.request(Long.MAX_VALUE);
         }
 
         @Override
-        public void onNext(String item) {
+        public void onNext(CharSequence item) {
             try {
-                final var mapper = new ObjectMapper();
-                mapper.registerModule(new JavaTimeModule());
-                final var event = mapper.<StreamingEvent>readValue(item, new TypeReference<StreamingEvent>(){});
-                streaming.submit(event);
+                final var event = codec.readStreamingEvent(item);
+                onStreamEvent(event);
+                aggregatedCandles.dispatch(event, publish);
             } catch (Exception ex) {
                 logger.log(Level.SEVERE, "При обработке собыйтия из WebSocket что-то произошло.", ex);
             }
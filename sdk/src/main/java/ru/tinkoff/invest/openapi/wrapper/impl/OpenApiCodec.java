@@ -0,0 +1,159 @@
+package ru.tinkoff.invest.openapi.wrapper.impl;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.MapperFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import ru.tinkoff.invest.openapi.data.*;
+import ru.tinkoff.invest.openapi.exceptions.OpenApiException;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.Type;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Общий для всех контекстов набор средств (де)сериализации JSON.
+ *
+ * Экземпляры {@link ObjectReader} и {@link ObjectWriter} неизменяемы и потокобезопасны, поэтому создаются один раз
+ * на тип и дальше только переиспользуются. При создании они сразу же находят (и кэшируют) нужные десериализаторы,
+ * так что после {@link #warmUp()} первый настоящий запрос не платит за настройку Jackson.
+ */
+final class OpenApiCodec {
+
+    static final TypeReference<OpenApiResponse<OpenApiException>> openApiExceptionTypeReference =
+            new TypeReference<>(){};
+    static final TypeReference<OpenApiResponse<ContextImpl.EmptyPayload>> emptyPayloadTypeReference =
+            new TypeReference<>(){};
+    static final TypeReference<OpenApiResponse<List<Order>>> ordersTypeReference =
+            new TypeReference<>(){};
+    static final TypeReference<OpenApiResponse<PlacedLimitOrder>> placedLimitOrderTypeReference =
+            new TypeReference<>(){};
+    static final TypeReference<OpenApiResponse<Portfolio>> portfolioTypeReference =
+            new TypeReference<>(){};
+    static final TypeReference<OpenApiResponse<PortfolioCurrencies>> portfolioCurrenciesTypeReference =
+            new TypeReference<>(){};
+    static final TypeReference<OpenApiResponse<InstrumentsList>> instrumentsListTypeReference =
+            new TypeReference<>(){};
+    static final TypeReference<OpenApiResponse<Instrument>> instrumentTypeReference =
+            new TypeReference<>(){};
+    static final TypeReference<OpenApiResponse<Orderbook>> orderbookTypeReference =
+            new TypeReference<>(){};
+    static final TypeReference<OpenApiResponse<HistoricalCandles>> historicalCandlesTypeReference =
+            new TypeReference<>(){};
+    static final TypeReference<OpenApiResponse<OperationsList>> operationsListTypeReference =
+            new TypeReference<>(){};
+
+    private static final OpenApiCodec instance = new OpenApiCodec();
+
+    private final ObjectMapper mapper;
+    private final ConcurrentMap<Type, ObjectReader> readers;
+    private final ConcurrentMap<Class<?>, ObjectWriter> writers;
+    private final ObjectReader streamingEventReader;
+
+    private OpenApiCodec() {
+        this.mapper = new ObjectMapper();
+        this.readers = new ConcurrentHashMap<>();
+        this.writers = new ConcurrentHashMap<>();
+
+        mapper.configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+        mapper.registerModule(new JavaTimeModule());
+        mapper.enable(MapperFeature.ACCEPT_CASE_INSENSITIVE_ENUMS);
+
+        this.streamingEventReader = mapper.readerFor(StreamingEvent.class);
+    }
+
+    static OpenApiCodec getInstance() {
+        return instance;
+    }
+
+    /**
+     * Получение готового к работе читателя ответов заданного типа.
+     *
+     * @param tr Тип ответа.
+     * @return Читатель.
+     */
+    ObjectReader readerFor(TypeReference<?> tr) {
+        return readers.computeIfAbsent(tr.getType(), type -> mapper.readerFor(mapper.constructType(type)));
+    }
+
+    /**
+     * Получение готового к работе читателя объектов заданного класса.
+     *
+     * @param type Класс читаемого объекта.
+     * @return Читатель.
+     */
+    ObjectReader readerFor(Class<?> type) {
+        return readers.computeIfAbsent(type, t -> mapper.readerFor(type));
+    }
+
+    /**
+     * Создание парсера для потокового чтения JSON.
+     *
+     * @param input Источник данных.
+     * @return Парсер.
+     */
+    JsonParser createParser(InputStream input) throws IOException {
+        return mapper.getFactory().createParser(input);
+    }
+
+    /**
+     * Получение готового к работе писателя объектов заданного класса.
+     *
+     * @param type Класс сериализуемого объекта.
+     * @return Писатель.
+     */
+    ObjectWriter writerFor(Class<?> type) {
+        return writers.computeIfAbsent(type, mapper::writerFor);
+    }
+
+    /**
+     * Чтение события из streaming. Собранное из фрагментов сообщение ({@link TextFrame}) разбирается прямо из его
+     * буфера, без копирования в {@link String}.
+     *
+     * @param message Сообщение.
+     * @return Событие.
+     */
+    StreamingEvent readStreamingEvent(CharSequence message) throws IOException {
+        if (message instanceof TextFrame) {
+            final var frame = (TextFrame) message;
+            try (final var parser = mapper.getFactory().createParser(frame.array(), 0, frame.length())) {
+                return streamingEventReader.readValue(parser);
+            }
+        }
+        return streamingEventReader.readValue(message.toString());
+    }
+
+    /**
+     * Заблаговременное построение читателей и писателей для всех известных моделей OpenAPI.
+     */
+    void warmUp() {
+        readerFor(openApiExceptionTypeReference);
+        readerFor(emptyPayloadTypeReference);
+        readerFor(ordersTypeReference);
+        readerFor(placedLimitOrderTypeReference);
+        readerFor(portfolioTypeReference);
+        readerFor(portfolioCurrenciesTypeReference);
+        readerFor(instrumentsListTypeReference);
+        readerFor(instrumentTypeReference);
+        readerFor(orderbookTypeReference);
+        readerFor(historicalCandlesTypeReference);
+        readerFor(operationsListTypeReference);
+        readerFor(Instrument.class);
+
+        writerFor(CandleInterval.class);
+        writerFor(StreamingRequest.CandleSubscribeRequest.class);
+        writerFor(StreamingRequest.CandleUnsubscribeRequest.class);
+        writerFor(StreamingRequest.OrderbookSubscribeRequest.class);
+        writerFor(StreamingRequest.OrderbookUnsubscribeRequest.class);
+        writerFor(StreamingRequest.InstrumentInfoSubscribeRequest.class);
+        writerFor(StreamingRequest.InstrumentInfoUnsubscribeRequest.class);
+    }
+
+}
@@ -0,0 +1,259 @@
+package ru.tinkoff.invest.openapi.wrapper.impl;
+
+import ru.tinkoff.invest.openapi.wrapper.EndpointGroup;
+import ru.tinkoff.invest.openapi.wrapper.RateLimitMetrics;
+
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * Ограничение частоты запросов к rest-составляющей OpenAPI по группам методов ({@link EndpointGroup}).
+ *
+ * У каждой группы своё "ведро" маркеров, которое пополняется с заданной частотой и вмещает маркеры на несколько
+ * секунд вперёд. Запрос, которому не хватило маркера, не отклоняется, а ждёт своей очереди: маркер резервируется
+ * в долг, и время ожидания вычисляется сразу, так что запросы пропускаются в порядке поступления.
+ *
+ * Ответ 429 означает, что сервер считает иначе: действующая частота группы снижается вдвое, а затем, пока ответов
+ * 429 нет, постепенно возвращается к заданной.
+ */
+final class RateLimiter {
+
+    private static final long NANOS_PER_MINUTE = TimeUnit.MINUTES.toNanos(1);
+    // ведро вмещает столько маркеров, сколько набирается за это время
+    private static final long BURST_NANOS = TimeUnit.SECONDS.toNanos(10);
+    private static final long THROTTLE_COOLDOWN_NANOS = TimeUnit.SECONDS.toNanos(1);
+    private static final long RECOVERY_STEP_NANOS = TimeUnit.SECONDS.toNanos(5);
+    private static final double RECOVERY_STEP_FRACTION = 0.1;
+    private static final double MIN_LIMIT = 1.0;
+
+    private static final Duration[] WAIT_BOUNDS = {
+            Duration.ZERO,
+            Duration.ofMillis(10),
+            Duration.ofMillis(50),
+            Duration.ofMillis(100),
+            Duration.ofMillis(500),
+            Duration.ofSeconds(1),
+            Duration.ofSeconds(5),
+            Duration.ofSeconds(10),
+            Duration.ofSeconds(30)
+    };
+
+    private static final Map<EndpointGroup, Integer> DEFAULT_LIMITS = Map.of(
+            EndpointGroup.Orders, 100,
+            EndpointGroup.Portfolio, 120,
+            EndpointGroup.Market, 240,
+            EndpointGroup.Operations, 120,
+            EndpointGroup.Other, 120
+    );
+
+    private final Map<EndpointGroup, Bucket> buckets;
+    private final LongSupplier clock;
+
+    RateLimiter() {
+        this(DEFAULT_LIMITS, System::nanoTime);
+    }
+
+    /**
+     * @param limits Ограничения групп, запросов в минуту.
+     * @param clock Источник времени в наносекундах.
+     */
+    RateLimiter(final Map<EndpointGroup, Integer> limits, final LongSupplier clock) {
+        this.clock = clock;
+        this.buckets = new EnumMap<>(EndpointGroup.class);
+        final var now = clock.getAsLong();
+        for (final var group : EndpointGroup.values()) {
+            buckets.put(group, new Bucket(limits.get(group), now));
+        }
+    }
+
+    /**
+     * Группа, к которой относится метод.
+     *
+     * @param path Путь метода относительно хоста.
+     */
+    static EndpointGroup groupOf(final String path) {
+        if (path.startsWith("/orders")) {
+            return EndpointGroup.Orders;
+        } else if (path.startsWith("/portfolio")) {
+            return EndpointGroup.Portfolio;
+        } else if (path.startsWith("/market/")) {
+            return EndpointGroup.Market;
+        } else if (path.startsWith("/operations")) {
+            return EndpointGroup.Operations;
+        } else {
+            return EndpointGroup.Other;
+        }
+    }
+
+    /**
+     * Получение разрешения на запрос.
+     *
+     * @return Завершается, когда запрос можно отправлять.
+     */
+    CompletableFuture<Void> acquire(final EndpointGroup group) {
+        final var waitNanos = reserve(group);
+        if (waitNanos == 0) {
+            return CompletableFuture.completedFuture(null);
+        }
+
+        final var result = new CompletableFuture<Void>();
+        CompletableFuture.delayedExecutor(waitNanos, TimeUnit.NANOSECONDS).execute(() -> result.complete(null));
+        return result;
+    }
+
+    /**
+     * Резервирование маркера.
+     *
+     * @return Сколько наносекунд запрос должен подождать.
+     */
+    long reserve(final EndpointGroup group) {
+        final var bucket = buckets.get(group);
+        synchronized (bucket) {
+            final var now = clock.getAsLong();
+            bucket.refill(now);
+            bucket.tokens -= 1;
+            final var waitNanos = bucket.tokens >= 0
+                    ? 0L
+                    : (long) Math.ceil(-bucket.tokens * NANOS_PER_MINUTE / bucket.limit);
+            bucket.record(waitNanos);
+            return waitNanos;
+        }
+    }
+
+    /**
+     * Учёт ответа 429: действующая частота группы снижается вдвое (не чаще раза в секунду, чтобы пачка
+     * одновременных отказов не обнулила её), накопленный запас маркеров сгорает.
+     */
+    void onThrottled(final EndpointGroup group) {
+        final var bucket = buckets.get(group);
+        synchronized (bucket) {
+            final var now = clock.getAsLong();
+            bucket.refill(now);
+            bucket.throttledCount++;
+            if (now - bucket.throttledAt < THROTTLE_COOLDOWN_NANOS) return;
+
+            bucket.throttledAt = now;
+            bucket.adjustedAt = now;
+            bucket.limit = Math.max(MIN_LIMIT, bucket.limit / 2);
+            bucket.tokens = Math.min(bucket.tokens, 0);
+        }
+    }
+
+    int getLimit(final EndpointGroup group) {
+        final var bucket = buckets.get(group);
+        synchronized (bucket) {
+            return bucket.configuredLimit;
+        }
+    }
+
+    /**
+     * Изменение ограничения группы. Действующая частота сразу становится равной новой.
+     *
+     * @param requestsPerMinute Запросов в минуту.
+     */
+    void setLimit(final EndpointGroup group, final int requestsPerMinute) {
+        if (requestsPerMinute <= 0) {
+            throw new IllegalArgumentException("Недопустимое ограничение частоты запросов: " + requestsPerMinute);
+        }
+
+        final var bucket = buckets.get(group);
+        synchronized (bucket) {
+            bucket.refill(clock.getAsLong());
+            bucket.configuredLimit = requestsPerMinute;
+            bucket.limit = requestsPerMinute;
+            bucket.tokens = Math.min(bucket.tokens, bucket.capacity());
+        }
+    }
+
+    Map<EndpointGroup, RateLimitMetrics> getMetrics() {
+        final var result = new EnumMap<EndpointGroup, RateLimitMetrics>(EndpointGroup.class);
+        for (final var entry : buckets.entrySet()) {
+            final var bucket = entry.getValue();
+            synchronized (bucket) {
+                bucket.refill(clock.getAsLong());
+                final var histogram = new TreeMap<Duration, Long>();
+                for (int i = 0; i < WAIT_BOUNDS.length; i++) {
+                    histogram.put(WAIT_BOUNDS[i], bucket.waitCounts[i]);
+                }
+                result.put(entry.getKey(), new RateLimitMetrics(
+                        entry.getKey(),
+                        bucket.configuredLimit,
+                        bucket.limit,
+                        bucket.acquiredCount,
+                        bucket.throttledCount,
+                        Duration.ofNanos(bucket.maxWaitNanos),
+                        histogram
+                ));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Состояние группы. Все поля защищены самим объектом.
+     */
+    private static final class Bucket {
+        int configuredLimit;
+        /**
+         * Действующая частота, маркеров в минуту.
+         */
+        double limit;
+        /**
+         * Запас маркеров; отрицательный - маркеры, зарезервированные в долг ожидающими запросами.
+         */
+        double tokens;
+        long updatedAt;
+        long adjustedAt;
+        long throttledAt;
+
+        long acquiredCount;
+        long throttledCount;
+        long maxWaitNanos;
+        final long[] waitCounts;
+
+        Bucket(final int limit, final long now) {
+            this.configuredLimit = limit;
+            this.limit = limit;
+            this.tokens = capacity();
+            this.updatedAt = now;
+            this.adjustedAt = now;
+            this.throttledAt = now - THROTTLE_COOLDOWN_NANOS;
+            this.waitCounts = new long[WAIT_BOUNDS.length];
+        }
+
+        double capacity() {
+            return Math.max(1.0, limit * BURST_NANOS / NANOS_PER_MINUTE);
+        }
+
+        void refill(final long now) {
+            // после снижения частота возвращается к заданной по шагам
+            if (limit < configuredLimit) {
+                final var steps = (now - adjustedAt) / RECOVERY_STEP_NANOS;
+                if (steps > 0) {
+                    limit = Math.min(configuredLimit, limit + configuredLimit * RECOVERY_STEP_FRACTION * steps);
+                    adjustedAt += steps * RECOVERY_STEP_NANOS;
+                }
+            } else {
+                adjustedAt = now;
+            }
+
+            tokens = Math.min(capacity(), tokens + (now - updatedAt) * limit / NANOS_PER_MINUTE);
+            updatedAt = now;
+        }
+
+        void record(final long waitNanos) {
+            acquiredCount++;
+            maxWaitNanos = Math.max(maxWaitNanos, waitNanos);
+            var index = WAIT_BOUNDS.length - 1;
+            while (index > 0 && waitNanos < WAIT_BOUNDS[index].toNanos()) {
+                index--;
+            }
+            waitCounts[index]++;
+        }
+    }
+}
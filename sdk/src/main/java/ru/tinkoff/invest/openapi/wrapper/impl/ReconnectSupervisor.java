@@ -0,0 +1,318 @@
+package ru.tinkoff.invest.openapi.wrapper.impl;
+
+import ru.tinkoff.invest.openapi.wrapper.ReconnectEvent;
+import ru.tinkoff.invest.openapi.wrapper.ReconnectMetrics;
+import ru.tinkoff.invest.openapi.wrapper.StreamingKey;
+import ru.tinkoff.invest.openapi.wrapper.WebSocketListener;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.WebSocket;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Flow;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Восстановление WebSocket-соединения после его закрытия сервером или ошибки.
+ *
+ * Новое соединение строится с тем же обработчиком сообщений, так что все подписчики на сообщения остаются на месте.
+ * Попытки повторяются с удваивающейся (до предела) задержкой. Текущее соединение подменяется одной записью, и только
+ * после этого передаётся {@link ReconnectEvent}, чтобы восполнить пропущенное и переотправить подписки.
+ * События закрытия и ошибки от уже заменённых соединений не учитываются.
+ *
+ * Все отправки через соединение идут через одну очередь: WebSocket не допускает одновременных отправок, а
+ * отправлять через соединение могут несколько контекстов подключения. Действующие подписки запоминаются, чтобы
+ * переотправить их после восстановления.
+ */
+final class ReconnectSupervisor {
+
+    private static final Duration DEFAULT_INITIAL_DELAY = Duration.ofSeconds(1);
+    private static final Duration DEFAULT_MAX_DELAY = Duration.ofMinutes(1);
+    private static final Duration CONNECT_TIMEOUT = Duration.ofSeconds(10);
+
+    private final int socketIndex;
+    private final HttpClient httpClient;
+    private final String streamingHost;
+    private final String authToken;
+    private final WebSocketListener listener;
+    private final Logger logger;
+    private final Duration initialDelay;
+    private final Duration maxDelay;
+    private final Consumer<ReconnectEvent> onReconnect;
+    private final AtomicBoolean reconnecting;
+    private volatile WebSocket webSocket;
+    /**
+     * Индикатор закрытия в "нормальном" режиме, не по инициативе сервера.
+     */
+    private volatile boolean closedNormally;
+
+    // защищены this
+    private long reconnectsCount;
+    private long failedAttemptsCount;
+    private Duration lastTimeToRecover;
+    private Duration maxTimeToRecover;
+    private Duration totalDowntime;
+    private Instant lastReconnectedAt;
+
+    // защищены sendLock
+    private final Object sendLock;
+    private CompletableFuture<Void> lastSent;
+    private final Map<StreamingKey, String> subscriptions;
+    private final Set<StreamingKey> lost;
+
+    ReconnectSupervisor(final int socketIndex,
+                        final HttpClient httpClient,
+                        final String streamingHost,
+                        final String authToken,
+                        final WebSocket webSocket,
+                        final WebSocketListener listener,
+                        final Consumer<ReconnectEvent> onReconnect,
+                        final Logger logger) {
+        this(socketIndex, httpClient, streamingHost, authToken, webSocket, listener, onReconnect, logger,
+                DEFAULT_INITIAL_DELAY, DEFAULT_MAX_DELAY);
+    }
+
+    /**
+     * @param onReconnect Получатель событий восстановления соединения.
+     */
+    ReconnectSupervisor(final int socketIndex,
+                        final HttpClient httpClient,
+                        final String streamingHost,
+                        final String authToken,
+                        final WebSocket webSocket,
+                        final WebSocketListener listener,
+                        final Consumer<ReconnectEvent> onReconnect,
+                        final Logger logger,
+                        final Duration initialDelay,
+                        final Duration maxDelay) {
+        this.socketIndex = socketIndex;
+        this.httpClient = httpClient;
+        this.streamingHost = streamingHost;
+        this.authToken = authToken;
+        this.webSocket = webSocket;
+        this.listener = listener;
+        this.logger = logger;
+        this.initialDelay = initialDelay;
+        this.maxDelay = maxDelay;
+        this.onReconnect = onReconnect;
+        this.reconnecting = new AtomicBoolean(false);
+        this.lastTimeToRecover = Duration.ZERO;
+        this.maxTimeToRecover = Duration.ZERO;
+        this.totalDowntime = Duration.ZERO;
+        this.sendLock = new Object();
+        this.lastSent = CompletableFuture.completedFuture(null);
+        this.subscriptions = new LinkedHashMap<>();
+        this.lost = new HashSet<>();
+
+        listener.subscribeOnClose(new DisconnectSubscriber(
+                "WebSocket-соединение закрыто по инициативе сервера."));
+        listener.subscribeOnError(new DisconnectSubscriber(
+                "В WebSocket-соединении произошла ошибка."));
+    }
+
+    /**
+     * Текущее соединение.
+     */
+    WebSocket getWebSocket() {
+        return webSocket;
+    }
+
+    /**
+     * Постановка сообщения в очередь отправки. Сообщение уходит, когда завершится отправка предыдущего (успешно или
+     * нет), через соединение, текущее на тот момент.
+     *
+     * @param key Поток, к которому относится сообщение.
+     * @param message Сообщение.
+     * @param subscribe Оформляет ли сообщение подписку (иначе - отменяет её).
+     */
+    CompletableFuture<Void> send(final StreamingKey key, final String message, final boolean subscribe) {
+        synchronized (sendLock) {
+            if (subscribe) {
+                subscriptions.put(key, message);
+            } else {
+                subscriptions.remove(key);
+            }
+            // подписка отправлена заново, переотправлять её уже не нужно
+            lost.remove(key);
+            return enqueue(message);
+        }
+    }
+
+    /**
+     * Переотправка подписок, действовавших на момент последнего восстановления соединения и с тех пор не
+     * отправленных заново.
+     */
+    CompletableFuture<Void> resubscribe() {
+        synchronized (sendLock) {
+            final var resent = new ArrayList<CompletableFuture<Void>>(lost.size());
+            for (final var entry : subscriptions.entrySet()) {
+                if (lost.contains(entry.getKey())) {
+                    resent.add(enqueue(entry.getValue()));
+                }
+            }
+            lost.clear();
+            return CompletableFuture.allOf(resent.toArray(new CompletableFuture<?>[0]));
+        }
+    }
+
+    private CompletableFuture<Void> enqueue(final String message) {
+        final var result = lastSent.exceptionally(ex -> null)
+                .thenCompose(ignored -> webSocket.sendText(message, true))
+                .<Void>thenApply(ws -> null);
+        lastSent = result;
+        return result;
+    }
+
+    synchronized ReconnectMetrics getMetrics() {
+        return new ReconnectMetrics(
+                !reconnecting.get(),
+                reconnectsCount,
+                failedAttemptsCount,
+                lastTimeToRecover,
+                maxTimeToRecover,
+                totalDowntime
+        );
+    }
+
+    /**
+     * Идёт ли восстановление соединения.
+     */
+    boolean isReconnecting() {
+        return reconnecting.get();
+    }
+
+    /**
+     * Принудительное восстановление соединения (например, если соединение открыто, но данные по нему не идут).
+     * Если восстановление уже идёт, ничего не делает.
+     *
+     * @param reason Причина для журнала.
+     */
+    void reconnect(final String reason) {
+        onDisconnected(webSocket, reason);
+    }
+
+    /**
+     * Момент последнего восстановления соединения или null, если восстановлений не было.
+     */
+    synchronized Instant getLastReconnectedAt() {
+        return lastReconnectedAt;
+    }
+
+    /**
+     * Закрытие соединения без последующего восстановления.
+     */
+    void close() {
+        closedNormally = true;
+        webSocket.sendClose(WebSocket.NORMAL_CLOSURE, "Session closed");
+    }
+
+    private void onDisconnected(final WebSocket disconnected, final String message) {
+        if (closedNormally || disconnected != webSocket) return;
+        if (!reconnecting.compareAndSet(false, true)) return;
+
+        logger.warning(message);
+        scheduleAttempt(1, Instant.now());
+    }
+
+    private void scheduleAttempt(final int attempt, final Instant disconnectedAt) {
+        final var delay = delayOf(attempt);
+        logger.warning("Попытка восстановить соединение " + socketIndex + " #" + attempt + " через " + delay.toMillis() + " мс.");
+
+        CompletableFuture.delayedExecutor(delay.toNanos(), TimeUnit.NANOSECONDS).execute(() -> {
+            if (closedNormally) return;
+
+            final var builder = httpClient.newWebSocketBuilder();
+            builder.header("Authorization", authToken);
+            builder.connectTimeout(CONNECT_TIMEOUT);
+            builder.buildAsync(URI.create(streamingHost), listener).whenComplete((ws, ex) -> {
+                if (ex != null) {
+                    logger.log(Level.WARNING, "Не удалось восстановить соединение.", ex);
+                    synchronized (this) {
+                        failedAttemptsCount++;
+                    }
+                    scheduleAttempt(attempt + 1, disconnectedAt);
+                } else {
+                    onReconnected(ws, disconnectedAt, attempt);
+                }
+            });
+        });
+    }
+
+    private void onReconnected(final WebSocket newWebSocket, final Instant disconnectedAt, final int attempts) {
+        final var previous = webSocket;
+        synchronized (sendLock) {
+            webSocket = newWebSocket;
+            lost.addAll(subscriptions.keySet());
+        }
+        previous.abort();
+
+        final var event = new ReconnectEvent(socketIndex, disconnectedAt, Instant.now(), attempts);
+        final var timeToRecover = event.getTimeToRecover();
+        synchronized (this) {
+            reconnectsCount++;
+            lastReconnectedAt = event.getReconnectedAt();
+            lastTimeToRecover = timeToRecover;
+            if (timeToRecover.compareTo(maxTimeToRecover) > 0) {
+                maxTimeToRecover = timeToRecover;
+            }
+            totalDowntime = totalDowntime.plus(timeToRecover);
+        }
+        reconnecting.set(false);
+
+        logger.info("Соединение восстановлено за " + timeToRecover.toMillis() + " мс.");
+        if (closedNormally) {
+            newWebSocket.sendClose(WebSocket.NORMAL_CLOSURE, "Session closed");
+            return;
+        }
+        onReconnect.accept(event);
+    }
+
+    private Duration delayOf(final int attempt) {
+        final var shift = Math.min(attempt - 1, 30);
+        final var delay = initialDelay.multipliedBy(1L << shift);
+        return delay.compareTo(maxDelay) > 0 ? maxDelay : delay;
+    }
+
+    private class DisconnectSubscriber implements Flow.Subscriber<WebSocket> {
+
+        private final String message;
+
+        DisconnectSubscriber(final String message) {
+            this.message = message;
+        }
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            subscription.request(Long.MAX_VALUE);
+        }
+
+        @Override
+        public void onNext(WebSocket item) {
+            onDisconnected(item, message);
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            logger.log(
+                    Level.SEVERE,
+                    "Что-то пошло не так в подписке на стрим разрыва WebSocket-соединения.",
+                    throwable
+            );
+        }
+
+        @Override
+        public void onComplete() {
+        }
+    }
+}
@@ -0,0 +1,199 @@
+package ru.tinkoff.invest.openapi.wrapper.impl;
+
+import ru.tinkoff.invest.openapi.wrapper.RequestMetrics;
+import ru.tinkoff.invest.openapi.wrapper.RequestPriority;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
+
+/**
+ * Планировщик запросов к rest-составляющей OpenAPI.
+ *
+ * Одновременно выполняется не больше заданного числа запросов (по HTTP/2 они идут параллельными потоками одного
+ * соединения), остальные ждут в очередях по классам приоритета ({@link RequestPriority}). Освободившееся место
+ * получает самый старый запрос самого приоритетного класса, так что заявки не стоят за массовой загрузкой рыночных
+ * данных.
+ */
+final class RequestScheduler {
+
+    static final int DEFAULT_MAX_IN_FLIGHT = 8;
+
+    private static final RequestPriority[] PRIORITIES = RequestPriority.values();
+
+    private final Object lock;
+
+    // защищены lock
+    private final Map<RequestPriority, ArrayDeque<Task<?>>> queues;
+    private final Map<RequestPriority, Stats> stats;
+    private int maxInFlight;
+    private int inFlight;
+
+    RequestScheduler() {
+        this(DEFAULT_MAX_IN_FLIGHT);
+    }
+
+    /**
+     * @param maxInFlight Число одновременно выполняемых запросов.
+     */
+    RequestScheduler(final int maxInFlight) {
+        checkMaxInFlight(maxInFlight);
+        this.lock = new Object();
+        this.queues = new EnumMap<>(RequestPriority.class);
+        this.stats = new EnumMap<>(RequestPriority.class);
+        for (final var priority : PRIORITIES) {
+            queues.put(priority, new ArrayDeque<>());
+            stats.put(priority, new Stats());
+        }
+        this.maxInFlight = maxInFlight;
+    }
+
+    /**
+     * Постановка запроса в очередь.
+     *
+     * @param priority Класс приоритета.
+     * @param request Отправка запроса; вызывается, когда до запроса дойдёт очередь.
+     * @return Результат запроса.
+     */
+    <T> CompletableFuture<T> submit(final RequestPriority priority, final Supplier<CompletableFuture<T>> request) {
+        final var task = new Task<>(priority, request);
+        synchronized (lock) {
+            stats.get(priority).submitted++;
+            if (inFlight >= maxInFlight) {
+                queues.get(priority).addLast(task);
+                return task.result;
+            }
+            begin(task);
+        }
+
+        start(task);
+        return task.result;
+    }
+
+    int getMaxInFlight() {
+        synchronized (lock) {
+            return maxInFlight;
+        }
+    }
+
+    /**
+     * Изменение числа одновременно выполняемых запросов. При увеличении ожидающие запросы отправляются сразу.
+     */
+    void setMaxInFlight(final int maxInFlight) {
+        checkMaxInFlight(maxInFlight);
+        synchronized (lock) {
+            this.maxInFlight = maxInFlight;
+        }
+        startQueued();
+    }
+
+    Map<RequestPriority, RequestMetrics> getMetrics() {
+        final var result = new EnumMap<RequestPriority, RequestMetrics>(RequestPriority.class);
+        synchronized (lock) {
+            for (final var priority : PRIORITIES) {
+                final var s = stats.get(priority);
+                result.put(priority, new RequestMetrics(
+                        priority,
+                        s.submitted,
+                        queues.get(priority).size(),
+                        s.inFlight,
+                        s.started == 0 ? Duration.ZERO : Duration.ofNanos(s.totalQueueNanos / s.started),
+                        Duration.ofNanos(s.maxQueueNanos)
+                ));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Учёт начала выполнения запроса. Вызывается под lock.
+     */
+    private void begin(final Task<?> task) {
+        final var queueNanos = System.nanoTime() - task.submittedAt;
+        final var s = stats.get(task.priority);
+        s.started++;
+        s.inFlight++;
+        s.totalQueueNanos += queueNanos;
+        s.maxQueueNanos = Math.max(s.maxQueueNanos, queueNanos);
+        inFlight++;
+    }
+
+    private <T> void start(final Task<T> task) {
+        CompletableFuture<T> sent;
+        try {
+            sent = task.request.get();
+        } catch (Exception ex) {
+            sent = CompletableFuture.failedFuture(ex);
+        }
+
+        sent.whenComplete((value, ex) -> {
+            synchronized (lock) {
+                inFlight--;
+                stats.get(task.priority).inFlight--;
+            }
+            startQueued();
+
+            if (ex != null) {
+                task.result.completeExceptionally(ex);
+            } else {
+                task.result.complete(value);
+            }
+        });
+    }
+
+    private void startQueued() {
+        while (true) {
+            final Task<?> next;
+            synchronized (lock) {
+                next = inFlight < maxInFlight ? pollHighestPriority() : null;
+                if (next == null) return;
+                begin(next);
+            }
+            start(next);
+        }
+    }
+
+    /**
+     * Вызывается под lock.
+     */
+    private Task<?> pollHighestPriority() {
+        for (final var priority : PRIORITIES) {
+            final var task = queues.get(priority).pollFirst();
+            if (task != null) {
+                return task;
+            }
+        }
+        return null;
+    }
+
+    private static void checkMaxInFlight(final int maxInFlight) {
+        if (maxInFlight <= 0) {
+            throw new IllegalArgumentException("Недопустимое число одновременных запросов: " + maxInFlight);
+        }
+    }
+
+    private static final class Task<T> {
+        final RequestPriority priority;
+        final Supplier<CompletableFuture<T>> request;
+        final CompletableFuture<T> result;
+        final long submittedAt;
+
+        Task(final RequestPriority priority, final Supplier<CompletableFuture<T>> request) {
+            this.priority = priority;
+            this.request = request;
+            this.result = new CompletableFuture<>();
+            this.submittedAt = System.nanoTime();
+        }
+    }
+
+    private static final class Stats {
+        long submitted;
+        long started;
+        int inFlight;
+        long totalQueueNanos;
+        long maxQueueNanos;
+    }
+}
@@ -1,11 +1,25 @@
 package ru.tinkoff.invest.openapi.wrapper.impl;
 
+import ru.tinkoff.invest.openapi.data.StreamingRequest;
 import ru.tinkoff.invest.openapi.wrapper.Connection;
+import ru.tinkoff.invest.openapi.wrapper.EndpointGroup;
+import ru.tinkoff.invest.openapi.wrapper.RateLimitMetrics;
+import ru.tinkoff.invest.openapi.wrapper.ReconnectEvent;
+import ru.tinkoff.invest.openapi.wrapper.ReconnectMetrics;
+import ru.tinkoff.invest.openapi.wrapper.RequestMetrics;
+import ru.tinkoff.invest.openapi.wrapper.RequestPriority;
+import ru.tinkoff.invest.openapi.wrapper.StreamingSocketMetrics;
 import ru.tinkoff.invest.openapi.wrapper.SandboxContext;
 import ru.tinkoff.invest.openapi.wrapper.WebSocketListener;
 
 import java.net.http.HttpClient;
 import java.net.http.WebSocket;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Flow;
+import java.util.function.Function;
 import java.util.logging.Logger;
 
 class SandboxConnectionImpl implements Connection<SandboxContext> {
@@ -13,27 +27,28 @@ class SandboxConnectionImpl implements Connection<SandboxContext> {
     private final String host;
     private final String authToken;
     private final HttpClient httpClient;
-    private final WebSocket webSocket;
-    private final WebSocketListener listener;
+    private final StreamingSocketPool streamingSockets;
+    private final RequestScheduler requestScheduler;
+    private final RateLimiter rateLimiter;
     private final Logger logger;
 
     SandboxConnectionImpl(String host,
                           String authToken,
                           HttpClient httpClient,
-                          WebSocket webSocket,
-                          WebSocketListener listener,
+                          StreamingSocketPool streamingSockets,
                           Logger logger) {
         this.host = host;
         this.authToken = authToken;
         this.httpClient = httpClient;
-        this.webSocket = webSocket;
-        this.listener = listener;
+        this.streamingSockets = streamingSockets;
+        this.requestScheduler = new RequestScheduler();
+        this.rateLimiter = new RateLimiter();
         this.logger = logger;
     }
 
     @Override
     public SandboxContext context() {
-        return new SandboxContextImpl(this, logger);
+        return new SandboxContextImpl(this, requestScheduler, rateLimiter, logger);
     }
 
     @Override
@@ -53,16 +68,101 @@ class SandboxConnectionImpl implements Connection<SandboxContext> {
 
     @Override
     public WebSocket getWebSocket() {
-        return this.webSocket;
+        return streamingSockets.getWebSocket(0);
+    }
+
+    @Override
+    public WebSocket getWebSocket(String figi) {
+        return streamingSockets.getWebSocket(figi);
+    }
+
+    @Override
+    public int getStreamingSocketIndex(String figi) {
+        return streamingSockets.socketIndexOf(figi);
     }
 
     @Override
     public WebSocketListener getListener() {
-        return listener;
+        return streamingSockets.getListeners().get(0);
+    }
+
+    @Override
+    public List<WebSocketListener> getListeners() {
+        return streamingSockets.getListeners();
+    }
+
+    @Override
+    public CompletableFuture<Void> sendStreamingRequest(StreamingRequest request) {
+        return streamingSockets.send(request);
+    }
+
+    @Override
+    public void subscribeOnReconnect(Flow.Subscriber<ReconnectEvent> subscriber) {
+        streamingSockets.subscribe(subscriber);
+    }
+
+    @Override
+    public void addRecoveryAction(Function<ReconnectEvent, CompletableFuture<Void>> action) {
+        streamingSockets.addRecoveryAction(action);
+    }
+
+    @Override
+    public ReconnectMetrics getReconnectMetrics() {
+        return streamingSockets.getReconnectMetrics();
+    }
+
+    @Override
+    public void reconnect(int socketIndex) {
+        streamingSockets.reconnect(socketIndex, "Запрошено восстановление streaming-соединения " + socketIndex);
+    }
+
+    @Override
+    public Duration getStaleStreamTimeout() {
+        return streamingSockets.getStaleTimeout();
+    }
+
+    @Override
+    public void setStaleStreamTimeout(Duration timeout) {
+        streamingSockets.setStaleTimeout(timeout);
+    }
+
+    @Override
+    public List<StreamingSocketMetrics> getStreamingMetrics() {
+        return streamingSockets.getStreamingMetrics();
+    }
+
+    @Override
+    public int getMaxRequestsInFlight() {
+        return requestScheduler.getMaxInFlight();
+    }
+
+    @Override
+    public void setMaxRequestsInFlight(int maxRequestsInFlight) {
+        requestScheduler.setMaxInFlight(maxRequestsInFlight);
+    }
+
+    @Override
+    public Map<RequestPriority, RequestMetrics> getRequestMetrics() {
+        return requestScheduler.getMetrics();
+    }
+
+    @Override
+    public int getRateLimit(EndpointGroup group) {
+        return rateLimiter.getLimit(group);
+    }
+
+    @Override
+    public void setRateLimit(EndpointGroup group, int requestsPerMinute) {
+        rateLimiter.setLimit(group, requestsPerMinute);
+    }
+
+    @Override
+    public Map<EndpointGroup, RateLimitMetrics> getRateLimitMetrics() {
+        return rateLimiter.getMetrics();
     }
 
     @Override
     public void close() throws Exception {
-        webSocket.sendClose(WebSocket.NORMAL_CLOSURE, "Session closed");
+        streamingSockets.close();
     }
 }
@@ -1,10 +1,8 @@
 package ru.tinkoff.invest.openapi.wrapper.impl;
 
-import com.fasterxml.jackson.core.type.TypeReference;
 import ru.tinkoff.invest.openapi.wrapper.Connection;
 import ru.tinkoff.invest.openapi.wrapper.SandboxContext;
 import ru.tinkoff.invest.openapi.data.Currency;
-import ru.tinkoff.invest.openapi.data.OpenApiResponse;
 
 import java.math.BigDecimal;
 import java.util.concurrent.CompletableFuture;
@@ -37,33 +35,40 @@ class SandboxContextImpl extends ContextImpl implements SandboxContext {
         }
     }
 
-    SandboxContextImpl(Connection connection, Logger logger) {
+    SandboxContextImpl(Connection<?> connection, Logger logger) {
         super(connection, logger);
     }
 
+    SandboxContextImpl(Connection<?> connection,
+                       RequestScheduler scheduler,
+                       RateLimiter rateLimiter,
+                       Logger logger) {
+        super(connection, scheduler, rateLimiter, logger);
+    }
+
     @Override
     public CompletableFuture<Void> performRegistration() {
-        return sendPostRequest(REGISTER_PATH, null, new TypeReference<OpenApiResponse<EmptyPayload>>(){})
+        return sendPostRequest(REGISTER_PATH, null, OpenApiCodec.emptyPayloadTypeReference)
                 .thenApply(ep -> null);
     }
 
     @Override
     public CompletableFuture<Void> setCurrencyBalance(Currency currency, BigDecimal balance) {
         var payload = new CurrencyBalanceDto(currency, balance);
-        return sendPostRequest(CURRENCIES_BALANCE_PATH, payload, new TypeReference<OpenApiResponse<EmptyPayload>>(){})
+        return sendPostRequest(CURRENCIES_BALANCE_PATH, payload, OpenApiCodec.emptyPayloadTypeReference)
                 .thenApply(ep -> null);
     }
 
     @Override
     public CompletableFuture<Void> setPositionBalance(String figi, BigDecimal balance) {
         var payload = new PositionBalanceDto(figi, balance);
-        return sendPostRequest(POSITIONS_BALANCE_PATH, payload, new TypeReference<OpenApiResponse<EmptyPayload>>(){})
+        return sendPostRequest(POSITIONS_BALANCE_PATH, payload, OpenApiCodec.emptyPayloadTypeReference)
                 .thenApply(ep -> null);
     }
 
     @Override
     public CompletableFuture<Void> clearAll() {
-        return sendPostRequest(CLEAR_PATH, null, new TypeReference<OpenApiResponse<EmptyPayload>>(){})
+        return sendPostRequest(CLEAR_PATH, null, OpenApiCodec.emptyPayloadTypeReference)
                 .thenApply(ep -> null);
     }
 }
@@ -0,0 +1,129 @@
+package ru.tinkoff.invest.openapi.wrapper.impl;
+
+import ru.tinkoff.invest.openapi.data.StreamingEvent;
+import ru.tinkoff.invest.openapi.wrapper.BackpressurePolicy;
+import ru.tinkoff.invest.openapi.wrapper.StreamingKey;
+import ru.tinkoff.invest.openapi.wrapper.StreamingSubscription;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Рассылка событий streaming подписчикам.
+ *
+ * Подписчики без ключей получают все события. Подписчики с ключами проиндексированы по {@link StreamingKey}, так
+ * что событие доставляется только тем, кому оно нужно, и стоимость рассылки не растёт с числом инструментов.
+ * События без ключа (ошибки) получают все.
+ *
+ * У каждого подписчика свой ограниченный буфер ({@link BoundedSubscription}) со своим поведением при его
+ * заполнении, так что медленный подписчик не задерживает остальных, если только сам не выбрал
+ * {@link BackpressurePolicy#Block}.
+ */
+final class StreamingEventRouter {
+
+    private final Map<StreamingKey, List<BoundedSubscription>> routes;
+    private final List<BoundedSubscription> unfiltered;
+    private final Set<BoundedSubscription> all;
+    private final Executor executor;
+
+    StreamingEventRouter() {
+        this(ForkJoinPool.commonPool());
+    }
+
+    /**
+     * @param executor Исполнитель, в потоках которого вызываются подписчики.
+     */
+    StreamingEventRouter(Executor executor) {
+        this.routes = new ConcurrentHashMap<>();
+        this.unfiltered = new CopyOnWriteArrayList<>();
+        this.all = ConcurrentHashMap.newKeySet();
+        this.executor = executor;
+    }
+
+    /**
+     * Подписка на события заданных потоков. Маршрут убирается, как только подписчик отменяет подписку.
+     *
+     * @param keys Потоки или null, если нужны все события.
+     */
+    StreamingSubscription subscribe(Flow.Subscriber<? super StreamingEvent> subscriber,
+                                    Set<StreamingKey> keys,
+                                    BackpressurePolicy policy,
+                                    int bufferSize) {
+        final var ownKeys = keys == null ? null : Set.copyOf(keys);
+        final var subscription = new BoundedSubscription(subscriber, policy, bufferSize, executor,
+                cancelled -> remove(cancelled, ownKeys));
+
+        all.add(subscription);
+        if (ownKeys == null) {
+            unfiltered.add(subscription);
+        } else {
+            for (final var key : ownKeys) {
+                routes.compute(key, (k, list) -> {
+                    final var result = list == null ? new CopyOnWriteArrayList<BoundedSubscription>() : list;
+                    result.add(subscription);
+                    return result;
+                });
+            }
+        }
+        subscription.start();
+
+        return subscription;
+    }
+
+    /**
+     * Рассылка события.
+     */
+    void publish(StreamingEvent event) {
+        final var key = StreamingKey.of(event);
+        if (key == null) {
+            for (final var subscription : all) {
+                subscription.offer(event);
+            }
+            return;
+        }
+
+        for (final var subscription : unfiltered) {
+            subscription.offer(event);
+        }
+        final var targets = routes.get(key);
+        if (targets != null) {
+            for (final var subscription : targets) {
+                subscription.offer(event);
+            }
+        }
+    }
+
+    /**
+     * Завершение всех подписок.
+     */
+    void closeAll() {
+        routes.clear();
+        unfiltered.clear();
+        for (final var subscription : all) {
+            if (all.remove(subscription)) {
+                subscription.complete();
+            }
+        }
+    }
+
+    private void remove(BoundedSubscription subscription, Set<StreamingKey> keys) {
+        if (!all.remove(subscription)) return;
+
+        if (keys == null) {
+            unfiltered.remove(subscription);
+            return;
+        }
+        for (final var key : keys) {
+            routes.computeIfPresent(key, (k, list) -> {
+                list.remove(subscription);
+                return list.isEmpty() ? null : list;
+            });
+        }
+    }
+}
@@ -0,0 +1,409 @@
+package ru.tinkoff.invest.openapi.wrapper.impl;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import ru.tinkoff.invest.openapi.data.StreamingRequest;
+import ru.tinkoff.invest.openapi.wrapper.ReconnectEvent;
+import ru.tinkoff.invest.openapi.wrapper.ReconnectMetrics;
+import ru.tinkoff.invest.openapi.wrapper.StreamingKey;
+import ru.tinkoff.invest.openapi.wrapper.StreamingSocketMetrics;
+import ru.tinkoff.invest.openapi.wrapper.WebSocketListener;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.WebSocket;
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Flow;
+import java.util.concurrent.SubmissionPublisher;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Пул streaming-соединений.
+ *
+ * Инструменты распределяются между соединениями согласованным хешированием FIGI: у каждого соединения много точек
+ * на кольце хешей, и инструмент обслуживается соединением, чья точка следует за хешем его FIGI. Все потоки одного
+ * инструмента идут через одно соединение, так что порядок его событий сохраняется, а при изменении размера пула
+ * на другие соединения переезжает лишь около 1/n инструментов.
+ *
+ * Сообщения каждого соединения разбираются в своём потоке. Соединения восстанавливаются независимо друг от друга.
+ *
+ * Запросы streaming от всех контекстов подключения отправляются через пул: у каждого соединения одна очередь
+ * отправки, а действующие подписки после восстановления соединения переотправляются один раз на всё подключение -
+ * после того, как завершатся действия по восполнению пропущенного за время разрыва.
+ *
+ * Пул следит за живостью соединений: по каждому соединению периодически отправляется ping, и если по нему дольше
+ * заданного времени не приходило ни одного фрейма (даже pong), соединение восстанавливается, не дожидаясь его
+ * закрытия.
+ */
+final class StreamingSocketPool {
+
+    private static final int VIRTUAL_NODES = 128;
+    private static final Duration CONNECT_TIMEOUT = Duration.ofSeconds(10);
+    private static final Duration DEFAULT_STALE_TIMEOUT = Duration.ofSeconds(30);
+    // за время молчания, после которого соединение считается мёртвым, успевает уйти несколько ping
+    private static final int PINGS_PER_STALE_TIMEOUT = 3;
+    private static final Duration MAX_HEARTBEAT_PERIOD = Duration.ofSeconds(1);
+
+    private final List<WebSocketListenerImpl> listeners;
+    private final List<ReconnectSupervisor> supervisors;
+    private final List<ExecutorService> executors;
+    private final SubmissionPublisher<ReconnectEvent> reconnects;
+    private final List<Function<ReconnectEvent, CompletableFuture<Void>>> recoveryActions;
+    private final OpenApiCodec codec;
+    private final int[] ringHashes;
+    private final int[] ringSockets;
+    private final Logger logger;
+    private volatile Duration staleTimeout;
+    private volatile boolean closed;
+
+    // защищены this
+    private final long[] sampledCounts;
+    private final long[] sampledAt;
+
+    // используется только в проверках живости, которые идут друг за другом
+    private final long[] pingedAt;
+
+    /**
+     * Открытие пула соединений.
+     *
+     * @param size Число соединений.
+     * @return Пул, когда открыты все соединения. Если хотя бы одно не открылось, остальные закрываются.
+     */
+    static CompletableFuture<StreamingSocketPool> open(final HttpClient httpClient,
+                                                       final String streamingHost,
+                                                       final String authToken,
+                                                       final int size,
+                                                       final Logger logger) {
+        if (size <= 0) {
+            throw new IllegalArgumentException("Недопустимое число streaming-соединений: " + size);
+        }
+
+        final var executors = new ArrayList<ExecutorService>(size);
+        final var listeners = new ArrayList<WebSocketListenerImpl>(size);
+        final var connecting = new ArrayList<CompletableFuture<WebSocket>>(size);
+        for (int i = 0; i < size; i++) {
+            final var threadName = "openapi-streaming-" + i;
+            final var executor = Executors.newSingleThreadExecutor(runnable -> {
+                final var thread = new Thread(runnable, threadName);
+                thread.setDaemon(true);
+                return thread;
+            });
+            final var listener = new WebSocketListenerImpl(WebSocketListenerImpl.DEFAULT_MAX_PENDING_MESSAGES, executor);
+            executors.add(executor);
+            listeners.add(listener);
+
+            final var builder = httpClient.newWebSocketBuilder();
+            builder.header("Authorization", authToken);
+            builder.connectTimeout(CONNECT_TIMEOUT);
+            connecting.add(builder.buildAsync(URI.create(streamingHost), listener));
+        }
+
+        return CompletableFuture.allOf(connecting.toArray(new CompletableFuture<?>[0]))
+                .handle((ignored, ex) -> {
+                    if (ex != null) {
+                        for (final var future : connecting) {
+                            future.thenAccept(WebSocket::abort);
+                        }
+                        executors.forEach(ExecutorService::shutdown);
+                        throw ex instanceof CompletionException ? (CompletionException) ex : new CompletionException(ex);
+                    }
+
+                    final var webSockets = new ArrayList<WebSocket>(size);
+                    for (final var future : connecting) {
+                        webSockets.add(future.join());
+                    }
+                    return new StreamingSocketPool(
+                            httpClient, streamingHost, authToken, webSockets, listeners, executors, logger);
+                });
+    }
+
+    /**
+     * @param webSockets Открытые соединения.
+     * @param listeners Обработчики сообщений соединений (в том же порядке).
+     * @param executors Исполнители обработчиков, которые закрываются вместе с пулом.
+     */
+    StreamingSocketPool(final HttpClient httpClient,
+                        final String streamingHost,
+                        final String authToken,
+                        final List<WebSocket> webSockets,
+                        final List<WebSocketListenerImpl> listeners,
+                        final List<ExecutorService> executors,
+                        final Logger logger) {
+        final var size = webSockets.size();
+        this.listeners = List.copyOf(listeners);
+        this.executors = List.copyOf(executors);
+        this.reconnects = new SubmissionPublisher<>();
+        this.recoveryActions = new CopyOnWriteArrayList<>();
+        this.codec = OpenApiCodec.getInstance();
+        this.sampledCounts = new long[size];
+        this.sampledAt = new long[size];
+        Arrays.fill(sampledAt, System.nanoTime());
+        this.pingedAt = new long[size];
+        Arrays.fill(pingedAt, System.nanoTime());
+        this.logger = logger;
+        this.staleTimeout = DEFAULT_STALE_TIMEOUT;
+
+        final var supervisors = new ArrayList<ReconnectSupervisor>(size);
+        for (int i = 0; i < size; i++) {
+            supervisors.add(new ReconnectSupervisor(
+                    i, httpClient, streamingHost, authToken, webSockets.get(i), listeners.get(i), this::onReconnected, logger));
+        }
+        this.supervisors = List.copyOf(supervisors);
+
+        // точка кольца упакована в long: хеш в старших битах (по ним сортировка), номер соединения в младших
+        final var points = new long[size * VIRTUAL_NODES];
+        for (int i = 0; i < size; i++) {
+            for (int v = 0; v < VIRTUAL_NODES; v++) {
+                points[i * VIRTUAL_NODES + v] = ((long) mix(i * VIRTUAL_NODES + v) << 32) | i;
+            }
+        }
+        Arrays.sort(points);
+        this.ringHashes = new int[points.length];
+        this.ringSockets = new int[points.length];
+        for (int k = 0; k < points.length; k++) {
+            ringHashes[k] = (int) (points[k] >> 32);
+            ringSockets[k] = (int) points[k];
+        }
+
+        scheduleHeartbeat();
+    }
+
+    int size() {
+        return supervisors.size();
+    }
+
+    /**
+     * Номер соединения, обслуживающего инструмент.
+     */
+    int socketIndexOf(final String figi) {
+        if (supervisors.size() == 1 || figi == null) {
+            return 0;
+        }
+
+        var position = Arrays.binarySearch(ringHashes, mix(figi.hashCode()));
+        if (position < 0) {
+            position = -position - 1;
+        }
+        return ringSockets[position == ringHashes.length ? 0 : position];
+    }
+
+    WebSocket getWebSocket(final int index) {
+        return supervisors.get(index).getWebSocket();
+    }
+
+    WebSocket getWebSocket(final String figi) {
+        return getWebSocket(socketIndexOf(figi));
+    }
+
+    /**
+     * Отправка запроса через соединение, обслуживающее поток, в общей очереди отправки этого соединения.
+     */
+    CompletableFuture<Void> send(final StreamingRequest request) {
+        final String message;
+        try {
+            message = codec.writerFor(request.getClass()).writeValueAsString(request);
+        } catch (JsonProcessingException ex) {
+            return CompletableFuture.failedFuture(ex);
+        }
+
+        final var key = StreamingKey.of(request);
+        final var subscribe = request instanceof StreamingRequest.CandleSubscribeRequest ||
+                request instanceof StreamingRequest.OrderbookSubscribeRequest ||
+                request instanceof StreamingRequest.InstrumentInfoSubscribeRequest;
+        return supervisors.get(socketIndexOf(key.getFigi())).send(key, message, subscribe);
+    }
+
+    /**
+     * Добавление действия, которое выполняется при восстановлении соединения до переотправки подписок.
+     */
+    void addRecoveryAction(final Function<ReconnectEvent, CompletableFuture<Void>> action) {
+        recoveryActions.add(action);
+    }
+
+    /**
+     * Принудительное восстановление соединения.
+     */
+    void reconnect(final int index, final String reason) {
+        supervisors.get(index).reconnect(reason);
+    }
+
+    Duration getStaleTimeout() {
+        return staleTimeout;
+    }
+
+    void setStaleTimeout(final Duration staleTimeout) {
+        if (staleTimeout.isNegative() || staleTimeout.isZero()) {
+            throw new IllegalArgumentException("Недопустимое время молчания потока: " + staleTimeout);
+        }
+        this.staleTimeout = staleTimeout;
+    }
+
+    List<WebSocketListener> getListeners() {
+        return List.copyOf(listeners);
+    }
+
+    void subscribe(final Flow.Subscriber<ReconnectEvent> subscriber) {
+        reconnects.subscribe(subscriber);
+    }
+
+    /**
+     * Показатели восстановления, сведённые по всем соединениям: соединение считается установленным, только если
+     * установлены все, последнее время восстановления берётся у соединения, восстановленного позже остальных.
+     */
+    ReconnectMetrics getReconnectMetrics() {
+        var connected = true;
+        var reconnectsCount = 0L;
+        var failedAttemptsCount = 0L;
+        var lastTimeToRecover = Duration.ZERO;
+        var maxTimeToRecover = Duration.ZERO;
+        var totalDowntime = Duration.ZERO;
+        Instant lastReconnectedAt = null;
+
+        for (final var supervisor : supervisors) {
+            final var metrics = supervisor.getMetrics();
+            final var reconnectedAt = supervisor.getLastReconnectedAt();
+            connected &= metrics.isConnected();
+            reconnectsCount += metrics.getReconnectsCount();
+            failedAttemptsCount += metrics.getFailedAttemptsCount();
+            if (metrics.getMaxTimeToRecover().compareTo(maxTimeToRecover) > 0) {
+                maxTimeToRecover = metrics.getMaxTimeToRecover();
+            }
+            totalDowntime = totalDowntime.plus(metrics.getTotalDowntime());
+            if (reconnectedAt != null && (lastReconnectedAt == null || reconnectedAt.isAfter(lastReconnectedAt))) {
+                lastReconnectedAt = reconnectedAt;
+                lastTimeToRecover = metrics.getLastTimeToRecover();
+            }
+        }
+
+        return new ReconnectMetrics(
+                connected, reconnectsCount, failedAttemptsCount, lastTimeToRecover, maxTimeToRecover, totalDowntime);
+    }
+
+    /**
+     * Показатели соединений. Темп сообщений считается с предыдущего вызова.
+     */
+    synchronized List<StreamingSocketMetrics> getStreamingMetrics() {
+        final var now = System.nanoTime();
+        final var result = new ArrayList<StreamingSocketMetrics>(supervisors.size());
+        for (int i = 0; i < supervisors.size(); i++) {
+            final var count = listeners.get(i).getMessagesCount();
+            final var elapsed = now - sampledAt[i];
+            final var rate = elapsed > 0 ? (count - sampledCounts[i]) * 1e9 / elapsed : 0.0;
+            sampledCounts[i] = count;
+            sampledAt[i] = now;
+            result.add(new StreamingSocketMetrics(i, count, rate, supervisors.get(i).getMetrics()));
+        }
+        return result;
+    }
+
+    void close() {
+        closed = true;
+        for (final var supervisor : supervisors) {
+            supervisor.close();
+        }
+        reconnects.close();
+        executors.forEach(ExecutorService::shutdown);
+    }
+
+    /**
+     * Оповещение о восстановлении соединения и переотправка его подписок после действий по восполнению
+     * пропущенного (даже если какие-то из них не удались).
+     */
+    private void onReconnected(final ReconnectEvent event) {
+        reconnects.submit(event);
+
+        final var recovering = new ArrayList<CompletableFuture<Void>>(recoveryActions.size());
+        for (final var action : recoveryActions) {
+            try {
+                recovering.add(action.apply(event));
+            } catch (Exception ex) {
+                recovering.add(CompletableFuture.failedFuture(ex));
+            }
+        }
+
+        final var supervisor = supervisors.get(event.getSocketIndex());
+        CompletableFuture.allOf(recovering.toArray(new CompletableFuture<?>[0]))
+                .handle((ignored, ex) -> {
+                    if (ex != null) {
+                        logger.log(Level.WARNING, "Не удалось восполнить пропущенное за время разрыва соединения.", ex);
+                    }
+                    return supervisor.resubscribe();
+                })
+                .thenCompose(x -> x)
+                .whenComplete((ignored, ex) -> {
+                    if (ex != null) {
+                        logger.log(Level.SEVERE, "Не удалось переотправить подписки после восстановления соединения.", ex);
+                    }
+                });
+    }
+
+    private void scheduleHeartbeat() {
+        final var period = heartbeatPeriod(staleTimeout);
+        CompletableFuture.delayedExecutor(period.toNanos(), TimeUnit.NANOSECONDS).execute(() -> {
+            if (closed) return;
+            try {
+                heartbeat();
+            } catch (Exception ex) {
+                logger.log(Level.SEVERE, "Что-то пошло не так при проверке живости streaming-соединений.", ex);
+            }
+            scheduleHeartbeat();
+        });
+    }
+
+    /**
+     * Проверка живости соединений: молчащие дольше допустимого восстанавливаются, по остальным при необходимости
+     * отправляется ping.
+     */
+    private void heartbeat() {
+        final var timeout = staleTimeout;
+        final var pingPeriod = timeout.dividedBy(PINGS_PER_STALE_TIMEOUT).toNanos();
+        final var now = System.nanoTime();
+        for (int i = 0; i < supervisors.size(); i++) {
+            final var supervisor = supervisors.get(i);
+            if (supervisor.isReconnecting()) continue;
+
+            final var silence = now - listeners.get(i).getLastActivityNanos();
+            if (silence > timeout.toNanos()) {
+                supervisor.reconnect("По streaming-соединению " + i + " ничего не приходило " +
+                        TimeUnit.NANOSECONDS.toMillis(silence) + " мс.");
+            } else if (now - pingedAt[i] >= pingPeriod) {
+                pingedAt[i] = now;
+                final var index = i;
+                supervisor.getWebSocket().sendPing(ByteBuffer.allocate(0)).whenComplete((ws, ex) -> {
+                    if (ex != null) {
+                        logger.log(Level.WARNING, "Не удалось отправить ping по streaming-соединению " + index, ex);
+                    }
+                });
+            }
+        }
+    }
+
+    private static Duration heartbeatPeriod(final Duration staleTimeout) {
+        final var period = staleTimeout.dividedBy(PINGS_PER_STALE_TIMEOUT);
+        return period.compareTo(MAX_HEARTBEAT_PERIOD) > 0 ? MAX_HEARTBEAT_PERIOD : period;
+    }
+
+    /**
+     * Перемешивание битов хеша (финализатор MurmurHash3), чтобы близкие FIGI и номера точек расходились по кольцу.
+     */
+    private static int mix(int hash) {
+        hash ^= hash >>> 16;
+        hash *= 0x85ebca6b;
+        hash ^= hash >>> 13;
+        hash *= 0xc2b2ae35;
+        hash ^= hash >>> 16;
+        return hash;
+    }
+}
@@ -0,0 +1,123 @@
+package ru.tinkoff.invest.openapi.wrapper.impl;
+
+import java.nio.CharBuffer;
+import java.util.Arrays;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Текстовое сообщение WebSocket, собранное из фрагментов в переиспользуемый буфер.
+ *
+ * Сообщение передаётся подписчикам как есть, без копирования в {@link String}, и возвращается в пул, когда его
+ * обработали все подписчики. Поэтому сообщение действительно только до возврата из
+ * {@link java.util.concurrent.Flow.Subscriber#onNext}: чтобы сохранить его, нужно вызвать {@link #toString()}.
+ */
+final class TextFrame implements CharSequence {
+    private static final int INITIAL_CAPACITY = 4096;
+    // буферы больше этого размера не возвращаются в пул, чтобы редкое большое сообщение не удерживало память
+    private static final int MAX_POOLED_CAPACITY = 1 << 20;
+
+    private final BlockingQueue<TextFrame> pool;
+    private final AtomicInteger references;
+    private char[] chars;
+    private int length;
+
+    private TextFrame(BlockingQueue<TextFrame> pool) {
+        this.pool = pool;
+        this.references = new AtomicInteger();
+        this.chars = new char[INITIAL_CAPACITY];
+    }
+
+    /**
+     * Получение пустого сообщения из пула или создание нового, если пул пуст.
+     *
+     * @param pool Пул.
+     * @return Пустое сообщение.
+     */
+    static TextFrame acquire(BlockingQueue<TextFrame> pool) {
+        final var frame = pool.poll();
+        return frame != null ? frame : new TextFrame(pool);
+    }
+
+    /**
+     * Дописывание очередного фрагмента сообщения.
+     *
+     * @param part Фрагмент.
+     */
+    void append(CharSequence part) {
+        final var partLength = part.length();
+        ensureCapacity(length + partLength);
+
+        if (part instanceof String) {
+            ((String) part).getChars(0, partLength, chars, length);
+        } else if (part instanceof CharBuffer && ((CharBuffer) part).hasArray()) {
+            final var buffer = (CharBuffer) part;
+            System.arraycopy(buffer.array(), buffer.arrayOffset() + buffer.position(), chars, length, partLength);
+        } else {
+            for (var i = 0; i < partLength; i++) {
+                chars[length + i] = part.charAt(i);
+            }
+        }
+        length += partLength;
+    }
+
+    /**
+     * Установка числа подписчиков, которые должны обработать сообщение, прежде чем оно вернётся в пул.
+     *
+     * @param count Число подписчиков.
+     */
+    void retain(int count) {
+        references.set(count);
+    }
+
+    /**
+     * Сообщение обработано одним из подписчиков. После последнего сообщение возвращается в пул.
+     */
+    void release() {
+        if (references.decrementAndGet() != 0) return;
+
+        length = 0;
+        if (chars.length <= MAX_POOLED_CAPACITY) {
+            pool.offer(this);
+        }
+    }
+
+    /**
+     * Буфер с содержимым сообщения. Сообщение занимает его первые {@link #length()} символов.
+     */
+    char[] array() {
+        return chars;
+    }
+
+    @Override
+    public int length() {
+        return length;
+    }
+
+    @Override
+    public char charAt(int index) {
+        if (index < 0 || index >= length) {
+            throw new IndexOutOfBoundsException("Индекс " + index + " за пределами сообщения длины " + length);
+        }
+        return chars[index];
+    }
+
+    @Override
+    public CharSequence subSequence(int start, int end) {
+        if (start < 0 || end > length || start > end) {
+            throw new IndexOutOfBoundsException("Недопустимый диапазон [" + start + ", " + end + ")");
+        }
+        return new String(chars, start, end - start);
+    }
+
+    @Override
+    public String toString() {
+        return new String(chars, 0, length);
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity > chars.length) {
+            chars = Arrays.copyOf(chars, Math.max(capacity, chars.length * 2));
+        }
+    }
+}
@@ -3,62 +3,222 @@ package ru.tinkoff.invest.openapi.wrapper.impl;
 import ru.tinkoff.invest.openapi.wrapper.WebSocketListener;
 
 import java.net.http.WebSocket;
-import java.util.ArrayList;
-import java.util.List;
-import java.util.concurrent.CompletableFuture;
+import java.nio.ByteBuffer;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Executor;
 import java.util.concurrent.Flow;
+import java.util.concurrent.ForkJoinPool;
 import java.util.concurrent.SubmissionPublisher;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
 
+/**
+ * Приём сообщений из WebSocket. Следующий фрейм запрашивается, только когда подписчики успевают обрабатывать
+ * сообщения: если у кого-то из них накопилось больше заданного числа необработанных сообщений, приём
+ * приостанавливается до тех пор, пока очередь не разгрузится.
+ *
+ * Фрагменты сообщения сразу копируются в буфер из пула ({@link TextFrame}), который после обработки сообщения
+ * всеми подписчиками возвращается в пул, так что в установившемся режиме приём сообщений не выделяет память.
+ *
+ * Один экземпляр может обслуживать последовательно несколько соединений (при восстановлении соединения): при
+ * открытии нового соединения недособранное сообщение и приостановка приёма сбрасываются.
+ */
 public class WebSocketListenerImpl implements WebSocketListener {
-    private List<CharSequence> parts = new ArrayList<>();
-    private CompletableFuture<?> accumulatedMessage = new CompletableFuture<>();
-    private final SubmissionPublisher<String> streamingOnMessage;
-    private final SubmissionPublisher<Void> streamingOnClose;
-    private final SubmissionPublisher<Void> streamingOnError;
+    static final int DEFAULT_MAX_PENDING_MESSAGES = Flow.defaultBufferSize() / 2;
+
+    private TextFrame frame;
+    private final BlockingQueue<TextFrame> framesPool;
+    private final Object subscribersLock;
+    private final SubmissionPublisher<TextFrame> streamingOnMessage;
+    private final SubmissionPublisher<WebSocket> streamingOnClose;
+    private final SubmissionPublisher<WebSocket> streamingOnError;
+    private final int maxPendingMessages;
+    private final AtomicBoolean suspended;
+    private final LongAdder messagesCount;
+    private volatile WebSocket suspendedWebSocket;
+    private volatile long lastActivityNanos;
 
     public WebSocketListenerImpl() {
-        streamingOnMessage = new SubmissionPublisher<>();
+        this(DEFAULT_MAX_PENDING_MESSAGES);
+    }
+
+    /**
+     * @param maxPendingMessages Число необработанных сообщений, при котором приём приостанавливается. Не больше
+     *                           {@link Flow#defaultBufferSize()}, чтобы до буфера рассылки дело не доходило.
+     */
+    public WebSocketListenerImpl(int maxPendingMessages) {
+        this(maxPendingMessages, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * @param maxPendingMessages Число необработанных сообщений, при котором приём приостанавливается.
+     * @param executor Исполнитель, в потоках которого подписчики обрабатывают сообщения.
+     */
+    public WebSocketListenerImpl(int maxPendingMessages, Executor executor) {
+        if (maxPendingMessages <= 0 || maxPendingMessages > Flow.defaultBufferSize()) {
+            throw new IllegalArgumentException("Недопустимое число необработанных сообщений: " + maxPendingMessages);
+        }
+        this.maxPendingMessages = maxPendingMessages;
+        this.suspended = new AtomicBoolean(false);
+        this.messagesCount = new LongAdder();
+        // сообщений в обработке не больше, чем допускает приостановка приёма, плюс принимаемое
+        this.framesPool = new ArrayBlockingQueue<>(maxPendingMessages + 1);
+        this.subscribersLock = new Object();
+        streamingOnMessage = new SubmissionPublisher<>(executor, Flow.defaultBufferSize());
         streamingOnClose = new SubmissionPublisher<>();
         streamingOnError = new SubmissionPublisher<>();
+        lastActivityNanos = System.nanoTime();
+    }
+
+    @Override
+    public void onOpen(WebSocket webSocket) {
+        lastActivityNanos = System.nanoTime();
+        frame = null;
+        suspended.set(false);
+        webSocket.request(1);
+    }
+
+    @Override
+    public CompletionStage<?> onClose(WebSocket webSocket, int statusCode, String reason) {
+        this.streamingOnClose.submit(webSocket);
+        return null;
+    }
+
+    @Override
+    public void onError(WebSocket webSocket, Throwable error) {
+        this.streamingOnError.submit(webSocket);
+    }
+
+    @Override
+    public CompletionStage<?> onPing(WebSocket webSocket, ByteBuffer message) {
+        // ответ на ping WebSocket-клиент отправляет сам
+        lastActivityNanos = System.nanoTime();
+        webSocket.request(1);
+        return null;
+    }
+
+    @Override
+    public CompletionStage<?> onPong(WebSocket webSocket, ByteBuffer message) {
+        lastActivityNanos = System.nanoTime();
+        webSocket.request(1);
+        return null;
     }
 
     public CompletionStage<?> onText(WebSocket webSocket,
                                      CharSequence data,
                                      boolean last) {
-        parts.add(data);
-        webSocket.request(1);
+        lastActivityNanos = System.nanoTime();
+        if (frame == null) {
+            frame = TextFrame.acquire(framesPool);
+        }
+        frame.append(data);
+
         if (last) {
-            final var sb = new StringBuilder();
-            for (var part : parts) {
-                sb.append(part);
-            }
-            processWholeText(sb.toString());
-            parts = new ArrayList<>();
-            accumulatedMessage.complete(null);
-            CompletionStage<?> cf = accumulatedMessage;
-            accumulatedMessage = new CompletableFuture<>();
-            return cf;
+            final var wholeText = frame;
+            frame = null;
+            processWholeText(wholeText);
+            requestNextMessage(webSocket);
+        } else {
+            webSocket.request(1);
         }
-        return accumulatedMessage;
+        // фрагмент уже скопирован, его буфер можно переиспользовать сразу
+        return null;
+    }
+
+    private void requestNextMessage(WebSocket webSocket) {
+        if (hasCapacity()) {
+            webSocket.request(1);
+            return;
+        }
+
+        suspendedWebSocket = webSocket;
+        suspended.set(true);
+        // подписчики могли разгрузиться до установки признака
+        resumeIfDrained();
+    }
+
+    private void resumeIfDrained() {
+        if (suspended.get() && hasCapacity() && suspended.compareAndSet(true, false)) {
+            suspendedWebSocket.request(1);
+        }
+    }
+
+    private boolean hasCapacity() {
+        return streamingOnMessage.estimateMaximumLag() < maxPendingMessages;
+    }
+
+    /**
+     * Момент (по {@link System#nanoTime()}) последнего входящего фрейма любого вида, включая ping и pong.
+     */
+    public long getLastActivityNanos() {
+        return lastActivityNanos;
     }
 
-    private void processWholeText(String message) {
-        this.streamingOnMessage.submit(message);
+    /**
+     * Число полученных сообщений.
+     */
+    public long getMessagesCount() {
+        return messagesCount.sum();
+    }
+
+    private void processWholeText(TextFrame message) {
+        messagesCount.increment();
+        // подписчики не добавляются между подсчётом и отправкой, иначе сообщение вернулось бы в пул раньше времени
+        synchronized (subscribersLock) {
+            final var consumers = this.streamingOnMessage.getNumberOfSubscribers();
+            if (consumers == 0) {
+                message.retain(1);
+                message.release();
+                return;
+            }
+            message.retain(consumers);
+            this.streamingOnMessage.submit(message);
+        }
     }
 
     @Override
-    public void subscribeOnMessage(Flow.Subscriber<String> subscriber) {
-        this.streamingOnMessage.subscribe(subscriber);
+    public void subscribeOnMessage(Flow.Subscriber<CharSequence> subscriber) {
+        final Flow.Subscriber<TextFrame> releasing = new Flow.Subscriber<>() {
+            @Override
+            public void onSubscribe(Flow.Subscription subscription) {
+                subscriber.onSubscribe(subscription);
+            }
+
+            @Override
+            public void onNext(TextFrame item) {
+                try {
+                    subscriber.onNext(item);
+                } finally {
+                    item.release();
+                    resumeIfDrained();
+                }
+            }
+
+            @Override
+            public void onError(Throwable throwable) {
+                subscriber.onError(throwable);
+            }
+
+            @Override
+            public void onComplete() {
+                subscriber.onComplete();
+            }
+        };
+
+        synchronized (subscribersLock) {
+            this.streamingOnMessage.subscribe(releasing);
+        }
     }
 
     @Override
-    public void subscribeOnClose(Flow.Subscriber<Void> subscriber) {
+    public void subscribeOnClose(Flow.Subscriber<WebSocket> subscriber) {
         this.streamingOnClose.subscribe(subscriber);
     }
 
     @Override
-    public void subscribeOnError(Flow.Subscriber<Void> subscriber) {
+    public void subscribeOnError(Flow.Subscriber<WebSocket> subscriber) {
         this.streamingOnError.subscribe(subscriber);
     }
 
@@ -0,0 +1,76 @@
+package ru.tinkoff.invest.openapi;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+class EventLoopTest {
+
+    private static final Logger logger = Logger.getLogger(EventLoopTest.class.getName());
+
+    @Test
+    void executingTasksInOrder() throws InterruptedException {
+        final var loop = new EventLoop("test-loop", logger);
+        final var executed = new ArrayList<Integer>();
+        final var started = new CountDownLatch(1);
+        final var gate = new CountDownLatch(1);
+
+        loop.execute(() -> {
+            started.countDown();
+            try {
+                gate.await();
+            } catch (InterruptedException ignored) {
+            }
+        });
+        for (int i = 0; i < 10; i++) {
+            final var number = i;
+            loop.execute(() -> executed.add(number));
+        }
+        loop.execute(() -> {
+            throw new IllegalStateException("задача с ошибкой не останавливает цикл");
+        });
+        loop.execute(() -> executed.add(10));
+
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        assertEquals(loop.getMetrics().getQueueDepth(), 12);
+        gate.countDown();
+
+        loop.shutdown();
+        loop.awaitTermination();
+
+        assertEquals(executed, List.of(0, 1, 2, 3, 4, 5, 6, 7, 8, 9, 10));
+        final var metrics = loop.getMetrics();
+        assertEquals(metrics.getName(), "test-loop");
+        assertEquals(metrics.getQueueDepth(), 0);
+        assertTrue(metrics.getProcessed() >= 13);
+        assertTrue(metrics.getMaxLatency().compareTo(metrics.getAverageLatency()) >= 0);
+        assertThrows(RejectedExecutionException.class, () -> loop.execute(() -> {}));
+    }
+
+    @Test
+    void measuringQueueLatency() throws InterruptedException {
+        final var loop = new EventLoop("latency-loop", logger);
+        final var done = new CountDownLatch(2);
+
+        loop.execute(() -> {
+            try {
+                TimeUnit.MILLISECONDS.sleep(50);
+            } catch (InterruptedException ignored) {
+            }
+            done.countDown();
+        });
+        loop.execute(done::countDown);
+
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        assertTrue(loop.getMetrics().getMaxLatency().toMillis() >= 40);
+
+        loop.shutdown();
+    }
+}
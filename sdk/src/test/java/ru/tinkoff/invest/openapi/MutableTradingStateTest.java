@@ -0,0 +1,65 @@
+package ru.tinkoff.invest.openapi;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.Test;
+import ru.tinkoff.invest.openapi.data.StreamingEvent;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+class MutableTradingStateTest {
+
+    @Test
+    void detectingConcurrentWrites() {
+        final var state = new MutableTradingState(initialState());
+        final var orderbook = new StreamingEvent.Orderbook(1, List.of(), List.of(), "figi");
+
+        final var version = state.getVersion();
+        assertSame(state.getOrderbook(), null);
+        assertTrue(state.validate(version));
+
+        state.setOrderbook(orderbook);
+        assertFalse(state.validate(version));
+        assertSame(state.getOrderbook(), orderbook);
+        assertEquals(state.getVersion(), version + 2);
+        assertSame(state.snapshot().getOrderbook(), orderbook);
+    }
+
+    @Test
+    void readingConsistentSnapshots() throws Exception {
+        final var state = new MutableTradingState(initialState());
+        final var stopped = new AtomicBoolean(false);
+
+        final var writer = CompletableFuture.runAsync(() -> {
+            var waiting = false;
+            while (!stopped.get()) {
+                waiting = !waiting;
+                if (waiting) {
+                    state.setStatuses(TradingState.OrderStatus.WaitingBuy, TradingState.PositionStatus.None);
+                } else {
+                    state.setStatuses(TradingState.OrderStatus.None, TradingState.PositionStatus.Exists);
+                }
+            }
+        });
+
+        try {
+            for (int i = 0; i < 100_000; i++) {
+                final var snapshot = state.snapshot();
+                final var waiting = snapshot.getOrderStatus() == TradingState.OrderStatus.WaitingBuy;
+                final var exists = snapshot.getPositionStatus() == TradingState.PositionStatus.Exists;
+                assertTrue(waiting != exists, "Несогласованное состояние: " + snapshot.getOrderStatus() + ", " +
+                        snapshot.getPositionStatus());
+            }
+        } finally {
+            stopped.set(true);
+            writer.get(5, TimeUnit.SECONDS);
+        }
+    }
+
+    private static TradingState initialState() {
+        return new TradingState(null, null, null, TradingState.PositionStatus.Exists, TradingState.OrderStatus.None);
+    }
+}
@@ -0,0 +1,101 @@
+package ru.tinkoff.invest.openapi;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+import org.junit.jupiter.api.Test;
+import ru.tinkoff.invest.openapi.data.*;
+import ru.tinkoff.invest.openapi.wrapper.Context;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.logging.Logger;
+
+class OrderTrackerTest {
+
+    private static final Logger logger = Logger.getLogger(OrderTrackerTest.class.getName());
+
+    @Test
+    void trackingOrdersWithSharedPolling() {
+        final var context = mock(Context.class);
+        when(context.getOrders())
+                .thenReturn(CompletableFuture.completedFuture(List.of(order("first"), order("second"))))
+                .thenReturn(CompletableFuture.completedFuture(List.of(order("second"))))
+                .thenReturn(CompletableFuture.completedFuture(List.of()));
+
+        // опросы запускаются вручную, без ожидания интервала
+        final var scheduledPolls = new ArrayDeque<Runnable>();
+        final var tracker = new OrderTracker(context, scheduledPolls::add, logger);
+        final var first = tracker.track("first");
+        final var second = tracker.track("second");
+        assertEquals(tracker.getTrackedOrders(), Set.of("first", "second"));
+        assertEquals(scheduledPolls.size(), 1);
+
+        scheduledPolls.poll().run();
+        assertFalse(first.isDone());
+        scheduledPolls.poll().run();
+        assertTrue(first.isDone());
+        assertFalse(second.isDone());
+        scheduledPolls.poll().run();
+        assertTrue(second.isDone());
+
+        // один запрос за опрос, а не по запросу на каждую заявку; без заявок опрос прекращается
+        verify(context, times(3)).getOrders();
+        assertTrue(tracker.getTrackedOrders().isEmpty());
+        assertTrue(scheduledPolls.isEmpty());
+    }
+
+    @Test
+    void pollingAgainAfterSynchronousFailure() {
+        final var context = mock(Context.class);
+        when(context.getOrders())
+                .thenThrow(new IllegalStateException("rejected"))
+                .thenReturn(CompletableFuture.completedFuture(List.of()));
+
+        final var scheduledPolls = new ArrayDeque<Runnable>();
+        final var tracker = new OrderTracker(context, scheduledPolls::add, logger);
+        final var completion = tracker.track("id");
+
+        // исключение из вызова контекста не останавливает опрос
+        scheduledPolls.poll().run();
+        assertFalse(completion.isDone());
+        assertEquals(scheduledPolls.size(), 1);
+        scheduledPolls.poll().run();
+        assertTrue(completion.isDone());
+        verify(context, times(2)).getOrders();
+    }
+
+    @Test
+    void pollingWithInterval() throws InterruptedException, ExecutionException, TimeoutException {
+        final var context = mock(Context.class);
+        when(context.getOrders()).thenReturn(CompletableFuture.completedFuture(List.of()));
+
+        final var tracker = new OrderTracker(context, Duration.ofMillis(10), logger);
+        tracker.track("id").get(5, TimeUnit.SECONDS);
+        verify(context).getOrders();
+    }
+
+    @Test
+    void untrackingOrder() {
+        final var context = mock(Context.class);
+        when(context.getOrders()).thenReturn(CompletableFuture.completedFuture(List.of(order("id"))));
+
+        final var tracker = new OrderTracker(context, Duration.ofMillis(10), logger);
+        final var completion = tracker.track("id");
+        tracker.untrack("id");
+
+        assertTrue(completion.isCancelled());
+        assertTrue(tracker.getTrackedOrders().isEmpty());
+    }
+
+    private static Order order(final String id) {
+        return new Order(id, "figi", OperationType.Buy, OrderStatus.New, 1, 0, OrderType.Limit, BigDecimal.ONE);
+    }
+}
@@ -0,0 +1,125 @@
+package ru.tinkoff.invest.openapi;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+import org.junit.jupiter.api.Test;
+import ru.tinkoff.invest.openapi.data.CandleInterval;
+import ru.tinkoff.invest.openapi.data.Currency;
+import ru.tinkoff.invest.openapi.data.Instrument;
+import ru.tinkoff.invest.openapi.data.StreamingEvent;
+import ru.tinkoff.invest.openapi.wrapper.Context;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Flow;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+class PortfolioStrategyExecutorTest {
+
+    private static final String figi = "BBG000B9XRY4";
+    private static final Instrument instrument = new Instrument(
+            figi, "AAPL", "US0378331005", new BigDecimal("0.01"), 1, Currency.USD, "Apple");
+
+    @Test
+    void restartingAfterStop() throws InterruptedException {
+        final var context = mock(Context.class);
+        when(context.sendStreamingRequest(any())).thenReturn(CompletableFuture.completedFuture(null));
+        final var subscribers = new LinkedBlockingQueue<Flow.Subscriber<? super StreamingEvent>>();
+        doAnswer(invocation -> {
+            final Flow.Subscriber<? super StreamingEvent> subscriber = invocation.getArgument(0);
+            subscriber.onSubscribe(mock(Flow.Subscription.class));
+            subscribers.add(subscriber);
+            return null;
+        }).when(context).subscribe(any(), anySet());
+
+        final var strategy = new RecordingStrategy();
+        final var executor = new PortfolioStrategyExecutor(
+                context, 1, Duration.ofSeconds(1), Logger.getLogger(PortfolioStrategyExecutorTest.class.getName()));
+        executor.add(strategy);
+
+        executor.run();
+        subscribers.poll(5, TimeUnit.SECONDS).onNext(instrumentInfo("NormalTrading"));
+        assertEquals(strategy.states.poll(5, TimeUnit.SECONDS).getInstrumentInfo().getTradeStatus(),
+                "NormalTrading");
+
+        executor.stop();
+        assertFalse(executor.isRunning());
+        assertTrue(strategy.completed.poll(5, TimeUnit.SECONDS));
+
+        // после перезапуска стратегия снова получает события
+        executor.run();
+        subscribers.poll(5, TimeUnit.SECONDS).onNext(instrumentInfo("BreakInTrading"));
+        assertEquals(strategy.states.poll(5, TimeUnit.SECONDS).getInstrumentInfo().getTradeStatus(),
+                "BreakInTrading");
+        assertEquals(strategy.initCount, 2);
+
+        executor.shutdown();
+    }
+
+    private static StreamingEvent.InstrumentInfo instrumentInfo(final String tradeStatus) {
+        return new StreamingEvent.InstrumentInfo(
+                tradeStatus, new BigDecimal("0.01"), 1, null, null, null, figi);
+    }
+
+    private static class RecordingStrategy implements Strategy {
+        final LinkedBlockingQueue<TradingState> states = new LinkedBlockingQueue<>();
+        final LinkedBlockingQueue<Boolean> completed = new LinkedBlockingQueue<>();
+        volatile int initCount;
+
+        @Override
+        public Instrument getInstrument() {
+            return instrument;
+        }
+
+        @Override
+        public CandleInterval getCandleInterval() {
+            return CandleInterval.HOUR;
+        }
+
+        @Override
+        public int getOrderbookDepth() {
+            return 1;
+        }
+
+        @Override
+        public void init() {
+            initCount++;
+        }
+
+        @Override
+        public void cleanup() {
+        }
+
+        @Override
+        public TradingState getCurrentState() {
+            return new TradingState(null, null, null, TradingState.PositionStatus.None, TradingState.OrderStatus.None);
+        }
+
+        @Override
+        public void subscribe(Flow.Subscriber<? super StrategyDecision> subscriber) {
+        }
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            subscription.request(Long.MAX_VALUE);
+        }
+
+        @Override
+        public void onNext(TradingState item) {
+            states.add(item);
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+        }
+
+        @Override
+        public void onComplete() {
+            completed.add(true);
+        }
+    }
+}
@@ -0,0 +1,211 @@
+package ru.tinkoff.invest.openapi.data;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.MapperFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.time.Instant;
+
+class StreamingEventTest {
+
+    private static ObjectReader reader;
+
+    @BeforeAll
+    static void initTest() {
+        final var mapper = new ObjectMapper();
+        mapper.configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+        mapper.registerModule(new JavaTimeModule());
+        mapper.enable(MapperFeature.ACCEPT_CASE_INSENSITIVE_ENUMS);
+        reader = mapper.readerFor(StreamingEvent.class);
+    }
+
+    @Test
+    void decodingCandle() throws IOException {
+        final String json = "{" +
+                "\"event\":\"candle\"," +
+                "\"time\":\"2019-08-07T15:35:00.029721253Z\"," +
+                "\"payload\":{" +
+                    "\"o\":64.0575," +
+                    "\"c\":64.0601," +
+                    "\"h\":64.0612," +
+                    "\"l\":64.0500," +
+                    "\"v\":164," +
+                    "\"time\":\"2019-08-07T15:35:00Z\"," +
+                    "\"interval\":\"5min\"," +
+                    "\"figi\":\"BBG0013HGFT4\"" +
+                "}" +
+                "}";
+
+        final StreamingEvent event = reader.readValue(json);
+
+        assertTrue(event instanceof StreamingEvent.Candle);
+        final var candle = (StreamingEvent.Candle) event;
+        assertEquals(candle.getOpenPrice(), new BigDecimal("64.0575"));
+        assertEquals(candle.getClosingPrice(), new BigDecimal("64.0601"));
+        assertEquals(candle.getHighestPrice(), new BigDecimal("64.0612"));
+        assertEquals(candle.getLowestPrice(), new BigDecimal("64.0500"));
+        assertEquals(candle.getTradingValue(), new BigDecimal("164"));
+        assertEquals(candle.getDateTime().toInstant(), Instant.parse("2019-08-07T15:35:00Z"));
+        assertEquals(candle.getInterval(), CandleInterval.FIVE_MIN);
+        assertEquals(candle.getFigi(), "BBG0013HGFT4");
+    }
+
+    @Test
+    void decodingOrderbook() throws IOException {
+        final String json = "{" +
+                "\"event\":\"orderbook\"," +
+                "\"time\":\"2019-08-07T15:35:00.029721253Z\"," +
+                "\"payload\":{" +
+                    "\"figi\":\"BBG0013HGFT4\"," +
+                    "\"depth\":2," +
+                    "\"bids\":[[64.3525,204],[64.1975,98]]," +
+                    "\"asks\":[[64.38,102],[64.3825,14]]" +
+                "}" +
+                "}";
+
+        final StreamingEvent event = reader.readValue(json);
+
+        assertTrue(event instanceof StreamingEvent.Orderbook);
+        final var orderbook = (StreamingEvent.Orderbook) event;
+        assertEquals(orderbook.getDepth(), 2);
+        assertEquals(orderbook.getFigi(), "BBG0013HGFT4");
+        assertEquals(orderbook.getBids().size(), 2);
+        assertEquals(orderbook.getBids().get(0)[0], new BigDecimal("64.3525"));
+        assertEquals(orderbook.getBids().get(0)[1], new BigDecimal("204"));
+        assertEquals(orderbook.getAsks().size(), 2);
+        assertEquals(orderbook.getAsks().get(1)[0], new BigDecimal("64.3825"));
+        assertEquals(orderbook.getAsks().get(1)[1], new BigDecimal("14"));
+        // событие общее для всех подписчиков
+        assertThrows(UnsupportedOperationException.class, () -> orderbook.getBids().clear());
+        assertThrows(UnsupportedOperationException.class, () -> orderbook.getAsks().remove(0));
+    }
+
+    @Test
+    void readingPricesInTicks() throws IOException {
+        final String json = "{" +
+                "\"event\":\"orderbook\"," +
+                "\"payload\":{" +
+                    "\"figi\":\"BBG0013HGFT4\"," +
+                    "\"depth\":2," +
+                    "\"bids\":[[64.3525,204],[64.1975,98]]," +
+                    "\"asks\":[[64.38,102],[6.43825E1,14]]" +
+                "}" +
+                "}";
+        final var tickSize = TickSize.of(new BigDecimal("0.0025"));
+
+        final var orderbook = (StreamingEvent.Orderbook) reader.<StreamingEvent>readValue(json);
+
+        assertEquals(orderbook.getBidsCount(), 2);
+        assertEquals(orderbook.getBidPriceTicks(0, tickSize), 25741L);
+        assertEquals(orderbook.getBidQuantity(1), 98L);
+        assertEquals(orderbook.getAsksCount(), 2);
+        assertEquals(orderbook.getAskPriceTicks(0, tickSize), 25752L);
+        assertEquals(orderbook.getAskPriceTicks(1, tickSize), 25753L);
+        assertEquals(orderbook.getAskQuantity(1), 14L);
+        assertEquals(tickSize.toPrice(orderbook.getAskPriceTicks(1, tickSize)), new BigDecimal("64.3825"));
+    }
+
+    @Test
+    void roundingTicksHalfAwayFromZero() {
+        final var tickSize = TickSize.of(new BigDecimal("0.1"));
+
+        // без объектов и через BigDecimal округление одинаковое при любом знаке
+        assertEquals(tickSize.toTicks(25, 2), 3L);
+        assertEquals(tickSize.toTicks(-25, 2), -3L);
+        assertEquals(tickSize.toTicks(new BigDecimal("-0.25")), -3L);
+        assertEquals(tickSize.toTicks(-24, 2), -2L);
+        assertEquals(tickSize.toTicks(-26, 2), -3L);
+        assertEquals(tickSize.toTicks(-5, 1), -5L);
+        assertEquals(tickSize.toTicks(-250, 3), tickSize.toTicks(new BigDecimal("-0.250")));
+    }
+
+    @Test
+    void decodingCandleWithPayloadFirst() throws IOException {
+        final String json = "{" +
+                "\"payload\":{" +
+                    "\"o\":64.0575," +
+                    "\"c\":64.0601," +
+                    "\"h\":64.0612," +
+                    "\"l\":64.0500," +
+                    "\"v\":164," +
+                    "\"time\":\"2019-08-07T15:35:00Z\"," +
+                    "\"interval\":\"5min\"," +
+                    "\"figi\":\"BBG0013HGFT4\"" +
+                "}," +
+                "\"event\":\"candle\"" +
+                "}";
+
+        final var candle = (StreamingEvent.Candle) reader.<StreamingEvent>readValue(json);
+
+        assertEquals(candle.getLowestPrice(), new BigDecimal("64.0500"));
+        assertEquals(candle.getLowestPriceTicks(TickSize.of(new BigDecimal("0.0025"))), 25620L);
+        assertEquals(candle.getTradingValueAsLong(), 164L);
+        assertEquals(candle.getInterval(), CandleInterval.FIVE_MIN);
+    }
+
+    @Test
+    void decodingInstrumentInfoWithPayloadFirst() throws IOException {
+        final String json = "{" +
+                "\"payload\":{" +
+                    "\"trade_status\":\"normal_trading\"," +
+                    "\"min_price_increment\":0.0025," +
+                    "\"lot\":1000," +
+                    "\"figi\":\"BBG0013HGFT4\"" +
+                "}," +
+                "\"time\":\"2019-08-07T15:35:00.029721253Z\"," +
+                "\"event\":\"instrument_info\"" +
+                "}";
+
+        final StreamingEvent event = reader.readValue(json);
+
+        assertTrue(event instanceof StreamingEvent.InstrumentInfo);
+        final var instrumentInfo = (StreamingEvent.InstrumentInfo) event;
+        assertTrue(instrumentInfo.canTrade());
+        assertEquals(instrumentInfo.getMinPriceIncrement(), new BigDecimal("0.0025"));
+        assertEquals(instrumentInfo.getLot(), 1000);
+        assertEquals(instrumentInfo.getFigi(), "BBG0013HGFT4");
+        assertNull(instrumentInfo.getAccruedInterest());
+    }
+
+    @Test
+    void decodingError() throws IOException {
+        final String json = "{" +
+                "\"event\":\"error\"," +
+                "\"payload\":{" +
+                    "\"error\":\"Subscription not found\"," +
+                    "\"request_id\":\"123\"" +
+                "}" +
+                "}";
+
+        final StreamingEvent event = reader.readValue(json);
+
+        assertTrue(event instanceof StreamingEvent.Error);
+        final var error = (StreamingEvent.Error) event;
+        assertEquals(error.geError(), "Subscription not found");
+        assertEquals(error.getRequestId(), "123");
+    }
+
+    @Test
+    void unknownEvent() {
+        final String json = "{\"event\":\"trade\",\"payload\":{}}";
+
+        assertThrows(JsonParseException.class, () -> reader.readValue(json));
+    }
+
+    @Test
+    void missingPayload() {
+        final String json = "{\"event\":\"candle\",\"time\":\"2019-08-07T15:35:00.029721253Z\"}";
+
+        assertThrows(JsonParseException.class, () -> reader.readValue(json));
+    }
+
+}
@@ -0,0 +1,113 @@
+package ru.tinkoff.invest.openapi.market;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.Test;
+import ru.tinkoff.invest.openapi.data.Candle;
+import ru.tinkoff.invest.openapi.data.CandleInterval;
+import ru.tinkoff.invest.openapi.data.StreamingEvent;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+class CandleAggregatorTest {
+
+    @Test
+    void aggregatingHistoricalCandles() {
+        final var start = OffsetDateTime.parse("2019-10-17T05:00:00Z");
+        final var hourly = List.of(
+                candle(start, "10", "11", "12", "9", "100"),
+                candle(start.plusHours(1), "11", "10.5", "13", "10", "50"),
+                candle(start.plusHours(3), "10.5", "10.8", "11", "10.1", "70"),
+                candle(start.plusHours(5), "12", "12.5", "12.7", "11.9", "30")
+        );
+
+        final var result = CandleAggregator.aggregate(hourly, CandleInterval.HOUR, CandleInterval.FOUR_HOUR);
+
+        assertEquals(result.size(), 2);
+
+        final var first = result.get(0);
+        assertEquals(first.getInterval(), CandleInterval.FOUR_HOUR);
+        assertEquals(first.getTime().toInstant(), OffsetDateTime.parse("2019-10-17T04:00:00Z").toInstant());
+        assertEquals(first.getO(), new BigDecimal("10"));
+        assertEquals(first.getC(), new BigDecimal("10.5"));
+        assertEquals(first.getH(), new BigDecimal("13"));
+        assertEquals(first.getL(), new BigDecimal("9"));
+        assertEquals(first.getV(), new BigDecimal("150"));
+
+        final var second = result.get(1);
+        assertEquals(second.getTime().toInstant(), OffsetDateTime.parse("2019-10-17T08:00:00Z").toInstant());
+        assertEquals(second.getO(), new BigDecimal("10.5"));
+        assertEquals(second.getC(), new BigDecimal("12.5"));
+        assertEquals(second.getH(), new BigDecimal("12.7"));
+        assertEquals(second.getL(), new BigDecimal("10.1"));
+        assertEquals(second.getV(), new BigDecimal("100"));
+    }
+
+    @Test
+    void droppingPartialEdgeBuckets() {
+        final var start = OffsetDateTime.parse("2019-10-17T03:00:00Z");
+        final var hourly = new ArrayList<Candle>();
+        for (int i = 0; i < 10; i++) {
+            hourly.add(candle(start.plusHours(i), "10", "11", "12", "9", "1"));
+        }
+
+        // 03:00-13:00: отрезок 00:00-04:00 начинается раньше промежутка, 12:00-16:00 в него не помещается
+        final var result = CandleAggregator.aggregate(hourly, CandleInterval.HOUR, CandleInterval.FOUR_HOUR,
+                start.toInstant(), start.plusHours(10).toInstant());
+
+        assertEquals(result.size(), 2);
+        assertEquals(result.get(0).getTime().toInstant(), Instant.parse("2019-10-17T04:00:00Z"));
+        assertEquals(result.get(0).getV(), new BigDecimal("4"));
+        assertEquals(result.get(1).getTime().toInstant(), Instant.parse("2019-10-17T08:00:00Z"));
+        assertEquals(result.get(1).getV(), new BigDecimal("4"));
+
+        // выровненные границы ничего не отрезают
+        final var aligned = CandleAggregator.aggregate(hourly, CandleInterval.HOUR, CandleInterval.FOUR_HOUR,
+                Instant.parse("2019-10-17T04:00:00Z"), Instant.parse("2019-10-17T12:00:00Z"));
+        assertEquals(aligned.size(), 2);
+        assertEquals(CandleAggregator.firstBucketStart(Instant.parse("2019-10-17T04:00:00Z"), CandleInterval.FOUR_HOUR),
+                Instant.parse("2019-10-17T04:00:00Z"));
+        assertEquals(CandleAggregator.firstBucketStart(Instant.parse("2019-10-17T04:00:01Z"), CandleInterval.FOUR_HOUR),
+                Instant.parse("2019-10-17T08:00:00Z"));
+    }
+
+    @Test
+    void aggregatingLiveCandles() {
+        final var aggregator = new CandleAggregator(CandleInterval.HOUR, CandleInterval.TWO_HOUR);
+        final var start = ZonedDateTime.parse("2019-10-17T10:00:00Z");
+
+        aggregator.onCandle(liveCandle(start, "10", "10.2", "10.3", "9.9", "5"));
+        aggregator.onCandle(liveCandle(start, "10", "10.4", "10.6", "9.9", "8"));
+        final var rolledUp = aggregator.onCandle(liveCandle(start.plusHours(1), "10.4", "10.1", "10.5", "9.5", "3"));
+
+        assertEquals(rolledUp.getInterval(), CandleInterval.TWO_HOUR);
+        assertEquals(rolledUp.getDateTime().toInstant(), start.toInstant());
+        assertEquals(rolledUp.getOpenPrice(), new BigDecimal("10"));
+        assertEquals(rolledUp.getClosingPrice(), new BigDecimal("10.1"));
+        assertEquals(rolledUp.getHighestPrice(), new BigDecimal("10.6"));
+        assertEquals(rolledUp.getLowestPrice(), new BigDecimal("9.5"));
+        assertEquals(rolledUp.getTradingValue(), new BigDecimal("11"));
+
+        final var next = aggregator.onCandle(liveCandle(start.plusHours(2), "10.1", "10.2", "10.2", "10", "1"));
+        assertEquals(next.getDateTime().toInstant(), start.plusHours(2).toInstant());
+        assertEquals(next.getTradingValue(), new BigDecimal("1"));
+
+        assertNull(aggregator.onCandle(liveCandle(start.plusHours(1), "10.4", "10.1", "10.5", "9.5", "4")));
+    }
+
+    private static Candle candle(OffsetDateTime time, String o, String c, String h, String l, String v) {
+        return new Candle("figi", CandleInterval.HOUR, new BigDecimal(o), new BigDecimal(c), new BigDecimal(h),
+                new BigDecimal(l), new BigDecimal(v), time);
+    }
+
+    private static StreamingEvent.Candle liveCandle(ZonedDateTime time, String o, String c, String h, String l, String v) {
+        return new StreamingEvent.Candle(new BigDecimal(o), new BigDecimal(c), new BigDecimal(h), new BigDecimal(l),
+                new BigDecimal(v), time, CandleInterval.HOUR, "figi");
+    }
+
+}
@@ -0,0 +1,80 @@
+package ru.tinkoff.invest.openapi.market;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import ru.tinkoff.invest.openapi.data.Candle;
+import ru.tinkoff.invest.openapi.data.CandleInterval;
+import ru.tinkoff.invest.openapi.data.HistoricalCandles;
+import ru.tinkoff.invest.openapi.wrapper.Context;
+
+import java.math.BigDecimal;
+import java.nio.file.Path;
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.logging.Logger;
+
+class CandleCachingContextTest {
+
+    private static final String figi = "figi";
+    private static final CandleInterval interval = CandleInterval.HOUR;
+
+    @Test
+    void fetchingOnlyMissingRanges(@TempDir Path dir) throws ExecutionException, InterruptedException {
+        final var context = mock(Context.class);
+        final var day1 = OffsetDateTime.parse("2019-08-19T00:00:00Z");
+        final var day2 = day1.plusDays(1);
+        final var day3 = day2.plusDays(1);
+        when(context.getMarketCandles(figi, day1, day2, interval))
+                .thenReturn(CompletableFuture.completedFuture(candles(day1, 24)));
+        when(context.getMarketCandles(figi, day2, day3, interval))
+                .thenReturn(CompletableFuture.completedFuture(candles(day2, 24)));
+
+        final var cachingContext = new CandleCachingContext(
+                context, new CandleStore(dir), Logger.getLogger(CandleCachingContextTest.class.getName()));
+
+        final var first = cachingContext.getMarketCandles(figi, day1, day2, interval).get();
+        assertEquals(first.getCandles().size(), 24);
+
+        final var second = cachingContext.getMarketCandles(figi, day1, day3, interval).get();
+        assertEquals(second.getCandles().size(), 48);
+        assertEquals(second.getCandles().get(0).getTime().toInstant(), day1.toInstant());
+        assertEquals(second.getCandles().get(47).getTime().toInstant(), day3.minusHours(1).toInstant());
+        assertEquals(second.getCandles().get(5).getO(), new BigDecimal("105.25"));
+        assertEquals(second.getCandles().get(5).getL(), new BigDecimal("99.125"));
+        assertEquals(second.getCandles().get(5).getV(), new BigDecimal("1005"));
+
+        final var cached = new CandleCachingContext(
+                context, new CandleStore(dir), Logger.getLogger(CandleCachingContextTest.class.getName()));
+        final var third = cached.getMarketCandles(figi, day1.plusHours(3), day2.plusHours(3), interval).get();
+        assertEquals(third.getCandles().size(), 24);
+        assertEquals(third.getCandles().get(0).getTime().toInstant(), day1.plusHours(3).toInstant());
+
+        verify(context, times(1)).getMarketCandles(figi, day1, day2, interval);
+        verify(context, times(1)).getMarketCandles(figi, day2, day3, interval);
+        verifyNoMoreInteractions(context);
+    }
+
+    private static HistoricalCandles candles(final OffsetDateTime from, final int count) {
+        final var result = new ArrayList<Candle>(count);
+        for (int i = 0; i < count; i++) {
+            result.add(new Candle(
+                    figi,
+                    interval,
+                    new BigDecimal("100.25").add(BigDecimal.valueOf(i)),
+                    new BigDecimal("101.5"),
+                    new BigDecimal("102"),
+                    new BigDecimal("99.125"),
+                    BigDecimal.valueOf(1000 + i),
+                    from.plusHours(i)
+            ));
+        }
+        return new HistoricalCandles(figi, interval, List.copyOf(result));
+    }
+
+}
@@ -0,0 +1,91 @@
+package ru.tinkoff.invest.openapi.market;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+import org.junit.jupiter.api.Test;
+import ru.tinkoff.invest.openapi.data.Candle;
+import ru.tinkoff.invest.openapi.data.CandleInterval;
+import ru.tinkoff.invest.openapi.data.HistoricalCandles;
+import ru.tinkoff.invest.openapi.exceptions.BadCandlesSearchingIntervalException;
+import ru.tinkoff.invest.openapi.wrapper.Context;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.OffsetDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.logging.Logger;
+
+class CandleLoaderTest {
+
+    private static final String figi = "figi";
+    private static final CandleInterval interval = CandleInterval.DAY;
+
+    @Test
+    void splittingByLearnedWindow() throws ExecutionException, InterruptedException {
+        final var context = mock(Context.class);
+        final var serverWindow = Duration.ofDays(100);
+        when(context.getMarketCandles(eq(figi), any(), any(), eq(interval))).thenAnswer(invocation -> {
+            final OffsetDateTime from = invocation.getArgument(1);
+            final OffsetDateTime to = invocation.getArgument(2);
+            if (Duration.between(from, to).compareTo(serverWindow) > 0) {
+                // как и настоящий сервер, сообщает отвергнутый промежуток, а не допустимый
+                return CompletableFuture.failedFuture(new BadCandlesSearchingIntervalException(from, to, interval));
+            }
+
+            // сервер отдаёт и свечу, начавшуюся до запрошенного промежутка
+            final var candles = new ArrayList<Candle>();
+            final var firstCandle = from.truncatedTo(ChronoUnit.DAYS).minusDays(1);
+            for (var time = firstCandle; time.isBefore(to); time = time.plusDays(1)) {
+                candles.add(new Candle(figi, interval, BigDecimal.ONE, BigDecimal.ONE, BigDecimal.ONE,
+                        BigDecimal.ONE, BigDecimal.TEN, time));
+            }
+            return CompletableFuture.completedFuture(new HistoricalCandles(figi, interval, candles));
+        });
+
+        final var loader = new CandleLoader(context, 3, Logger.getLogger(CandleLoaderTest.class.getName()));
+        final var from = OffsetDateTime.parse("2017-01-01T00:00:00Z");
+        final var to = OffsetDateTime.parse("2019-01-01T00:00:00Z");
+
+        final var result = loader.load(figi, from, to, interval).get();
+
+        // 365 дней -> 182.5 -> 91.25
+        assertEquals(loader.getWindow(interval), Duration.ofDays(365).dividedBy(4));
+        assertEquals(result.getCandles().size(), 731);
+        assertEquals(result.getCandles().get(0).getTime().toInstant(), from.minusDays(1).toInstant());
+        for (int i = 1; i < result.getCandles().size(); i++) {
+            assertEquals(
+                    Duration.between(result.getCandles().get(i - 1).getTime(), result.getCandles().get(i).getTime()),
+                    Duration.ofDays(1));
+        }
+
+        loader.load(figi, from, to, interval).get();
+        // первая загрузка: 2 + 4 отвергнутых куска и 8 принятых, вторая - сразу 8 кусков по выученному окну
+        verify(context, times(2 + 4 + 8 + 8)).getMarketCandles(eq(figi), any(), any(), eq(interval));
+    }
+
+    @Test
+    void failingWhenWindowCannotShrink() {
+        final var context = mock(Context.class);
+        when(context.getMarketCandles(eq(figi), any(), any(), eq(interval))).thenAnswer(invocation ->
+                CompletableFuture.failedFuture(new BadCandlesSearchingIntervalException(
+                        invocation.getArgument(1), invocation.getArgument(2), interval))
+        );
+
+        final var loader = new CandleLoader(context, 1, Logger.getLogger(CandleLoaderTest.class.getName()));
+        final var from = OffsetDateTime.parse("2019-01-01T00:00:00Z");
+        final var result = loader.load(figi, from, from.plusDays(4), interval);
+
+        // 4 дня -> 2 -> 1, дальше окно меньше свечи
+        final var ex = assertThrows(ExecutionException.class, result::get);
+        assertTrue(ex.getCause() instanceof BadCandlesSearchingIntervalException);
+        assertEquals(loader.getWindow(interval), Duration.ofDays(1));
+        verify(context, times(1 + 2 + 1)).getMarketCandles(eq(figi), any(), any(), eq(interval));
+    }
+
+}
@@ -0,0 +1,79 @@
+package ru.tinkoff.invest.openapi.market;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import ru.tinkoff.invest.openapi.data.Candle;
+import ru.tinkoff.invest.openapi.data.CandleInterval;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.OffsetDateTime;
+import java.util.List;
+
+class CandleStoreTest {
+
+    private static final String figi = "figi";
+    private static final CandleInterval interval = CandleInterval.HOUR;
+    private static final OffsetDateTime from = OffsetDateTime.parse("2019-08-19T00:00:00Z");
+    private static final OffsetDateTime to = from.plusHours(2);
+
+    @Test
+    void keepingLargeScales(@TempDir Path dir) throws IOException {
+        final var tiny = new BigDecimal("1E-130");
+        new CandleStore(dir).write(figi, interval, from.toInstant(), to.toInstant(), List.of(
+                candle(from, tiny),
+                candle(from.plusHours(1), new BigDecimal("2E-130"))
+        ));
+
+        final var candles = new CandleStore(dir).read(figi, interval, from.toInstant(), to.toInstant());
+        assertEquals(candles.size(), 2);
+        assertEquals(candles.get(0).getO(), tiny);
+        assertEquals(candles.get(1).getO(), new BigDecimal("2E-130"));
+        assertEquals(candles.get(1).getV(), BigDecimal.TEN);
+    }
+
+    @Test
+    void skippingRangesOutOfLongRange(@TempDir Path dir) throws IOException {
+        final var store = new CandleStore(dir);
+        // при общем масштабе 30 цена 1 не помещается в long
+        store.write(figi, interval, from.toInstant(), to.toInstant(), List.of(
+                candle(from, new BigDecimal("1E-30")),
+                candle(from.plusHours(1), BigDecimal.ONE)
+        ));
+
+        assertEquals(store.findGaps(figi, interval, from.toInstant(), to.toInstant()),
+                List.of(new CandleStore.Range(from.toInstant(), to.toInstant())));
+        assertEquals(store.read(figi, interval, from.toInstant(), to.toInstant()), List.of());
+    }
+
+    @Test
+    void ignoringSegmentsOfPreviousVersion(@TempDir Path dir) throws IOException {
+        final var directory = Files.createDirectories(dir.resolve(figi).resolve(interval.name()));
+        final var header = ByteBuffer.allocate(Integer.BYTES + Short.BYTES + Integer.BYTES + 5);
+        header.putInt(0x54434453);
+        header.putShort((short) 1);
+        Files.write(directory.resolve(from.toInstant().toEpochMilli() + "-" + to.toInstant().toEpochMilli() + ".seg"),
+                header.array());
+
+        assertEquals(new CandleStore(dir).findGaps(figi, interval, from.toInstant(), to.toInstant()),
+                List.of(new CandleStore.Range(from.toInstant(), to.toInstant())));
+    }
+
+    private static Candle candle(final OffsetDateTime time, final BigDecimal open) {
+        return new Candle(
+                figi,
+                interval,
+                open,
+                new BigDecimal("101.5"),
+                new BigDecimal("102"),
+                new BigDecimal("99.125"),
+                BigDecimal.TEN,
+                time
+        );
+    }
+}
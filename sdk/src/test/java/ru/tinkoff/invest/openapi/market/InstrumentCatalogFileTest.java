@@ -0,0 +1,116 @@
+package ru.tinkoff.invest.openapi.market;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import ru.tinkoff.invest.openapi.data.Currency;
+import ru.tinkoff.invest.openapi.data.Instrument;
+import ru.tinkoff.invest.openapi.data.InstrumentType;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+class InstrumentCatalogFileTest {
+
+    private static final Instant savedAt = Instant.parse("2019-08-19T18:38:33.131Z");
+
+    @Test
+    void writingAndReadingSnapshot(@TempDir Path dir) throws IOException {
+        final var file = dir.resolve("catalog.bin");
+        final var stock = new Instrument(
+                "BBG000B9XRY4", "AAPL", "US0378331005", new BigDecimal("0.01"), 1, Currency.USD, "Apple");
+        final var bond = new Instrument(
+                "BBG00T22WKV5", "SU29013RMFS8", null, null, 1, Currency.RUB, "ОФЗ 29013");
+
+        InstrumentCatalogFile.write(file, Map.of(
+                InstrumentType.Stock, List.of(stock),
+                InstrumentType.Bond, List.of(bond)), savedAt);
+        final var snapshot = InstrumentCatalogFile.read(file);
+
+        assertEquals(snapshot.getSavedAt(), savedAt);
+        assertEquals(snapshot.getInstruments().keySet().size(), 2);
+
+        final var readStock = snapshot.getInstruments().get(InstrumentType.Stock).get(0);
+        assertEquals(readStock.getFigi(), stock.getFigi());
+        assertEquals(readStock.getTicker(), stock.getTicker());
+        assertEquals(readStock.getIsin(), stock.getIsin());
+        assertEquals(readStock.getMinPriceIncrement(), stock.getMinPriceIncrement());
+        assertEquals(readStock.getLot(), stock.getLot());
+        assertEquals(readStock.getCurrency(), stock.getCurrency());
+        assertEquals(readStock.getName(), stock.getName());
+
+        final var readBond = snapshot.getInstruments().get(InstrumentType.Bond).get(0);
+        assertNull(readBond.getIsin());
+        assertNull(readBond.getMinPriceIncrement());
+        assertEquals(readBond.getName(), bond.getName());
+    }
+
+    @Test
+    void rejectingCorruptedSnapshot(@TempDir Path dir) throws IOException {
+        final var file = dir.resolve("catalog.bin");
+        final var stock = new Instrument(
+                "BBG000B9XRY4", "AAPL", "US0378331005", new BigDecimal("0.01"), 1, Currency.USD, "Apple");
+        InstrumentCatalogFile.write(file, Map.of(InstrumentType.Stock, List.of(stock)), savedAt);
+
+        final var bytes = Files.readAllBytes(file);
+        bytes[bytes.length / 2] ^= 0x5A;
+        Files.write(file, bytes);
+
+        assertThrows(IOException.class, () -> InstrumentCatalogFile.read(file));
+    }
+
+    @Test
+    void preservingEdgeValues(@TempDir Path dir) throws IOException {
+        final var file = dir.resolve("catalog.bin");
+        final var longName = "Я".repeat(20000); // 40000 байт в UTF-8
+        final var negativeScale = new BigDecimal("1E+1");
+        final var largeScale = new BigDecimal(BigInteger.ONE, 200);
+        final var hugeUnscaled = new BigDecimal(BigInteger.TEN.pow(30), 2);
+        InstrumentCatalogFile.write(file, Map.of(InstrumentType.Stock, List.of(
+                new Instrument("figi1", "", null, negativeScale, 1, null, longName),
+                new Instrument("figi2", "t2", null, largeScale, 1, Currency.RUB, "n2"),
+                new Instrument("figi3", "t3", null, hugeUnscaled, 1, Currency.RUB, "n3")
+        )), savedAt);
+
+        final var read = InstrumentCatalogFile.read(file).getInstruments().get(InstrumentType.Stock);
+        assertEquals(read.get(0).getMinPriceIncrement(), negativeScale);
+        assertEquals(read.get(0).getName(), longName);
+        assertEquals(read.get(0).getTicker(), "");
+        assertNull(read.get(0).getIsin());
+        assertNull(read.get(0).getCurrency());
+        assertEquals(read.get(1).getMinPriceIncrement(), largeScale);
+        assertEquals(read.get(2).getMinPriceIncrement(), hugeUnscaled);
+    }
+
+    @Test
+    void rejectingCorruptedLengthWithValidChecksum(@TempDir Path dir) throws IOException {
+        final var file = dir.resolve("catalog.bin");
+        final var stock = new Instrument(
+                "BBG000B9XRY4", "AAPL", "US0378331005", new BigDecimal("0.01"), 1, Currency.USD, "Apple");
+        InstrumentCatalogFile.write(file, Map.of(InstrumentType.Stock, List.of(stock)), savedAt);
+        final var bytes = Files.readAllBytes(file);
+
+        // заголовок 18 байт, тип 1, лот 4, валюта 1, шаг цены 1 + 4 + 4 + 1, признак FIGI 1
+        final var figiLengthOffset = 35;
+        for (final var length : new int[] {-5, Integer.MAX_VALUE}) {
+            final var corrupted = ByteBuffer.wrap(bytes.clone());
+            corrupted.putInt(figiLengthOffset, length);
+            final var crc = new CRC32();
+            crc.update(corrupted.array(), 0, bytes.length - Integer.BYTES);
+            corrupted.putInt(bytes.length - Integer.BYTES, (int) crc.getValue());
+            Files.write(file, corrupted.array());
+
+            assertThrows(IOException.class, () -> InstrumentCatalogFile.read(file));
+        }
+    }
+
+}
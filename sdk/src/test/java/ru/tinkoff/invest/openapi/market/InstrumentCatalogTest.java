@@ -0,0 +1,120 @@
+package ru.tinkoff.invest.openapi.market;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+import org.junit.jupiter.api.Test;
+import ru.tinkoff.invest.openapi.data.Currency;
+import ru.tinkoff.invest.openapi.data.Instrument;
+import ru.tinkoff.invest.openapi.data.InstrumentType;
+import ru.tinkoff.invest.openapi.data.InstrumentsList;
+import ru.tinkoff.invest.openapi.wrapper.Context;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.logging.Logger;
+
+class InstrumentCatalogTest {
+
+    private static final Logger logger = Logger.getLogger(InstrumentCatalogTest.class.getName());
+
+    private static final Instrument apple = new Instrument(
+            "BBG000B9XRY4", "AAPL", "US0378331005", new BigDecimal("0.01"), 1, Currency.USD, "Apple");
+    private static final Instrument appleSpb = new Instrument(
+            "BBG000B9XRY5", "AAPL", null, new BigDecimal("0.01"), 1, Currency.RUB, "Apple (СПБ)");
+    private static final Instrument ofz = new Instrument(
+            "BBG00T22WKV5", "SU29013RMFS8", "RU000A101KT1", null, 1, Currency.RUB, "ОФЗ 29013");
+    private static final Instrument dollar = new Instrument(
+            "BBG0013HGFT4", "USD000UTSTOM", null, new BigDecimal("0.0025"), 1000, Currency.RUB, "Доллар США");
+    private static final Instrument fxus = new Instrument(
+            "BBG005HLSZ23", "FXUS", "IE00BD3QHZ91", new BigDecimal("1"), 1, Currency.RUB, "FinEx США");
+
+    private static Context context(final List<Instrument> stocks) {
+        final var context = mock(Context.class);
+        when(context.getMarketStocks()).thenReturn(list(stocks));
+        when(context.getMarketBonds()).thenReturn(list(List.of(ofz)));
+        when(context.getMarketEtfs()).thenReturn(list(List.of(fxus)));
+        when(context.getMarketCurrencies()).thenReturn(list(List.of(dollar)));
+        return context;
+    }
+
+    private static CompletableFuture<InstrumentsList> list(final List<Instrument> instruments) {
+        return CompletableFuture.completedFuture(new InstrumentsList(instruments.size(), instruments));
+    }
+
+    @Test
+    void findingByIndexes() {
+        final var catalog = new InstrumentCatalog(context(List.of(apple, appleSpb)), Duration.ofHours(1), logger);
+        assertFalse(catalog.isLoaded());
+
+        catalog.refresh().join();
+        assertTrue(catalog.isLoaded());
+
+        assertEquals(catalog.findByFigi("BBG00T22WKV5"), Optional.of(ofz));
+        assertEquals(catalog.findByTicker("AAPL"), List.of(apple, appleSpb));
+        assertEquals(catalog.findByIsin("IE00BD3QHZ91"), Optional.of(fxus));
+        assertEquals(catalog.getInstrumentType("BBG0013HGFT4"), Optional.of(InstrumentType.Currency));
+        assertEquals(catalog.getInstrumentType("BBG000B9XRY4"), Optional.of(InstrumentType.Stock));
+        assertEquals(catalog.getInstruments().get(InstrumentType.Stock).size(), 2);
+        assertEquals(catalog.getHitCount(), 3L);
+        assertEquals(catalog.getMissCount(), 0L);
+
+        assertEquals(catalog.findByFigi("unknown"), Optional.empty());
+        assertEquals(catalog.findByTicker("unknown"), List.of());
+        assertEquals(catalog.findByIsin("unknown"), Optional.empty());
+        assertEquals(catalog.getHitCount(), 3L);
+        assertEquals(catalog.getMissCount(), 3L);
+    }
+
+    @Test
+    void replacingSnapshotOnRefresh() {
+        final var context = context(List.of(apple));
+        final var catalog = new InstrumentCatalog(context, Duration.ofHours(1), logger);
+        catalog.refresh().join();
+        final var firstLoadedAt = catalog.getLoadedAt();
+        assertEquals(catalog.findByTicker("AAPL"), List.of(apple));
+
+        // инструмент исключён из списка, появился другой
+        when(context.getMarketStocks()).thenReturn(list(List.of(appleSpb)));
+        catalog.refresh().join();
+
+        assertEquals(catalog.findByFigi("BBG000B9XRY4"), Optional.empty());
+        assertEquals(catalog.findByIsin("US0378331005"), Optional.empty());
+        assertEquals(catalog.findByTicker("AAPL"), List.of(appleSpb));
+        assertFalse(catalog.getLoadedAt().isBefore(firstLoadedAt));
+        verify(context, times(2)).getMarketStocks();
+    }
+
+    @Test
+    void fallingBackToOpenApiOnMiss() {
+        final var context = context(List.of(apple));
+        final var unknown = new Instrument(
+                "BBG000000001", "NEW", null, new BigDecimal("0.01"), 1, Currency.RUB, "Новый");
+        when(context.searchMarketInstrumentsByTicker("NEW")).thenReturn(list(List.of(unknown)));
+        when(context.searchMarketInstrumentByFigi("BBG000000001"))
+                .thenReturn(CompletableFuture.completedFuture(Optional.of(unknown)));
+        when(context.searchMarketInstrumentsByTicker("AAPL")).thenReturn(list(List.of(apple)));
+        final var catalog = new InstrumentCatalog(context, Duration.ofHours(1), logger);
+        final var catalogContext = new InstrumentCatalogContext(context, catalog);
+
+        // пока справочник не загружен, поиск идёт в OpenAPI
+        assertEquals(catalogContext.searchMarketInstrumentsByTicker("AAPL").join().getInstruments(), List.of(apple));
+        verify(context, times(1)).searchMarketInstrumentsByTicker("AAPL");
+
+        catalog.refresh().join();
+        assertEquals(catalogContext.searchMarketInstrumentsByTicker("AAPL").join().getInstruments(), List.of(apple));
+        assertEquals(catalogContext.searchMarketInstrumentByFigi("BBG000B9XRY4").join(), Optional.of(apple));
+        verify(context, times(1)).searchMarketInstrumentsByTicker("AAPL");
+        verify(context, never()).searchMarketInstrumentByFigi("BBG000B9XRY4");
+
+        assertEquals(catalogContext.searchMarketInstrumentsByTicker("NEW").join().getInstruments(), List.of(unknown));
+        assertEquals(catalogContext.searchMarketInstrumentByFigi("BBG000000001").join(), Optional.of(unknown));
+        verify(context).searchMarketInstrumentsByTicker("NEW");
+        verify(context).searchMarketInstrumentByFigi("BBG000000001");
+        assertEquals(catalog.getHitCount(), 2L);
+        assertEquals(catalog.getMissCount(), 2L);
+    }
+}
@@ -0,0 +1,66 @@
+package ru.tinkoff.invest.openapi.market;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+import org.junit.jupiter.api.Test;
+import ru.tinkoff.invest.openapi.data.CandleInterval;
+import ru.tinkoff.invest.openapi.data.StreamingEvent;
+import ru.tinkoff.invest.openapi.wrapper.BackpressurePolicy;
+import ru.tinkoff.invest.openapi.wrapper.Context;
+
+import java.math.BigDecimal;
+import java.time.ZonedDateTime;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+
+class MarketDataSnapshotTest {
+
+    @Test
+    void keepingLatestEventsPerInstrument() {
+        final var snapshot = new MarketDataSnapshot();
+        final var minute = candle("figi", CandleInterval.ONE_MIN, "10");
+        final var hour = candle("figi", CandleInterval.HOUR, "11");
+        final var first = new StreamingEvent.Orderbook(1, List.of(), List.of(), "figi");
+        final var second = new StreamingEvent.Orderbook(1, List.of(), List.of(), "figi");
+
+        snapshot.update(minute);
+        snapshot.update(hour);
+        snapshot.update(first);
+        snapshot.update(second);
+        snapshot.update(new StreamingEvent.Error("error", null));
+
+        assertEquals(snapshot.getCandle("figi", CandleInterval.ONE_MIN), Optional.of(minute));
+        assertEquals(snapshot.getCandle("figi", CandleInterval.HOUR), Optional.of(hour));
+        assertEquals(snapshot.getCandle("figi", CandleInterval.DAY), Optional.empty());
+        assertEquals(snapshot.getLastCandle("figi"), Optional.of(hour));
+        assertSame(snapshot.getOrderbook("figi").orElseThrow(), second);
+        assertEquals(snapshot.getInstrumentInfo("figi"), Optional.empty());
+        assertEquals(snapshot.getOrderbook("other"), Optional.empty());
+        assertEquals(snapshot.getFigis(), Set.of("figi"));
+    }
+
+    @Test
+    void attachingToContext() {
+        final var context = mock(Context.class);
+        final var snapshot = new MarketDataSnapshot();
+
+        snapshot.attach(context);
+
+        verify(context).subscribe(same(snapshot), isNull(), eq(BackpressurePolicy.ConflateLatest), eq(Integer.MAX_VALUE));
+    }
+
+    private static StreamingEvent.Candle candle(String figi, CandleInterval interval, String close) {
+        return new StreamingEvent.Candle(
+                BigDecimal.ONE,
+                new BigDecimal(close),
+                BigDecimal.TEN,
+                BigDecimal.ONE,
+                BigDecimal.TEN,
+                ZonedDateTime.parse("2019-10-17T10:00:00Z"),
+                interval,
+                figi
+        );
+    }
+}
@@ -0,0 +1,72 @@
+package ru.tinkoff.invest.openapi.market;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.Test;
+import ru.tinkoff.invest.openapi.data.StreamingEvent;
+import ru.tinkoff.invest.openapi.data.TickSize;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+
+class OrderbookStateTest {
+
+    @Test
+    void applyingSnapshotsAsLevelChanges() {
+        final var state = new OrderbookState("figi", TickSize.of(new BigDecimal("0.01")));
+        final var changes = new ArrayList<String>();
+        final OrderbookState.LevelChangeListener listener = (side, price, oldQuantity, newQuantity) ->
+                changes.add(side + " " + price + " " + oldQuantity + "->" + newQuantity);
+
+        assertEquals(state.apply(orderbook(
+                List.of(level("10.02", "5"), level("10.01", "7")),
+                List.of(level("10.04", "3"), level("10.05", "1"))
+        ), listener), 4);
+        assertEquals(changes, List.of("Bid 1002 0->5", "Bid 1001 0->7", "Ask 1004 0->3", "Ask 1005 0->1"));
+
+        changes.clear();
+        assertEquals(state.apply(orderbook(
+                List.of(level("10.03", "2"), level("10.02", "5"), level("10.01", "4")),
+                List.of(level("10.05", "1"), level("10.06", "9"))
+        ), listener), 4);
+        assertEquals(changes, List.of("Bid 1003 0->2", "Bid 1001 7->4", "Ask 1004 3->0", "Ask 1006 0->9"));
+
+        assertEquals(state.getSnapshotsCount(), 2L);
+        assertEquals(state.getBestBidTicks(), 1003L);
+        assertEquals(state.getBestAskTicks(), 1005L);
+        assertEquals(state.getSpreadTicks(), 2L);
+        assertEquals(state.getMidPrice(), new BigDecimal("10.04"));
+        assertEquals(state.getCumulativeBidQuantity(2), 7L);
+        assertEquals(state.getCumulativeBidQuantity(10), 11L);
+        assertEquals(state.getCumulativeAskQuantity(1), 1L);
+        assertEquals(state.getAskQuantity(1), 9L);
+    }
+
+    @Test
+    void orderingAndMergingLevels() {
+        final var state = new OrderbookState("figi", TickSize.of(new BigDecimal("0.5")));
+
+        assertEquals(state.apply(orderbook(
+                List.of(level("9.5", "1"), level("10", "2"), level("10.1", "3")),
+                List.of()
+        )), 2);
+
+        assertEquals(state.getBidsCount(), 2);
+        assertEquals(state.getBidPriceTicks(0), 20L);
+        assertEquals(state.getBidQuantity(0), 5L);
+        assertEquals(state.getBidPriceTicks(1), 19L);
+        assertEquals(state.getAsksCount(), 0);
+        assertThrows(IllegalStateException.class, state::getBestAskTicks);
+        assertThrows(IllegalArgumentException.class, () -> state.apply(
+                new StreamingEvent.Orderbook(1, List.of(), List.of(), "other")));
+    }
+
+    private static StreamingEvent.Orderbook orderbook(List<BigDecimal[]> bids, List<BigDecimal[]> asks) {
+        return new StreamingEvent.Orderbook(Math.max(bids.size(), asks.size()), bids, asks, "figi");
+    }
+
+    private static BigDecimal[] level(String price, String quantity) {
+        return new BigDecimal[]{new BigDecimal(price), new BigDecimal(quantity)};
+    }
+}
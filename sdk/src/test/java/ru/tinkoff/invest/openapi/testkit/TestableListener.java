@@ -11,24 +11,24 @@ import java.util.concurrent.SubmissionPublisher;
 
 public class TestableListener implements WebSocketListener {
 
-    private final SubmissionPublisher<String> streamingOnMessage = new SubmissionPublisher<>();
+    private final SubmissionPublisher<CharSequence> streamingOnMessage = new SubmissionPublisher<>();
 
     public void receiveText(CharSequence data) {
-        this.streamingOnMessage.submit(data.toString());
+        this.streamingOnMessage.submit(data);
     }
 
     @Override
-    public void subscribeOnMessage(Flow.Subscriber<String> subscriber) {
+    public void subscribeOnMessage(Flow.Subscriber<CharSequence> subscriber) {
         this.streamingOnMessage.subscribe(subscriber);
     }
 
     @Override
-    public void subscribeOnClose(Flow.Subscriber<Void> subscriber) {
+    public void subscribeOnClose(Flow.Subscriber<WebSocket> subscriber) {
 
     }
 
     @Override
-    public void subscribeOnError(Flow.Subscriber<Void> subscriber) {
+    public void subscribeOnError(Flow.Subscriber<WebSocket> subscriber) {
 
     }
 
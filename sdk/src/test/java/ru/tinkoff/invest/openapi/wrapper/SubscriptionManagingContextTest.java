@@ -0,0 +1,86 @@
+package ru.tinkoff.invest.openapi.wrapper;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import ru.tinkoff.invest.openapi.data.CandleInterval;
+import ru.tinkoff.invest.openapi.data.StreamingRequest;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+class SubscriptionManagingContextTest {
+
+    @Test
+    void countingReferencesToStreams() {
+        final var context = mock(Context.class);
+        when(context.sendStreamingRequest(any())).thenReturn(CompletableFuture.completedFuture(null));
+        final var manager = new SubscriptionManagingContext(context, Duration.ZERO);
+
+        manager.sendStreamingRequest(StreamingRequest.subscribeCandle("figi", CandleInterval.ONE_MIN));
+        manager.sendStreamingRequest(StreamingRequest.subscribeCandle("figi", CandleInterval.ONE_MIN));
+        verify(context, times(1)).sendStreamingRequest(any());
+        assertEquals(manager.getActiveSubscriptions(),
+                Map.of(StreamingKey.candle("figi", CandleInterval.ONE_MIN), 2));
+
+        manager.sendStreamingRequest(StreamingRequest.unsubscribeCandle("figi", CandleInterval.ONE_MIN));
+        verify(context, times(1)).sendStreamingRequest(any());
+
+        manager.sendStreamingRequest(StreamingRequest.unsubscribeCandle("figi", CandleInterval.ONE_MIN));
+        manager.sendStreamingRequest(StreamingRequest.unsubscribeCandle("figi", CandleInterval.ONE_MIN));
+        final var captor = ArgumentCaptor.forClass(StreamingRequest.class);
+        verify(context, times(2)).sendStreamingRequest(captor.capture());
+        assertTrue(captor.getValue() instanceof StreamingRequest.CandleUnsubscribeRequest);
+        assertTrue(manager.getActiveSubscriptions().isEmpty());
+    }
+
+    @Test
+    void batchingRequestsWithinWindow() throws InterruptedException, ExecutionException, TimeoutException {
+        final var context = mock(Context.class);
+        when(context.sendStreamingRequest(any())).thenReturn(CompletableFuture.completedFuture(null));
+        final var manager = new SubscriptionManagingContext(context, Duration.ofMillis(50));
+
+        final var first = manager.sendStreamingRequest(StreamingRequest.subscribeOrderbook("figi", 2));
+        manager.sendStreamingRequest(StreamingRequest.subscribeInstrumentInfo("figi"));
+        manager.sendStreamingRequest(StreamingRequest.unsubscribeInstrumentInfo("figi"));
+        verify(context, never()).sendStreamingRequest(any());
+
+        first.get(5, TimeUnit.SECONDS);
+        final var captor = ArgumentCaptor.forClass(StreamingRequest.class);
+        verify(context, times(1)).sendStreamingRequest(captor.capture());
+        assertTrue(captor.getValue() instanceof StreamingRequest.OrderbookSubscribeRequest);
+    }
+
+    @Test
+    void resendingSubscriptionAfterFailedSend() {
+        final var context = mock(Context.class);
+        final var failed = StreamingRequest.subscribeCandle("failed", CandleInterval.ONE_MIN);
+        when(context.sendStreamingRequest(any())).thenReturn(CompletableFuture.completedFuture(null));
+        when(context.sendStreamingRequest(failed))
+                .thenReturn(CompletableFuture.failedFuture(new IllegalStateException("send pending")));
+        final var manager = new SubscriptionManagingContext(context, Duration.ofMillis(50));
+
+        final var batch = manager.sendStreamingRequest(failed);
+        manager.sendStreamingRequest(StreamingRequest.subscribeOrderbook("figi", 2));
+
+        // ошибка первого запроса пачки не мешает отправке второго
+        final var ex = assertThrows(CompletionException.class, batch::join);
+        assertTrue(ex.getCause() instanceof IllegalStateException);
+        verify(context, times(2)).sendStreamingRequest(any());
+
+        // следующий подписчик на поток, подписку на который оформить не удалось, отправляет её снова
+        when(context.sendStreamingRequest(failed)).thenReturn(CompletableFuture.completedFuture(null));
+        manager.sendStreamingRequest(failed).join();
+        manager.sendStreamingRequest(StreamingRequest.subscribeOrderbook("figi", 2)).join();
+        verify(context, times(2)).sendStreamingRequest(failed);
+        verify(context, times(3)).sendStreamingRequest(any());
+        assertEquals(manager.getActiveSubscriptions().get(StreamingKey.candle("failed", CandleInterval.ONE_MIN)), 2);
+    }
+}
@@ -7,10 +7,15 @@ import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.Test;
 import ru.tinkoff.invest.openapi.wrapper.Connection;
 import ru.tinkoff.invest.openapi.wrapper.Context;
+import ru.tinkoff.invest.openapi.wrapper.EndpointGroup;
+import ru.tinkoff.invest.openapi.wrapper.ReconnectEvent;
+import ru.tinkoff.invest.openapi.wrapper.StreamingKey;
 import ru.tinkoff.invest.openapi.data.*;
 import ru.tinkoff.invest.openapi.exceptions.OpenApiException;
 import ru.tinkoff.invest.openapi.testkit.TestableListener;
 
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
 import java.math.BigDecimal;
 import java.net.URI;
 import java.net.URLEncoder;
@@ -20,9 +25,18 @@ import java.net.http.HttpResponse;
 import java.net.http.WebSocket;
 import java.nio.charset.StandardCharsets;
 import java.time.*;
+import java.util.ArrayList;
+import java.util.EnumMap;
 import java.util.List;
+import java.util.Set;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Flow;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
 import java.util.logging.Logger;
 
 class ContextImplTest {
@@ -34,7 +48,8 @@ class ContextImplTest {
     private static WebSocket webSocket;
     private static TestableListener listener = new TestableListener();
 
-    private abstract static class HttpStringResponse implements HttpResponse<String> {}
+    private abstract static class HttpBytesResponse implements HttpResponse<byte[]> {}
+    private abstract static class HttpInputStreamResponse implements HttpResponse<InputStream> {}
 
     @BeforeAll
     static void initTest() {
@@ -47,11 +62,29 @@ class ContextImplTest {
         when(connection.getAuthToken()).thenReturn(token);
         when(connection.getHttpClient()).thenReturn(httpClient);
         when(connection.getWebSocket()).thenReturn(webSocket);
+        when(connection.getWebSocket(any(String.class))).thenReturn(webSocket);
         when(connection.getListener()).thenReturn(listener);
+        when(connection.getListeners()).thenReturn(List.of(listener));
+        when(connection.getStaleStreamTimeout()).thenReturn(Duration.ofSeconds(30));
+        sendingStreamingRequestsDirectly(connection);
 
         context = new ContextImpl(connection, logger);
     }
 
+    /**
+     * Запросы streaming отправляются сразу через {@link Connection#getWebSocket(String)}, как пулом с одним
+     * соединением.
+     */
+    private static void sendingStreamingRequestsDirectly(Connection<?> connection) {
+        when(connection.sendStreamingRequest(any())).thenAnswer(invocation -> {
+            final StreamingRequest request = invocation.getArgument(0);
+            final var message = OpenApiCodec.getInstance().writerFor(request.getClass()).writeValueAsString(request);
+            return connection.getWebSocket(StreamingKey.of(request).getFigi())
+                    .sendText(message, true)
+                    .thenApply(ws -> null);
+        });
+    }
+
     @Test
     void gettingOrders() throws ExecutionException, InterruptedException {
         final var someOrder = new Order(
@@ -66,7 +99,7 @@ class ContextImplTest {
         );
         final var expectedOrders = List.of(someOrder);
 
-        final HttpResponse<String> response = mock(HttpStringResponse.class);
+        final HttpResponse<byte[]> response = mock(HttpBytesResponse.class);
         final String json = "{" +
                 "\"trackingId\":\"trackingId\"," +
                 "\"status\":\"Ok\"," +
@@ -81,10 +114,10 @@ class ContextImplTest {
                     "\"price\":100" +
                 "}]" +
                 "}";
-        when(response.body()).thenReturn(json);
+        when(response.body()).thenReturn(json.getBytes(StandardCharsets.UTF_8));
         when(response.statusCode()).thenReturn(200);
 
-        when(httpClient.<String>sendAsync(any(), any())).thenReturn(CompletableFuture.completedFuture(response));
+        when(httpClient.<byte[]>sendAsync(any(), any())).thenReturn(CompletableFuture.completedFuture(response));
 
         final var actualResponse = context.getOrders().get();
         assertEquals(actualResponse.size(), expectedOrders.size());
@@ -103,7 +136,7 @@ class ContextImplTest {
                 .header("Authorization", token)
                 .GET()
                 .build();
-        verify(httpClient).sendAsync(request, HttpResponse.BodyHandlers.ofString());
+        verify(httpClient).sendAsync(request, HttpResponse.BodyHandlers.ofByteArray());
     }
 
     @Test
@@ -121,7 +154,7 @@ class ContextImplTest {
                 "figi"
         );
 
-        final HttpResponse<String> response = mock(HttpStringResponse.class);
+        final HttpResponse<byte[]> response = mock(HttpBytesResponse.class);
         final String json = "{" +
                 "\"trackingId\":\"trackingId\"," +
                 "\"status\":\"Ok\"," +
@@ -138,10 +171,10 @@ class ContextImplTest {
                     "}" +
                 "}" +
                 "}";
-        when(response.body()).thenReturn(json);
+        when(response.body()).thenReturn(json.getBytes(StandardCharsets.UTF_8));
         when(response.statusCode()).thenReturn(200);
 
-        when(httpClient.<String>sendAsync(any(), any())).thenReturn(CompletableFuture.completedFuture(response));
+        when(httpClient.<byte[]>sendAsync(any(), any())).thenReturn(CompletableFuture.completedFuture(response));
 
         final var result = context.placeLimitOrder(someLimitOrder).get();
         assertEquals(result.getId(), expectedOrder.getId());
@@ -160,23 +193,23 @@ class ContextImplTest {
                 .header("Authorization", token)
                 .POST(HttpRequest.BodyPublishers.ofString(requestBody))
                 .build();
-        verify(httpClient).sendAsync(request, HttpResponse.BodyHandlers.ofString());
+        verify(httpClient).sendAsync(request, HttpResponse.BodyHandlers.ofByteArray());
     }
 
     @Test
     void cancellingOrder() throws ExecutionException, InterruptedException {
         final var someOrderId = "orderId";
 
-        final HttpResponse<String> response = mock(HttpStringResponse.class);
+        final HttpResponse<byte[]> response = mock(HttpBytesResponse.class);
         final String json = "{" +
                 "\"trackingId\":\"trackingId\"," +
                 "\"status\":\"Ok\"," +
                 "\"payload\": {}" +
                 "}";
-        when(response.body()).thenReturn(json);
+        when(response.body()).thenReturn(json.getBytes(StandardCharsets.UTF_8));
         when(response.statusCode()).thenReturn(200);
 
-        when(httpClient.<String>sendAsync(any(), any())).thenReturn(CompletableFuture.completedFuture(response));
+        when(httpClient.<byte[]>sendAsync(any(), any())).thenReturn(CompletableFuture.completedFuture(response));
 
         final var result = context.cancelOrder(someOrderId).get();
         assertNull(result);
@@ -187,7 +220,7 @@ class ContextImplTest {
                 .header("Authorization", token)
                 .POST(HttpRequest.BodyPublishers.ofString(requestBody))
                 .build();
-        verify(httpClient).sendAsync(request, HttpResponse.BodyHandlers.ofString());
+        verify(httpClient).sendAsync(request, HttpResponse.BodyHandlers.ofByteArray());
     }
 
     @Test
@@ -206,7 +239,7 @@ class ContextImplTest {
         );
         final var expectedPortfolio = new Portfolio(List.of(somePortfolioPosition));
 
-        final HttpResponse<String> response = mock(HttpStringResponse.class);
+        final HttpResponse<byte[]> response = mock(HttpBytesResponse.class);
         final String json = "{" +
                 "\"trackingId\":\"trackingId\"," +
                 "\"status\":\"Ok\"," +
@@ -223,10 +256,10 @@ class ContextImplTest {
                 "\"averagePositionPriceNoNkd\":{\"currency\":\"RUB\",\"value\":123}" +
                 "}]}" +
                 "}";
-        when(response.body()).thenReturn(json);
+        when(response.body()).thenReturn(json.getBytes(StandardCharsets.UTF_8));
         when(response.statusCode()).thenReturn(200);
 
-        when(httpClient.<String>sendAsync(any(), any())).thenReturn(CompletableFuture.completedFuture(response));
+        when(httpClient.<byte[]>sendAsync(any(), any())).thenReturn(CompletableFuture.completedFuture(response));
 
         final var actualResponse = context.getPortfolio().get();
         assertEquals(actualResponse.getPositions().size(), expectedPortfolio.getPositions().size());
@@ -247,7 +280,7 @@ class ContextImplTest {
                 .header("Authorization", token)
                 .GET()
                 .build();
-        verify(httpClient).sendAsync(request, HttpResponse.BodyHandlers.ofString());
+        verify(httpClient).sendAsync(request, HttpResponse.BodyHandlers.ofByteArray());
     }
 
     @Test
@@ -259,7 +292,7 @@ class ContextImplTest {
         );
         final var expectedPortfolioCurrencies = new PortfolioCurrencies(List.of(somePortfolioCurrency));
 
-        final HttpResponse<String> response = mock(HttpStringResponse.class);
+        final HttpResponse<byte[]> response = mock(HttpBytesResponse.class);
         final String json = "{" +
                 "\"trackingId\":\"trackingId\"," +
                 "\"status\":\"Ok\"," +
@@ -269,10 +302,10 @@ class ContextImplTest {
                 "\"blocked\":100" +
                 "}]}" +
                 "}";
-        when(response.body()).thenReturn(json);
+        when(response.body()).thenReturn(json.getBytes(StandardCharsets.UTF_8));
         when(response.statusCode()).thenReturn(200);
 
-        when(httpClient.<String>sendAsync(any(), any())).thenReturn(CompletableFuture.completedFuture(response));
+        when(httpClient.<byte[]>sendAsync(any(), any())).thenReturn(CompletableFuture.completedFuture(response));
 
         final var actualResponse = context.getPortfolioCurrencies().get();
         assertEquals(actualResponse.getCurrencies().size(), expectedPortfolioCurrencies.getCurrencies().size());
@@ -286,7 +319,7 @@ class ContextImplTest {
                 .header("Authorization", token)
                 .GET()
                 .build();
-        verify(httpClient).sendAsync(request, HttpResponse.BodyHandlers.ofString());
+        verify(httpClient).sendAsync(request, HttpResponse.BodyHandlers.ofByteArray());
     }
 
     @Test
@@ -302,7 +335,7 @@ class ContextImplTest {
         );
         final var expectedStocks = new InstrumentsList(1, List.of(someStock));
 
-        final HttpResponse<String> response = mock(HttpStringResponse.class);
+        final HttpResponse<byte[]> response = mock(HttpBytesResponse.class);
         final String json = "{" +
                 "\"trackingId\":\"trackingId\"," +
                 "\"status\":\"Ok\"," +
@@ -318,10 +351,10 @@ class ContextImplTest {
                 "\"name\":\"name\"" +
                 "}]}" +
                 "}";
-        when(response.body()).thenReturn(json);
+        when(response.body()).thenReturn(json.getBytes(StandardCharsets.UTF_8));
         when(response.statusCode()).thenReturn(200);
 
-        when(httpClient.<String>sendAsync(any(), any())).thenReturn(CompletableFuture.completedFuture(response));
+        when(httpClient.<byte[]>sendAsync(any(), any())).thenReturn(CompletableFuture.completedFuture(response));
 
         final var actualResponse = context.getMarketStocks().get();
         assertEquals(actualResponse.getInstruments().size(), expectedStocks.getInstruments().size());
@@ -340,7 +373,7 @@ class ContextImplTest {
                 .header("Authorization", token)
                 .GET()
                 .build();
-        verify(httpClient).sendAsync(request, HttpResponse.BodyHandlers.ofString());
+        verify(httpClient).sendAsync(request, HttpResponse.BodyHandlers.ofByteArray());
     }
 
     @Test
@@ -356,7 +389,7 @@ class ContextImplTest {
         );
         final var expectedBonds = new InstrumentsList(1, List.of(someBond));
 
-        final HttpResponse<String> response = mock(HttpStringResponse.class);
+        final HttpResponse<byte[]> response = mock(HttpBytesResponse.class);
         final String json = "{" +
                 "\"trackingId\":\"trackingId\"," +
                 "\"status\":\"Ok\"," +
@@ -372,10 +405,10 @@ class ContextImplTest {
                 "\"name\":\"name\"" +
                 "}]}" +
                 "}";
-        when(response.body()).thenReturn(json);
+        when(response.body()).thenReturn(json.getBytes(StandardCharsets.UTF_8));
         when(response.statusCode()).thenReturn(200);
 
-        when(httpClient.<String>sendAsync(any(), any())).thenReturn(CompletableFuture.completedFuture(response));
+        when(httpClient.<byte[]>sendAsync(any(), any())).thenReturn(CompletableFuture.completedFuture(response));
 
         final var actualResponse = context.getMarketBonds().get();
         assertEquals(actualResponse.getInstruments().size(), expectedBonds.getInstruments().size());
@@ -394,7 +427,7 @@ class ContextImplTest {
                 .header("Authorization", token)
                 .GET()
                 .build();
-        verify(httpClient).sendAsync(request, HttpResponse.BodyHandlers.ofString());
+        verify(httpClient).sendAsync(request, HttpResponse.BodyHandlers.ofByteArray());
     }
 
     @Test
@@ -410,7 +443,7 @@ class ContextImplTest {
         );
         final var expectedEtfs = new InstrumentsList(1, List.of(someEtf));
 
-        final HttpResponse<String> response = mock(HttpStringResponse.class);
+        final HttpResponse<byte[]> response = mock(HttpBytesResponse.class);
         final String json = "{" +
                 "\"trackingId\":\"trackingId\"," +
                 "\"status\":\"Ok\"," +
@@ -426,10 +459,10 @@ class ContextImplTest {
                 "\"name\":\"name\"" +
                 "}]}" +
                 "}";
-        when(response.body()).thenReturn(json);
+        when(response.body()).thenReturn(json.getBytes(StandardCharsets.UTF_8));
         when(response.statusCode()).thenReturn(200);
 
-        when(httpClient.<String>sendAsync(any(), any())).thenReturn(CompletableFuture.completedFuture(response));
+        when(httpClient.<byte[]>sendAsync(any(), any())).thenReturn(CompletableFuture.completedFuture(response));
 
         final var actualResponse = context.getMarketEtfs().get();
         assertEquals(actualResponse.getInstruments().size(), expectedEtfs.getInstruments().size());
@@ -448,7 +481,7 @@ class ContextImplTest {
                 .header("Authorization", token)
                 .GET()
                 .build();
-        verify(httpClient).sendAsync(request, HttpResponse.BodyHandlers.ofString());
+        verify(httpClient).sendAsync(request, HttpResponse.BodyHandlers.ofByteArray());
     }
 
     @Test
@@ -464,7 +497,7 @@ class ContextImplTest {
         );
         final var expectedCurrencies = new InstrumentsList(1, List.of(someCurrency));
 
-        final HttpResponse<String> response = mock(HttpStringResponse.class);
+        final HttpResponse<byte[]> response = mock(HttpBytesResponse.class);
         final String json = "{" +
                 "\"trackingId\":\"trackingId\"," +
                 "\"status\":\"Ok\"," +
@@ -480,10 +513,10 @@ class ContextImplTest {
                 "\"name\":\"name\"" +
                 "}]}" +
                 "}";
-        when(response.body()).thenReturn(json);
+        when(response.body()).thenReturn(json.getBytes(StandardCharsets.UTF_8));
         when(response.statusCode()).thenReturn(200);
 
-        when(httpClient.<String>sendAsync(any(), any())).thenReturn(CompletableFuture.completedFuture(response));
+        when(httpClient.<byte[]>sendAsync(any(), any())).thenReturn(CompletableFuture.completedFuture(response));
 
         final var actualResponse = context.getMarketCurrencies().get();
         assertEquals(actualResponse.getInstruments().size(), expectedCurrencies.getInstruments().size());
@@ -502,7 +535,242 @@ class ContextImplTest {
                 .header("Authorization", token)
                 .GET()
                 .build();
-        verify(httpClient).sendAsync(request, HttpResponse.BodyHandlers.ofString());
+        verify(httpClient).sendAsync(request, HttpResponse.BodyHandlers.ofByteArray());
+    }
+
+    @Test
+    void streamingMarketBonds() throws ExecutionException, InterruptedException {
+        final HttpResponse<InputStream> response = mock(HttpInputStreamResponse.class);
+        final String json = "{" +
+                "\"trackingId\":\"trackingId\"," +
+                "\"status\":\"Ok\"," +
+                "\"payload\": {" +
+                "\"instruments\":[{" +
+                "\"figi\":\"figi1\"," +
+                "\"ticker\":\"ticker1\"," +
+                "\"isin\":\"isin1\"," +
+                "\"minPriceIncrement\":0.01," +
+                "\"lot\":1," +
+                "\"currency\":\"RUB\"," +
+                "\"name\":\"name1\"" +
+                "},{" +
+                "\"figi\":\"figi2\"," +
+                "\"ticker\":\"ticker2\"," +
+                "\"isin\":\"isin2\"," +
+                "\"minPriceIncrement\":0.1," +
+                "\"lot\":10," +
+                "\"currency\":\"USD\"," +
+                "\"name\":\"name2\"" +
+                "}]," +
+                "\"total\": 2}" +
+                "}";
+        when(response.body()).thenReturn(new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8)));
+        when(response.statusCode()).thenReturn(200);
+
+        when(httpClient.<InputStream>sendAsync(any(), any())).thenReturn(CompletableFuture.completedFuture(response));
+
+        final var received = new ArrayList<Instrument>();
+        final var completion = new CompletableFuture<List<Instrument>>();
+        context.streamMarketInstruments(InstrumentType.Bond).subscribe(new Flow.Subscriber<>() {
+            @Override
+            public void onSubscribe(Flow.Subscription subscription) {
+                subscription.request(Long.MAX_VALUE);
+            }
+
+            @Override
+            public void onNext(Instrument item) {
+                received.add(item);
+            }
+
+            @Override
+            public void onError(Throwable throwable) {
+                completion.completeExceptionally(throwable);
+            }
+
+            @Override
+            public void onComplete() {
+                completion.complete(received);
+            }
+        });
+
+        final var instruments = completion.get();
+        assertEquals(instruments.size(), 2);
+        assertEquals(instruments.get(0).getFigi(), "figi1");
+        assertEquals(instruments.get(0).getMinPriceIncrement(), new BigDecimal("0.01"));
+        assertEquals(instruments.get(1).getTicker(), "ticker2");
+        assertEquals(instruments.get(1).getLot(), 10);
+        assertEquals(instruments.get(1).getCurrency(), Currency.USD);
+
+        final var request = HttpRequest.newBuilder()
+                .uri(URI.create(host + "/market/bonds"))
+                .header("Authorization", token)
+                .GET()
+                .build();
+        verify(httpClient).sendAsync(request, HttpResponse.BodyHandlers.ofInputStream());
+    }
+
+    @Test
+    void stoppingInstrumentsStreamOnCancel() throws Exception {
+        final var json = new StringBuilder("{\"trackingId\":\"trackingId\",\"status\":\"Ok\",\"payload\":{\"instruments\":[");
+        for (int i = 0; i < 10000; i++) {
+            if (i > 0) json.append(',');
+            json.append("{\"figi\":\"figi").append(i).append("\",\"ticker\":\"ticker").append(i)
+                    .append("\",\"minPriceIncrement\":0.01,\"lot\":1,\"currency\":\"RUB\",\"name\":\"name\"}");
+        }
+        json.append("],\"total\":10000}}");
+        final var bytes = json.toString().getBytes(StandardCharsets.UTF_8);
+        final var read = new AtomicInteger();
+        final var closed = new CompletableFuture<Void>();
+        final InputStream body = new ByteArrayInputStream(bytes) {
+            @Override
+            public synchronized int read(byte[] b, int off, int len) {
+                final var count = super.read(b, off, len);
+                if (count > 0) read.addAndGet(count);
+                return count;
+            }
+
+            @Override
+            public void close() {
+                closed.complete(null);
+            }
+        };
+        final HttpResponse<InputStream> response = mock(HttpInputStreamResponse.class);
+        when(response.body()).thenReturn(body);
+        when(response.statusCode()).thenReturn(200);
+        when(httpClient.<InputStream>sendAsync(any(), any())).thenReturn(CompletableFuture.completedFuture(response));
+
+        final var received = new AtomicInteger();
+        context.streamMarketInstruments(InstrumentType.Stock).subscribe(new Flow.Subscriber<>() {
+            private Flow.Subscription subscription;
+
+            @Override
+            public void onSubscribe(Flow.Subscription subscription) {
+                this.subscription = subscription;
+                subscription.request(1);
+            }
+
+            @Override
+            public void onNext(Instrument item) {
+                received.incrementAndGet();
+                subscription.cancel();
+            }
+
+            @Override
+            public void onError(Throwable throwable) {
+            }
+
+            @Override
+            public void onComplete() {
+            }
+        });
+
+        // после отказа разбор останавливается, не дочитав ответ
+        closed.get(5, TimeUnit.SECONDS);
+        assertEquals(received.get(), 1);
+        assertTrue(read.get() < bytes.length / 2);
+    }
+
+    @Test
+    void releasingRequestSlotWhileInstrumentsAreRead() throws Exception {
+        final var json = new StringBuilder("{\"trackingId\":\"trackingId\",\"status\":\"Ok\",\"payload\":{\"instruments\":[");
+        for (int i = 0; i < 1000; i++) {
+            if (i > 0) json.append(',');
+            json.append("{\"figi\":\"figi").append(i).append("\",\"ticker\":\"ticker").append(i)
+                    .append("\",\"minPriceIncrement\":0.01,\"lot\":1,\"currency\":\"RUB\",\"name\":\"name\"}");
+        }
+        json.append("],\"total\":1000}}");
+        final HttpResponse<InputStream> instrumentsResponse = mock(HttpInputStreamResponse.class);
+        when(instrumentsResponse.body())
+                .thenReturn(new ByteArrayInputStream(json.toString().getBytes(StandardCharsets.UTF_8)));
+        when(instrumentsResponse.statusCode()).thenReturn(200);
+        final HttpResponse<byte[]> ordersResponse = mock(HttpBytesResponse.class);
+        when(ordersResponse.statusCode()).thenReturn(200);
+        when(ordersResponse.body()).thenReturn("{\"trackingId\":\"trackingId\",\"status\":\"Ok\",\"payload\":[]}"
+                .getBytes(StandardCharsets.UTF_8));
+        final var slowClient = mock(HttpClient.class);
+        doReturn(CompletableFuture.completedFuture(instrumentsResponse))
+                .doReturn(CompletableFuture.completedFuture(ordersResponse))
+                .when(slowClient).sendAsync(any(), any());
+        final Connection<Context> connection = mock(ConnectionImpl.class);
+        when(connection.getHost()).thenReturn(host);
+        when(connection.getAuthToken()).thenReturn(token);
+        when(connection.getHttpClient()).thenReturn(slowClient);
+        when(connection.getListeners()).thenReturn(List.of());
+        when(connection.getStaleStreamTimeout()).thenReturn(Duration.ofSeconds(30));
+        final var slowContext = new ContextImpl(
+                connection,
+                new RequestScheduler(1),
+                new RateLimiter(),
+                Logger.getLogger(ContextImplTest.class.getName())
+        );
+
+        // подписчик берёт один инструмент и больше не запрашивает
+        final var parsingThread = new CompletableFuture<Thread>();
+        final var received = new LinkedBlockingQueue<Instrument>();
+        slowContext.streamMarketInstruments(InstrumentType.Stock, command -> {
+            final var thread = new Thread(command, "instruments-test");
+            thread.setDaemon(true);
+            parsingThread.complete(thread);
+            thread.start();
+        }).subscribe(new Flow.Subscriber<>() {
+            @Override
+            public void onSubscribe(Flow.Subscription subscription) {
+                subscription.request(1);
+            }
+
+            @Override
+            public void onNext(Instrument item) {
+                received.add(item);
+            }
+
+            @Override
+            public void onError(Throwable throwable) {
+            }
+
+            @Override
+            public void onComplete() {
+            }
+        });
+        assertNotNull(received.poll(5, TimeUnit.SECONDS));
+        assertTrue(parsingThread.get(5, TimeUnit.SECONDS).isAlive());
+
+        // единственное место в планировщике освобождено с получением заголовков ответа
+        assertEquals(slowContext.getOrders().get(5, TimeUnit.SECONDS), List.of());
+    }
+
+    @Test
+    void cancellingInstrumentsRequestOnCancel() throws Exception {
+        final var sent = new CompletableFuture<HttpResponse<InputStream>>();
+        final var subscribed = new CompletableFuture<Flow.Subscription>();
+        final var requested = new CompletableFuture<Void>();
+        when(httpClient.<InputStream>sendAsync(any(), any())).thenAnswer(invocation -> {
+            requested.complete(null);
+            return sent;
+        });
+
+        context.streamMarketInstruments(InstrumentType.ETF).subscribe(new Flow.Subscriber<>() {
+            @Override
+            public void onSubscribe(Flow.Subscription subscription) {
+                subscribed.complete(subscription);
+            }
+
+            @Override
+            public void onNext(Instrument item) {
+            }
+
+            @Override
+            public void onError(Throwable throwable) {
+            }
+
+            @Override
+            public void onComplete() {
+            }
+        });
+
+        final var subscription = subscribed.get(5, TimeUnit.SECONDS);
+        requested.get(5, TimeUnit.SECONDS);
+        subscription.cancel();
+        assertTrue(sent.isCancelled());
     }
 
     @Test
@@ -520,7 +788,7 @@ class ContextImplTest {
                 BigDecimal.valueOf(9)
         );
 
-        final HttpResponse<String> response = mock(HttpStringResponse.class);
+        final HttpResponse<byte[]> response = mock(HttpBytesResponse.class);
         final String json = "{" +
                 "\"trackingId\":\"trackingId\"," +
                 "\"status\":\"Ok\"," +
@@ -537,10 +805,10 @@ class ContextImplTest {
                     "\"limitDown\": 9" +
                 "}" +
                 "}";
-        when(response.body()).thenReturn(json);
+        when(response.body()).thenReturn(json.getBytes(StandardCharsets.UTF_8));
         when(response.statusCode()).thenReturn(200);
 
-        when(httpClient.<String>sendAsync(any(), any())).thenReturn(CompletableFuture.completedFuture(response));
+        when(httpClient.<byte[]>sendAsync(any(), any())).thenReturn(CompletableFuture.completedFuture(response));
 
         final var actualResponse = context.getMarketOrderbook(expectedOrderbook.getFigi(), expectedOrderbook.getDepth()).get();
         assertEquals(actualResponse.getFigi(), expectedOrderbook.getFigi());
@@ -559,7 +827,7 @@ class ContextImplTest {
                 .header("Authorization", token)
                 .GET()
                 .build();
-        verify(httpClient).sendAsync(request, HttpResponse.BodyHandlers.ofString());
+        verify(httpClient).sendAsync(request, HttpResponse.BodyHandlers.ofByteArray());
     }
 
     @Test
@@ -576,7 +844,7 @@ class ContextImplTest {
         );
         final var expectedCandles = new HistoricalCandles("figi",CandleInterval.DAY, List.of(someCandle));
 
-        final HttpResponse<String> response = mock(HttpStringResponse.class);
+        final HttpResponse<byte[]> response = mock(HttpBytesResponse.class);
         final String json = "{" +
                 "\"trackingId\":\"trackingId\"," +
                 "\"status\":\"Ok\"," +
@@ -594,12 +862,12 @@ class ContextImplTest {
                 "\"time\":\"2019-10-17T00:00:00.000000+00:00\"" +
                 "}]}" +
                 "}";
-        when(response.body()).thenReturn(json);
+        when(response.body()).thenReturn(json.getBytes(StandardCharsets.UTF_8));
         when(response.statusCode()).thenReturn(200);
         final var from = OffsetDateTime.of(2019, 10, 17, 0, 0, 0, 0, ZoneOffset.UTC);
         final var to = OffsetDateTime.of(2019, 10, 18, 0, 0, 0, 0, ZoneOffset.UTC);
 
-        when(httpClient.<String>sendAsync(any(), any())).thenReturn(CompletableFuture.completedFuture(response));
+        when(httpClient.<byte[]>sendAsync(any(), any())).thenReturn(CompletableFuture.completedFuture(response));
 
         final var actualResponse = context.getMarketCandles("figi", from, to, CandleInterval.DAY).get();
         assertEquals(actualResponse.getFigi(), expectedCandles.getFigi());
@@ -620,7 +888,69 @@ class ContextImplTest {
                 .header("Authorization", token)
                 .GET()
                 .build();
-        verify(httpClient).sendAsync(request, HttpResponse.BodyHandlers.ofString());
+        verify(httpClient).sendAsync(request, HttpResponse.BodyHandlers.ofByteArray());
+    }
+
+    @Test
+    void gettingTwoHourMarketCandles() throws ExecutionException, InterruptedException {
+        final HttpResponse<byte[]> response = mock(HttpBytesResponse.class);
+        final String json = "{" +
+                "\"trackingId\":\"trackingId\"," +
+                "\"status\":\"Ok\"," +
+                "\"payload\": {" +
+                "\"figi\":\"figi\"," +
+                "\"interval\":\"hour\"," +
+                "\"candles\":[" +
+                "{\"figi\":\"figi\",\"interval\":\"hour\",\"o\":1,\"c\":2,\"h\":3,\"l\":0.5,\"v\":5," +
+                "\"time\":\"2019-10-17T10:00:00.000000+00:00\"}," +
+                "{\"figi\":\"figi\",\"interval\":\"hour\",\"o\":2,\"c\":4,\"h\":5,\"l\":1,\"v\":6," +
+                "\"time\":\"2019-10-17T11:00:00.000000+00:00\"}," +
+                "{\"figi\":\"figi\",\"interval\":\"hour\",\"o\":4,\"c\":3,\"h\":4,\"l\":2,\"v\":7," +
+                "\"time\":\"2019-10-17T12:00:00.000000+00:00\"}," +
+                "{\"figi\":\"figi\",\"interval\":\"hour\",\"o\":3,\"c\":6,\"h\":7,\"l\":1.5,\"v\":8," +
+                "\"time\":\"2019-10-17T13:00:00.000000+00:00\"}," +
+                "{\"figi\":\"figi\",\"interval\":\"hour\",\"o\":6,\"c\":5,\"h\":6,\"l\":4,\"v\":9," +
+                "\"time\":\"2019-10-17T14:00:00.000000+00:00\"}" +
+                "]}" +
+                "}";
+        when(response.body()).thenReturn(json.getBytes(StandardCharsets.UTF_8));
+        when(response.statusCode()).thenReturn(200);
+        final var from = OffsetDateTime.of(2019, 10, 17, 11, 0, 0, 0, ZoneOffset.UTC);
+        final var to = OffsetDateTime.of(2019, 10, 17, 15, 0, 0, 0, ZoneOffset.UTC);
+
+        when(httpClient.<byte[]>sendAsync(any(), any())).thenReturn(CompletableFuture.completedFuture(response));
+
+        // отрезки 10:00-12:00 и 14:00-16:00 выходят за промежуток, остаётся только 12:00-14:00
+        final var actualResponse = context.getMarketCandles("figi", from, to, CandleInterval.TWO_HOUR).get();
+        assertEquals(actualResponse.getInterval(), CandleInterval.TWO_HOUR);
+        assertEquals(actualResponse.getCandles().size(), 1);
+        final var first = actualResponse.getCandles().get(0);
+        assertEquals(first.getTime().toInstant(), Instant.parse("2019-10-17T12:00:00Z"));
+        assertEquals(first.getO(), BigDecimal.valueOf(4));
+        assertEquals(first.getC(), BigDecimal.valueOf(6));
+        assertEquals(first.getH(), BigDecimal.valueOf(7));
+        assertEquals(first.getL(), new BigDecimal("1.5"));
+        assertEquals(first.getV(), BigDecimal.valueOf(15));
+
+        final var alignedFrom = OffsetDateTime.of(2019, 10, 17, 12, 0, 0, 0, ZoneOffset.UTC);
+        final var alignedTo = OffsetDateTime.of(2019, 10, 17, 14, 0, 0, 0, ZoneOffset.UTC);
+        final var request = HttpRequest.newBuilder()
+                .uri(URI.create(host + "/market/candles?figi=figi&from=" + URLEncoder.encode(alignedFrom.toString(), StandardCharsets.UTF_8) + "&to=" + URLEncoder.encode(alignedTo.toString(), StandardCharsets.UTF_8) + "&interval=hour"))
+                .header("Authorization", token)
+                .GET()
+                .build();
+        verify(httpClient).sendAsync(request, HttpResponse.BodyHandlers.ofByteArray());
+    }
+
+    @Test
+    void gettingEmptyTwoHourCandlesWithinOneBucket() throws ExecutionException, InterruptedException {
+        final var from = OffsetDateTime.of(2019, 10, 17, 10, 30, 0, 0, ZoneOffset.UTC);
+        final var to = OffsetDateTime.of(2019, 10, 17, 12, 30, 0, 0, ZoneOffset.UTC);
+        clearInvocations(httpClient);
+
+        final var actualResponse = context.getMarketCandles("figi", from, to, CandleInterval.TWO_HOUR).get();
+        assertTrue(actualResponse.getCandles().isEmpty());
+        verify(httpClient, never()).sendAsync(any(), any());
     }
 
     @Test
@@ -636,7 +966,7 @@ class ContextImplTest {
         );
         final var expectedInstruments = new InstrumentsList(1, List.of(someInstrument));
 
-        final HttpResponse<String> response = mock(HttpStringResponse.class);
+        final HttpResponse<byte[]> response = mock(HttpBytesResponse.class);
         final String json = "{" +
                 "\"trackingId\":\"trackingId\"," +
                 "\"status\":\"Ok\"," +
@@ -652,10 +982,10 @@ class ContextImplTest {
                 "\"name\":\"name\"" +
                 "}]}" +
                 "}";
-        when(response.body()).thenReturn(json);
+        when(response.body()).thenReturn(json.getBytes(StandardCharsets.UTF_8));
         when(response.statusCode()).thenReturn(200);
 
-        when(httpClient.<String>sendAsync(any(), any())).thenReturn(CompletableFuture.completedFuture(response));
+        when(httpClient.<byte[]>sendAsync(any(), any())).thenReturn(CompletableFuture.completedFuture(response));
 
         final var actualResponse = context.searchMarketInstrumentsByTicker(someInstrument.getTicker()).get();
         assertEquals(actualResponse.getInstruments().size(), expectedInstruments.getInstruments().size());
@@ -674,7 +1004,7 @@ class ContextImplTest {
                 .header("Authorization", token)
                 .GET()
                 .build();
-        verify(httpClient).sendAsync(request, HttpResponse.BodyHandlers.ofString());
+        verify(httpClient).sendAsync(request, HttpResponse.BodyHandlers.ofByteArray());
     }
 
     @Test
@@ -689,7 +1019,7 @@ class ContextImplTest {
                 "name"
         );
 
-        final HttpResponse<String> response = mock(HttpStringResponse.class);
+        final HttpResponse<byte[]> response = mock(HttpBytesResponse.class);
         final String json = "{" +
                 "\"trackingId\":\"trackingId\"," +
                 "\"status\":\"Ok\"," +
@@ -703,10 +1033,10 @@ class ContextImplTest {
                 "\"name\":\"name\"" +
                 "}" +
                 "}";
-        when(response.body()).thenReturn(json);
+        when(response.body()).thenReturn(json.getBytes(StandardCharsets.UTF_8));
         when(response.statusCode()).thenReturn(200);
 
-        when(httpClient.<String>sendAsync(any(), any())).thenReturn(CompletableFuture.completedFuture(response));
+        when(httpClient.<byte[]>sendAsync(any(), any())).thenReturn(CompletableFuture.completedFuture(response));
 
         final var actualResponse = context.searchMarketInstrumentByFigi(expectedInstrument.getFigi()).get();
         assertTrue(actualResponse.isPresent());
@@ -723,14 +1053,14 @@ class ContextImplTest {
                 .header("Authorization", token)
                 .GET()
                 .build();
-        verify(httpClient).sendAsync(request, HttpResponse.BodyHandlers.ofString());
+        verify(httpClient).sendAsync(request, HttpResponse.BodyHandlers.ofByteArray());
     }
 
     @Test
     void instrumentNotFound() {
         final var someTicker = "wrong_ticker";
 
-        final HttpResponse<String> response = mock(HttpStringResponse.class);
+        final HttpResponse<byte[]> response = mock(HttpBytesResponse.class);
         final String json = "{" +
                 "\"trackingId\":\"trackingId\"," +
                 "\"status\":\"Ok\"," +
@@ -739,10 +1069,10 @@ class ContextImplTest {
                 "\"code\":\"NOT_FOUND\"" +
                 "}" +
                 "}";
-        when(response.body()).thenReturn(json);
+        when(response.body()).thenReturn(json.getBytes(StandardCharsets.UTF_8));
         when(response.statusCode()).thenReturn(404);
 
-        when(httpClient.<String>sendAsync(any(), any())).thenReturn(CompletableFuture.completedFuture(response));
+        when(httpClient.<byte[]>sendAsync(any(), any())).thenReturn(CompletableFuture.completedFuture(response));
 
         assertThrows(OpenApiException.class, () -> {
             try {
@@ -757,7 +1087,7 @@ class ContextImplTest {
                 .header("Authorization", token)
                 .GET()
                 .build();
-        verify(httpClient).sendAsync(request, HttpResponse.BodyHandlers.ofString());
+        verify(httpClient).sendAsync(request, HttpResponse.BodyHandlers.ofByteArray());
     }
 
     @Test
@@ -786,7 +1116,7 @@ class ContextImplTest {
         );
         final var expectedOperations = List.of(someOperation);
 
-        final HttpResponse<String> response = mock(HttpStringResponse.class);
+        final HttpResponse<byte[]> response = mock(HttpBytesResponse.class);
         final String json = "{" +
                 "  \"trackingId\": \"trackingId\"," +
                 "  \"status\": \"Ok\"," +
@@ -818,10 +1148,10 @@ class ContextImplTest {
                 "    }" +
                 "  ]}" +
                 "}";
-        when(response.body()).thenReturn(json);
+        when(response.body()).thenReturn(json.getBytes(StandardCharsets.UTF_8));
         when(response.statusCode()).thenReturn(200);
 
-        when(httpClient.<String>sendAsync(any(), any())).thenReturn(CompletableFuture.completedFuture(response));
+        when(httpClient.<byte[]>sendAsync(any(), any())).thenReturn(CompletableFuture.completedFuture(response));
 
         final var from = OffsetDateTime.of(2019, 8, 30, 0, 0, 0 ,0, ZoneOffset.UTC);
         final var to = from.plusWeeks(1);
@@ -848,7 +1178,7 @@ class ContextImplTest {
                 .header("Authorization", token)
                 .GET()
                 .build();
-        verify(httpClient).sendAsync(request, HttpResponse.BodyHandlers.ofString());
+        verify(httpClient).sendAsync(request, HttpResponse.BodyHandlers.ofByteArray());
     }
 
     @Test
@@ -889,6 +1219,25 @@ class ContextImplTest {
         verify(webSocket).sendText(expectedMessage, true);
     }
 
+    @Test
+    void subscribingToFourHourCandles() throws ExecutionException, InterruptedException {
+        final var someFigi = "figi4h";
+
+        when(webSocket.sendText(any(), anyBoolean())).thenReturn(CompletableFuture.completedFuture(webSocket));
+
+        assertNull(context.sendStreamingRequest(StreamingRequest.subscribeCandle(someFigi, CandleInterval.FOUR_HOUR)).get());
+        assertNull(context.sendStreamingRequest(StreamingRequest.subscribeCandle(someFigi, CandleInterval.TWO_HOUR)).get());
+
+        final var expectedMessage = "{\"event\":\"candle:subscribe\",\"requestId\":null,\"figi\":\"figi4h\",\"interval\":\"hour\"}";
+        verify(webSocket, times(1)).sendText(expectedMessage, true);
+
+        assertNull(context.sendStreamingRequest(StreamingRequest.unsubscribeCandle(someFigi, CandleInterval.FOUR_HOUR)).get());
+        assertNull(context.sendStreamingRequest(StreamingRequest.unsubscribeCandle(someFigi, CandleInterval.TWO_HOUR)).get());
+
+        final var expectedUnsubscribe = "{\"event\":\"candle:unsubscribe\",\"requestId\":null,\"figi\":\"figi4h\",\"interval\":\"hour\"}";
+        verify(webSocket, times(1)).sendText(expectedUnsubscribe, true);
+    }
+
     @Test
     void subscribingToOrderbook() {
         final var someFigi = "figi";
@@ -963,4 +1312,364 @@ class ContextImplTest {
         verify(webSocket).sendText(expectedMessage, true);
     }
 
+    @Test
+    void routingStreamingEventsByKey() throws InterruptedException {
+        final var received = new LinkedBlockingQueue<StreamingEvent>();
+        final var subscription = new CompletableFuture<Flow.Subscription>();
+        context.subscribe(new Flow.Subscriber<>() {
+            @Override
+            public void onSubscribe(Flow.Subscription s) {
+                s.request(Long.MAX_VALUE);
+                subscription.complete(s);
+            }
+
+            @Override
+            public void onNext(StreamingEvent item) {
+                received.add(item);
+            }
+
+            @Override
+            public void onError(Throwable throwable) {
+            }
+
+            @Override
+            public void onComplete() {
+            }
+        }, Set.of(StreamingKey.orderbook("routedFigi", 2)));
+
+        listener.receiveText(orderbookMessage("otherFigi", 2));
+        listener.receiveText(orderbookMessage("routedFigi", 3));
+        listener.receiveText(orderbookMessage("routedFigi", 2));
+
+        final var event = received.poll(5, TimeUnit.SECONDS);
+        assertTrue(event instanceof StreamingEvent.Orderbook);
+        assertEquals(((StreamingEvent.Orderbook) event).getFigi(), "routedFigi");
+        assertEquals(((StreamingEvent.Orderbook) event).getDepth(), 2);
+
+        subscription.join().cancel();
+        listener.receiveText(orderbookMessage("routedFigi", 2));
+        assertNull(received.poll(200, TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    void retryingThrottledRequests() {
+        final var limits = new EnumMap<EndpointGroup, Integer>(EndpointGroup.class);
+        for (final var group : EndpointGroup.values()) {
+            limits.put(group, 60000);
+        }
+        final var rateLimiter = new RateLimiter(limits, () -> 0L);
+        final var throttledClient = mock(HttpClient.class);
+        final Connection<Context> connection = mock(ConnectionImpl.class);
+        when(connection.getHost()).thenReturn(host);
+        when(connection.getAuthToken()).thenReturn(token);
+        when(connection.getHttpClient()).thenReturn(throttledClient);
+        when(connection.getListeners()).thenReturn(List.of());
+        when(connection.getStaleStreamTimeout()).thenReturn(Duration.ofSeconds(30));
+        final var throttledContext = new ContextImpl(
+                connection,
+                new RequestScheduler(),
+                rateLimiter,
+                Logger.getLogger(ContextImplTest.class.getName())
+        );
+
+        final HttpResponse<byte[]> tooManyRequests = mock(HttpBytesResponse.class);
+        when(tooManyRequests.statusCode()).thenReturn(429);
+        when(tooManyRequests.body()).thenReturn(new byte[0]);
+        final HttpResponse<byte[]> ok = mock(HttpBytesResponse.class);
+        when(ok.statusCode()).thenReturn(200);
+        when(ok.body()).thenReturn("{\"trackingId\":\"trackingId\",\"status\":\"Ok\",\"payload\":[]}"
+                .getBytes(StandardCharsets.UTF_8));
+        when(throttledClient.<byte[]>sendAsync(any(), any()))
+                .thenReturn(CompletableFuture.completedFuture(tooManyRequests))
+                .thenReturn(CompletableFuture.completedFuture(ok));
+
+        // ответ 429 не доходит до вызывающего: запрос повторяется по сниженной частоте
+        assertEquals(throttledContext.getOrders().join(), List.of());
+        verify(throttledClient, times(2)).sendAsync(any(), any());
+        final var metrics = rateLimiter.getMetrics().get(EndpointGroup.Orders);
+        assertEquals(metrics.getThrottledCount(), 1L);
+        assertEquals(metrics.getCurrentLimit(), 30000.0);
+    }
+
+    @Test
+    void detectingStaleStreams() throws InterruptedException {
+        final var quietListener = new TestableListener();
+        final var quietWebSocket = mock(WebSocket.class);
+        when(quietWebSocket.sendText(any(), anyBoolean()))
+                .thenReturn(CompletableFuture.completedFuture(quietWebSocket));
+        final Connection<Context> connection = mock(ConnectionImpl.class);
+        when(connection.getHttpClient()).thenReturn(httpClient);
+        when(connection.getWebSocket(any(String.class))).thenReturn(quietWebSocket);
+        when(connection.getListeners()).thenReturn(List.of(quietListener));
+        when(connection.getStaleStreamTimeout()).thenReturn(Duration.ofMillis(300));
+        sendingStreamingRequestsDirectly(connection);
+        final var now = new AtomicLong();
+        final var staleContext = new ContextImpl(
+                connection,
+                new RequestScheduler(),
+                new RateLimiter(),
+                now::get,
+                Logger.getLogger(ContextImplTest.class.getName())
+        );
+
+        final var liveKey = StreamingKey.orderbook("liveFigi", 2);
+        final var quietKey = StreamingKey.orderbook("quietFigi", 2);
+        final var liveEvents = new LinkedBlockingQueue<StreamingEvent>();
+        staleContext.subscribe(new Flow.Subscriber<>() {
+            @Override
+            public void onSubscribe(Flow.Subscription subscription) {
+                subscription.request(Long.MAX_VALUE);
+            }
+
+            @Override
+            public void onNext(StreamingEvent item) {
+                liveEvents.add(item);
+            }
+
+            @Override
+            public void onError(Throwable throwable) {
+            }
+
+            @Override
+            public void onComplete() {
+            }
+        }, Set.of(liveKey));
+        staleContext.sendStreamingRequest(StreamingRequest.subscribeOrderbook("liveFigi", 2)).join();
+        staleContext.sendStreamingRequest(StreamingRequest.subscribeOrderbook("quietFigi", 2)).join();
+
+        // пока по соединению идут события, замолчавший поток переподписывается
+        now.set(TimeUnit.MILLISECONDS.toNanos(200));
+        quietListener.receiveText(orderbookMessage("liveFigi", 2));
+        assertNotNull(liveEvents.poll(5, TimeUnit.SECONDS));
+        now.set(TimeUnit.MILLISECONDS.toNanos(400));
+        verify(quietWebSocket, timeout(5000).times(2)).sendText(contains("quietFigi"), eq(true));
+        assertEquals(staleContext.getStaleStreams(), Set.of(quietKey));
+        verify(connection, never()).reconnect(anyInt());
+
+        // замолчали все потоки соединения - оно восстанавливается
+        now.set(TimeUnit.MILLISECONDS.toNanos(1000));
+        verify(connection, timeout(5000)).reconnect(0);
+        assertEquals(staleContext.getStaleStreams(), Set.of(liveKey, quietKey));
+
+        // отметка о событии ставится до его рассылки подписчикам
+        quietListener.receiveText(orderbookMessage("liveFigi", 2));
+        assertNotNull(liveEvents.poll(5, TimeUnit.SECONDS));
+        assertEquals(staleContext.getStaleStreams(), Set.of(quietKey));
+    }
+
+    @Test
+    void backingOffStreamsAnsweringOnlyResubscribe() throws InterruptedException {
+        final var quietListener = new TestableListener();
+        final var quietWebSocket = mock(WebSocket.class);
+        when(quietWebSocket.sendText(any(), anyBoolean()))
+                .thenReturn(CompletableFuture.completedFuture(quietWebSocket));
+        final Connection<Context> connection = mock(ConnectionImpl.class);
+        when(connection.getHttpClient()).thenReturn(httpClient);
+        when(connection.getWebSocket(any(String.class))).thenReturn(quietWebSocket);
+        when(connection.getListeners()).thenReturn(List.of(quietListener));
+        when(connection.getStaleStreamTimeout()).thenReturn(Duration.ofMillis(300));
+        sendingStreamingRequestsDirectly(connection);
+        final var now = new AtomicLong();
+        final var staleContext = new ContextImpl(
+                connection,
+                new RequestScheduler(),
+                new RateLimiter(),
+                now::get,
+                Logger.getLogger(ContextImplTest.class.getName())
+        );
+
+        final var events = new LinkedBlockingQueue<StreamingEvent>();
+        staleContext.subscribe(new Flow.Subscriber<>() {
+            @Override
+            public void onSubscribe(Flow.Subscription subscription) {
+                subscription.request(Long.MAX_VALUE);
+            }
+
+            @Override
+            public void onNext(StreamingEvent item) {
+                events.add(item);
+            }
+
+            @Override
+            public void onError(Throwable throwable) {
+            }
+
+            @Override
+            public void onComplete() {
+            }
+        });
+        staleContext.sendStreamingRequest(StreamingRequest.subscribeOrderbook("liveFigi", 2)).join();
+        staleContext.sendStreamingRequest(StreamingRequest.subscribeOrderbook("closedFigi", 2)).join();
+        staleContext.sendStreamingRequest(StreamingRequest.subscribeInstrumentInfo("infoFigi")).join();
+
+        // замолчавший поток переподписывается, сервер отвечает снимком, и поток снова замолкает
+        receiveAt(now, 250, quietListener, orderbookMessage("liveFigi", 2), events);
+        receiveAt(now, 400, quietListener, orderbookMessage("liveFigi", 2), events);
+        verify(quietWebSocket, timeout(5000).times(2)).sendText(contains("closedFigi"), eq(true));
+        receiveAt(now, 410, quietListener, orderbookMessage("closedFigi", 2), events);
+        assertEquals(staleContext.getStaleStreams(), Set.of());
+
+        // снимок в ответ на переподписку не возвращает прежний срок молчания
+        receiveAt(now, 650, quietListener, orderbookMessage("liveFigi", 2), events);
+        receiveAt(now, 800, quietListener, orderbookMessage("liveFigi", 2), events);
+        verify(quietWebSocket, after(500).times(2)).sendText(contains("closedFigi"), eq(true));
+        assertEquals(staleContext.getStaleStreams(), Set.of());
+
+        // следующая переподписка - после удвоенного срока
+        receiveAt(now, 1050, quietListener, orderbookMessage("liveFigi", 2), events);
+        verify(quietWebSocket, timeout(5000).times(3)).sendText(contains("closedFigi"), eq(true));
+        assertEquals(staleContext.getStaleStreams(), Set.of(StreamingKey.orderbook("closedFigi", 2)));
+
+        // информация об инструменте приходит лишь при смене статуса, её молчание не проверяется
+        verify(quietWebSocket, times(1)).sendText(contains("infoFigi"), eq(true));
+        verify(connection, never()).reconnect(anyInt());
+    }
+
+    private static void receiveAt(AtomicLong now,
+                                  long millis,
+                                  TestableListener listener,
+                                  String message,
+                                  LinkedBlockingQueue<StreamingEvent> events) throws InterruptedException {
+        now.set(TimeUnit.MILLISECONDS.toNanos(millis));
+        listener.receiveText(message);
+        assertNotNull(events.poll(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void conflatingOrderbooksForSlowSubscriber() throws InterruptedException {
+        final var received = new LinkedBlockingQueue<StreamingEvent.Orderbook>();
+        final var requested = new CompletableFuture<Flow.Subscription>();
+        final var subscription = context.subscribeConflatedOrderbook(new Flow.Subscriber<>() {
+            @Override
+            public void onSubscribe(Flow.Subscription s) {
+                requested.complete(s);
+            }
+
+            @Override
+            public void onNext(StreamingEvent.Orderbook item) {
+                received.add(item);
+            }
+
+            @Override
+            public void onError(Throwable throwable) {
+            }
+
+            @Override
+            public void onComplete() {
+            }
+        }, "conflatedFigi", 2);
+
+        listener.receiveText(orderbookMessage("conflatedFigi", 2, "64.35"));
+        listener.receiveText(orderbookMessage("conflatedFigi", 2, "64.36"));
+        listener.receiveText(orderbookMessage("conflatedFigi", 2, "64.37"));
+
+        final var deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (subscription.getDroppedCount() < 2 && System.nanoTime() < deadline) {
+            TimeUnit.MILLISECONDS.sleep(10);
+        }
+        assertEquals(subscription.getDroppedCount(), 2L);
+        assertEquals(subscription.getBufferedCount(), 1);
+
+        requested.join().request(1);
+        final var book = received.poll(5, TimeUnit.SECONDS);
+        assertNotNull(book);
+        assertEquals(book.getBids().get(0)[0], new BigDecimal("64.37"));
+        assertNull(received.poll(100, TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    void backfillingMissedCandlesOnReconnect() throws Exception {
+        final var backfillClient = mock(HttpClient.class);
+        final var candlesResponse = new CompletableFuture<HttpResponse<byte[]>>();
+        when(backfillClient.<byte[]>sendAsync(any(), any())).thenReturn(candlesResponse);
+        final var backfillWebSocket = mock(WebSocket.class);
+        when(backfillWebSocket.sendText(any(), anyBoolean()))
+                .thenReturn(CompletableFuture.completedFuture(backfillWebSocket));
+        final Connection<Context> connection = mock(ConnectionImpl.class);
+        when(connection.getHost()).thenReturn(host);
+        when(connection.getAuthToken()).thenReturn(token);
+        when(connection.getHttpClient()).thenReturn(backfillClient);
+        when(connection.getWebSocket(any(String.class))).thenReturn(backfillWebSocket);
+        when(connection.getListeners()).thenReturn(List.of());
+        when(connection.getStaleStreamTimeout()).thenReturn(Duration.ofSeconds(30));
+        sendingStreamingRequestsDirectly(connection);
+        final var recoveryAction = new CompletableFuture<Function<ReconnectEvent, CompletableFuture<Void>>>();
+        doAnswer(invocation -> recoveryAction.complete(invocation.getArgument(0)))
+                .when(connection).addRecoveryAction(any());
+        final var backfillContext = new ContextImpl(connection, Logger.getLogger(ContextImplTest.class.getName()));
+
+        final var received = new LinkedBlockingQueue<StreamingEvent>();
+        backfillContext.subscribe(new Flow.Subscriber<>() {
+            @Override
+            public void onSubscribe(Flow.Subscription subscription) {
+                subscription.request(Long.MAX_VALUE);
+            }
+
+            @Override
+            public void onNext(StreamingEvent item) {
+                received.add(item);
+            }
+
+            @Override
+            public void onError(Throwable throwable) {
+            }
+
+            @Override
+            public void onComplete() {
+            }
+        }, Set.of(StreamingKey.candle("figi", CandleInterval.ONE_MIN)));
+        backfillContext.sendStreamingRequest(StreamingRequest.subscribeCandle("figi", CandleInterval.ONE_MIN)).join();
+
+        final var recovered = recoveryAction.join().apply(new ReconnectEvent(
+                0, Instant.parse("2019-10-17T10:05:30Z"), Instant.parse("2019-10-17T10:07:10Z"), 1));
+
+        // свечи загружаются с запасом в один интервал до разрыва; переотправка подписок ждёт окончания загрузки
+        final var from = OffsetDateTime.parse("2019-10-17T10:04:30Z");
+        final var to = OffsetDateTime.parse("2019-10-17T10:07:10Z");
+        final var request = HttpRequest.newBuilder()
+                .uri(URI.create(host + "/market/candles?figi=figi&from=" +
+                        URLEncoder.encode(from.toString(), StandardCharsets.UTF_8) + "&to=" +
+                        URLEncoder.encode(to.toString(), StandardCharsets.UTF_8) + "&interval=1min"))
+                .header("Authorization", token)
+                .GET()
+                .build();
+        verify(backfillClient, timeout(5000)).sendAsync(request, HttpResponse.BodyHandlers.ofByteArray());
+        assertFalse(recovered.isDone());
+
+        final HttpResponse<byte[]> response = mock(HttpBytesResponse.class);
+        when(response.statusCode()).thenReturn(200);
+        when(response.body()).thenReturn(("{\"trackingId\":\"trackingId\",\"status\":\"Ok\",\"payload\":{" +
+                "\"figi\":\"figi\",\"interval\":\"1min\",\"candles\":[" +
+                candleJson("2019-10-17T10:05:00Z", "10") + "," +
+                candleJson("2019-10-17T10:06:00Z", "11") +
+                "]}}").getBytes(StandardCharsets.UTF_8));
+        candlesResponse.complete(response);
+
+        final var first = (StreamingEvent.Candle) received.poll(5, TimeUnit.SECONDS);
+        final var second = (StreamingEvent.Candle) received.poll(5, TimeUnit.SECONDS);
+        assertNotNull(first);
+        assertNotNull(second);
+        assertEquals(first.getDateTime(), ZonedDateTime.parse("2019-10-17T10:05:00Z"));
+        assertEquals(second.getDateTime(), ZonedDateTime.parse("2019-10-17T10:06:00Z"));
+        assertEquals(second.getClosingPrice(), new BigDecimal("11"));
+        recovered.get(5, TimeUnit.SECONDS);
+        // подписки переотправляет пул соединений, а не контекст
+        verify(connection, times(1)).sendStreamingRequest(any());
+    }
+
+    private static String candleJson(String time, String close) {
+        return "{\"figi\":\"figi\",\"interval\":\"1min\",\"o\":10,\"c\":" + close +
+                ",\"h\":12,\"l\":9,\"v\":100,\"time\":\"" + time + "\"}";
+    }
+
+    private static String orderbookMessage(String figi, int depth) {
+        return orderbookMessage(figi, depth, "64.35");
+    }
+
+    private static String orderbookMessage(String figi, int depth, String bid) {
+        return "{\"event\":\"orderbook\",\"time\":\"2019-08-07T15:35:00Z\",\"payload\":{" +
+                "\"figi\":\"" + figi + "\",\"depth\":" + depth + "," +
+                "\"bids\":[[" + bid + ",204]],\"asks\":[[64.38,102]]}}";
+    }
+
 }
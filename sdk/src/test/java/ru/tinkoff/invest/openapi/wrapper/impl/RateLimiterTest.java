@@ -0,0 +1,105 @@
+package ru.tinkoff.invest.openapi.wrapper.impl;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.Test;
+import ru.tinkoff.invest.openapi.wrapper.EndpointGroup;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+class RateLimiterTest {
+
+    private static final Map<EndpointGroup, Integer> LIMITS = Map.of(
+            EndpointGroup.Orders, 60,
+            EndpointGroup.Portfolio, 60,
+            EndpointGroup.Market, 60,
+            EndpointGroup.Operations, 60,
+            EndpointGroup.Other, 60
+    );
+
+    private long now = 0;
+
+    @Test
+    void groupingPaths() {
+        assertEquals(RateLimiter.groupOf("/orders/limit-order?figi=BBG000B9XRY4"), EndpointGroup.Orders);
+        assertEquals(RateLimiter.groupOf("/portfolio/currencies"), EndpointGroup.Portfolio);
+        assertEquals(RateLimiter.groupOf("/market/candles?figi=BBG000B9XRY4"), EndpointGroup.Market);
+        assertEquals(RateLimiter.groupOf("/operations?from=2019-08-19T18:38:33Z"), EndpointGroup.Operations);
+        assertEquals(RateLimiter.groupOf("/sandbox/register"), EndpointGroup.Other);
+    }
+
+    @Test
+    void delayingRequestsOverLimit() {
+        final var limiter = new RateLimiter(LIMITS, () -> now);
+
+        // 60 в минуту - ведро на 10 маркеров, дальше по маркеру в секунду
+        for (int i = 0; i < 10; i++) {
+            assertEquals(limiter.reserve(EndpointGroup.Market), 0L);
+        }
+        assertEquals(limiter.reserve(EndpointGroup.Market), TimeUnit.SECONDS.toNanos(1));
+        assertEquals(limiter.reserve(EndpointGroup.Market), TimeUnit.SECONDS.toNanos(2));
+        // другие группы не затронуты
+        assertEquals(limiter.reserve(EndpointGroup.Orders), 0L);
+
+        now += TimeUnit.SECONDS.toNanos(3);
+        assertEquals(limiter.reserve(EndpointGroup.Market), 0L);
+
+        final var metrics = limiter.getMetrics().get(EndpointGroup.Market);
+        assertEquals(metrics.getAcquiredCount(), 13L);
+        assertEquals(metrics.getMaxWaitTime(), Duration.ofSeconds(2));
+        assertEquals(metrics.getWaitHistogram().get(Duration.ZERO), 11L);
+        assertEquals(metrics.getWaitHistogram().get(Duration.ofSeconds(1)), 2L);
+        assertEquals(metrics.getWaitHistogram().get(Duration.ofSeconds(5)), 0L);
+    }
+
+    @Test
+    void adaptingToThrottling() {
+        final var limiter = new RateLimiter(LIMITS, () -> now);
+
+        limiter.onThrottled(EndpointGroup.Orders);
+        // повторный отказ из той же пачки запросов не снижает частоту ещё раз
+        limiter.onThrottled(EndpointGroup.Orders);
+
+        var metrics = limiter.getMetrics().get(EndpointGroup.Orders);
+        assertEquals(metrics.getThrottledCount(), 2L);
+        assertEquals(metrics.getConfiguredLimit(), 60);
+        assertEquals(metrics.getCurrentLimit(), 30.0);
+
+        // запаса маркеров больше нет, следующий запрос ждёт по сниженной частоте
+        assertEquals(limiter.reserve(EndpointGroup.Orders), TimeUnit.SECONDS.toNanos(2));
+
+        now += TimeUnit.SECONDS.toNanos(10);
+        metrics = limiter.getMetrics().get(EndpointGroup.Orders);
+        assertEquals(metrics.getCurrentLimit(), 42.0, 1e-9);
+
+        now += TimeUnit.MINUTES.toNanos(1);
+        metrics = limiter.getMetrics().get(EndpointGroup.Orders);
+        assertEquals(metrics.getCurrentLimit(), 60.0);
+    }
+
+    @Test
+    void changingLimit() {
+        final var limiter = new RateLimiter(LIMITS, () -> now);
+
+        limiter.setLimit(EndpointGroup.Portfolio, 120);
+        assertEquals(limiter.getLimit(EndpointGroup.Portfolio), 120);
+        assertThrows(IllegalArgumentException.class, () -> limiter.setLimit(EndpointGroup.Portfolio, 0));
+    }
+
+    @Test
+    void completingAcquireAfterWait() {
+        final var limiter = new RateLimiter(LIMITS, () -> now);
+
+        // 60 в минуту - ведро на 10 маркеров, дальше по маркеру в секунду: ожидание заметно дольше, чем
+        // может занять проверка, что запрос ещё ждёт
+        for (int i = 0; i < 10; i++) {
+            assertTrue(limiter.acquire(EndpointGroup.Market).isDone());
+        }
+        final var delayed = limiter.acquire(EndpointGroup.Market);
+        assertFalse(delayed.isDone());
+        assertDoesNotThrow(() -> delayed.get(5, TimeUnit.SECONDS));
+        assertEquals(limiter.getMetrics().get(EndpointGroup.Market).getMaxWaitTime(), Duration.ofSeconds(1));
+    }
+}
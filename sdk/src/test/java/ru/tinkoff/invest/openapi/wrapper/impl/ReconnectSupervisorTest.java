@@ -0,0 +1,69 @@
+package ru.tinkoff.invest.openapi.wrapper.impl;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+import org.junit.jupiter.api.Test;
+import ru.tinkoff.invest.openapi.wrapper.ReconnectEvent;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.WebSocket;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+class ReconnectSupervisorTest {
+
+    private static final String STREAMING_HOST = "wss://streaming.example";
+
+    @Test
+    void reconnectingAfterServerClosesConnection() throws InterruptedException {
+        final var listener = new WebSocketListenerImpl();
+        final var oldWebSocket = mock(WebSocket.class);
+        final var newWebSocket = mock(WebSocket.class);
+        final var httpClient = mock(HttpClient.class);
+        final var builder = mock(WebSocket.Builder.class);
+        when(httpClient.newWebSocketBuilder()).thenReturn(builder);
+        when(builder.buildAsync(URI.create(STREAMING_HOST), listener))
+                .thenReturn(CompletableFuture.failedFuture(new RuntimeException("unavailable")))
+                .thenReturn(CompletableFuture.completedFuture(newWebSocket));
+
+        final var events = new LinkedBlockingQueue<ReconnectEvent>();
+        final var supervisor = new ReconnectSupervisor(
+                3,
+                httpClient,
+                STREAMING_HOST,
+                "token",
+                oldWebSocket,
+                listener,
+                events::add,
+                Logger.getLogger(ReconnectSupervisorTest.class.getName()),
+                Duration.ofMillis(1),
+                Duration.ofMillis(10)
+        );
+
+        listener.onClose(oldWebSocket, 1006, "");
+        // повторная ошибка того же соединения не запускает второе восстановление
+        listener.onError(oldWebSocket, new RuntimeException());
+
+        final var event = events.poll(5, TimeUnit.SECONDS);
+        assertNotNull(event);
+        assertEquals(event.getSocketIndex(), 3);
+        assertEquals(event.getAttempts(), 2);
+        assertSame(supervisor.getWebSocket(), newWebSocket);
+        verify(oldWebSocket).abort();
+        verify(builder, times(2)).buildAsync(URI.create(STREAMING_HOST), listener);
+
+        final var metrics = supervisor.getMetrics();
+        assertTrue(metrics.isConnected());
+        assertEquals(metrics.getReconnectsCount(), 1L);
+        assertEquals(metrics.getFailedAttemptsCount(), 1L);
+
+        // закрытие уже заменённого соединения игнорируется
+        listener.onClose(oldWebSocket, 1006, "");
+        assertNull(events.poll(50, TimeUnit.MILLISECONDS));
+    }
+}
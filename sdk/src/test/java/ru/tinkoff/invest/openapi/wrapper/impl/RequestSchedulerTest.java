@@ -0,0 +1,78 @@
+package ru.tinkoff.invest.openapi.wrapper.impl;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.Test;
+import ru.tinkoff.invest.openapi.wrapper.RequestPriority;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
+
+class RequestSchedulerTest {
+
+    private final List<String> started = new ArrayList<>();
+    private final Map<String, CompletableFuture<String>> responses = new HashMap<>();
+
+    private Supplier<CompletableFuture<String>> request(final String name) {
+        return () -> {
+            started.add(name);
+            final var response = new CompletableFuture<String>();
+            responses.put(name, response);
+            return response;
+        };
+    }
+
+    @Test
+    void sendingQueuedRequestsByPriority() {
+        final var scheduler = new RequestScheduler(1);
+
+        final var first = scheduler.submit(RequestPriority.MarketData, request("candles"));
+        final var stocks = scheduler.submit(RequestPriority.MarketData, request("stocks"));
+        final var portfolio = scheduler.submit(RequestPriority.Account, request("portfolio"));
+        final var order = scheduler.submit(RequestPriority.Orders, request("order"));
+        assertEquals(started, List.of("candles"));
+
+        final var queued = scheduler.getMetrics();
+        assertEquals(queued.get(RequestPriority.MarketData).getSubmittedCount(), 2L);
+        assertEquals(queued.get(RequestPriority.MarketData).getQueuedCount(), 1);
+        assertEquals(queued.get(RequestPriority.MarketData).getInFlightCount(), 1);
+        assertEquals(queued.get(RequestPriority.Orders).getQueuedCount(), 1);
+
+        responses.get("candles").complete("candles response");
+        assertEquals(first.join(), "candles response");
+        assertEquals(started, List.of("candles", "order"));
+
+        responses.get("order").completeExceptionally(new IllegalStateException());
+        assertTrue(order.isCompletedExceptionally());
+        assertEquals(started, List.of("candles", "order", "portfolio"));
+
+        // при увеличении окна ожидающие запросы уходят сразу
+        scheduler.setMaxInFlight(2);
+        assertEquals(started, List.of("candles", "order", "portfolio", "stocks"));
+        assertFalse(portfolio.isDone());
+        assertFalse(stocks.isDone());
+
+        final var metrics = scheduler.getMetrics();
+        assertEquals(metrics.get(RequestPriority.Orders).getQueuedCount(), 0);
+        assertEquals(metrics.get(RequestPriority.Account).getInFlightCount(), 1);
+        assertEquals(metrics.get(RequestPriority.MarketData).getInFlightCount(), 1);
+        assertTrue(metrics.get(RequestPriority.Orders).getMaxQueueTime().toNanos() > 0);
+    }
+
+    @Test
+    void releasingSlotWhenRequestFailsToStart() {
+        final var scheduler = new RequestScheduler(1);
+
+        final var failed = scheduler.submit(RequestPriority.Account, () -> {
+            throw new IllegalArgumentException();
+        });
+        assertTrue(failed.isCompletedExceptionally());
+
+        scheduler.submit(RequestPriority.Account, request("portfolio"));
+        assertEquals(started, List.of("portfolio"));
+    }
+}
@@ -15,6 +15,8 @@ import java.net.URI;
 import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutionException;
 import java.util.logging.Logger;
@@ -26,7 +28,7 @@ class SandboxContextImplTest {
     private static SandboxContext context;
     private static HttpClient httpClient;
 
-    private abstract static class HttpStringResponse implements HttpResponse<String> {}
+    private abstract static class HttpBytesResponse implements HttpResponse<byte[]> {}
 
     @BeforeAll
     static void initTest() {
@@ -39,22 +41,23 @@ class SandboxContextImplTest {
         when(connection.getAuthToken()).thenReturn(token);
         when(connection.getHttpClient()).thenReturn(httpClient);
         when(connection.getListener()).thenReturn(listener);
+        when(connection.getListeners()).thenReturn(List.of(listener));
 
         context = new SandboxContextImpl(connection, logger);
     }
 
     @Test
     void performingRegistration() throws ExecutionException, InterruptedException {
-        final HttpResponse<String> response = mock(HttpStringResponse.class);
+        final HttpResponse<byte[]> response = mock(HttpBytesResponse.class);
         final String json = "{" +
                 "\"trackingId\":\"trackingId\"," +
                 "\"status\":\"Ok\"," +
                 "\"payload\": {}" +
                 "}";
-        when(response.body()).thenReturn(json);
+        when(response.body()).thenReturn(json.getBytes(StandardCharsets.UTF_8));
         when(response.statusCode()).thenReturn(200);
 
-        when(httpClient.<String>sendAsync(any(), any())).thenReturn(CompletableFuture.completedFuture(response));
+        when(httpClient.<byte[]>sendAsync(any(), any())).thenReturn(CompletableFuture.completedFuture(response));
 
         final var result = context.performRegistration().get();
         assertNull(result);
@@ -64,7 +67,7 @@ class SandboxContextImplTest {
                 .header("Authorization", token)
                 .POST(HttpRequest.BodyPublishers.ofString(""))
                 .build();
-        verify(httpClient).sendAsync(request, HttpResponse.BodyHandlers.ofString());
+        verify(httpClient).sendAsync(request, HttpResponse.BodyHandlers.ofByteArray());
     }
 
     @Test
@@ -72,16 +75,16 @@ class SandboxContextImplTest {
         final var someCurrency = Currency.RUB;
         final var someBalance = BigDecimal.valueOf(1000);
 
-        final HttpResponse<String> response = mock(HttpStringResponse.class);
+        final HttpResponse<byte[]> response = mock(HttpBytesResponse.class);
         final String json = "{" +
                 "\"trackingId\":\"trackingId\"," +
                 "\"status\":\"Ok\"," +
                 "\"payload\": {}" +
                 "}";
-        when(response.body()).thenReturn(json);
+        when(response.body()).thenReturn(json.getBytes(StandardCharsets.UTF_8));
         when(response.statusCode()).thenReturn(200);
 
-        when(httpClient.<String>sendAsync(any(), any())).thenReturn(CompletableFuture.completedFuture(response));
+        when(httpClient.<byte[]>sendAsync(any(), any())).thenReturn(CompletableFuture.completedFuture(response));
 
         final var result = context.setCurrencyBalance(someCurrency, someBalance).get();
         assertNull(result);
@@ -92,7 +95,7 @@ class SandboxContextImplTest {
                 .header("Authorization", token)
                 .POST(HttpRequest.BodyPublishers.ofString(requestBody))
                 .build();
-        verify(httpClient).sendAsync(request, HttpResponse.BodyHandlers.ofString());
+        verify(httpClient).sendAsync(request, HttpResponse.BodyHandlers.ofByteArray());
     }
 
     @Test
@@ -100,16 +103,16 @@ class SandboxContextImplTest {
         final var someFigi = "figi";
         final var someBalance = BigDecimal.valueOf(1000);
 
-        final HttpResponse<String> response = mock(HttpStringResponse.class);
+        final HttpResponse<byte[]> response = mock(HttpBytesResponse.class);
         final String json = "{" +
                 "\"trackingId\":\"trackingId\"," +
                 "\"status\":\"Ok\"," +
                 "\"payload\": {}" +
                 "}";
-        when(response.body()).thenReturn(json);
+        when(response.body()).thenReturn(json.getBytes(StandardCharsets.UTF_8));
         when(response.statusCode()).thenReturn(200);
 
-        when(httpClient.<String>sendAsync(any(), any())).thenReturn(CompletableFuture.completedFuture(response));
+        when(httpClient.<byte[]>sendAsync(any(), any())).thenReturn(CompletableFuture.completedFuture(response));
 
         final var result = context.setPositionBalance(someFigi, someBalance).get();
         assertNull(result);
@@ -120,21 +123,21 @@ class SandboxContextImplTest {
                 .header("Authorization", token)
                 .POST(HttpRequest.BodyPublishers.ofString(requestBody))
                 .build();
-        verify(httpClient).sendAsync(request, HttpResponse.BodyHandlers.ofString());
+        verify(httpClient).sendAsync(request, HttpResponse.BodyHandlers.ofByteArray());
     }
 
     @Test
     void clearAll() throws ExecutionException, InterruptedException {
-        final HttpResponse<String> response = mock(HttpStringResponse.class);
+        final HttpResponse<byte[]> response = mock(HttpBytesResponse.class);
         final String json = "{" +
                 "\"trackingId\":\"trackingId\"," +
                 "\"status\":\"Ok\"," +
                 "\"payload\": {}" +
                 "}";
-        when(response.body()).thenReturn(json);
+        when(response.body()).thenReturn(json.getBytes(StandardCharsets.UTF_8));
         when(response.statusCode()).thenReturn(200);
 
-        when(httpClient.<String>sendAsync(any(), any())).thenReturn(CompletableFuture.completedFuture(response));
+        when(httpClient.<byte[]>sendAsync(any(), any())).thenReturn(CompletableFuture.completedFuture(response));
 
         final var result = context.clearAll().get();
         assertNull(result);
@@ -144,7 +147,7 @@ class SandboxContextImplTest {
                 .header("Authorization", token)
                 .POST(HttpRequest.BodyPublishers.ofString(""))
                 .build();
-        verify(httpClient).sendAsync(request, HttpResponse.BodyHandlers.ofString());
+        verify(httpClient).sendAsync(request, HttpResponse.BodyHandlers.ofByteArray());
     }
 
 }
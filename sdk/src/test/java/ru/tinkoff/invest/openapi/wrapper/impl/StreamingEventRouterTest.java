@@ -0,0 +1,160 @@
+package ru.tinkoff.invest.openapi.wrapper.impl;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.Test;
+import ru.tinkoff.invest.openapi.data.CandleInterval;
+import ru.tinkoff.invest.openapi.data.StreamingEvent;
+import ru.tinkoff.invest.openapi.wrapper.BackpressurePolicy;
+import ru.tinkoff.invest.openapi.wrapper.StreamingKey;
+
+import java.math.BigDecimal;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Flow;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+class StreamingEventRouterTest {
+
+    private static class RecordingSubscriber implements Flow.Subscriber<StreamingEvent> {
+        private final List<StreamingEvent> received = new ArrayList<>();
+        private volatile Flow.Subscription subscription;
+        private boolean completed;
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            this.subscription = subscription;
+        }
+
+        @Override
+        public void onNext(StreamingEvent item) {
+            received.add(item);
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+        }
+
+        @Override
+        public void onComplete() {
+            completed = true;
+        }
+    }
+
+    @Test
+    void droppingOldestEvents() {
+        final var router = new StreamingEventRouter(Runnable::run);
+        final var subscriber = new RecordingSubscriber();
+        final var subscription = router.subscribe(subscriber, null, BackpressurePolicy.DropOldest, 2);
+
+        router.publish(candle("figi", "1"));
+        router.publish(candle("figi", "2"));
+        router.publish(candle("figi", "3"));
+
+        assertEquals(subscription.getBufferedCount(), 2);
+        assertEquals(subscription.getDroppedCount(), 1);
+
+        subscriber.subscription.request(Long.MAX_VALUE);
+        assertEquals(subscriber.received, List.of(candle("figi", "2"), candle("figi", "3")));
+        assertEquals(subscription.getBufferedCount(), 0);
+    }
+
+    @Test
+    void conflatingLatestEventPerKey() {
+        final var router = new StreamingEventRouter(Runnable::run);
+        final var subscriber = new RecordingSubscriber();
+        final var subscription = router.subscribe(
+                subscriber,
+                Set.of(StreamingKey.candle("first", CandleInterval.ONE_MIN),
+                        StreamingKey.candle("second", CandleInterval.ONE_MIN)),
+                BackpressurePolicy.ConflateLatest,
+                16
+        );
+
+        router.publish(candle("first", "1"));
+        router.publish(candle("second", "1"));
+        router.publish(candle("first", "2"));
+        router.publish(candle("first", "3"));
+        router.publish(candle("other", "1"));
+
+        assertEquals(subscription.getBufferedCount(), 2);
+        assertEquals(subscription.getDroppedCount(), 2);
+
+        subscriber.subscription.request(1);
+        assertEquals(subscriber.received, List.of(candle("first", "3")));
+
+        router.closeAll();
+        assertFalse(subscriber.completed);
+        subscriber.subscription.request(1);
+        assertEquals(subscriber.received, List.of(candle("first", "3"), candle("second", "1")));
+        assertTrue(subscriber.completed);
+    }
+
+    @Test
+    void keepingLatestEventAmongErrors() {
+        final var router = new StreamingEventRouter(Runnable::run);
+        final var subscriber = new RecordingSubscriber();
+        // место под последнюю свечу и под ошибку
+        final var subscription = router.subscribe(
+                subscriber,
+                Set.of(StreamingKey.candle("figi", CandleInterval.ONE_MIN)),
+                BackpressurePolicy.ConflateLatest,
+                2
+        );
+
+        router.publish(candle("figi", "1"));
+        router.publish(new StreamingEvent.Error("first", null));
+        router.publish(new StreamingEvent.Error("second", null));
+        router.publish(candle("figi", "2"));
+        router.publish(new StreamingEvent.Error("third", null));
+        router.publish(candle("figi", "3"));
+
+        // ошибки не вытесняют свечу и не считаются выброшенными свечами
+        assertEquals(subscription.getBufferedCount(), 2);
+        assertEquals(subscription.getDroppedCount(), 2L);
+
+        subscriber.subscription.request(Long.MAX_VALUE);
+        assertEquals(subscriber.received.size(), 2);
+        assertEquals(subscriber.received.get(0), candle("figi", "3"));
+        assertEquals(((StreamingEvent.Error) subscriber.received.get(1)).geError(), "third");
+    }
+
+    @Test
+    void blockingUntilSubscriberCatchesUp() throws Exception {
+        final var router = new StreamingEventRouter();
+        final var subscriber = new RecordingSubscriber();
+        final var subscription = router.subscribe(subscriber, null, BackpressurePolicy.Block, 1);
+
+        router.publish(candle("figi", "1"));
+        final var blocked = CompletableFuture.runAsync(() -> router.publish(candle("figi", "2")));
+
+        assertThrows(TimeoutException.class, () -> blocked.get(200, TimeUnit.MILLISECONDS));
+        assertEquals(subscription.getBufferedCount(), 1);
+
+        while (subscriber.subscription == null) {
+            Thread.onSpinWait();
+        }
+        subscriber.subscription.request(1);
+        blocked.get(5, TimeUnit.SECONDS);
+
+        assertEquals(subscription.getDroppedCount(), 0);
+        assertEquals(subscription.getBufferedCount(), 1);
+    }
+
+    private static StreamingEvent.Candle candle(String figi, String close) {
+        return new StreamingEvent.Candle(
+                BigDecimal.ONE,
+                new BigDecimal(close),
+                BigDecimal.TEN,
+                BigDecimal.ONE,
+                BigDecimal.TEN,
+                ZonedDateTime.parse("2019-10-17T10:00:00Z"),
+                CandleInterval.ONE_MIN,
+                figi
+        );
+    }
+}
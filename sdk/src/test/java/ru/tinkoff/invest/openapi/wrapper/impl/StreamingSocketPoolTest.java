@@ -0,0 +1,241 @@
+package ru.tinkoff.invest.openapi.wrapper.impl;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+import org.junit.jupiter.api.Test;
+import ru.tinkoff.invest.openapi.data.CandleInterval;
+import ru.tinkoff.invest.openapi.data.StreamingRequest;
+
+import java.net.http.HttpClient;
+import java.net.http.WebSocket;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Flow;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Logger;
+
+class StreamingSocketPoolTest {
+
+    private static StreamingSocketPool pool(final int size) {
+        return pool(size, mock(HttpClient.class));
+    }
+
+    private static StreamingSocketPool pool(final int size, final HttpClient httpClient) {
+        final var listeners = new ArrayList<WebSocketListenerImpl>();
+        for (int i = 0; i < size; i++) {
+            listeners.add(new WebSocketListenerImpl());
+        }
+        return pool(listeners, httpClient);
+    }
+
+    private static StreamingSocketPool pool(final List<WebSocketListenerImpl> listeners, final HttpClient httpClient) {
+        final var webSockets = new ArrayList<WebSocket>();
+        for (int i = 0; i < listeners.size(); i++) {
+            final var webSocket = mock(WebSocket.class);
+            when(webSocket.sendText(any(), anyBoolean())).thenReturn(CompletableFuture.completedFuture(webSocket));
+            when(webSocket.sendPing(any())).thenReturn(CompletableFuture.completedFuture(webSocket));
+            webSockets.add(webSocket);
+        }
+        return new StreamingSocketPool(
+                httpClient,
+                "wss://streaming.example",
+                "token",
+                webSockets,
+                listeners,
+                List.of(),
+                Logger.getLogger(StreamingSocketPoolTest.class.getName())
+        );
+    }
+
+    private static List<String> figis(final int count) {
+        final var result = new ArrayList<String>(count);
+        for (int i = 0; i < count; i++) {
+            result.add(String.format("BBG%09d", i));
+        }
+        return result;
+    }
+
+    @Test
+    void shardingFigisConsistently() {
+        final var four = pool(4);
+        final var five = pool(5);
+        final var figis = figis(10_000);
+
+        final var perSocket = new int[4];
+        var moved = 0;
+        for (final var figi : figis) {
+            final var index = four.socketIndexOf(figi);
+            assertEquals(four.socketIndexOf(figi), index);
+            assertSame(four.getWebSocket(figi), four.getWebSocket(index));
+            perSocket[index]++;
+
+            final var newIndex = five.socketIndexOf(figi);
+            if (newIndex != index) {
+                // инструмент переезжает только на добавленное соединение
+                assertEquals(newIndex, 4);
+                moved++;
+            }
+        }
+
+        for (final var count : perSocket) {
+            assertTrue(count > 1_500 && count < 3_500, "неравномерное распределение: " + count);
+        }
+        assertTrue(moved > 1_000 && moved < 3_000, "переехало инструментов: " + moved);
+
+        four.close();
+        five.close();
+    }
+
+    @Test
+    void countingMessagesPerSocket() throws InterruptedException {
+        final var pool = pool(2);
+        final var received = new LinkedBlockingQueue<String>();
+        for (final var listener : pool.getListeners()) {
+            listener.subscribeOnMessage(new Flow.Subscriber<>() {
+                @Override
+                public void onSubscribe(Flow.Subscription subscription) {
+                    subscription.request(Long.MAX_VALUE);
+                }
+
+                @Override
+                public void onNext(CharSequence item) {
+                    received.add(item.toString());
+                }
+
+                @Override
+                public void onError(Throwable throwable) {
+                }
+
+                @Override
+                public void onComplete() {
+                }
+            });
+        }
+
+        final var second = (WebSocketListenerImpl) pool.getListeners().get(1);
+        second.onText(pool.getWebSocket(1), "{}", true);
+        second.onText(pool.getWebSocket(1), "[]", true);
+        assertNotNull(received.poll(5, TimeUnit.SECONDS));
+        assertNotNull(received.poll(5, TimeUnit.SECONDS));
+
+        final var metrics = pool.getStreamingMetrics();
+        assertEquals(metrics.size(), 2);
+        assertEquals(metrics.get(0).getMessagesCount(), 0L);
+        assertEquals(metrics.get(1).getMessagesCount(), 2L);
+        assertTrue(metrics.get(1).getMessagesPerSecond() > 0);
+        assertEquals(metrics.get(1).getSocketIndex(), 1);
+        assertTrue(pool.getReconnectMetrics().isConnected());
+
+        pool.close();
+    }
+
+    @Test
+    void reconnectingSilentSocket() {
+        final var httpClient = mock(HttpClient.class);
+        final var builder = mock(WebSocket.Builder.class);
+        when(httpClient.newWebSocketBuilder()).thenReturn(builder);
+        when(builder.buildAsync(any(), any())).thenReturn(new CompletableFuture<>());
+        // первое соединение всегда что-то принимает, второе молчит
+        final var alive = spy(new WebSocketListenerImpl());
+        doAnswer(invocation -> System.nanoTime()).when(alive).getLastActivityNanos();
+        final var pool = pool(List.of(alive, new WebSocketListenerImpl()), httpClient);
+        pool.setStaleTimeout(Duration.ofMillis(300));
+
+        // восстановление начинается, когда молчащее соединение обнаружено
+        verify(httpClient, timeout(5000)).newWebSocketBuilder();
+
+        final var metrics = pool.getStreamingMetrics();
+        assertTrue(metrics.get(0).getReconnectMetrics().isConnected());
+        assertFalse(metrics.get(1).getReconnectMetrics().isConnected());
+        verify(pool.getWebSocket(0), atLeastOnce()).sendPing(any());
+
+        pool.close();
+    }
+
+    @Test
+    void resubscribingOnceAfterReconnectBehindPendingRequest() throws InterruptedException {
+        final var sent = new ArrayList<String>();
+        final var sending = new ArrayList<CompletableFuture<WebSocket>>();
+        final var overlaps = new AtomicInteger();
+        final var oldWebSocket = mock(WebSocket.class);
+        final var newWebSocket = mock(WebSocket.class);
+        for (final var webSocket : List.of(oldWebSocket, newWebSocket)) {
+            when(webSocket.sendText(any(), anyBoolean())).thenAnswer(invocation -> {
+                if (!sending.isEmpty() && !sending.get(sending.size() - 1).isDone()) {
+                    overlaps.incrementAndGet();
+                }
+                sent.add(invocation.getArgument(0).toString());
+                final var result = new CompletableFuture<WebSocket>();
+                sending.add(result);
+                return result;
+            });
+        }
+        final var httpClient = mock(HttpClient.class);
+        final var builder = mock(WebSocket.Builder.class);
+        when(httpClient.newWebSocketBuilder()).thenReturn(builder);
+        when(builder.buildAsync(any(), any())).thenReturn(CompletableFuture.completedFuture(newWebSocket));
+        final var pool = new StreamingSocketPool(
+                httpClient,
+                "wss://streaming.example",
+                "token",
+                List.of(oldWebSocket),
+                List.of(new WebSocketListenerImpl()),
+                List.of(),
+                Logger.getLogger(StreamingSocketPoolTest.class.getName())
+        );
+        // восполнение пропущенного регистрирует каждый контекст подключения
+        final var recovering = new LinkedBlockingQueue<CompletableFuture<Void>>();
+        for (int i = 0; i < 2; i++) {
+            pool.addRecoveryAction(event -> {
+                final var result = new CompletableFuture<Void>();
+                recovering.add(result);
+                return result;
+            });
+        }
+
+        // подписки из разных контекстов уходят через одну очередь
+        final var first = pool.send(StreamingRequest.subscribeOrderbook("first", 2));
+        final var second = pool.send(StreamingRequest.subscribeInstrumentInfo("second"));
+        final var cancelled = pool.send(StreamingRequest.subscribeCandle("cancelled", CandleInterval.ONE_MIN));
+        assertEquals(sent.size(), 1);
+        sending.get(0).complete(oldWebSocket);
+        first.join();
+        assertEquals(sent.size(), 2);
+        sending.get(1).complete(oldWebSocket);
+        second.join();
+        sending.get(2).complete(oldWebSocket);
+        cancelled.join();
+        final var unsubscribed = pool.send(StreamingRequest.unsubscribeCandle("cancelled", CandleInterval.ONE_MIN));
+
+        // соединение восстановлено, пока ещё отправляется отписка
+        pool.reconnect(0, "test");
+        verify(builder, timeout(5000)).buildAsync(any(), any());
+        final var recoveries = List.of(recovering.poll(5, TimeUnit.SECONDS), recovering.poll(5, TimeUnit.SECONDS));
+        assertSame(pool.getWebSocket(0), newWebSocket);
+        assertEquals(sent.size(), 4);
+
+        // подписки переотправляются только после восполнения пропущенного, один раз и друг за другом
+        sending.get(3).complete(oldWebSocket);
+        unsubscribed.join();
+        assertEquals(sent.size(), 4);
+        recoveries.forEach(recovery -> recovery.complete(null));
+        verify(newWebSocket, timeout(5000)).sendText(any(), anyBoolean());
+        assertEquals(sent.size(), 5);
+        sending.get(4).complete(newWebSocket);
+        assertEquals(sent.size(), 6);
+        sending.get(5).complete(newWebSocket);
+
+        assertEquals(overlaps.get(), 0);
+        verify(newWebSocket, times(2)).sendText(any(), anyBoolean());
+        final var replayed = sent.subList(4, 6);
+        assertTrue(replayed.stream().anyMatch(message -> message.contains("\"first\"")));
+        assertTrue(replayed.stream().anyMatch(message -> message.contains("\"second\"")));
+
+        pool.close();
+    }
+}
@@ -0,0 +1,57 @@
+package ru.tinkoff.invest.openapi.wrapper.impl;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+import org.junit.jupiter.api.Test;
+
+import java.net.http.WebSocket;
+import java.nio.CharBuffer;
+import java.util.concurrent.Flow;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+class WebSocketListenerImplTest {
+
+    @Test
+    void assemblingFragmentsIntoRecycledFrames() throws InterruptedException {
+        // подписчики вызываются в потоке приёма, так что к возврату из onText сообщение уже вернулось в пул
+        final var listener = new WebSocketListenerImpl(
+                WebSocketListenerImpl.DEFAULT_MAX_PENDING_MESSAGES, Runnable::run);
+        final var webSocket = mock(WebSocket.class);
+        final var texts = new LinkedBlockingQueue<String>();
+        final var frames = new LinkedBlockingQueue<CharSequence>();
+        listener.subscribeOnMessage(new Flow.Subscriber<>() {
+            @Override
+            public void onSubscribe(Flow.Subscription subscription) {
+                subscription.request(Long.MAX_VALUE);
+            }
+
+            @Override
+            public void onNext(CharSequence item) {
+                frames.add(item);
+                texts.add(item.toString());
+            }
+
+            @Override
+            public void onError(Throwable throwable) {
+            }
+
+            @Override
+            public void onComplete() {
+            }
+        });
+
+        assertNull(listener.onText(webSocket, CharBuffer.wrap("{\"event\":"), false));
+        assertNull(listener.onText(webSocket, "\"first\"}", true));
+        assertEquals(texts.poll(5, TimeUnit.SECONDS), "{\"event\":\"first\"}");
+        final var first = frames.poll();
+
+        // буфер первого сообщения возвращается в пул сразу после обработки
+        listener.onText(webSocket, "{}", true);
+        assertEquals(texts.poll(5, TimeUnit.SECONDS), "{}");
+        assertSame(frames.poll(), first);
+
+        verify(webSocket, times(3)).request(1);
+    }
+}